@@ -0,0 +1,53 @@
+package com.nobullet.graph;
+
+/**
+ * Default cell storage: {@code long[height][width]}.
+ */
+final class ArrayCellStorage implements CellStorage {
+
+    final long[][] matrix;
+
+    /**
+     * Constructs storage of zeros.
+     *
+     * @param width Width.
+     * @param height Height.
+     */
+    ArrayCellStorage(int width, int height) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Expecting correct dimensions.");
+        }
+        this.matrix = new long[height][width];
+    }
+
+    @Override
+    public int getWidth() {
+        return matrix.length == 0 ? 0 : matrix[0].length;
+    }
+
+    @Override
+    public int getHeight() {
+        return matrix.length;
+    }
+
+    @Override
+    public Type getType() {
+        return Type.LONG;
+    }
+
+    @Override
+    public long get(int x, int y) {
+        return matrix[y][x];
+    }
+
+    @Override
+    public void getRow(int y, long[] row) {
+        CellStorage.checkRow(this, y, row);
+        System.arraycopy(matrix[y], 0, row, 0, matrix[y].length);
+    }
+
+    @Override
+    public void set(int x, int y, long value) {
+        matrix[y][x] = Type.LONG.check(value);
+    }
+}
@@ -0,0 +1,168 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.Map.Direction;
+import com.nobullet.graph.Map.Rectangle;
+import java.util.EnumMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parallel kernels for assistant matrices of a {@link Map}: for every cell the number of consecutive matching cells
+ * ending at it in the given direction.
+ * <p>
+ * The first pass goes over bands of rows: every row is read once with {@link CellStorage#getRow(int, long[])}, a
+ * match is turned into 0 or 1 and horizontal directions are counted with the branch-free recurrence
+ * {@code h[x] = (h[x - 1] + 1) * match[x]}. The vertical matrices get the matches and the second pass turns them
+ * into counts in place over stripes of columns, row by row: {@code v[y][x] *= v[y - 1][x] + 1}, a loop over
+ * consecutive array elements without branches that the JIT compiler can vectorize.
+ */
+final class AssistantMatrices {
+
+    static final int BAND_CELLS = 1 << 14;
+    static final int STRIPE_COLUMNS = 1 << 10;
+
+    private AssistantMatrices() {
+    }
+
+    /**
+     * Builds assistant matrix for one direction.
+     *
+     * @param map Map.
+     * @param direction Direction.
+     * @param zeroArea Whether to count 0's or values &gt; 0.
+     * @param pool Fork-join pool.
+     * @return Assistant matrix.
+     */
+    static long[][] build(Map map, Direction direction, boolean zeroArea, ForkJoinPool pool) {
+        EnumMap<Direction, long[][]> matrices = new EnumMap<>(Direction.class);
+        matrices.put(direction, new long[map.getHeight()][map.getWidth()]);
+        compute(map, zeroArea, matrices, pool);
+        return matrices.get(direction);
+    }
+
+    /**
+     * Builds assistant matrices for all the directions with one read of every cell.
+     *
+     * @param map Map.
+     * @param zeroArea Whether to count 0's or values &gt; 0.
+     * @param pool Fork-join pool.
+     * @return Assistant matrices by direction.
+     */
+    static EnumMap<Direction, long[][]> buildAll(Map map, boolean zeroArea, ForkJoinPool pool) {
+        EnumMap<Direction, long[][]> matrices = new EnumMap<>(Direction.class);
+        for (Direction direction : Direction.values()) {
+            matrices.put(direction, new long[map.getHeight()][map.getWidth()]);
+        }
+        compute(map, zeroArea, matrices, pool);
+        return matrices;
+    }
+
+    /**
+     * Finds the first largest rectangle: rows of {@link Direction#TOP2BOTTOM} matrix are searched with
+     * {@link Map#findLargestRectangle(long[], int)} in parallel bands, band results are reduced in the order of rows,
+     * so the result is the same as of the sequential search.
+     *
+     * @param map Map.
+     * @param zeroArea Whether to search 0's area or areas of values &gt; 0.
+     * @param pool Fork-join pool.
+     * @return Largest rectangle or null if there are no matching cells.
+     */
+    static Rectangle findLargestRectangle(Map map, boolean zeroArea, ForkJoinPool pool) {
+        long[][] heights = build(map, Direction.TOP2BOTTOM, zeroArea, pool);
+        int bandRows = bandRows(map.getWidth());
+        int bands = (heights.length + bandRows - 1) / bandRows;
+        Rectangle[] best = new Rectangle[bands];
+        pool.invoke(new CsrGraph.RowsTask(0, bands, band -> {
+            Rectangle max = null;
+            for (int y = band * bandRows, end = Math.min(heights.length, y + bandRows); y < end; y++) {
+                Rectangle candidate = Map.findLargestRectangle(heights[y], y);
+                if (candidate != null && (max == null || candidate.area() > max.area())) {
+                    max = candidate;
+                }
+            }
+            best[band] = max;
+        }));
+        Rectangle max = null;
+        for (Rectangle candidate : best) {
+            if (candidate != null && (max == null || candidate.area() > max.area())) {
+                max = candidate;
+            }
+        }
+        if (max == null) {
+            return null;
+        }
+        // Invert y index.
+        return Rectangle.of(max.getX(), max.getY() - max.getHeight() + 1, max.getWidth(), max.getHeight());
+    }
+
+    private static void compute(Map map, boolean zeroArea, EnumMap<Direction, long[][]> matrices,
+            ForkJoinPool pool) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        long[][] left = matrices.get(Direction.LEFT2RIGHT);
+        long[][] right = matrices.get(Direction.RIGHT2LEFT);
+        long[][] top = matrices.get(Direction.TOP2BOTTOM);
+        long[][] bottom = matrices.get(Direction.BOTTOM2TOP);
+        int bandRows = bandRows(width);
+        pool.invoke(new CsrGraph.RowsTask(0, (height + bandRows - 1) / bandRows, band -> {
+            long[] matches = new long[width];
+            for (int y = band * bandRows, end = Math.min(height, y + bandRows); y < end; y++) {
+                map.getRow(y, matches);
+                for (int x = 0; x < width; x++) {
+                    long value = matches[x];
+                    matches[x] = (zeroArea ? value == 0L : value > 0L) ? 1L : 0L;
+                }
+                if (left != null) {
+                    long[] row = left[y];
+                    long count = 0L;
+                    for (int x = 0; x < width; x++) {
+                        count = (count + 1L) * matches[x];
+                        row[x] = count;
+                    }
+                }
+                if (right != null) {
+                    long[] row = right[y];
+                    long count = 0L;
+                    for (int x = width - 1; x >= 0; x--) {
+                        count = (count + 1L) * matches[x];
+                        row[x] = count;
+                    }
+                }
+                if (top != null) {
+                    System.arraycopy(matches, 0, top[y], 0, width);
+                }
+                if (bottom != null) {
+                    System.arraycopy(matches, 0, bottom[y], 0, width);
+                }
+            }
+        }));
+        if (top == null && bottom == null) {
+            return;
+        }
+        pool.invoke(new CsrGraph.RowsTask(0, (width + STRIPE_COLUMNS - 1) / STRIPE_COLUMNS, stripe -> {
+            int from = stripe * STRIPE_COLUMNS;
+            int to = Math.min(width, from + STRIPE_COLUMNS);
+            if (top != null) {
+                for (int y = 1; y < height; y++) {
+                    long[] row = top[y];
+                    long[] previous = top[y - 1];
+                    for (int x = from; x < to; x++) {
+                        row[x] *= previous[x] + 1L;
+                    }
+                }
+            }
+            if (bottom != null) {
+                for (int y = height - 2; y >= 0; y--) {
+                    long[] row = bottom[y];
+                    long[] next = bottom[y + 1];
+                    for (int x = from; x < to; x++) {
+                        row[x] *= next[x] + 1L;
+                    }
+                }
+            }
+        }));
+    }
+
+    private static int bandRows(int width) {
+        return Math.max(1, BAND_CELLS / Math.max(1, width));
+    }
+}
@@ -0,0 +1,114 @@
+package com.nobullet.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of breadth-first search from one source vertex over a {@link CsrGraph}: level (number of edges on the
+ * shortest unweighted path) and parent by vertex index. Immutable and thread safe.
+ */
+public final class BreadthFirstTree {
+
+    static final int UNREACHED = -1;
+
+    final CsrGraph graph;
+    final int source;
+    final int[] levels;
+    final int[] parents;
+    final int reachedNumber;
+    final int depth;
+
+    /**
+     * Constructs tree from prepared arrays.
+     *
+     * @param graph Graph snapshot.
+     * @param source Source vertex index.
+     * @param levels Levels by vertex index, {@link #UNREACHED} for unreachable vertices.
+     * @param parents Parents by vertex index (source points to itself).
+     * @param reachedNumber Number of reachable vertices including the source.
+     * @param depth Maximal level.
+     */
+    BreadthFirstTree(CsrGraph graph, int source, int[] levels, int[] parents, int reachedNumber, int depth) {
+        this.graph = graph;
+        this.source = source;
+        this.levels = levels;
+        this.parents = parents;
+        this.reachedNumber = reachedNumber;
+        this.depth = depth;
+    }
+
+    /**
+     * Returns source vertex key.
+     *
+     * @return Source vertex key.
+     */
+    public Key getSource() {
+        return graph.keys[source];
+    }
+
+    /**
+     * Returns number of vertices reachable from the source including the source.
+     *
+     * @return Number of reachable vertices.
+     */
+    public int getNumberOfReachable() {
+        return reachedNumber;
+    }
+
+    /**
+     * Returns maximal level of a reachable vertex.
+     *
+     * @return Maximal level.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Checks whether the given vertex is reachable from the source.
+     *
+     * @param targetKey Target vertex key.
+     * @return Whether the vertex is reachable.
+     */
+    public boolean isReachable(Key targetKey) {
+        return levels[graph.getIndex(targetKey)] != UNREACHED;
+    }
+
+    /**
+     * Returns number of edges on the shortest unweighted path from the source.
+     *
+     * @param targetKey Target vertex key.
+     * @return Level of the vertex or -1 if it is not reachable.
+     */
+    public int getLevel(Key targetKey) {
+        return levels[graph.getIndex(targetKey)];
+    }
+
+    /**
+     * Returns path with minimal number of edges to the given vertex. Cost of the path is the sum of edge costs.
+     *
+     * @param targetKey Target vertex key.
+     * @return Path from the source to the given vertex, empty if the vertex is not reachable.
+     */
+    public Path getPath(Key targetKey) {
+        int target = graph.getIndex(targetKey);
+        if (levels[target] == UNREACHED) {
+            return new Path(graph.keys[source], targetKey, Collections.emptyList(), 0.0D);
+        }
+        List<Key> path = new ArrayList<>(levels[target] + 1);
+        double cost = 0.0D;
+        for (int current = target; current != source; current = parents[current]) {
+            path.add(graph.keys[current]);
+            cost += graph.cost(graph.edgeIndex(parents[current], current));
+        }
+        path.add(graph.keys[source]);
+        Collections.reverse(path);
+        return new Path(graph.keys[source], targetKey, path, cost);
+    }
+
+    @Override
+    public String toString() {
+        return "BreadthFirstTree{source=" + getSource() + ", reached=" + reachedNumber + ", depth=" + depth + '}';
+    }
+}
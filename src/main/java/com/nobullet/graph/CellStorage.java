@@ -0,0 +1,160 @@
+package com.nobullet.graph;
+
+/**
+ * Storage of the cell values of a {@link Map}. Values are non-negative, a storage may limit them with its
+ * {@link Type}. Implementations: {@link #ofLongs(int, int)} (default, {@code long[][]}),
+ * {@link #packed(int, int, Type)} (flat {@code byte[]}, {@code short[]} or {@code int[]} with unsigned values) and
+ * {@link MappedCellStorage} (off-heap, memory-mapped file with tiled layout).
+ * <p>
+ * Cells out of the storage throw {@link IndexOutOfBoundsException}. Changes made directly to the storage are not seen
+ * by the cell listeners of the map.
+ */
+public interface CellStorage {
+
+    /**
+     * Returns width.
+     *
+     * @return Width.
+     */
+    int getWidth();
+
+    /**
+     * Returns height.
+     *
+     * @return Height.
+     */
+    int getHeight();
+
+    /**
+     * Returns type of the cells.
+     *
+     * @return Type.
+     */
+    Type getType();
+
+    /**
+     * Returns value of the cell.
+     *
+     * @param x X.
+     * @param y Y.
+     * @return Value.
+     */
+    long get(int x, int y);
+
+    /**
+     * Sets value of the cell.
+     *
+     * @param x X.
+     * @param y Y.
+     * @param value Non-negative value not greater than {@link Type#getMaxValue()}.
+     * @throws IllegalArgumentException If the value doesn't fit into the cell.
+     */
+    void set(int x, int y, long value);
+
+    /**
+     * Reads values of the row into the array, one call instead of a call per cell.
+     *
+     * @param y Y.
+     * @param row Array of at least {@link #getWidth()} elements for the values.
+     * @throws IllegalArgumentException If the array is too short.
+     */
+    default void getRow(int y, long[] row) {
+        checkRow(this, y, row);
+        for (int x = 0, width = getWidth(); x < width; x++) {
+            row[x] = get(x, y);
+        }
+    }
+
+    /**
+     * Checks the row index and the length of the array for {@link #getRow(int, long[])}.
+     *
+     * @param storage Storage.
+     * @param y Y.
+     * @param row Array for the values.
+     * @throws IndexOutOfBoundsException If the row is out of the storage.
+     * @throws IllegalArgumentException If the array is too short.
+     */
+    static void checkRow(CellStorage storage, int y, long[] row) {
+        if (y < 0 || y >= storage.getHeight()) {
+            throw new IndexOutOfBoundsException(String.format("Row %d is out of %d rows.", y, storage.getHeight()));
+        }
+        if (row.length < storage.getWidth()) {
+            throw new IllegalArgumentException(
+                    String.format("Expecting array of at least %d elements: %d.", storage.getWidth(), row.length));
+        }
+    }
+
+    /**
+     * Returns storage of {@code long[height][width]}.
+     *
+     * @param width Width.
+     * @param height Height.
+     * @return Storage.
+     */
+    static CellStorage ofLongs(int width, int height) {
+        return new ArrayCellStorage(width, height);
+    }
+
+    /**
+     * Returns storage of flat array of the given type: 1, 2 or 4 bytes per cell.
+     *
+     * @param width Width.
+     * @param height Height.
+     * @param type Type of the cells.
+     * @return Storage.
+     */
+    static CellStorage packed(int width, int height, Type type) {
+        return PackedCellStorage.of(width, height, type);
+    }
+
+    /**
+     * Type of the cells: unsigned integers of the given size.
+     */
+    enum Type {
+
+        BYTE(1, 0xFFL),
+        SHORT(2, 0xFFFFL),
+        INT(4, 0xFFFFFFFFL),
+        LONG(8, Long.MAX_VALUE);
+
+        private final int bytes;
+        private final long maxValue;
+
+        Type(int bytes, long maxValue) {
+            this.bytes = bytes;
+            this.maxValue = maxValue;
+        }
+
+        /**
+         * Returns size of the cell in bytes.
+         *
+         * @return Number of bytes.
+         */
+        public int getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Returns maximal value of the cell.
+         *
+         * @return Maximal value.
+         */
+        public long getMaxValue() {
+            return maxValue;
+        }
+
+        /**
+         * Checks that the value fits into the cell.
+         *
+         * @param value Value.
+         * @return Value.
+         * @throws IllegalArgumentException If the value doesn't fit into the cell.
+         */
+        long check(long value) {
+            if (value < 0L || value > maxValue) {
+                throw new IllegalArgumentException(String.format("Value %d doesn't fit into %s cell.", value, this));
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.nobullet.graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Reads the input in chunks cut at line ends and parses every chunk in the common fork-join pool while the next one is
+ * read. At most a window of chunks is parsed at a time: when the window is full, the reader waits for the oldest chunk
+ * and hands its result over, so the bytes of parsed chunks are released and memory is bounded by the window and the
+ * results. Results are consumed in order of the input. When reading, parsing or consuming fails, the outstanding
+ * chunks are cancelled.
+ */
+final class ChunkReader {
+
+    private ChunkReader() {
+    }
+
+    /**
+     * Returns default number of chunks parsed at a time: one per worker of the common pool and one in advance.
+     *
+     * @return Window size.
+     */
+    static int defaultWindow() {
+        return ForkJoinPool.getCommonPoolParallelism() + 1;
+    }
+
+    /**
+     * Reads the input with the default window. The stream is not closed.
+     *
+     * @param <T> Type of parsed chunk.
+     * @param input Input stream.
+     * @param chunkSize Chunk size in bytes (chunks are extended for longer lines).
+     * @param parser Parser of a chunk, called in the common pool.
+     * @param consumer Consumer of the parsed chunks, called in the reading thread in order of the input.
+     * @throws IOException If reading fails or the consumer rejects a chunk.
+     */
+    static <T> void read(InputStream input, int chunkSize, ChunkParser<T> parser, ChunkConsumer<T> consumer)
+            throws IOException {
+        read(input, chunkSize, defaultWindow(), parser, consumer);
+    }
+
+    /**
+     * Reads the input. The stream is not closed.
+     *
+     * @param <T> Type of parsed chunk.
+     * @param input Input stream.
+     * @param chunkSize Chunk size in bytes (chunks are extended for longer lines).
+     * @param window Maximal number of chunks parsed at a time.
+     * @param parser Parser of a chunk, called in the common pool.
+     * @param consumer Consumer of the parsed chunks, called in the reading thread in order of the input.
+     * @throws IOException If reading fails or the consumer rejects a chunk.
+     */
+    static <T> void read(InputStream input, int chunkSize, int window, ChunkParser<T> parser,
+            ChunkConsumer<T> consumer) throws IOException {
+        if (chunkSize < 1 || window < 1) {
+            throw new IllegalArgumentException(String.format("Expecting positive chunk size and window: %d, %d.",
+                    chunkSize, window));
+        }
+        ArrayDeque<ForkJoinTask<T>> pending = new ArrayDeque<>(window);
+        boolean completed = false;
+        try {
+            byte[] buffer = new byte[chunkSize];
+            int filled = 0;
+            while (true) {
+                int read = input.read(buffer, filled, buffer.length - filled);
+                if (read < 0) {
+                    if (filled > 0) {
+                        submit(pending, window, buffer, filled, parser, consumer);
+                    }
+                    break;
+                }
+                filled += read;
+                if (filled < buffer.length) {
+                    continue;
+                }
+                int cut = filled - 1;
+                while (cut >= 0 && buffer[cut] != '\n') {
+                    cut--;
+                }
+                if (cut < 0) {
+                    // Line is longer than the chunk.
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
+                }
+                int rest = filled - cut - 1;
+                byte[] next = new byte[Math.max(chunkSize, rest * 2)];
+                System.arraycopy(buffer, cut + 1, next, 0, rest);
+                submit(pending, window, buffer, cut, parser, consumer);
+                buffer = next;
+                filled = rest;
+            }
+            while (!pending.isEmpty()) {
+                consumer.accept(pending.poll().join());
+            }
+            completed = true;
+        } finally {
+            if (!completed) {
+                for (ForkJoinTask<T> task : pending) {
+                    task.cancel(false);
+                }
+            }
+        }
+    }
+
+    private static <T> void submit(ArrayDeque<ForkJoinTask<T>> pending, int window, byte[] bytes, int length,
+            ChunkParser<T> parser, ChunkConsumer<T> consumer) throws IOException {
+        if (pending.size() == window) {
+            consumer.accept(pending.poll().join());
+        }
+        pending.add(ForkJoinPool.commonPool().submit(() -> parser.parse(bytes, length)));
+    }
+
+    /**
+     * Parser of one chunk. Must be thread safe: chunks are parsed in parallel.
+     *
+     * @param <T> Type of parsed chunk.
+     */
+    interface ChunkParser<T> {
+
+        /**
+         * Parses the chunk.
+         *
+         * @param bytes Bytes of the chunk.
+         * @param length Number of bytes to parse, without the last line end.
+         * @return Parsed chunk.
+         */
+        T parse(byte[] bytes, int length);
+    }
+
+    /**
+     * Consumer of parsed chunks.
+     *
+     * @param <T> Type of parsed chunk.
+     */
+    interface ChunkConsumer<T> {
+
+        /**
+         * Accepts the parsed chunk.
+         *
+         * @param chunk Parsed chunk.
+         * @throws IOException To stop reading, for example if the chunk has a wrong line.
+         */
+        void accept(T chunk) throws IOException;
+    }
+}
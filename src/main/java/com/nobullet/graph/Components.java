@@ -0,0 +1,105 @@
+package com.nobullet.graph;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Partition of the vertices of a {@link CsrGraph} into components. Components are numbered from 0 in the order of
+ * their first vertex in the snapshot. Immutable and thread safe.
+ */
+public final class Components {
+
+    final CsrGraph graph;
+    final int[] labels;
+    final int[] sizes;
+
+    /**
+     * Constructs partition from prepared arrays.
+     *
+     * @param graph Graph snapshot.
+     * @param labels Component by vertex index.
+     * @param sizes Size by component.
+     */
+    Components(CsrGraph graph, int[] labels, int[] sizes) {
+        this.graph = graph;
+        this.labels = labels;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Returns number of components.
+     *
+     * @return Number of components.
+     */
+    public int getNumberOfComponents() {
+        return sizes.length;
+    }
+
+    /**
+     * Returns component of the given vertex.
+     *
+     * @param vertexKey Vertex key.
+     * @return Component number.
+     */
+    public int getComponent(Key vertexKey) {
+        return labels[graph.getIndex(vertexKey)];
+    }
+
+    /**
+     * Returns number of vertices in the given component.
+     *
+     * @param component Component number.
+     * @return Size of the component.
+     */
+    public int getComponentSize(int component) {
+        return sizes[component];
+    }
+
+    /**
+     * Returns size of the largest component.
+     *
+     * @return Size of the largest component or 0 for empty graph.
+     */
+    public int getLargestComponentSize() {
+        int largest = 0;
+        for (int size : sizes) {
+            largest = Math.max(largest, size);
+        }
+        return largest;
+    }
+
+    /**
+     * Checks whether two vertices are in the same component.
+     *
+     * @param firstKey First vertex key.
+     * @param secondKey Second vertex key.
+     * @return Whether two vertices are in the same component.
+     */
+    public boolean isSameComponent(Key firstKey, Key secondKey) {
+        return getComponent(firstKey) == getComponent(secondKey);
+    }
+
+    /**
+     * Returns keys of the vertices of the given component. O(|V|).
+     *
+     * @param component Component number.
+     * @return Set of keys.
+     */
+    public Set<Key> getVertices(int component) {
+        if (component < 0 || component >= sizes.length) {
+            throw new IllegalArgumentException("No component: " + component);
+        }
+        Set<Key> result = new LinkedHashSet<>(sizes[component] * 4 / 3 + 1);
+        for (int v = 0; v < labels.length; v++) {
+            if (labels[v] == component) {
+                result.add(graph.keys[v]);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Components{components=" + sizes.length + ", largest=" + getLargestComponentSize() + '}';
+    }
+}
@@ -0,0 +1,437 @@
+package com.nobullet.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Thread safe graph for concurrent searches and updates. Writers are serialized with a lock, change the mutable
+ * {@link Graph} and publish a new immutable {@link CsrGraph} snapshot before they return; readers never lock or wait
+ * and run every query on the latest published snapshot, so a search sees one consistent version of the graph and
+ * reads scale with the number of cores.
+ * <p>
+ * Edge cost updates (e.g. live traffic weights) publish a new snapshot that shares the topology and the untouched cost
+ * segments with the previous one: only the segments of {@link CsrGraph#COST_SEGMENT_SIZE} edges with changed costs are
+ * copied (see {@link #updateEdgeCosts(Consumer)}). Structural changes rebuild the snapshot in O(|V| + |E|), use
+ * {@link #updateStructure(Consumer)} to publish many of them at once.
+ */
+public final class ConcurrentGraph {
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private Graph graph;
+    private volatile CsrGraph snapshot;
+
+    /**
+     * Constructs empty graph.
+     */
+    public ConcurrentGraph() {
+        this.graph = new Graph();
+        this.snapshot = graph.freeze();
+    }
+
+    /**
+     * Constructs graph as a copy of the given one.
+     *
+     * @param source Graph to copy.
+     */
+    public ConcurrentGraph(Graph source) {
+        this.graph = new Graph(source);
+        this.snapshot = graph.freeze();
+    }
+
+    /**
+     * Returns current consistent snapshot of the graph. Never blocks.
+     *
+     * @return Current snapshot.
+     */
+    public CsrGraph snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns mutable copy of the current graph.
+     *
+     * @return Copy of the current graph.
+     */
+    public Graph toGraph() {
+        writeLock.lock();
+        try {
+            return new Graph(graph);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds vertex by key. Silently returns if there is a vertex for given key.
+     *
+     * @param key Vertex key to add.
+     * @return Current graph.
+     */
+    public ConcurrentGraph addVertex(Key key) {
+        writeLock.lock();
+        try {
+            if (!graph.hasVertex(key)) {
+                graph.addVertex(key);
+                snapshot = graph.freeze();
+            }
+            return this;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds vertex by key. Silently updates data and position if there is a vertex for given key.
+     *
+     * @param key Vertex key to add.
+     * @param data Vertex data.
+     * @param position Vertex position.
+     * @return Current graph.
+     */
+    public ConcurrentGraph addVertex(Key key, Object data, VertexPosition position) {
+        writeLock.lock();
+        try {
+            graph.addVertex(key, data, position);
+            snapshot = graph.freeze();
+            return this;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes vertex by key. Silently returns if there is no vertex for given key.
+     *
+     * @param key Vertex key to remove.
+     * @return Current graph.
+     */
+    public ConcurrentGraph removeVertex(Key key) {
+        writeLock.lock();
+        try {
+            if (graph.hasVertex(key)) {
+                graph.removeVertex(key);
+                snapshot = graph.freeze();
+            }
+            return this;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds edge between two vertices defined by keys of cost 1.0D.
+     *
+     * @param fromKey From vertex key.
+     * @param toKey To vertex key.
+     * @return Current graph.
+     */
+    public ConcurrentGraph addEdge(Key fromKey, Key toKey) {
+        return addEdge(fromKey, toKey, 1.0D);
+    }
+
+    /**
+     * Adds edge between two vertices defined by keys.
+     *
+     * @param fromKey From vertex key.
+     * @param toKey To vertex key.
+     * @param cost Cost of the edge.
+     * @return Current graph.
+     */
+    public ConcurrentGraph addEdge(Key fromKey, Key toKey, double cost) {
+        writeLock.lock();
+        try {
+            graph.addEdge(fromKey, toKey, cost);
+            snapshot = graph.freeze();
+            return this;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Removes edge between two vertices. Silently returns if there is no such edge.
+     *
+     * @param fromKey From key.
+     * @param toKey To Key.
+     * @return Current graph.
+     */
+    public ConcurrentGraph removeEdge(Key fromKey, Key toKey) {
+        writeLock.lock();
+        try {
+            if (graph.hasVertex(fromKey) && graph.hasVertex(toKey) && graph.hasEdge(fromKey, toKey)) {
+                graph.removeEdge(fromKey, toKey);
+                snapshot = graph.freeze();
+            }
+            return this;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sets edge cost and publishes new snapshot.
+     *
+     * @param fromKey From key.
+     * @param toKey To key.
+     * @param cost Edge cost.
+     * @return Current graph.
+     * @throws NullPointerException If there is no such edge.
+     */
+    public ConcurrentGraph setEdgeCost(Key fromKey, Key toKey, double cost) {
+        return updateEdgeCosts(updater -> updater.setEdgeCost(fromKey, toKey, cost));
+    }
+
+    /**
+     * Changes the structure (and anything else) of a copy of the graph and publishes one new snapshot with all the
+     * changes, so readers never see a part of the batch. If the changes fail, the graph is not changed.
+     *
+     * @param changes Function that changes the given graph.
+     * @return Current graph.
+     */
+    public ConcurrentGraph updateStructure(Consumer<Graph> changes) {
+        writeLock.lock();
+        try {
+            Graph copy = new Graph(graph);
+            changes.accept(copy);
+            snapshot = copy.freeze();
+            graph = copy;
+            return this;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sets costs of several edges and publishes one new snapshot with all of them, so readers never see a part of the
+     * batch. All the edges are resolved before any cost is changed: if an edge is missing, nothing is changed.
+     *
+     * @param updates Function that sets edge costs with the given updater.
+     * @return Current graph.
+     * @throws NullPointerException If there is no such edge.
+     */
+    public ConcurrentGraph updateEdgeCosts(Consumer<EdgeCostUpdater> updates) {
+        writeLock.lock();
+        try {
+            CsrGraph current = snapshot;
+            EdgeCostBatch batch = new EdgeCostBatch(current);
+            updates.accept(batch);
+            for (int i = 0; i < batch.size; i++) {
+                graph.setEdgeCost(batch.fromKeys[i], batch.toKeys[i], batch.costs[i]);
+            }
+            snapshot = current.withCosts(batch.edges, batch.costs, batch.size);
+            return this;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns keys of all the vertices of the current snapshot.
+     *
+     * @return Set of keys.
+     */
+    public Set<Key> getVertices() {
+        return snapshot().getVertices();
+    }
+
+    /**
+     * Returns number of vertices.
+     *
+     * @return Number of vertices.
+     */
+    public int getNumberOfVertices() {
+        return snapshot().getNumberOfVertices();
+    }
+
+    /**
+     * Returns number of edges.
+     *
+     * @return Number of edges.
+     */
+    public int getNumberOfEdges() {
+        return snapshot().getNumberOfEdges();
+    }
+
+    /**
+     * Checks if the given vertex belongs to graph.
+     *
+     * @param vertexKey Vertex key.
+     * @return Whether the given vertex belongs to graph.
+     */
+    public boolean hasVertex(Key vertexKey) {
+        return snapshot().hasVertex(vertexKey);
+    }
+
+    /**
+     * Checks if there is an edge between two vertices.
+     *
+     * @param fromKey From key.
+     * @param toKey To key.
+     * @return Whether there is an edge between two vertices.
+     */
+    public boolean hasEdge(Key fromKey, Key toKey) {
+        return snapshot().hasEdge(fromKey, toKey);
+    }
+
+    /**
+     * Returns edge cost.
+     *
+     * @param fromKey From key.
+     * @param toKey To key.
+     * @return Edge cost.
+     * @throws NullPointerException If there is no such edge.
+     */
+    public double getEdgeCost(Key fromKey, Key toKey) {
+        return snapshot().getEdgeCost(fromKey, toKey);
+    }
+
+    /**
+     * Returns keys of adjacent vertices to vertex defined by fromKey.
+     *
+     * @param fromKey From key.
+     * @return Set of adjacent vertices.
+     */
+    public Set<Key> getAdjacentVertices(Key fromKey) {
+        return snapshot().getAdjacentVertices(fromKey);
+    }
+
+    /**
+     * A-star shortest path algorithm. Uses vertex positions as heuristic.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path shortestPathAStar(Key sourceKey, Key targetKey) {
+        return snapshot().shortestPathAStar(sourceKey, targetKey);
+    }
+
+    /**
+     * Dijkstra's shortest path algorithm.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path shortestPathDijkstra(Key sourceKey, Key targetKey) {
+        return snapshot().shortestPathDijkstra(sourceKey, targetKey);
+    }
+
+    /**
+     * Template method for path algorithms.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @param heuristic Heuristic function which accepts two keys and returns heuristic value for this pair.
+     * @return List of vertices that create the path.
+     */
+    public Path priorityFirstSearch(Key sourceKey, Key targetKey, BiFunction<Key, Key, Double> heuristic) {
+        return snapshot().priorityFirstSearch(sourceKey, targetKey, heuristic);
+    }
+
+    /**
+     * Unweighted breadth-first search in graph for path between two vertices.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path breadthFirstSearch(Key sourceKey, Key targetKey) {
+        return snapshot().breadthFirstSearch(sourceKey, targetKey);
+    }
+
+    /**
+     * Unweighted depth-first search in graph for path between two vertices.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path depthFirstSearch(Key sourceKey, Key targetKey) {
+        return snapshot().depthFirstSearch(sourceKey, targetKey);
+    }
+
+    /**
+     * Dijkstra's shortest paths from the source to every vertex.
+     *
+     * @param sourceKey Source vertex key.
+     * @return Shortest path tree.
+     */
+    public ShortestPathTree shortestPathTree(Key sourceKey) {
+        return snapshot().shortestPathTree(sourceKey);
+    }
+
+    /**
+     * Costs of the shortest paths for every pair of source and target, see
+     * {@link CsrGraph#distanceMatrix(Collection, Collection)}.
+     *
+     * @param sourceKeys Source vertex keys.
+     * @param targetKeys Target vertex keys.
+     * @return Matrix of costs, row per source, column per target.
+     */
+    public double[][] distanceMatrix(Collection<Key> sourceKeys, Collection<Key> targetKeys) {
+        return snapshot().distanceMatrix(sourceKeys, targetKeys);
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentGraph{" + snapshot() + '}';
+    }
+
+    /**
+     * Sets edge costs within one batch of {@link #updateEdgeCosts(Consumer)}.
+     */
+    @FunctionalInterface
+    public interface EdgeCostUpdater {
+
+        /**
+         * Sets edge cost.
+         *
+         * @param fromKey From key.
+         * @param toKey To key.
+         * @param cost Edge cost.
+         * @throws NullPointerException If there is no such edge.
+         */
+        void setEdgeCost(Key fromKey, Key toKey, double cost);
+    }
+
+    /**
+     * Edge costs of one batch resolved against the snapshot the batch is based on.
+     */
+    private static final class EdgeCostBatch implements EdgeCostUpdater {
+
+        final CsrGraph graph;
+        Key[] fromKeys = new Key[16];
+        Key[] toKeys = new Key[16];
+        int[] edges = new int[16];
+        double[] costs = new double[16];
+        int size;
+
+        EdgeCostBatch(CsrGraph graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public void setEdgeCost(Key fromKey, Key toKey, double cost) {
+            int edge = graph.edgeIndex(graph.getIndex(fromKey), graph.getIndex(toKey));
+            if (edge < 0) {
+                throw new NullPointerException(String.format("No edge found for: %s -> %s .", fromKey, toKey));
+            }
+            if (size == edges.length) {
+                fromKeys = Arrays.copyOf(fromKeys, size * 2);
+                toKeys = Arrays.copyOf(toKeys, size * 2);
+                edges = Arrays.copyOf(edges, size * 2);
+                costs = Arrays.copyOf(costs, size * 2);
+            }
+            fromKeys[size] = fromKey;
+            toKeys[size] = toKey;
+            edges[size] = edge;
+            costs[size] = cost;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,681 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.Graph.NegativeEdgeCostException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Contraction hierarchy of a graph for fast point-to-point shortest path queries on graphs that rarely change.
+ * <p>
+ * Preprocessing contracts vertices one by one in the order of their importance (edge difference plus number of
+ * contracted neighbours, evaluated lazily). Contracting vertex v removes it from the remaining graph and adds shortcut
+ * u->w with cost c(u, v) + c(v, w) for every pair of its remaining neighbours, unless a witness search finds a path
+ * from u to w avoiding v that is not longer. The order of contraction is the rank of the vertex; vertices are stored
+ * by rank. Each edge (original or shortcut) is stored once: in the "up" list of its source if the target has higher
+ * rank, otherwise in the "down" list of its target.
+ * <p>
+ * Query runs two Dijkstra searches that only go up in rank: forward from source over "up" edges and backward from
+ * target over "down" edges. The shortest path is the one through the meeting vertex with minimal total cost.
+ * Shortcuts of the result are unpacked by their middle vertices, so the query returns the same {@link Path} as
+ * {@link Graph#shortestPathDijkstra(Key, Key)}.
+ * <p>
+ * Immutable and thread safe after construction. Serializable, so the hierarchy can be loaded instead of recomputed.
+ */
+public final class ContractionHierarchy implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    static final int NO_MIDDLE = -1;
+    static final int WITNESS_SETTLE_LIMIT = 500;
+
+    final Key[] keys;
+    final int[] upOffsets;
+    final int[] upTargets;
+    final double[] upCosts;
+    final int[] upMiddles;
+    final int[] downOffsets;
+    final int[] downSources;
+    final double[] downCosts;
+    final int[] downMiddles;
+    transient KeyIndex indices;
+
+    /**
+     * Constructs hierarchy from prepared arrays. Vertices are indexed by rank.
+     *
+     * @param keys Keys by rank.
+     * @param upOffsets Offsets of "up" edges, V + 1 elements.
+     * @param upTargets Targets of "up" edges.
+     * @param upCosts Costs of "up" edges.
+     * @param upMiddles Middle vertices of "up" shortcuts or {@link #NO_MIDDLE}.
+     * @param downOffsets Offsets of "down" edges, V + 1 elements.
+     * @param downSources Sources of "down" edges.
+     * @param downCosts Costs of "down" edges.
+     * @param downMiddles Middle vertices of "down" shortcuts or {@link #NO_MIDDLE}.
+     */
+    ContractionHierarchy(Key[] keys, int[] upOffsets, int[] upTargets, double[] upCosts, int[] upMiddles,
+            int[] downOffsets, int[] downSources, double[] downCosts, int[] downMiddles) {
+        this.keys = keys;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upCosts = upCosts;
+        this.upMiddles = upMiddles;
+        this.downOffsets = downOffsets;
+        this.downSources = downSources;
+        this.downCosts = downCosts;
+        this.downMiddles = downMiddles;
+        this.indices = new KeyIndex(keys);
+    }
+
+    /**
+     * Builds contraction hierarchy for the given graph.
+     *
+     * @param graph Graph.
+     * @return Contraction hierarchy.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public static ContractionHierarchy of(Graph graph) throws NegativeEdgeCostException {
+        return of(graph.freeze());
+    }
+
+    /**
+     * Builds contraction hierarchy for the given graph snapshot.
+     *
+     * @param graph Graph snapshot.
+     * @return Contraction hierarchy.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public static ContractionHierarchy of(CsrGraph graph) throws NegativeEdgeCostException {
+        for (int e = 0; e < graph.targets.length; e++) {
+            if (graph.cost(e) < 0.0D) {
+                throw new NegativeEdgeCostException(String.format("%s->%s edge has negative cost.",
+                        graph.keys[graph.edgeSource(e)], graph.keys[graph.targets[e]]));
+            }
+        }
+        return new Builder(graph).build();
+    }
+
+    /**
+     * Reads hierarchy written by {@link #writeTo(OutputStream)}. Only the hierarchy, keys of this package, numbers,
+     * strings and arrays are accepted from the stream: use {@link #readFrom(InputStream, Class...)} for custom keys.
+     *
+     * @param input Input stream.
+     * @return Contraction hierarchy.
+     * @throws IOException If reading fails or stream doesn't contain a hierarchy.
+     */
+    public static ContractionHierarchy readFrom(InputStream input) throws IOException {
+        return RestrictedObjectInputStream.readObject(input, ContractionHierarchy.class);
+    }
+
+    /**
+     * Reads hierarchy written by {@link #writeTo(OutputStream)}, accepting the given classes as well.
+     *
+     * @param input Input stream.
+     * @param extraAllowed Classes of custom keys and of their fields.
+     * @return Contraction hierarchy.
+     * @throws IOException If reading fails or stream doesn't contain a hierarchy.
+     */
+    public static ContractionHierarchy readFrom(InputStream input, Class<?>... extraAllowed) throws IOException {
+        return RestrictedObjectInputStream.readObject(input, ContractionHierarchy.class, extraAllowed);
+    }
+
+    /**
+     * Writes hierarchy with Java serialization. Hierarchies with custom keys are read back with
+     * {@link #readFrom(InputStream, Class...)}.
+     *
+     * @param output Output stream.
+     * @throws IOException If writing fails.
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+        objectOutput.writeObject(this);
+        objectOutput.flush();
+    }
+
+    /**
+     * Returns number of vertices.
+     *
+     * @return Number of vertices.
+     */
+    public int getNumberOfVertices() {
+        return keys.length;
+    }
+
+    /**
+     * Returns number of edges in the hierarchy: original edges that were not replaced by shorter shortcuts plus
+     * shortcuts.
+     *
+     * @return Number of edges in the hierarchy.
+     */
+    public int getNumberOfEdges() {
+        return upTargets.length + downSources.length;
+    }
+
+    /**
+     * Checks if the given vertex belongs to hierarchy.
+     *
+     * @param vertexKey Vertex key.
+     * @return Whether the given vertex belongs to hierarchy.
+     */
+    public boolean hasVertex(Key vertexKey) {
+        return indices.get(vertexKey) != CsrGraph.NO_VERTEX;
+    }
+
+    /**
+     * Returns cost of the shortest path without unpacking it.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return Cost of the shortest path or positive infinity if there is no path.
+     */
+    public double distance(Key sourceKey, Key targetKey) {
+        int source = getIndex(sourceKey);
+        int target = getIndex(targetKey);
+        SearchSpace forward = SearchSpace.acquire(SearchSpace.FORWARD, keys.length);
+        SearchSpace backward = SearchSpace.acquire(SearchSpace.BACKWARD, keys.length);
+        try {
+            int meeting = search(source, target, forward, backward);
+            return meeting == CsrGraph.NO_VERTEX
+                    ? Double.POSITIVE_INFINITY : forward.getCost(meeting) + backward.getCost(meeting);
+        } finally {
+            backward.release();
+            forward.release();
+        }
+    }
+
+    /**
+     * Shortest path between two vertices with unpacked shortcuts.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path shortestPath(Key sourceKey, Key targetKey) {
+        int source = getIndex(sourceKey);
+        int target = getIndex(targetKey);
+        SearchSpace forward = SearchSpace.acquire(SearchSpace.FORWARD, keys.length);
+        SearchSpace backward = SearchSpace.acquire(SearchSpace.BACKWARD, keys.length);
+        try {
+            int meeting = search(source, target, forward, backward);
+            if (meeting == CsrGraph.NO_VERTEX) {
+                return new Path(sourceKey, targetKey, Collections.emptyList(), 0.0D);
+            }
+            // Hierarchy path: source up to meeting vertex, then meeting vertex down to target.
+            List<Integer> hierarchyPath = new ArrayList<>();
+            for (int current = meeting; current != source; current = forward.getParent(current)) {
+                hierarchyPath.add(current);
+            }
+            hierarchyPath.add(source);
+            Collections.reverse(hierarchyPath);
+            for (int current = meeting; current != target;) {
+                current = backward.getParent(current);
+                hierarchyPath.add(current);
+            }
+            List<Key> path = new ArrayList<>();
+            path.add(keys[source]);
+            double cost = 0.0D;
+            for (int i = 1; i < hierarchyPath.size(); i++) {
+                cost += unpack(hierarchyPath.get(i - 1), hierarchyPath.get(i), path);
+            }
+            return new Path(sourceKey, targetKey, path, cost);
+        } finally {
+            backward.release();
+            forward.release();
+        }
+    }
+
+    /**
+     * Runs upward bidirectional search. A direction stops when its minimal priority is not less than the best
+     * candidate: all the vertices it could still settle are farther.
+     *
+     * @param source Source vertex.
+     * @param target Target vertex.
+     * @param forward Forward search space.
+     * @param backward Backward search space.
+     * @return Meeting vertex or {@link CsrGraph#NO_VERTEX} if there is no path.
+     */
+    private int search(int source, int target, SearchSpace forward, SearchSpace backward) {
+        IndexedDaryHeap forwardFrontier = forward.getFrontier();
+        IndexedDaryHeap backwardFrontier = backward.getFrontier();
+        forward.reach(source, 0.0D, source);
+        forwardFrontier.offer(source, 0.0D);
+        backward.reach(target, 0.0D, target);
+        backwardFrontier.offer(target, 0.0D);
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = CsrGraph.NO_VERTEX;
+        while (!forwardFrontier.isEmpty() || !backwardFrontier.isEmpty()) {
+            boolean isForward = backwardFrontier.isEmpty()
+                    || !forwardFrontier.isEmpty() && forwardFrontier.peekPriority() <= backwardFrontier.peekPriority();
+            SearchSpace space = isForward ? forward : backward;
+            SearchSpace other = isForward ? backward : forward;
+            IndexedDaryHeap frontier = space.getFrontier();
+            if (frontier.peekPriority() >= best) {
+                frontier.clear();
+                continue;
+            }
+            int current = frontier.poll();
+            double currentCost = space.getCost(current);
+            double candidate = currentCost + other.getCost(current);
+            if (candidate < best) {
+                best = candidate;
+                meeting = current;
+            }
+            int[] edgeOffsets = isForward ? upOffsets : downOffsets;
+            int[] edgeEnds = isForward ? upTargets : downSources;
+            double[] edgeCosts = isForward ? upCosts : downCosts;
+            for (int e = edgeOffsets[current]; e < edgeOffsets[current + 1]; e++) {
+                int next = edgeEnds[e];
+                double newCost = currentCost + edgeCosts[e];
+                if (newCost < space.getCost(next)) {
+                    space.reach(next, newCost, current);
+                    frontier.offer(next, newCost);
+                }
+            }
+        }
+        return meeting;
+    }
+
+    /**
+     * Unpacks hierarchy edge from -> to into original edges, appending keys of the vertices after from (up to and
+     * including to) to the path.
+     *
+     * @param from Edge source.
+     * @param to Edge target.
+     * @param path Path to append to.
+     * @return Cost of the unpacked edge.
+     */
+    private double unpack(int from, int to, List<Key> path) {
+        double cost = 0.0D;
+        // Stack of edges to unpack, the top is the leftmost part of the path.
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = from;
+        stack[size++] = to;
+        while (size > 0) {
+            int edgeTo = stack[--size];
+            int edgeFrom = stack[--size];
+            int edge = findEdge(edgeFrom, edgeTo);
+            int middle = edgeFrom < edgeTo ? upMiddles[edge] : downMiddles[edge];
+            if (middle == NO_MIDDLE) {
+                cost += edgeFrom < edgeTo ? upCosts[edge] : downCosts[edge];
+                path.add(keys[edgeTo]);
+                continue;
+            }
+            if (size + 4 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            // Right part goes first, so the left part is unpacked first.
+            stack[size++] = middle;
+            stack[size++] = edgeTo;
+            stack[size++] = edgeFrom;
+            stack[size++] = middle;
+        }
+        return cost;
+    }
+
+    /**
+     * Finds hierarchy edge between two vertices.
+     *
+     * @param from Edge source.
+     * @param to Edge target.
+     * @return Index in "up" edges of from if from has lower rank, otherwise index in "down" edges of to.
+     */
+    private int findEdge(int from, int to) {
+        if (from < to) {
+            for (int e = upOffsets[from]; e < upOffsets[from + 1]; e++) {
+                if (upTargets[e] == to) {
+                    return e;
+                }
+            }
+        } else {
+            for (int e = downOffsets[to]; e < downOffsets[to + 1]; e++) {
+                if (downSources[e] == from) {
+                    return e;
+                }
+            }
+        }
+        throw new IllegalStateException(String.format("No hierarchy edge found for: %s -> %s .", keys[from],
+                keys[to]));
+    }
+
+    /**
+     * Returns vertex index by key. Throws {@link NullPointerException} if there is no vertex for key.
+     *
+     * @param key Vertex key.
+     * @return Vertex index.
+     */
+    private int getIndex(Key key) {
+        int index = indices.get(key);
+        if (index == CsrGraph.NO_VERTEX) {
+            throw new NullPointerException(String.format("No vertex for key %s.", key));
+        }
+        return index;
+    }
+
+    private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+        input.defaultReadObject();
+        this.indices = new KeyIndex(keys);
+    }
+
+    @Override
+    public String toString() {
+        return "ContractionHierarchy{vertices=" + keys.length + ", edges=" + getNumberOfEdges() + '}';
+    }
+
+    /**
+     * Contracts vertices of the graph snapshot. Works with original vertex indices and renumbers them by rank at the
+     * end.
+     */
+    private static final class Builder {
+
+        final CsrGraph graph;
+        final int verticesNumber;
+        // Remaining (not contracted) graph: outgoing and incoming edges with middle vertices of shortcuts.
+        final int[][] outEnds;
+        final double[][] outCosts;
+        final int[][] outMiddles;
+        final int[] outSizes;
+        final int[][] inEnds;
+        final double[][] inCosts;
+        final int[][] inMiddles;
+        final int[] inSizes;
+        final int[] contractedNeighbours;
+        final int[] ranks;
+        final SearchSpace witness;
+        // Hierarchy edges in the order of contraction.
+        final EdgeList up;
+        final EdgeList down;
+        final int[] upOffsets;
+        final int[] downOffsets;
+
+        Builder(CsrGraph graph) {
+            this.graph = graph;
+            this.verticesNumber = graph.keys.length;
+            int n = verticesNumber;
+            this.outEnds = new int[n][];
+            this.outCosts = new double[n][];
+            this.outMiddles = new int[n][];
+            this.outSizes = new int[n];
+            this.inEnds = new int[n][];
+            this.inCosts = new double[n][];
+            this.inMiddles = new int[n][];
+            this.inSizes = new int[n];
+            this.contractedNeighbours = new int[n];
+            this.ranks = new int[n];
+            this.witness = new SearchSpace(n);
+            this.up = new EdgeList(graph.targets.length);
+            this.down = new EdgeList(graph.targets.length);
+            this.upOffsets = new int[n + 1];
+            this.downOffsets = new int[n + 1];
+            int[] indegrees = new int[n];
+            for (int e = 0; e < graph.targets.length; e++) {
+                indegrees[graph.targets[e]]++;
+            }
+            for (int v = 0; v < n; v++) {
+                int outdegree = graph.offsets[v + 1] - graph.offsets[v];
+                outEnds[v] = new int[Math.max(outdegree, 2)];
+                outCosts[v] = new double[outEnds[v].length];
+                outMiddles[v] = new int[outEnds[v].length];
+                inEnds[v] = new int[Math.max(indegrees[v], 2)];
+                inCosts[v] = new double[inEnds[v].length];
+                inMiddles[v] = new int[inEnds[v].length];
+            }
+            for (int v = 0; v < n; v++) {
+                for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++) {
+                    // Loops are never on shortest paths with non-negative costs.
+                    if (graph.targets[e] != v) {
+                        addOrImprove(v, graph.targets[e], graph.cost(e), NO_MIDDLE);
+                    }
+                }
+            }
+            Arrays.fill(ranks, -1);
+        }
+
+        ContractionHierarchy build() {
+            IndexedDaryHeap order = new IndexedDaryHeap(verticesNumber);
+            for (int v = 0; v < verticesNumber; v++) {
+                order.offer(v, priority(v));
+            }
+            int rank = 0;
+            while (!order.isEmpty()) {
+                int vertex = order.poll();
+                // Lazy update: the priority might have grown since the vertex was queued.
+                double priority = priority(vertex);
+                if (!order.isEmpty() && priority > order.peekPriority()) {
+                    order.offer(vertex, priority);
+                    continue;
+                }
+                contract(vertex, rank++);
+            }
+            return renumber();
+        }
+
+        /**
+         * Importance of the vertex: number of shortcuts to add minus number of removed edges plus number of
+         * contracted neighbours (spreads contraction uniformly over the graph).
+         *
+         * @param vertex Vertex.
+         * @return Priority.
+         */
+        double priority(int vertex) {
+            int shortcuts = processShortcuts(vertex, false);
+            return shortcuts - outSizes[vertex] - inSizes[vertex] + contractedNeighbours[vertex];
+        }
+
+        void contract(int vertex, int rank) {
+            ranks[vertex] = rank;
+            // Remaining neighbours have higher rank: their edges with the vertex become hierarchy edges.
+            upOffsets[rank] = up.size;
+            for (int i = 0; i < outSizes[vertex]; i++) {
+                up.add(outEnds[vertex][i], outCosts[vertex][i], outMiddles[vertex][i]);
+            }
+            downOffsets[rank] = down.size;
+            for (int i = 0; i < inSizes[vertex]; i++) {
+                down.add(inEnds[vertex][i], inCosts[vertex][i], inMiddles[vertex][i]);
+            }
+            processShortcuts(vertex, true);
+            for (int i = 0; i < outSizes[vertex]; i++) {
+                int neighbour = outEnds[vertex][i];
+                remove(inEnds, inCosts, inMiddles, inSizes, neighbour, vertex);
+                contractedNeighbours[neighbour]++;
+            }
+            for (int i = 0; i < inSizes[vertex]; i++) {
+                int neighbour = inEnds[vertex][i];
+                remove(outEnds, outCosts, outMiddles, outSizes, neighbour, vertex);
+                contractedNeighbours[neighbour]++;
+            }
+            outSizes[vertex] = 0;
+            inSizes[vertex] = 0;
+        }
+
+        /**
+         * Counts (and optionally adds) shortcuts needed to contract the vertex.
+         *
+         * @param vertex Vertex.
+         * @param add Whether to add shortcuts.
+         * @return Number of shortcuts.
+         */
+        int processShortcuts(int vertex, boolean add) {
+            int shortcuts = 0;
+            int outSize = outSizes[vertex];
+            if (outSize == 0) {
+                return 0;
+            }
+            double maxOutCost = 0.0D;
+            for (int i = 0; i < outSize; i++) {
+                maxOutCost = Math.max(maxOutCost, outCosts[vertex][i]);
+            }
+            // Adding shortcuts changes lists of the vertex neighbours, not of the vertex itself.
+            for (int i = 0; i < inSizes[vertex]; i++) {
+                int from = inEnds[vertex][i];
+                double inCost = inCosts[vertex][i];
+                witnessSearch(from, vertex, inCost + maxOutCost);
+                for (int j = 0; j < outSize; j++) {
+                    int to = outEnds[vertex][j];
+                    if (to == from) {
+                        continue;
+                    }
+                    double viaCost = inCost + outCosts[vertex][j];
+                    if (witness.getCost(to) > viaCost) {
+                        shortcuts++;
+                        if (add) {
+                            addOrImprove(from, to, viaCost, vertex);
+                        }
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Bounded Dijkstra over the remaining graph from the given vertex avoiding the vertex being contracted.
+         *
+         * @param from Source vertex.
+         * @param skip Vertex being contracted.
+         * @param maxCost Maximal cost of interest.
+         */
+        void witnessSearch(int from, int skip, double maxCost) {
+            witness.reset();
+            IndexedDaryHeap frontier = witness.getFrontier();
+            witness.reach(from, 0.0D, from);
+            frontier.offer(from, 0.0D);
+            int settled = 0;
+            while (!frontier.isEmpty() && frontier.peekPriority() <= maxCost && settled++ < WITNESS_SETTLE_LIMIT) {
+                int current = frontier.poll();
+                double currentCost = witness.getCost(current);
+                for (int i = 0; i < outSizes[current]; i++) {
+                    int next = outEnds[current][i];
+                    if (next == skip) {
+                        continue;
+                    }
+                    double newCost = currentCost + outCosts[current][i];
+                    if (newCost < witness.getCost(next)) {
+                        witness.reach(next, newCost, current);
+                        frontier.offer(next, newCost);
+                    }
+                }
+            }
+            frontier.clear();
+        }
+
+        /**
+         * Adds edge to the remaining graph or improves the cost of the existing one.
+         */
+        void addOrImprove(int from, int to, double cost, int middle) {
+            int outIndex = find(outEnds[from], outSizes[from], to);
+            if (outIndex >= 0) {
+                if (cost >= outCosts[from][outIndex]) {
+                    return;
+                }
+                outCosts[from][outIndex] = cost;
+                outMiddles[from][outIndex] = middle;
+                int inIndex = find(inEnds[to], inSizes[to], from);
+                inCosts[to][inIndex] = cost;
+                inMiddles[to][inIndex] = middle;
+                return;
+            }
+            if (outSizes[from] == outEnds[from].length) {
+                int newLength = outEnds[from].length * 2;
+                outEnds[from] = Arrays.copyOf(outEnds[from], newLength);
+                outCosts[from] = Arrays.copyOf(outCosts[from], newLength);
+                outMiddles[from] = Arrays.copyOf(outMiddles[from], newLength);
+            }
+            outEnds[from][outSizes[from]] = to;
+            outCosts[from][outSizes[from]] = cost;
+            outMiddles[from][outSizes[from]++] = middle;
+            if (inSizes[to] == inEnds[to].length) {
+                int newLength = inEnds[to].length * 2;
+                inEnds[to] = Arrays.copyOf(inEnds[to], newLength);
+                inCosts[to] = Arrays.copyOf(inCosts[to], newLength);
+                inMiddles[to] = Arrays.copyOf(inMiddles[to], newLength);
+            }
+            inEnds[to][inSizes[to]] = from;
+            inCosts[to][inSizes[to]] = cost;
+            inMiddles[to][inSizes[to]++] = middle;
+        }
+
+        static int find(int[] ends, int size, int end) {
+            for (int i = 0; i < size; i++) {
+                if (ends[i] == end) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        static void remove(int[][] ends, double[][] costs, int[][] middles, int[] sizes, int vertex, int end) {
+            int index = find(ends[vertex], sizes[vertex], end);
+            if (index < 0) {
+                return;
+            }
+            int last = --sizes[vertex];
+            ends[vertex][index] = ends[vertex][last];
+            costs[vertex][index] = costs[vertex][last];
+            middles[vertex][index] = middles[vertex][last];
+        }
+
+        /**
+         * Renumbers vertices by rank.
+         *
+         * @return Hierarchy.
+         */
+        ContractionHierarchy renumber() {
+            int n = verticesNumber;
+            upOffsets[n] = up.size;
+            downOffsets[n] = down.size;
+            Key[] keys = new Key[n];
+            for (int v = 0; v < n; v++) {
+                keys[ranks[v]] = graph.keys[v];
+            }
+            for (int e = 0; e < up.size; e++) {
+                up.ends[e] = ranks[up.ends[e]];
+                up.middles[e] = up.middles[e] == NO_MIDDLE ? NO_MIDDLE : ranks[up.middles[e]];
+            }
+            for (int e = 0; e < down.size; e++) {
+                down.ends[e] = ranks[down.ends[e]];
+                down.middles[e] = down.middles[e] == NO_MIDDLE ? NO_MIDDLE : ranks[down.middles[e]];
+            }
+            return new ContractionHierarchy(keys,
+                    upOffsets, Arrays.copyOf(up.ends, up.size), Arrays.copyOf(up.costs, up.size),
+                    Arrays.copyOf(up.middles, up.size),
+                    downOffsets, Arrays.copyOf(down.ends, down.size), Arrays.copyOf(down.costs, down.size),
+                    Arrays.copyOf(down.middles, down.size));
+        }
+    }
+
+    /**
+     * Growable list of edges.
+     */
+    private static final class EdgeList {
+
+        int[] ends;
+        double[] costs;
+        int[] middles;
+        int size;
+
+        EdgeList(int capacity) {
+            capacity = Math.max(capacity, 16);
+            this.ends = new int[capacity];
+            this.costs = new double[capacity];
+            this.middles = new int[capacity];
+        }
+
+        void add(int end, double cost, int middle) {
+            if (size == ends.length) {
+                int newLength = size + (size >> 1);
+                ends = Arrays.copyOf(ends, newLength);
+                costs = Arrays.copyOf(costs, newLength);
+                middles = Arrays.copyOf(middles, newLength);
+            }
+            ends[size] = end;
+            costs[size] = cost;
+            middles[size++] = middle;
+        }
+    }
+}
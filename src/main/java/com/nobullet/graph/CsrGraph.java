@@ -0,0 +1,1003 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.Graph.CycleException;
+import com.nobullet.graph.Graph.NegativeEdgeCostException;
+import com.nobullet.graph.Graph.VertexVisitor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Immutable compressed sparse row (CSR) snapshot of {@link Graph}. Vertices are numbered densely from 0 to V - 1, the
+ * outgoing edges of vertex i are stored in {@code targets[offsets[i]..offsets[i + 1])} and
+ * {@code costs[offsets[i]..offsets[i + 1])}, ordered by target index. The snapshot keeps keys, positions, topology and
+ * costs only (no vertex or edge data). Costs are kept in segments of {@link #COST_SEGMENT_SIZE} edges, so a snapshot
+ * with a few changed costs copies only the changed segments, see {@link #withCosts(int[], double[], int)}. Thread safe.
+ */
+public final class CsrGraph {
+
+    static final int NO_VERTEX = -1;
+    static final int COST_SEGMENT_SHIFT = 12;
+    static final int COST_SEGMENT_SIZE = 1 << COST_SEGMENT_SHIFT;
+    private static final int COST_SEGMENT_MASK = COST_SEGMENT_SIZE - 1;
+
+    final Key[] keys;
+    final KeyIndex indices;
+    final VertexPosition[] positions;
+    final int[] offsets;
+    final int[] targets;
+    private final double[][] costSegments;
+    private volatile CsrGraph reversed;
+
+    /**
+     * Constructs snapshot from prepared arrays.
+     *
+     * @param keys Keys by vertex index.
+     * @param indices Vertex index by key (for keys array).
+     * @param positions Positions by vertex index (nullable entries).
+     * @param offsets Offsets of outgoing edges, V + 1 elements.
+     * @param targets Edge targets, E elements.
+     * @param costs Edge costs, E elements.
+     */
+    CsrGraph(Key[] keys, KeyIndex indices, VertexPosition[] positions, int[] offsets, int[] targets,
+            double[] costs) {
+        this(keys, indices, positions, offsets, targets, split(costs));
+    }
+
+    private CsrGraph(Key[] keys, KeyIndex indices, VertexPosition[] positions, int[] offsets, int[] targets,
+            double[][] costSegments) {
+        this.keys = keys;
+        this.indices = indices;
+        this.positions = positions;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.costSegments = costSegments;
+    }
+
+    /**
+     * Compiles given graph into CSR snapshot. Complexity: O(|V| + |E|).
+     *
+     * @param graph Graph to compile.
+     * @return Immutable snapshot of the graph.
+     */
+    public static CsrGraph of(Graph graph) {
+        int verticesNumber = graph.vertices.size();
+        Key[] keys = new Key[verticesNumber];
+        Vertex[] vertices = new Vertex[verticesNumber];
+        VertexPosition[] positions = new VertexPosition[verticesNumber];
+        int edgesNumber = 0;
+        int index = 0;
+        for (Vertex vertex : graph.vertices.values()) {
+            keys[index] = vertex.getKey();
+            vertices[index] = vertex;
+            positions[index] = vertex.getPosition().orElse(null);
+            edgesNumber += vertex.getOutgoingEdgesNumber();
+            index++;
+        }
+        KeyIndex indices = new KeyIndex(keys);
+        // Edges grouped by target (sources are ascending inside of each group as vertices are scanned in order).
+        int[] reverseOffsets = new int[verticesNumber + 1];
+        for (Vertex vertex : vertices) {
+            for (Edge edge : vertex.getOutgoingEdges()) {
+                reverseOffsets[indices.get(edge.getTo().getKey()) + 1]++;
+            }
+        }
+        prefixSum(reverseOffsets);
+        int[] reverseFill = Arrays.copyOf(reverseOffsets, verticesNumber);
+        int[] reverseSources = new int[edgesNumber];
+        double[] reverseCosts = new double[edgesNumber];
+        int[] offsets = new int[verticesNumber + 1];
+        for (int from = 0; from < verticesNumber; from++) {
+            offsets[from + 1] = vertices[from].getOutgoingEdgesNumber();
+            for (Edge edge : vertices[from].getOutgoingEdges()) {
+                int slot = reverseFill[indices.get(edge.getTo().getKey())]++;
+                reverseSources[slot] = from;
+                reverseCosts[slot] = edge.getCost();
+            }
+        }
+        prefixSum(offsets);
+        // Scanning groups in target order puts targets of each source in ascending order.
+        int[] fill = Arrays.copyOf(offsets, verticesNumber);
+        int[] targets = new int[edgesNumber];
+        double[] costs = new double[edgesNumber];
+        for (int to = 0; to < verticesNumber; to++) {
+            for (int e = reverseOffsets[to]; e < reverseOffsets[to + 1]; e++) {
+                int slot = fill[reverseSources[e]]++;
+                targets[slot] = to;
+                costs[slot] = reverseCosts[e];
+            }
+        }
+        return new CsrGraph(keys, indices, positions, offsets, targets, costs);
+    }
+
+    /**
+     * Returns snapshot with the same vertices (and vertex indices) and all the edges reversed. Computed once and
+     * cached. Complexity: O(|V| + |E|).
+     *
+     * @return Reversed snapshot.
+     */
+    public CsrGraph reverse() {
+        CsrGraph result = reversed;
+        if (result != null) {
+            return result;
+        }
+        int verticesNumber = keys.length;
+        int[] reverseOffsets = new int[verticesNumber + 1];
+        for (int e = 0; e < targets.length; e++) {
+            reverseOffsets[targets[e] + 1]++;
+        }
+        prefixSum(reverseOffsets);
+        // Sources are scanned in ascending order, so targets of each reversed row are ascending.
+        int[] fill = Arrays.copyOf(reverseOffsets, verticesNumber);
+        int[] reverseTargets = new int[targets.length];
+        double[] reverseCosts = new double[targets.length];
+        for (int from = 0; from < verticesNumber; from++) {
+            for (int e = offsets[from]; e < offsets[from + 1]; e++) {
+                int slot = fill[targets[e]]++;
+                reverseTargets[slot] = from;
+                reverseCosts[slot] = cost(e);
+            }
+        }
+        result = new CsrGraph(keys, indices, positions, reverseOffsets, reverseTargets, reverseCosts);
+        result.reversed = this;
+        reversed = result;
+        return result;
+    }
+
+    /**
+     * Returns number of vertices.
+     *
+     * @return Number of vertices.
+     */
+    public int getNumberOfVertices() {
+        return keys.length;
+    }
+
+    /**
+     * Returns number of edges.
+     *
+     * @return Number of edges.
+     */
+    public int getNumberOfEdges() {
+        return targets.length;
+    }
+
+    /**
+     * Returns set of vertices in graph.
+     *
+     * @return Set of vertices in graph.
+     */
+    public Set<Key> getVertices() {
+        return indices.keySet();
+    }
+
+    /**
+     * Checks if the given vertex belongs to graph.
+     *
+     * @param vertexKey Vertex key.
+     * @return Whether the given vertex belongs to graph.
+     */
+    public boolean hasVertex(Key vertexKey) {
+        return indices.get(vertexKey) != NO_VERTEX;
+    }
+
+    /**
+     * Returns optional with vertex position.
+     *
+     * @param vertexKey Vertex key.
+     * @return Optional with vertex position.
+     */
+    public Optional<VertexPosition> getVertexPosition(Key vertexKey) {
+        int index = indices.get(vertexKey);
+        return index != NO_VERTEX ? Optional.ofNullable(positions[index]) : Optional.empty();
+    }
+
+    /**
+     * Checks if the graph has edge from vertex defined by fromKey to vertex defined by toKey. O(log(degree)).
+     *
+     * @param fromKey From key.
+     * @param toKey To key.
+     * @return Whether the graph has edge from vertex defined by fromKey to vertex defined by toKey.
+     */
+    public boolean hasEdge(Key fromKey, Key toKey) {
+        int from = indices.get(fromKey);
+        int to = indices.get(toKey);
+        return from != NO_VERTEX && to != NO_VERTEX && edgeIndex(from, to) >= 0;
+    }
+
+    /**
+     * Returns edge cost.
+     *
+     * @param fromKey From key.
+     * @param toKey To key.
+     * @return Edge cost.
+     * @throws NullPointerException If there is no such edge.
+     */
+    public double getEdgeCost(Key fromKey, Key toKey) {
+        int edge = edgeIndex(getIndex(fromKey), getIndex(toKey));
+        if (edge < 0) {
+            throw new NullPointerException(String.format("No edge found for: %s -> %s .", fromKey, toKey));
+        }
+        return cost(edge);
+    }
+
+    /**
+     * Checks if the vertex with integral key ({@code Key.of(long)} or {@code Key.of(int)}) belongs to graph. Doesn't
+     * allocate keys when all the keys of the graph are of the same integral type.
+     *
+     * @param vertexKey Vertex key value.
+     * @return Whether the given vertex belongs to graph.
+     */
+    public boolean hasVertex(long vertexKey) {
+        return indices.get(vertexKey) != NO_VERTEX;
+    }
+
+    /**
+     * Checks if the graph has edge between vertices with integral keys. O(log(degree)).
+     *
+     * @param fromKey From key value.
+     * @param toKey To key value.
+     * @return Whether the graph has edge from vertex defined by fromKey to vertex defined by toKey.
+     */
+    public boolean hasEdge(long fromKey, long toKey) {
+        int from = indices.get(fromKey);
+        int to = indices.get(toKey);
+        return from != NO_VERTEX && to != NO_VERTEX && edgeIndex(from, to) >= 0;
+    }
+
+    /**
+     * Returns cost of edge between vertices with integral keys.
+     *
+     * @param fromKey From key value.
+     * @param toKey To key value.
+     * @return Edge cost.
+     * @throws NullPointerException If there is no such edge.
+     */
+    public double getEdgeCost(long fromKey, long toKey) {
+        int edge = edgeIndex(getIndex(fromKey), getIndex(toKey));
+        if (edge < 0) {
+            throw new NullPointerException(String.format("No edge found for: %s -> %s .", fromKey, toKey));
+        }
+        return cost(edge);
+    }
+
+    /**
+     * Returns keys of adjacent vertices to vertex defined by fromKey.
+     *
+     * @param fromKey From key.
+     * @return Set of adjacent vertices.
+     */
+    public Set<Key> getAdjacentVertices(Key fromKey) {
+        int from = getIndex(fromKey);
+        Set<Key> result = new LinkedHashSet<>();
+        for (int e = offsets[from]; e < offsets[from + 1]; e++) {
+            result.add(keys[targets[e]]);
+        }
+        return result;
+    }
+
+    /**
+     * Visits the vertices of the graph in topological order. Complexity: O(|E| + |V|).
+     *
+     * @param visitor Visitor to accept the vertices.
+     * @throws com.nobullet.graph.Graph.CycleException If a cycle found.
+     */
+    public void topologicalSort(VertexVisitor visitor) throws CycleException {
+        int verticesNumber = keys.length;
+        int[] indegrees = new int[verticesNumber];
+        for (int e = 0; e < targets.length; e++) {
+            indegrees[targets[e]]++;
+        }
+        // Array based queue: every vertex is enqueued at most once.
+        int[] queue = new int[verticesNumber];
+        int head = 0;
+        int tail = 0;
+        for (int v = 0; v < verticesNumber; v++) {
+            if (indegrees[v] == 0) {
+                queue[tail++] = v;
+            }
+        }
+        while (head < tail) {
+            int vertex = queue[head];
+            visitor.visit(keys[vertex], head++);
+            for (int e = offsets[vertex]; e < offsets[vertex + 1]; e++) {
+                if (--indegrees[targets[e]] == 0) {
+                    queue[tail++] = targets[e];
+                }
+            }
+        }
+        if (head != verticesNumber) {
+            throw new CycleException("Graph has cycle: expected number of vertices is " + head + " but graph has "
+                    + verticesNumber);
+        }
+    }
+
+    /**
+     * Topological level sets: vertices of one level don't depend on each other. Large levels are computed in
+     * parallel.
+     *
+     * @return Topological levels.
+     * @throws com.nobullet.graph.Graph.CycleException If a cycle found.
+     */
+    public TopologicalLevels topologicalLevels() throws CycleException {
+        return TopologicalLevels.of(this);
+    }
+
+    /**
+     * Critical path schedule with edge costs as durations of activities (vertices are events with zero duration). The
+     * critical path is the longest path of the graph.
+     *
+     * @return Schedule.
+     * @throws com.nobullet.graph.Graph.CycleException If a cycle found.
+     */
+    public DagSchedule schedule() throws CycleException {
+        return DagSchedule.of(topologicalLevels(), new double[keys.length]);
+    }
+
+    /**
+     * Critical path schedule with vertices as tasks of given durations and edge costs as lags between the finish of a
+     * task and the start of the dependent one.
+     *
+     * @param durations Duration of the task by vertex key, non-negative.
+     * @return Schedule.
+     * @throws com.nobullet.graph.Graph.CycleException If a cycle found.
+     * @throws IllegalArgumentException If a duration is negative or not a number.
+     */
+    public DagSchedule schedule(ToDoubleFunction<Key> durations) throws CycleException {
+        double[] values = new double[keys.length];
+        for (int v = 0; v < values.length; v++) {
+            values[v] = durations.applyAsDouble(keys[v]);
+            if (!(values[v] >= 0.0D)) {
+                throw new IllegalArgumentException(String.format("Wrong duration of %s: %s", keys[v], values[v]));
+            }
+        }
+        return DagSchedule.of(topologicalLevels(), values);
+    }
+
+    /**
+     * A-star shortest path algorithm. Uses vertex positions as heuristic.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path shortestPathAStar(Key sourceKey, Key targetKey) {
+        VertexPosition[] positionsLocal = this.positions;
+        return priorityFirstSearchInternal(getIndex(sourceKey), getIndex(targetKey), (next, goal) -> {
+            VertexPosition nextPosition = positionsLocal[next];
+            VertexPosition goalPosition = positionsLocal[goal];
+            return nextPosition != null && goalPosition != null
+                    ? nextPosition.distanceTo(goalPosition).orElse(0.0D) : 0.0D;
+        });
+    }
+
+    /**
+     * Dijkstra's shortest path algorithm.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path shortestPathDijkstra(Key sourceKey, Key targetKey) {
+        return priorityFirstSearchInternal(getIndex(sourceKey), getIndex(targetKey), null);
+    }
+
+    /**
+     * Dijkstra's shortest path algorithm between vertices with integral keys.
+     *
+     * @param sourceKey Source vertex key value.
+     * @param targetKey Target vertex key value.
+     * @return List of vertices that create the path.
+     */
+    public Path shortestPathDijkstra(long sourceKey, long targetKey) {
+        return priorityFirstSearchInternal(getIndex(sourceKey), getIndex(targetKey), null);
+    }
+
+    /**
+     * Dijkstra's shortest paths from the source to every vertex.
+     *
+     * @param sourceKey Source vertex key.
+     * @return Shortest path tree.
+     */
+    public ShortestPathTree shortestPathTree(Key sourceKey) {
+        int source = getIndex(sourceKey);
+        int verticesNumber = keys.length;
+        SearchSpace space = SearchSpace.acquire(SearchSpace.FORWARD, verticesNumber);
+        try {
+            settle(source, space, null, 0);
+            double[] treeCosts = new double[verticesNumber];
+            int[] treeParents = new int[verticesNumber];
+            for (int v = 0; v < verticesNumber; v++) {
+                treeCosts[v] = space.getCost(v);
+                treeParents[v] = space.isReached(v) ? space.getParent(v) : NO_VERTEX;
+            }
+            return new ShortestPathTree(this, source, treeCosts, treeParents);
+        } finally {
+            space.release();
+        }
+    }
+
+    /**
+     * Shortest paths from the source to every vertex that can be repaired after edge cost changes instead of being
+     * recomputed. Costs are copied: later changes go through {@link DynamicShortestPathTree#updateEdgeCosts}.
+     *
+     * @param sourceKey Source vertex key.
+     * @return Dynamic shortest path tree.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public DynamicShortestPathTree dynamicShortestPathTree(Key sourceKey) throws NegativeEdgeCostException {
+        return new DynamicShortestPathTree(this, getIndex(sourceKey));
+    }
+
+    /**
+     * Costs of the shortest paths for every pair of source and target. Runs one Dijkstra search per source (stopped
+     * when every target is settled) in the common fork-join pool.
+     *
+     * @param sourceKeys Source vertex keys.
+     * @param targetKeys Target vertex keys.
+     * @return Matrix of costs, row per source, column per target (in iteration order of collections). Positive
+     * infinity for unreachable targets.
+     */
+    public double[][] distanceMatrix(Collection<Key> sourceKeys, Collection<Key> targetKeys) {
+        return distanceMatrix(sourceKeys, targetKeys, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Costs of the shortest paths for every pair of source and target. Runs one Dijkstra search per source (stopped
+     * when every target is settled) in the given fork-join pool.
+     *
+     * @param sourceKeys Source vertex keys.
+     * @param targetKeys Target vertex keys.
+     * @param pool Pool to run searches in.
+     * @return Matrix of costs, row per source, column per target (in iteration order of collections). Positive
+     * infinity for unreachable targets.
+     */
+    public double[][] distanceMatrix(Collection<Key> sourceKeys, Collection<Key> targetKeys, ForkJoinPool pool) {
+        int[] sources = toIndices(sourceKeys);
+        int[] columns = toIndices(targetKeys);
+        boolean[] isTarget = new boolean[keys.length];
+        int distinctTargets = 0;
+        for (int target : columns) {
+            if (!isTarget[target]) {
+                isTarget[target] = true;
+                distinctTargets++;
+            }
+        }
+        double[][] matrix = new double[sources.length][];
+        int targetsToSettle = distinctTargets;
+        pool.invoke(new RowsTask(0, sources.length, row -> {
+            SearchSpace space = SearchSpace.acquire(SearchSpace.FORWARD, keys.length);
+            try {
+                settle(sources[row], space, isTarget, targetsToSettle);
+                double[] distances = new double[columns.length];
+                for (int column = 0; column < columns.length; column++) {
+                    distances[column] = space.getCost(columns[column]);
+                }
+                matrix[row] = distances;
+            } finally {
+                space.release();
+            }
+        }));
+        return matrix;
+    }
+
+    /**
+     * A-star shortest path algorithm with landmark (ALT) heuristic. Doesn't need vertex positions.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @param landmarks Landmarks computed for this graph (or a snapshot with the same vertices and not greater costs).
+     * @return List of vertices that create the path.
+     * @throws IllegalArgumentException If landmarks are computed for another graph.
+     */
+    public Path shortestPathAStar(Key sourceKey, Key targetKey, Landmarks landmarks) {
+        return priorityFirstSearchInternal(getIndex(sourceKey), getIndex(targetKey), landmarks.heuristicFor(this));
+    }
+
+    /**
+     * Up to k shortest loopless paths in order of their costs (Yen's algorithm). The graph is not modified: spur
+     * searches mask vertices and edges, and run in the common fork-join pool. Edge costs must be non-negative.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @param k Maximal number of paths.
+     * @return Paths, the first one is the shortest path. Empty if the target is not reachable.
+     */
+    public List<Path> kShortestPaths(Key sourceKey, Key targetKey, int k) {
+        return kShortestPaths(sourceKey, targetKey, k, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Up to k shortest loopless paths in order of their costs (Yen's algorithm). Spur searches run in the given pool.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @param k Maximal number of paths.
+     * @param pool Pool to run spur searches in.
+     * @return Paths, the first one is the shortest path. Empty if the target is not reachable.
+     */
+    public List<Path> kShortestPaths(Key sourceKey, Key targetKey, int k, ForkJoinPool pool) {
+        return KShortestPaths.find(this, getIndex(sourceKey), getIndex(targetKey), k, pool);
+    }
+
+    /**
+     * Template method for path algorithms.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @param heuristic Heuristic function which accepts two keys and returns heuristic value for this pair.
+     * @return List of vertices that create the path.
+     */
+    public Path priorityFirstSearch(Key sourceKey, Key targetKey, BiFunction<Key, Key, Double> heuristic) {
+        Key[] keysLocal = this.keys;
+        return priorityFirstSearchInternal(getIndex(sourceKey), getIndex(targetKey),
+                (next, goal) -> heuristic.apply(keysLocal[goal], keysLocal[next]));
+    }
+
+    /**
+     * Unweighted depth-first search in graph for path between two vertices.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path depthFirstSearch(Key sourceKey, Key targetKey) {
+        return unweightedFirstSearch(getIndex(sourceKey), getIndex(targetKey), true);
+    }
+
+    /**
+     * Unweighted breadth-first search in graph for path between two vertices.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path breadthFirstSearch(Key sourceKey, Key targetKey) {
+        return unweightedFirstSearch(getIndex(sourceKey), getIndex(targetKey), false);
+    }
+
+    /**
+     * Parallel direction optimizing breadth-first search from the source over the whole graph. Uses all the cores of
+     * the common fork-join pool.
+     *
+     * @param sourceKey Source vertex key.
+     * @return Breadth-first tree with levels and parents of all the reachable vertices.
+     */
+    public BreadthFirstTree breadthFirstTree(Key sourceKey) {
+        return ParallelTraversals.breadthFirst(this, getIndex(sourceKey));
+    }
+
+    /**
+     * Parallel weakly connected components: vertices connected by edges of any direction.
+     *
+     * @return Components.
+     */
+    public Components connectedComponents() {
+        return ParallelTraversals.connectedComponents(this);
+    }
+
+    /**
+     * Parallel strongly connected components: vertices reachable from each other.
+     *
+     * @return Components.
+     */
+    public Components stronglyConnectedComponents() {
+        return ParallelTraversals.stronglyConnectedComponents(this);
+    }
+
+    /**
+     * Minimum spanning forest of the graph with edges treated as undirected. Uses
+     * {@link SpanningForestAlgorithm#KRUSKAL}.
+     *
+     * @return Minimum spanning forest.
+     */
+    public SpanningForest minimumSpanningForest() {
+        return minimumSpanningForest(SpanningForestAlgorithm.KRUSKAL);
+    }
+
+    /**
+     * Minimum spanning forest of the graph with edges treated as undirected, built with the given algorithm.
+     *
+     * @param algorithm Minimum spanning forest algorithm.
+     * @return Minimum spanning forest.
+     */
+    public SpanningForest minimumSpanningForest(SpanningForestAlgorithm algorithm) {
+        return MinimumSpanningForest.of(this, algorithm);
+    }
+
+    /**
+     * Builds maximum flow Graph from current graph. Returns empty optional if there is no flow or sink is not
+     * reachable. Uses {@link FlowAlgorithm#DINIC}.
+     *
+     * @param sourceKey Source key to start from.
+     * @param sinkKey Sink key to finish.
+     * @return Optional of flow graph.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public Optional<Graph> maximumFlow(Key sourceKey, Key sinkKey) throws NegativeEdgeCostException {
+        return maximumFlow(sourceKey, sinkKey, FlowAlgorithm.DINIC);
+    }
+
+    /**
+     * Builds maximum flow Graph from current graph with the given algorithm. Returns empty optional if there is no
+     * flow or sink is not reachable.
+     *
+     * @param sourceKey Source key to start from.
+     * @param sinkKey Sink key to finish.
+     * @param algorithm Maximum flow algorithm.
+     * @return Optional of flow graph.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public Optional<Graph> maximumFlow(Key sourceKey, Key sinkKey, FlowAlgorithm algorithm)
+            throws NegativeEdgeCostException {
+        if (!hasVertex(sourceKey) || !hasVertex(sinkKey)) {
+            return Optional.empty();
+        }
+        FlowNetwork network = new FlowNetwork(this);
+        double value = network.run(algorithm, getIndex(sourceKey), getIndex(sinkKey));
+        return value > 0.0D ? Optional.of(network.toFlowGraph()) : Optional.empty();
+    }
+
+    /**
+     * Computes maximum flow and minimum cut with the given algorithm.
+     *
+     * @param sourceKey Source key to start from.
+     * @param sinkKey Sink key to finish.
+     * @param algorithm Maximum flow algorithm.
+     * @return Maximum flow with minimum cut.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public MaximumFlow maximumFlowWithCut(Key sourceKey, Key sinkKey, FlowAlgorithm algorithm)
+            throws NegativeEdgeCostException {
+        int source = getIndex(sourceKey);
+        int sink = getIndex(sinkKey);
+        FlowNetwork network = new FlowNetwork(this);
+        return network.toMaximumFlow(source, network.run(algorithm, source, sink));
+    }
+
+    /**
+     * Template method for path algorithms. Uses the search space of the current thread (indexed heap with
+     * decrease-key, so every vertex is in the frontier at most once at a time).
+     *
+     * @param source Source vertex index.
+     * @param target Target vertex index.
+     * @param heuristic Heuristic function for (next, goal) vertex indices, null for Dijkstra.
+     * @return List of vertices that create the path.
+     */
+    private Path priorityFirstSearchInternal(int source, int target, IndexHeuristic heuristic) {
+        SearchSpace space = SearchSpace.acquire(SearchSpace.FORWARD, keys.length);
+        try {
+            IndexedDaryHeap frontier = space.getFrontier();
+            space.reach(source, 0.0D, source);
+            frontier.offer(source, 0.0D);
+            while (!frontier.isEmpty()) {
+                int current = frontier.poll();
+                // Early exit for shortest paths.
+                if (current == target) {
+                    break;
+                }
+                double currentCost = space.getCost(current);
+                for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                    int next = targets[e];
+                    double newCost = currentCost + cost(e);
+                    if (newCost < space.getCost(next)) {
+                        space.reach(next, newCost, current);
+                        double newPriority = heuristic == null ? newCost : newCost + heuristic.estimate(next, target);
+                        frontier.offer(next, newPriority);
+                    }
+                }
+            }
+            return reconstructByParents(source, target, space);
+        } finally {
+            space.release();
+        }
+    }
+
+    /**
+     * Dijkstra's search from the source that stops when all the targets are settled.
+     *
+     * @param source Source vertex index.
+     * @param space Search space.
+     * @param isTarget Flags of target vertices, null to settle every reachable vertex.
+     * @param targetsNumber Number of flagged targets.
+     */
+    private void settle(int source, SearchSpace space, boolean[] isTarget, int targetsNumber) {
+        if (isTarget != null && targetsNumber == 0) {
+            return;
+        }
+        IndexedDaryHeap frontier = space.getFrontier();
+        space.reach(source, 0.0D, source);
+        frontier.offer(source, 0.0D);
+        int remaining = targetsNumber;
+        while (!frontier.isEmpty()) {
+            int current = frontier.poll();
+            if (isTarget != null && isTarget[current] && --remaining == 0) {
+                break;
+            }
+            double currentCost = space.getCost(current);
+            for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                int next = targets[e];
+                double newCost = currentCost + cost(e);
+                if (newCost < space.getCost(next)) {
+                    space.reach(next, newCost, current);
+                    frontier.offer(next, newCost);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unweighted breadth/depth-first search in graph for path between two vertices.
+     *
+     * @param source Source vertex index.
+     * @param target Target vertex index.
+     * @param depthFirst Whether it depth-first search (breadth-first otherwise).
+     * @return List of vertices that create the path.
+     */
+    private Path unweightedFirstSearch(int source, int target, boolean depthFirst) {
+        SearchSpace space = SearchSpace.acquire(SearchSpace.FORWARD, keys.length);
+        try {
+            // Every vertex is put in the frontier at most once, so plain array serves as both queue and stack.
+            int[] frontier = space.getQueue();
+            int head = 0;
+            int tail = 0;
+            frontier[tail++] = source;
+            space.reach(source, 0.0D, source);
+            while (head < tail) {
+                int current = depthFirst ? frontier[--tail] : frontier[head++];
+                if (current == target) {
+                    break;
+                }
+                for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                    int next = targets[e];
+                    if (!space.isReached(next)) {
+                        space.reach(next, 0.0D, current);
+                        frontier[tail++] = next;
+                    }
+                }
+            }
+            return reconstructByParents(source, target, space);
+        } finally {
+            space.release();
+        }
+    }
+
+    /**
+     * Reconstructs the path by parents remembered in search space.
+     *
+     * @param source Source vertex index.
+     * @param target Target vertex index.
+     * @param space Search space, source points to itself.
+     * @return Path to target.
+     */
+    Path reconstructByParents(int source, int target, SearchSpace space) {
+        if (!space.isReached(target)) {
+            return new Path(keys[source], keys[target], Collections.emptyList(), 0.0D);
+        }
+        double cost = 0.0D;
+        List<Key> path = new ArrayList<>();
+        int current = target;
+        while (current != source) {
+            path.add(keys[current]);
+            int previous = space.getParent(current);
+            cost += cost(edgeIndex(previous, current));
+            current = previous;
+        }
+        path.add(keys[source]);
+        Collections.reverse(path);
+        return new Path(keys[source], keys[target], path, cost);
+    }
+
+    /**
+     * Returns cost of the edge.
+     *
+     * @param edge Edge index.
+     * @return Edge cost.
+     */
+    double cost(int edge) {
+        return costSegments[edge >>> COST_SEGMENT_SHIFT][edge & COST_SEGMENT_MASK];
+    }
+
+    /**
+     * Returns copy of the edge costs.
+     *
+     * @return Edge costs, E elements.
+     */
+    double[] copyCosts() {
+        double[] costs = new double[targets.length];
+        for (int s = 0; s < costSegments.length; s++) {
+            System.arraycopy(costSegments[s], 0, costs, s << COST_SEGMENT_SHIFT, costSegments[s].length);
+        }
+        return costs;
+    }
+
+    /**
+     * Returns snapshot with the same topology and the given costs.
+     *
+     * @param newCosts Edge costs, E elements (copied).
+     * @return New snapshot sharing everything but costs with the current one.
+     */
+    CsrGraph withCosts(double[] newCosts) {
+        return new CsrGraph(keys, indices, positions, offsets, targets, newCosts);
+    }
+
+    /**
+     * Returns snapshot with the same topology and the given costs of some edges. Only the segments of the changed
+     * edges are copied, the others are shared with the current snapshot.
+     *
+     * @param edges Indices of the changed edges.
+     * @param newCosts New costs of the changed edges.
+     * @param size Number of the changed edges.
+     * @return New snapshot sharing everything but the changed segments with the current one.
+     */
+    CsrGraph withCosts(int[] edges, double[] newCosts, int size) {
+        double[][] segments = costSegments.clone();
+        boolean[] copied = new boolean[segments.length];
+        for (int i = 0; i < size; i++) {
+            int segment = edges[i] >>> COST_SEGMENT_SHIFT;
+            if (!copied[segment]) {
+                segments[segment] = segments[segment].clone();
+                copied[segment] = true;
+            }
+            segments[segment][edges[i] & COST_SEGMENT_MASK] = newCosts[i];
+        }
+        return new CsrGraph(keys, indices, positions, offsets, targets, segments);
+    }
+
+    private static double[][] split(double[] costs) {
+        double[][] segments = new double[(costs.length + COST_SEGMENT_MASK) >>> COST_SEGMENT_SHIFT][];
+        for (int s = 0; s < segments.length; s++) {
+            int from = s << COST_SEGMENT_SHIFT;
+            segments[s] = Arrays.copyOfRange(costs, from, Math.min(costs.length, from + COST_SEGMENT_SIZE));
+        }
+        return segments;
+    }
+
+    /**
+     * Returns index of the edge between two vertices or negative value if there is no edge.
+     *
+     * @param from From vertex index.
+     * @param to To vertex index.
+     * @return Edge index or negative value.
+     */
+    int edgeIndex(int from, int to) {
+        int edge = Arrays.binarySearch(targets, offsets[from], offsets[from + 1], to);
+        return edge >= 0 ? edge : NO_VERTEX;
+    }
+
+    /**
+     * Returns source vertex index of the given edge. O(log |V|).
+     *
+     * @param edge Edge index.
+     * @return Source vertex index.
+     */
+    int edgeSource(int edge) {
+        int low = 0;
+        int high = keys.length - 1;
+        // Last vertex with offset <= edge.
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= edge) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns vertex index by key. Throws {@link NullPointerException} if there is no vertex for key.
+     *
+     * @param key Vertex key.
+     * @return Vertex index.
+     */
+    int getIndex(Key key) {
+        int index = indices.get(key);
+        if (index == NO_VERTEX) {
+            throw new NullPointerException(String.format("No vertex for key %s.", key));
+        }
+        return index;
+    }
+
+    /**
+     * Returns vertex index by integral key value. Throws {@link NullPointerException} if there is no vertex for key.
+     *
+     * @param key Vertex key value.
+     * @return Vertex index.
+     */
+    int getIndex(long key) {
+        int index = indices.get(key);
+        if (index == NO_VERTEX) {
+            throw new NullPointerException(String.format("No vertex for key %s.", key));
+        }
+        return index;
+    }
+
+    /**
+     * Maps keys to vertex indices. Throws {@link NullPointerException} if there is no vertex for a key.
+     *
+     * @param vertexKeys Vertex keys.
+     * @return Vertex indices in iteration order.
+     */
+    int[] toIndices(Collection<Key> vertexKeys) {
+        int[] result = new int[vertexKeys.size()];
+        int i = 0;
+        for (Key key : vertexKeys) {
+            result[i++] = getIndex(key);
+        }
+        return result;
+    }
+
+    /**
+     * Turns counters into offsets: element i + 1 becomes sum of elements 0..i + 1.
+     *
+     * @param counters Counters to accumulate in place.
+     */
+    static void prefixSum(int[] counters) {
+        for (int i = 1; i < counters.length; i++) {
+            counters[i] += counters[i - 1];
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CsrGraph{vertices=" + keys.length + ", edges=" + targets.length + '}';
+    }
+
+    /**
+     * Heuristic over vertex indices.
+     */
+    interface IndexHeuristic {
+
+        /**
+         * Estimates cost from next vertex to goal.
+         *
+         * @param next Next vertex index.
+         * @param goal Goal vertex index.
+         * @return Estimated cost.
+         */
+        double estimate(int next, int goal);
+    }
+
+    /**
+     * Splits range of rows (matrix rows, spur searches) in halves down to single rows, so every row is a separate
+     * fork-join task.
+     */
+    static final class RowsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        final int from;
+        final int to;
+        final IntConsumer row;
+
+        RowsTask(int from, int to, IntConsumer row) {
+            this.from = from;
+            this.to = to;
+            this.row = row;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    row.accept(from);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RowsTask(from, middle, row), new RowsTask(middle, to, row));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.nobullet.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Critical path schedule of a directed acyclic {@link CsrGraph}. Vertices are tasks with durations, an edge u -&gt; v
+ * means that v can start not earlier than the cost of the edge after u finishes. With zero durations edges are
+ * activities and the critical path is the longest path of the graph.
+ * <p>
+ * Forward pass computes the earliest start of every vertex from its predecessors, backward pass computes the latest
+ * start that doesn't delay the whole project (makespan) from its successors. Both passes go level by level over
+ * {@link TopologicalLevels} and only read the previous levels, so large levels are processed in parallel. Immutable
+ * and thread safe.
+ */
+public final class DagSchedule {
+
+    final CsrGraph graph;
+    final double[] durations;
+    final double[] earliestStarts;
+    final double[] latestStarts;
+    final int[] criticalParents;
+    final double makespan;
+
+    /**
+     * Constructs schedule from prepared arrays.
+     *
+     * @param graph Graph snapshot.
+     * @param durations Durations by vertex index.
+     * @param earliestStarts Earliest starts by vertex index.
+     * @param latestStarts Latest starts by vertex index.
+     * @param criticalParents Predecessor that defines the earliest start by vertex index, {@link CsrGraph#NO_VERTEX}
+     * for vertices without predecessors.
+     * @param makespan Earliest finish of the whole project.
+     */
+    DagSchedule(CsrGraph graph, double[] durations, double[] earliestStarts, double[] latestStarts,
+            int[] criticalParents, double makespan) {
+        this.graph = graph;
+        this.durations = durations;
+        this.earliestStarts = earliestStarts;
+        this.latestStarts = latestStarts;
+        this.criticalParents = criticalParents;
+        this.makespan = makespan;
+    }
+
+    /**
+     * Schedules the tasks of the graph. Complexity: O(|V| + |E|).
+     *
+     * @param levels Topological levels of the graph.
+     * @param durations Durations by vertex index, non-negative.
+     * @return Schedule.
+     */
+    static DagSchedule of(TopologicalLevels levels, double[] durations) {
+        CsrGraph graph = levels.graph;
+        CsrGraph reverse = graph.reverse();
+        int verticesNumber = graph.keys.length;
+        double[] earliestStarts = new double[verticesNumber];
+        int[] criticalParents = new int[verticesNumber];
+        int levelsNumber = levels.getNumberOfLevels();
+        for (int level = 0; level < levelsNumber; level++) {
+            levels.forEachOfLevel(level, vertex -> {
+                double start = 0.0D;
+                int parent = CsrGraph.NO_VERTEX;
+                for (int e = reverse.offsets[vertex]; e < reverse.offsets[vertex + 1]; e++) {
+                    int previous = reverse.targets[e];
+                    double candidate = earliestStarts[previous] + durations[previous] + reverse.cost(e);
+                    if (parent == CsrGraph.NO_VERTEX || candidate > start) {
+                        start = candidate;
+                        parent = previous;
+                    }
+                }
+                earliestStarts[vertex] = start;
+                criticalParents[vertex] = parent;
+            });
+        }
+        double makespan = 0.0D;
+        for (int v = 0; v < verticesNumber; v++) {
+            makespan = Math.max(makespan, earliestStarts[v] + durations[v]);
+        }
+        double finish = makespan;
+        double[] latestStarts = new double[verticesNumber];
+        for (int level = levelsNumber - 1; level >= 0; level--) {
+            levels.forEachOfLevel(level, vertex -> {
+                double latestFinish = finish;
+                for (int e = graph.offsets[vertex]; e < graph.offsets[vertex + 1]; e++) {
+                    latestFinish = Math.min(latestFinish, latestStarts[graph.targets[e]] - graph.cost(e));
+                }
+                latestStarts[vertex] = latestFinish - durations[vertex];
+            });
+        }
+        return new DagSchedule(graph, durations, earliestStarts, latestStarts, criticalParents, makespan);
+    }
+
+    /**
+     * Returns earliest finish of the whole project: maximal earliest finish of the vertices.
+     *
+     * @return Makespan, 0 for empty graph.
+     */
+    public double getMakespan() {
+        return makespan;
+    }
+
+    /**
+     * Returns duration of the vertex.
+     *
+     * @param vertexKey Vertex key.
+     * @return Duration.
+     */
+    public double getDuration(Key vertexKey) {
+        return durations[graph.getIndex(vertexKey)];
+    }
+
+    /**
+     * Returns earliest start of the vertex.
+     *
+     * @param vertexKey Vertex key.
+     * @return Earliest start.
+     */
+    public double getEarliestStart(Key vertexKey) {
+        return earliestStarts[graph.getIndex(vertexKey)];
+    }
+
+    /**
+     * Returns earliest finish of the vertex.
+     *
+     * @param vertexKey Vertex key.
+     * @return Earliest start plus duration.
+     */
+    public double getEarliestFinish(Key vertexKey) {
+        int vertex = graph.getIndex(vertexKey);
+        return earliestStarts[vertex] + durations[vertex];
+    }
+
+    /**
+     * Returns latest start of the vertex that doesn't increase the makespan.
+     *
+     * @param vertexKey Vertex key.
+     * @return Latest start.
+     */
+    public double getLatestStart(Key vertexKey) {
+        return latestStarts[graph.getIndex(vertexKey)];
+    }
+
+    /**
+     * Returns slack (float) of the vertex: how much its start can be delayed without increasing the makespan.
+     *
+     * @param vertexKey Vertex key.
+     * @return Latest start minus earliest start.
+     */
+    public double getSlack(Key vertexKey) {
+        int vertex = graph.getIndex(vertexKey);
+        return latestStarts[vertex] - earliestStarts[vertex];
+    }
+
+    /**
+     * Checks whether the vertex is critical: it has no slack (up to rounding errors of the passes).
+     *
+     * @param vertexKey Vertex key.
+     * @return Whether the vertex is critical.
+     */
+    public boolean isCritical(Key vertexKey) {
+        int vertex = graph.getIndex(vertexKey);
+        return latestStarts[vertex] - earliestStarts[vertex] <= 1e-9 * Math.max(1.0D, makespan);
+    }
+
+    /**
+     * Returns critical path: the chain of vertices that defines the makespan, ending in the vertex with the latest
+     * finish. Its cost is the makespan.
+     *
+     * @return Critical path.
+     * @throws IllegalStateException If the graph is empty.
+     */
+    public Path getCriticalPath() {
+        int verticesNumber = graph.keys.length;
+        if (verticesNumber == 0) {
+            throw new IllegalStateException("Empty graph has no critical path.");
+        }
+        int last = 0;
+        for (int v = 1; v < verticesNumber; v++) {
+            if (earliestStarts[v] + durations[v] > earliestStarts[last] + durations[last]) {
+                last = v;
+            }
+        }
+        List<Key> path = new ArrayList<>();
+        int first = last;
+        for (int current = last; current != CsrGraph.NO_VERTEX; current = criticalParents[current]) {
+            path.add(graph.keys[current]);
+            first = current;
+        }
+        Collections.reverse(path);
+        return new Path(graph.keys[first], graph.keys[last], path, makespan);
+    }
+
+    @Override
+    public String toString() {
+        return "DagSchedule{vertices=" + graph.keys.length + ", makespan=" + makespan + '}';
+    }
+}
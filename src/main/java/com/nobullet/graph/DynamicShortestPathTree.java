@@ -0,0 +1,347 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.ConcurrentGraph.EdgeCostUpdater;
+import com.nobullet.graph.Graph.NegativeEdgeCostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Shortest paths from one source vertex that are maintained while edge costs change. Topology of the graph is fixed
+ * (snapshot), costs are owned by the tree and updated in batches by {@link #updateEdgeCosts(Consumer)}. A batch is
+ * repaired in the region it affects only (dynamic SWSF-FP scheme, as in Ramalingam–Reps):
+ * <ol>
+ * <li>subtrees under the tree edges that became more expensive are invalidated;</li>
+ * <li>invalidated vertices are seeded from their incoming edges from the valid part of the tree and the heads of the
+ * edges that became cheaper are seeded with the improved costs;</li>
+ * <li>seeds are propagated Dijkstra-like until costs are consistent again.</li>
+ * </ol>
+ * Work is proportional to the number of vertices whose paths change (plus their adjacent edges), not to the size of
+ * the graph. Not thread safe.
+ */
+public final class DynamicShortestPathTree {
+
+    static final int NO_EDGE = -1;
+
+    final CsrGraph graph;
+    final int source;
+    final double[] edgeCosts;
+    final double[] costs;
+    final int[] parentEdges;
+    final int[] edgeSources;
+    final int[] incomingOffsets;
+    final int[] incomingEdges;
+    private final IndexedDaryHeap frontier;
+    // Per-batch state: vertices touched by the batch with their previous cost and parent edge.
+    private final int[] stamps;
+    private final double[] savedCosts;
+    private final int[] savedParentEdges;
+    private final int[] touched;
+    private final int[] stack;
+    private int touchedNumber;
+    private int generation;
+
+    /**
+     * Builds the tree from scratch (Dijkstra's algorithm).
+     *
+     * @param graph Graph snapshot, costs are copied.
+     * @param source Source vertex index.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    DynamicShortestPathTree(CsrGraph graph, int source) throws NegativeEdgeCostException {
+        int verticesNumber = graph.keys.length;
+        int edgesNumber = graph.targets.length;
+        this.graph = graph;
+        this.source = source;
+        this.edgeCosts = graph.copyCosts();
+        this.costs = new double[verticesNumber];
+        this.parentEdges = new int[verticesNumber];
+        this.edgeSources = new int[edgesNumber];
+        this.incomingOffsets = new int[verticesNumber + 1];
+        this.incomingEdges = new int[edgesNumber];
+        this.frontier = new IndexedDaryHeap(verticesNumber);
+        this.stamps = new int[verticesNumber];
+        this.savedCosts = new double[verticesNumber];
+        this.savedParentEdges = new int[verticesNumber];
+        this.touched = new int[verticesNumber];
+        this.stack = new int[verticesNumber];
+        for (int v = 0; v < verticesNumber; v++) {
+            for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++) {
+                if (edgeCosts[e] < 0.0D) {
+                    throw new NegativeEdgeCostException(String.format("%s->%s edge has negative cost.",
+                            graph.keys[v], graph.keys[graph.targets[e]]));
+                }
+                edgeSources[e] = v;
+                incomingOffsets[graph.targets[e] + 1]++;
+            }
+        }
+        for (int v = 0; v < verticesNumber; v++) {
+            incomingOffsets[v + 1] += incomingOffsets[v];
+        }
+        int[] fill = Arrays.copyOf(incomingOffsets, verticesNumber);
+        for (int e = 0; e < edgesNumber; e++) {
+            incomingEdges[fill[graph.targets[e]]++] = e;
+        }
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        Arrays.fill(parentEdges, NO_EDGE);
+        costs[source] = 0.0D;
+        frontier.offer(source, 0.0D);
+        propagate();
+    }
+
+    /**
+     * Returns source vertex key.
+     *
+     * @return Source vertex key.
+     */
+    public Key getSource() {
+        return graph.keys[source];
+    }
+
+    /**
+     * Returns current edge cost known to the tree.
+     *
+     * @param fromKey From key.
+     * @param toKey To key.
+     * @return Edge cost.
+     * @throws NullPointerException If there is no such edge.
+     */
+    public double getEdgeCost(Key fromKey, Key toKey) {
+        return edgeCosts[getEdgeIndex(fromKey, toKey)];
+    }
+
+    /**
+     * Checks whether the given vertex is reachable from the source.
+     *
+     * @param targetKey Target vertex key.
+     * @return Whether the vertex is reachable.
+     */
+    public boolean hasPathTo(Key targetKey) {
+        return costs[graph.getIndex(targetKey)] != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns cost of the shortest path to the given vertex.
+     *
+     * @param targetKey Target vertex key.
+     * @return Cost of the shortest path or positive infinity if the vertex is not reachable.
+     */
+    public double getCost(Key targetKey) {
+        return costs[graph.getIndex(targetKey)];
+    }
+
+    /**
+     * Returns shortest path to the given vertex.
+     *
+     * @param targetKey Target vertex key.
+     * @return Path from the source to the given vertex, empty if the vertex is not reachable.
+     */
+    public Path getPath(Key targetKey) {
+        int target = graph.getIndex(targetKey);
+        if (costs[target] == Double.POSITIVE_INFINITY) {
+            return new Path(graph.keys[source], targetKey, Collections.emptyList(), 0.0D);
+        }
+        List<Key> path = new ArrayList<>();
+        for (int current = target; current != source; current = edgeSources[parentEdges[current]]) {
+            path.add(graph.keys[current]);
+        }
+        path.add(graph.keys[source]);
+        Collections.reverse(path);
+        return new Path(graph.keys[source], targetKey, path, costs[target]);
+    }
+
+    /**
+     * Applies the batch of edge cost changes and repairs the tree. Paths to the vertices that are not in the returned
+     * set are exactly the same as before the batch (and so are still valid for callers that cached them).
+     *
+     * @param updates Batch of the changes.
+     * @return Keys of the vertices whose shortest path (cost or sequence of vertices) has changed.
+     * @throws NullPointerException If there is no such edge. Changes before the failed one are applied.
+     * @throws IllegalArgumentException If the cost is negative. Changes before the failed one are applied.
+     */
+    public Set<Key> updateEdgeCosts(Consumer<EdgeCostUpdater> updates) {
+        generation++;
+        touchedNumber = 0;
+        List<Integer> changedEdges = new ArrayList<>();
+        try {
+            updates.accept((fromKey, toKey, cost) -> {
+                int edge = getEdgeIndex(fromKey, toKey);
+                if (cost < 0.0D) {
+                    throw new IllegalArgumentException(String.format("%s->%s edge cost is negative: %s.",
+                            fromKey, toKey, cost));
+                }
+                if (edgeCosts[edge] != cost) {
+                    edgeCosts[edge] = cost;
+                    changedEdges.add(edge);
+                }
+            });
+        } finally {
+            repair(changedEdges);
+        }
+        return collectChanged();
+    }
+
+    /**
+     * Immutable copy of the current state of the tree.
+     *
+     * @return Shortest path tree over the snapshot with current costs.
+     */
+    public ShortestPathTree toShortestPathTree() {
+        int[] parents = new int[costs.length];
+        for (int v = 0; v < costs.length; v++) {
+            parents[v] = v == source ? source
+                    : parentEdges[v] == NO_EDGE ? CsrGraph.NO_VERTEX : edgeSources[parentEdges[v]];
+        }
+        return new ShortestPathTree(graph.withCosts(edgeCosts), source, costs.clone(), parents);
+    }
+
+    /**
+     * Repairs the tree after the given edges have changed their costs.
+     *
+     * @param changedEdges Changed edges (may repeat).
+     */
+    private void repair(List<Integer> changedEdges) {
+        List<Integer> invalidated = new ArrayList<>();
+        for (int edge : changedEdges) {
+            int to = graph.targets[edge];
+            if (parentEdges[to] == edge && costs[edgeSources[edge]] + edgeCosts[edge] > costs[to]) {
+                invalidate(to, invalidated);
+            }
+        }
+        for (int vertex : invalidated) {
+            for (int i = incomingOffsets[vertex]; i < incomingOffsets[vertex + 1]; i++) {
+                int edge = incomingEdges[i];
+                double cost = costs[edgeSources[edge]] + edgeCosts[edge];
+                if (cost < costs[vertex]) {
+                    costs[vertex] = cost;
+                    parentEdges[vertex] = edge;
+                }
+            }
+            if (costs[vertex] != Double.POSITIVE_INFINITY) {
+                frontier.offer(vertex, costs[vertex]);
+            }
+        }
+        for (int edge : changedEdges) {
+            relax(edge);
+        }
+        propagate();
+    }
+
+    /**
+     * Invalidates the subtree of the vertex: all its costs are unknown now.
+     *
+     * @param root Root of the subtree.
+     * @param invalidated Collector of the invalidated vertices.
+     */
+    private void invalidate(int root, List<Integer> invalidated) {
+        if (stamps[root] == generation) {
+            return;
+        }
+        int stackSize = 0;
+        stack[stackSize++] = root;
+        touch(root);
+        while (stackSize > 0) {
+            int vertex = stack[--stackSize];
+            invalidated.add(vertex);
+            for (int e = graph.offsets[vertex]; e < graph.offsets[vertex + 1]; e++) {
+                int child = graph.targets[e];
+                if (parentEdges[child] == e && stamps[child] != generation) {
+                    touch(child);
+                    stack[stackSize++] = child;
+                }
+            }
+            costs[vertex] = Double.POSITIVE_INFINITY;
+            parentEdges[vertex] = NO_EDGE;
+        }
+    }
+
+    /**
+     * Relaxes the edge and offers its target to the frontier if it's improved.
+     *
+     * @param edge Edge index.
+     */
+    private void relax(int edge) {
+        int to = graph.targets[edge];
+        double cost = costs[edgeSources[edge]] + edgeCosts[edge];
+        if (cost < costs[to]) {
+            touch(to);
+            costs[to] = cost;
+            parentEdges[to] = edge;
+            frontier.offer(to, cost);
+        }
+    }
+
+    /**
+     * Dijkstra's propagation of the frontier.
+     */
+    private void propagate() {
+        while (!frontier.isEmpty()) {
+            int vertex = frontier.poll();
+            for (int e = graph.offsets[vertex]; e < graph.offsets[vertex + 1]; e++) {
+                relax(e);
+            }
+        }
+    }
+
+    /**
+     * Remembers previous state of the vertex once per batch.
+     *
+     * @param vertex Vertex index.
+     */
+    private void touch(int vertex) {
+        if (stamps[vertex] != generation) {
+            stamps[vertex] = generation;
+            savedCosts[vertex] = costs[vertex];
+            savedParentEdges[vertex] = parentEdges[vertex];
+            touched[touchedNumber++] = vertex;
+        }
+    }
+
+    /**
+     * Collects the vertices whose state has changed in the batch together with their subtrees.
+     *
+     * @return Keys of the vertices with changed paths.
+     */
+    private Set<Key> collectChanged() {
+        Set<Key> result = new LinkedHashSet<>();
+        int stackSize = 0;
+        for (int i = 0; i < touchedNumber; i++) {
+            int vertex = touched[i];
+            if (savedCosts[vertex] != costs[vertex] || savedParentEdges[vertex] != parentEdges[vertex]) {
+                stack[stackSize++] = vertex;
+                // Stamp of the next generation marks collected vertices, it is unused until the next batch.
+                stamps[vertex] = generation + 1;
+            }
+        }
+        while (stackSize > 0) {
+            int vertex = stack[--stackSize];
+            result.add(graph.keys[vertex]);
+            for (int e = graph.offsets[vertex]; e < graph.offsets[vertex + 1]; e++) {
+                int child = graph.targets[e];
+                if (parentEdges[child] == e && stamps[child] != generation + 1) {
+                    stamps[child] = generation + 1;
+                    stack[stackSize++] = child;
+                }
+            }
+        }
+        generation++;
+        return result;
+    }
+
+    private int getEdgeIndex(Key fromKey, Key toKey) {
+        int edge = graph.edgeIndex(graph.getIndex(fromKey), graph.getIndex(toKey));
+        if (edge < 0) {
+            throw new NullPointerException(String.format("No edge found for: %s -> %s .", fromKey, toKey));
+        }
+        return edge;
+    }
+
+    @Override
+    public String toString() {
+        return "DynamicShortestPathTree{source=" + getSource() + '}';
+    }
+}
@@ -0,0 +1,88 @@
+package com.nobullet.graph;
+
+import java.util.Optional;
+
+/**
+ * Earth geographic position.
+ */
+class EarthGeographicPosition implements VertexPosition {
+
+    static final double RADIUS = 6371.0d;
+    final double lon;
+    final double lat;
+
+    public EarthGeographicPosition(double lon, double lat) {
+        this.lon = lon;
+        this.lat = lat;
+    }
+
+    public EarthGeographicPosition(EarthGeographicPosition source) {
+        this(source.lon, source.lat);
+    }
+
+    /**
+     * Calculates distance between two positions in Kilometers.
+     *
+     * @param position Other position.
+     * @return Distance between two positions in Kilometers.
+     */
+    @Override
+    public Optional<Double> distanceTo(VertexPosition position) {
+        if (getClass() != position.getClass()) {
+            return Optional.empty();
+        }
+        return Optional.of(distanceOrDefault(position, 0.0D));
+    }
+
+    /**
+     * Calculates distance between two positions in Kilometers.
+     *
+     * @param position Other position.
+     * @param defaultValue Value to return for positions of other types.
+     * @return Distance between two positions in Kilometers.
+     */
+    @Override
+    public double distanceOrDefault(VertexPosition position, double defaultValue) {
+        if (getClass() != position.getClass()) {
+            return defaultValue;
+        }
+        EarthGeographicPosition other = (EarthGeographicPosition) position;
+        double sinDlat = Math.sin(Math.toRadians(this.lat - other.lat) / 2);
+        double sinDlon = Math.sin(Math.toRadians(this.lon - other.lon) / 2);
+        double a = sinDlat * sinDlat
+                + Math.cos(Math.toRadians(other.lat)) * Math.cos(Math.toRadians(this.lat)) * sinDlon * sinDlon;
+        double angle = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return angle * RADIUS;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 11 * hash + (int) (Double.doubleToLongBits(this.lon) ^ (Double.doubleToLongBits(this.lon) >>> 32));
+        hash = 11 * hash + (int) (Double.doubleToLongBits(this.lat) ^ (Double.doubleToLongBits(this.lat) >>> 32));
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final EarthGeographicPosition other = (EarthGeographicPosition) obj;
+        if (Double.doubleToLongBits(this.lon) != Double.doubleToLongBits(other.lon)) {
+            return false;
+        }
+        return Double.doubleToLongBits(this.lat) == Double.doubleToLongBits(other.lat);
+    }
+
+    /**
+     * Clones the position. Uses copy constructor.
+     *
+     * @return Copy of the object.
+     * @throws CloneNotSupportedException
+     */
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        return new EarthGeographicPosition(this);
+    }
+}
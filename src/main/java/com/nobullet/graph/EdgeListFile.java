@@ -0,0 +1,446 @@
+package com.nobullet.graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk import of {@link Graph} from text edge lists: one edge per line, {@code from,to[,cost]} with cost 1.0 when
+ * omitted. Tokens are trimmed, empty lines and lines starting with '#' are skipped, line endings may be LF or CRLF.
+ * Repeated edges keep the cost of the last line, like {@link Graph#addEdge(Key, Key, double)}.
+ * <p>
+ * The input is read in chunks cut at line ends; every chunk is parsed from bytes in the common fork-join pool while
+ * the next one is read and numbers its keys locally. Only a few chunks are parsed at a time and parsed chunks don't
+ * keep their bytes, so the input is never held in memory as a whole; a wrong line stops reading and cancels the
+ * parsing. Then chunks are merged in order of the input, so keys are numbered deterministically by their first
+ * appearance, edges are grouped by source and target with counting sort and vertices are created with adjacency maps
+ * of the final size, so the maps never rehash. Outgoing and incoming maps of different vertices are filled in
+ * parallel.
+ */
+public final class EdgeListFile {
+
+    static final int CHUNK_SIZE = 1 << 22;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+    /**
+     * Parses integral tokens (up to 18 digits with optional minus) into {@link Key#of(long)}, other tokens into
+     * {@link Key#of(String)}.
+     */
+    public static final KeyParser KEY_PARSER = EdgeListFile::parseKey;
+    /**
+     * Parses every token into {@link Key#of(String)}.
+     */
+    public static final KeyParser STRING_KEY_PARSER
+            = (bytes, from, to) -> Key.of(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+
+    private EdgeListFile() {
+    }
+
+    /**
+     * Reads comma separated edge list with {@link #KEY_PARSER}.
+     *
+     * @param file File to read.
+     * @return New graph.
+     * @throws IOException If reading fails or a line can't be parsed.
+     */
+    public static Graph read(java.nio.file.Path file) throws IOException {
+        return read(file, ',', KEY_PARSER);
+    }
+
+    /**
+     * Reads edge list with the given separator and key parser.
+     *
+     * @param file File to read.
+     * @param separator Separator of tokens, ASCII character.
+     * @param keyParser Key parser.
+     * @return New graph.
+     * @throws IOException If reading fails or a line can't be parsed.
+     */
+    public static Graph read(java.nio.file.Path file, char separator, KeyParser keyParser) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return read(input, separator, keyParser);
+        }
+    }
+
+    /**
+     * Reads comma separated edge list with {@link #KEY_PARSER}. The stream is not closed.
+     *
+     * @param input Input stream.
+     * @return New graph.
+     * @throws IOException If reading fails or a line can't be parsed.
+     */
+    public static Graph read(InputStream input) throws IOException {
+        return read(input, ',', KEY_PARSER);
+    }
+
+    /**
+     * Reads edge list with the given separator and key parser. The stream is not closed.
+     *
+     * @param input Input stream.
+     * @param separator Separator of tokens, ASCII character.
+     * @param keyParser Key parser.
+     * @return New graph.
+     * @throws IOException If reading fails or a line can't be parsed.
+     */
+    public static Graph read(InputStream input, char separator, KeyParser keyParser) throws IOException {
+        return read(input, separator, keyParser, CHUNK_SIZE);
+    }
+
+    /**
+     * Reads edge list in chunks of the given size (chunks are extended for longer lines).
+     *
+     * @param input Input stream.
+     * @param separator Separator of tokens, ASCII character.
+     * @param keyParser Key parser.
+     * @param chunkSize Chunk size in bytes.
+     * @return New graph.
+     * @throws IOException If reading fails or a line can't be parsed.
+     */
+    static Graph read(InputStream input, char separator, KeyParser keyParser, int chunkSize) throws IOException {
+        if (separator == '\n' || separator == '\r' || separator > 127) {
+            throw new IllegalArgumentException("Separator must be ASCII character, not line end: " + (int) separator);
+        }
+        byte separatorByte = (byte) separator;
+        List<Chunk> chunks = new ArrayList<>();
+        ChunkReader.ChunkParser<Chunk> parser = (bytes, length) -> parse(bytes, length, separatorByte, keyParser);
+        ChunkReader.read(input, chunkSize, parser, chunk -> {
+            if (chunk.error != null) {
+                int lines = 0;
+                for (Chunk previous : chunks) {
+                    lines += previous.lines;
+                }
+                throw new IOException(String.format("Line %d: %s", lines + chunk.errorLine, chunk.error));
+            }
+            chunks.add(chunk);
+        });
+        return build(chunks.toArray(new Chunk[chunks.size()]));
+    }
+
+    /**
+     * Builds graph from the parsed chunks.
+     *
+     * @param chunks Parsed chunks in order of the input.
+     * @return New graph.
+     */
+    private static Graph build(Chunk[] chunks) {
+        int[] chunkOffsets = new int[chunks.length + 1];
+        for (int c = 0; c < chunks.length; c++) {
+            chunkOffsets[c + 1] = chunkOffsets[c] + chunks[c].size;
+        }
+        int edgesNumber = chunkOffsets[chunks.length];
+        int[] fromIds = new int[edgesNumber];
+        int[] toIds = new int[edgesNumber];
+        double[] costs = new double[edgesNumber];
+        // Keys are numbered in order of their first appearance in the input: chunks number their keys while they are
+        // parsed, local numbers are merged chunk by chunk in order of the input and edges are renumbered in parallel.
+        HashMap<Key, Integer> ids = new HashMap<>(Vertex.capacityFor(edgesNumber / 2 + 1));
+        List<Key> keyList = new ArrayList<>();
+        int[][] globalIds = new int[chunks.length][];
+        for (int c = 0; c < chunks.length; c++) {
+            Chunk chunk = chunks[c];
+            int[] global = new int[chunk.keysSize];
+            for (int local = 0; local < chunk.keysSize; local++) {
+                Key key = chunk.keys[local];
+                Integer id = ids.get(key);
+                if (id == null) {
+                    id = keyList.size();
+                    ids.put(key, id);
+                    keyList.add(key);
+                }
+                global[local] = id;
+            }
+            globalIds[c] = global;
+        }
+        IntStream.range(0, chunks.length).parallel().forEach(c -> {
+            Chunk chunk = chunks[c];
+            int[] global = globalIds[c];
+            int base = chunkOffsets[c];
+            for (int i = 0; i < chunk.size; i++) {
+                fromIds[base + i] = global[chunk.from[i]];
+                toIds[base + i] = global[chunk.to[i]];
+                costs[base + i] = chunk.costs[i];
+            }
+            chunks[c] = null;
+        });
+        int verticesNumber = keyList.size();
+        Key[] keys = keyList.toArray(new Key[verticesNumber]);
+        // Edges grouped by source and by target, in order of the input inside of each group.
+        int[] outOffsets = new int[verticesNumber + 1];
+        int[] inOffsets = new int[verticesNumber + 1];
+        for (int e = 0; e < edgesNumber; e++) {
+            outOffsets[fromIds[e] + 1]++;
+            inOffsets[toIds[e] + 1]++;
+        }
+        for (int v = 0; v < verticesNumber; v++) {
+            outOffsets[v + 1] += outOffsets[v];
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        int[] bySource = new int[edgesNumber];
+        int[] byTarget = new int[edgesNumber];
+        int[] outFill = Arrays.copyOf(outOffsets, verticesNumber);
+        int[] inFill = Arrays.copyOf(inOffsets, verticesNumber);
+        for (int e = 0; e < edgesNumber; e++) {
+            bySource[outFill[fromIds[e]]++] = e;
+            byTarget[inFill[toIds[e]]++] = e;
+        }
+
+        Vertex[] vertices = new Vertex[verticesNumber];
+        IntStream.range(0, verticesNumber).parallel().forEach(v -> vertices[v] = new Vertex(keys[v],
+                outOffsets[v + 1] - outOffsets[v], inOffsets[v + 1] - inOffsets[v]));
+        Graph graph = new Graph(verticesNumber);
+        for (Vertex vertex : vertices) {
+            graph.vertices.put(vertex.getKey(), graph.register(vertex));
+        }
+        Edge[] edges = new Edge[edgesNumber];
+        IntStream.range(0, verticesNumber).parallel().forEach(v -> {
+            Vertex from = vertices[v];
+            for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+                int e = bySource[i];
+                Vertex to = vertices[toIds[e]];
+                Edge edge = from.adjacent.get(to);
+                if (edge == null) {
+                    edge = new Edge(from, to, costs[e], null);
+                    from.adjacent.put(to, edge);
+                } else {
+                    edge.setCost(costs[e]);
+                }
+                edges[e] = edge;
+            }
+        });
+        IntStream.range(0, verticesNumber).parallel().forEach(v -> {
+            Vertex to = vertices[v];
+            for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+                Edge edge = edges[byTarget[i]];
+                to.incoming.put(edge.getFrom(), edge);
+            }
+        });
+        return graph;
+    }
+
+    /**
+     * Parses the lines of a chunk. Stops at the first wrong line.
+     *
+     * @param bytes Chunk bytes.
+     * @param length Number of bytes to parse.
+     * @param separator Separator of tokens.
+     * @param keyParser Key parser.
+     * @return Parsed chunk.
+     */
+    static Chunk parse(byte[] bytes, int length, byte separator, KeyParser keyParser) {
+        Chunk chunk = new Chunk(Math.max(16, length / 16));
+        int position = 0;
+        while (position < length) {
+            int end = position;
+            while (end < length && bytes[end] != '\n') {
+                end++;
+            }
+            chunk.lines++;
+            int lineEnd = end > position && bytes[end - 1] == '\r' ? end - 1 : end;
+            String error = parseLine(bytes, position, lineEnd, separator, keyParser, chunk);
+            if (error != null) {
+                chunk.error = error;
+                chunk.errorLine = chunk.lines;
+                return chunk;
+            }
+            position = end + 1;
+        }
+        return chunk;
+    }
+
+    /**
+     * Parses one line into the chunk.
+     *
+     * @return Error message or null if the line is parsed or skipped.
+     */
+    private static String parseLine(byte[] bytes, int from, int to, byte separator, KeyParser keyParser,
+            Chunk chunk) {
+        int start = skipSpaces(bytes, from, to);
+        if (start == to || bytes[start] == '#') {
+            return null;
+        }
+        int first = indexOf(bytes, start, to, separator);
+        if (first == to) {
+            return "expected at least two tokens.";
+        }
+        int second = indexOf(bytes, first + 1, to, separator);
+        int fromEnd = trimEnd(bytes, start, first);
+        int toStart = skipSpaces(bytes, first + 1, second);
+        int toEnd = trimEnd(bytes, toStart, second);
+        if (fromEnd == start || toEnd == toStart) {
+            return "empty key.";
+        }
+        double cost = 1.0D;
+        if (second < to) {
+            int costStart = skipSpaces(bytes, second + 1, to);
+            int costEnd = trimEnd(bytes, costStart, to);
+            try {
+                cost = parseCost(bytes, costStart, costEnd);
+            } catch (NumberFormatException nfe) {
+                return "wrong cost: " + new String(bytes, costStart, costEnd - costStart, StandardCharsets.UTF_8);
+            }
+        }
+        Key fromKey = keyParser.parse(bytes, start, fromEnd);
+        Key toKey = keyParser.parse(bytes, toStart, toEnd);
+        if (fromKey.equals(toKey)) {
+            return "can't add cycle edge for: " + fromKey;
+        }
+        chunk.add(fromKey, toKey, cost);
+        return null;
+    }
+
+    /**
+     * Parses decimal cost. Plain decimals with up to 15 digits are parsed from bytes (exactly, as one division of
+     * two exact doubles), others with {@link Double#parseDouble(String)}.
+     *
+     * @param bytes Bytes.
+     * @param from Token start.
+     * @param to Token end.
+     * @return Cost.
+     * @throws NumberFormatException If the token is not a number.
+     */
+    static double parseCost(byte[] bytes, int from, int to) {
+        int position = from;
+        boolean negative = position < to && bytes[position] == '-';
+        if (negative || position < to && bytes[position] == '+') {
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        for (; position < to; position++) {
+            byte current = bytes[position];
+            if (current >= '0' && current <= '9') {
+                mantissa = mantissa * 10 + (current - '0');
+                digits++;
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else if (current == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+        if (position == to && digits > 0 && digits <= 15) {
+            double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(bytes, from, to - from, StandardCharsets.US_ASCII));
+    }
+
+    private static Key parseKey(byte[] bytes, int from, int to) {
+        int position = bytes[from] == '-' ? from + 1 : from;
+        int digits = to - position;
+        if (digits > 0 && digits <= 18) {
+            long value = 0;
+            for (; position < to; position++) {
+                byte current = bytes[position];
+                if (current < '0' || current > '9') {
+                    break;
+                }
+                value = value * 10 + (current - '0');
+            }
+            if (position == to) {
+                return Key.of(bytes[from] == '-' ? -value : value);
+            }
+        }
+        return Key.of(new String(bytes, from, to - from, StandardCharsets.UTF_8));
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte value) {
+        int position = from;
+        while (position < to && bytes[position] != value) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int skipSpaces(byte[] bytes, int from, int to) {
+        int position = from;
+        while (position < to && (bytes[position] == ' ' || bytes[position] == '\t')) {
+            position++;
+        }
+        return position;
+    }
+
+    private static int trimEnd(byte[] bytes, int from, int to) {
+        int position = to;
+        while (position > from && (bytes[position - 1] == ' ' || bytes[position - 1] == '\t')) {
+            position--;
+        }
+        return position;
+    }
+
+    /**
+     * Parser of vertex keys from bytes of a token. Must be thread safe: chunks are parsed in parallel.
+     */
+    public interface KeyParser {
+
+        /**
+         * Parses key from trimmed, non-empty token.
+         *
+         * @param bytes Bytes of the chunk.
+         * @param from Token start.
+         * @param to Token end (exclusive).
+         * @return Key.
+         */
+        Key parse(byte[] bytes, int from, int to);
+    }
+
+    /**
+     * Edges parsed from one chunk. Keys are numbered locally in order of their first appearance in the chunk.
+     */
+    static final class Chunk {
+
+        int[] from;
+        int[] to;
+        double[] costs;
+        int size;
+        Key[] keys;
+        int keysSize;
+        private final HashMap<Key, Integer> ids;
+        int lines;
+        String error;
+        int errorLine;
+
+        Chunk(int capacity) {
+            this.from = new int[capacity];
+            this.to = new int[capacity];
+            this.costs = new double[capacity];
+            this.keys = new Key[capacity];
+            this.ids = new HashMap<>(Vertex.capacityFor(capacity));
+        }
+
+        void add(Key fromKey, Key toKey, double cost) {
+            if (size == from.length) {
+                int newLength = size + (size >> 1);
+                from = Arrays.copyOf(from, newLength);
+                to = Arrays.copyOf(to, newLength);
+                costs = Arrays.copyOf(costs, newLength);
+            }
+            from[size] = idOf(fromKey);
+            to[size] = idOf(toKey);
+            costs[size++] = cost;
+        }
+
+        private int idOf(Key key) {
+            Integer id = ids.get(key);
+            if (id == null) {
+                if (keysSize == keys.length) {
+                    keys = Arrays.copyOf(keys, keysSize + (keysSize >> 1));
+                }
+                id = keysSize;
+                ids.put(key, id);
+                keys[keysSize++] = key;
+            }
+            return id;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.nobullet.graph;
+
+/**
+ * Maximum flow algorithm. All the algorithms work on the primitive residual network of {@link CsrGraph} and treat
+ * edge costs as capacities.
+ */
+public enum FlowAlgorithm {
+
+    /**
+     * Ford-Fulkerson with breadth-first search for the shortest augmenting path. O(|V| * |E|^2).
+     */
+    EDMONDS_KARP,
+    /**
+     * Dinic's algorithm: blocking flows in the level graph of the residual network. O(|V|^2 * |E|), much faster on
+     * sparse networks.
+     */
+    DINIC,
+    /**
+     * Highest-label push-relabel with gap heuristic. O(|V|^2 * sqrt(|E|)), good for dense networks.
+     */
+    PUSH_RELABEL
+}
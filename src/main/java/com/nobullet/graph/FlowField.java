@@ -0,0 +1,354 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.Map.Cell;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Flow field (Dijkstra map) of a {@link Map}: distances from every cell to the nearest of the given targets and the
+ * next step toward it, kept in flat {@code long[]} and {@code int[]} arrays over the cell indices
+ * {@code y * width + x}. Distances follow {@link Map#cost(Cell, Cell)}, as {@link Map#shortestPathDijkstra(Cell, Cell)}
+ * and {@link Map#shortestPathAStar(Cell, Cell)} do: one reverse Dijkstra's search from all the targets with
+ * {@link RadixHeap} pays the cost of the step from the neighbor, so it serves any number of sources and a lookup of
+ * the next step is O(1). The built-in metric is computed in place, an overridden one is called for every step and must
+ * depend on the values of the two cells only.
+ * <p>
+ * The field listens to {@link Map#set(int, int, long)} and is updated lazily before the next lookup: the cells whose
+ * steps lead through a changed cell lose their distances, get the best distances of their other neighbors and the
+ * search is resumed from them and from the neighbors of the changed cells, so cheaper steps are propagated as well.
+ * Only the affected part of the field is searched again. Call {@link #detach()} when the field is not needed. Not
+ * thread safe.
+ */
+public final class FlowField {
+
+    /**
+     * Next step of unreachable cells.
+     */
+    public static final int NO_CELL = -1;
+
+    final Map map;
+    final int width;
+    final int height;
+    private final boolean defaultCost;
+    private final long[] distances;
+    private final int[] next;
+    private final int[] stamps;
+    private final int[] queue;
+    private final BitSet changed;
+    private final RadixHeap frontier;
+    private final Map.CellListener listener;
+    private int generation;
+
+    /**
+     * Computes the field for the targets and starts listening to the changes of the map.
+     *
+     * @param map Map.
+     * @param targets Target cells.
+     */
+    public FlowField(Map map, Collection<Cell> targets) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("Expecting at least one target.");
+        }
+        this.map = map;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.defaultCost = map.hasDefaultCost();
+        int cells = width * height;
+        this.distances = new long[cells];
+        this.next = new int[cells];
+        this.stamps = new int[cells];
+        this.queue = new int[cells];
+        this.changed = new BitSet(cells);
+        this.frontier = new RadixHeap();
+        Arrays.fill(distances, Map.Constants.UNREACHABLE_CELL);
+        Arrays.fill(next, NO_CELL);
+        for (Cell target : targets) {
+            map.checkBounds(target);
+            int cell = target.getY() * width + target.getX();
+            distances[cell] = 0L;
+            next[cell] = cell;
+            frontier.push(0L, cell);
+        }
+        propagate();
+        this.listener = this::cellChanged;
+        map.addCellListener(listener);
+    }
+
+    /**
+     * Returns the map.
+     *
+     * @return Map.
+     */
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * Stops listening to the changes of the map. The field must not be used afterwards.
+     */
+    public void detach() {
+        map.removeCellListener(listener);
+    }
+
+    /**
+     * Returns cost of the shortest path from the cell to the nearest target.
+     *
+     * @param x X.
+     * @param y Y.
+     * @return Cost or {@link Map.Constants#UNREACHABLE_CELL} if no target is reachable.
+     */
+    public long getDistance(int x, int y) {
+        map.checkBounds(x, y);
+        update();
+        return distances[y * width + x];
+    }
+
+    /**
+     * Returns cost of the shortest path from the cell to the nearest target.
+     *
+     * @param cell Cell.
+     * @return Cost or {@link Map.Constants#UNREACHABLE_CELL} if no target is reachable.
+     */
+    public long getDistance(Cell cell) {
+        return getDistance(cell.getX(), cell.getY());
+    }
+
+    /**
+     * Returns index {@code y * width + x} of the next step from the cell toward the nearest target.
+     *
+     * @param x X.
+     * @param y Y.
+     * @return Index of the next cell, index of the cell itself for targets or {@link #NO_CELL} if no target is
+     * reachable.
+     */
+    public int getNext(int x, int y) {
+        map.checkBounds(x, y);
+        update();
+        return next[y * width + x];
+    }
+
+    /**
+     * Returns the next step from the cell toward the nearest target.
+     *
+     * @param cell Cell.
+     * @return Next cell, the cell itself for targets or null if no target is reachable.
+     */
+    public Cell getNextCell(Cell cell) {
+        int step = getNext(cell.getX(), cell.getY());
+        return step == NO_CELL ? null : new Cell(step % width, step / width);
+    }
+
+    /**
+     * Follows the field from the cell to the nearest target.
+     *
+     * @param source Source cell.
+     * @return Path from the source cell to the nearest target or empty path if no target is reachable.
+     */
+    public Map.Path pathFrom(Cell source) {
+        int current = getNext(source.getX(), source.getY());
+        if (current == NO_CELL) {
+            return Map.Path.emptyPath();
+        }
+        List<Cell> path = new ArrayList<>();
+        path.add(source);
+        for (int previous = source.getY() * width + source.getX(); current != previous; current = next[current]) {
+            path.add(new Cell(current % width, current / width));
+            previous = current;
+        }
+        return new Map.Path(map, path);
+    }
+
+    /**
+     * Applies the changes of the map made since the last update. Lookups call it themselves.
+     */
+    public void update() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+        // Cells whose steps lead through the changed cells, targets keep their distances.
+        int tail = 0;
+        for (int cell = changed.nextSetBit(0); cell >= 0; cell = changed.nextSetBit(cell + 1)) {
+            if (next[cell] != cell) {
+                tail = invalidate(cell, tail);
+            } else {
+                int y = cell / width;
+                int x = cell - y * width;
+                if (x + 1 < width && next[cell + 1] == cell) {
+                    tail = invalidate(cell + 1, tail);
+                }
+                if (x > 0 && next[cell - 1] == cell) {
+                    tail = invalidate(cell - 1, tail);
+                }
+                if (y + 1 < height && next[cell + width] == cell) {
+                    tail = invalidate(cell + width, tail);
+                }
+                if (y > 0 && next[cell - width] == cell) {
+                    tail = invalidate(cell - width, tail);
+                }
+            }
+        }
+        for (int head = 0; head < tail; head++) {
+            int cell = queue[head];
+            int y = cell / width;
+            int x = cell - y * width;
+            if (x + 1 < width && next[cell + 1] == cell) {
+                tail = invalidate(cell + 1, tail);
+            }
+            if (x > 0 && next[cell - 1] == cell) {
+                tail = invalidate(cell - 1, tail);
+            }
+            if (y + 1 < height && next[cell + width] == cell) {
+                tail = invalidate(cell + width, tail);
+            }
+            if (y > 0 && next[cell - width] == cell) {
+                tail = invalidate(cell - width, tail);
+            }
+        }
+        for (int i = 0; i < tail; i++) {
+            distances[queue[i]] = Map.Constants.UNREACHABLE_CELL;
+            next[queue[i]] = NO_CELL;
+        }
+        frontier.clear();
+        // Invalidated cells start from their best valid neighbors.
+        for (int i = 0; i < tail; i++) {
+            int cell = queue[i];
+            int y = cell / width;
+            int x = cell - y * width;
+            long value = map.get(x, y);
+            if (x + 1 < width) {
+                seed(cell, cell + 1, value, x + 1, y);
+            }
+            if (x > 0) {
+                seed(cell, cell - 1, value, x - 1, y);
+            }
+            if (y + 1 < height) {
+                seed(cell, cell + width, value, x, y + 1);
+            }
+            if (y > 0) {
+                seed(cell, cell - width, value, x, y - 1);
+            }
+        }
+        // Valid ends of the changed steps are searched again for cheaper steps.
+        for (int cell = changed.nextSetBit(0); cell >= 0; cell = changed.nextSetBit(cell + 1)) {
+            int y = cell / width;
+            int x = cell - y * width;
+            resume(cell);
+            if (x + 1 < width) {
+                resume(cell + 1);
+            }
+            if (x > 0) {
+                resume(cell - 1);
+            }
+            if (y + 1 < height) {
+                resume(cell + width);
+            }
+            if (y > 0) {
+                resume(cell - width);
+            }
+        }
+        changed.clear();
+        propagate();
+    }
+
+    /**
+     * Dijkstra's search from the frontier. Stale heap entries are skipped when popped.
+     */
+    private void propagate() {
+        while (!frontier.isEmpty()) {
+            int current = frontier.pop();
+            long cost = distances[current];
+            if (frontier.lastPriority() != cost) {
+                continue;
+            }
+            int y = current / width;
+            int x = current - y * width;
+            long value = map.get(x, y);
+            if (x + 1 < width) {
+                relax(current + 1, cost + stepFrom(x, y, value, x + 1, y), current);
+            }
+            if (x > 0) {
+                relax(current - 1, cost + stepFrom(x, y, value, x - 1, y), current);
+            }
+            if (y + 1 < height) {
+                relax(current + width, cost + stepFrom(x, y, value, x, y + 1), current);
+            }
+            if (y > 0) {
+                relax(current - width, cost + stepFrom(x, y, value, x, y - 1), current);
+            }
+        }
+    }
+
+    private void relax(int cell, long cost, int parent) {
+        if (cost < distances[cell]) {
+            distances[cell] = cost;
+            next[cell] = parent;
+            frontier.push(cost, cell);
+        }
+    }
+
+    private void seed(int cell, int neighbor, long value, int neighborX, int neighborY) {
+        if (stamps[neighbor] != generation && distances[neighbor] < Map.Constants.UNREACHABLE_CELL) {
+            int y = cell / width;
+            relax(cell, distances[neighbor] + stepTo(cell - y * width, y, value, neighborX, neighborY), neighbor);
+        }
+    }
+
+    /**
+     * Returns cost of the step from the cell to its neighbor.
+     *
+     * @param x X of the cell.
+     * @param y Y of the cell.
+     * @param value Value of the cell.
+     * @param neighborX X of the neighbor.
+     * @param neighborY Y of the neighbor.
+     * @return Cost of the step.
+     */
+    private long stepTo(int x, int y, long value, int neighborX, int neighborY) {
+        if (defaultCost) {
+            return Math.abs(value - map.get(neighborX, neighborY)) + 1L;
+        }
+        return map.cost(new Cell(x, y), new Cell(neighborX, neighborY));
+    }
+
+    /**
+     * Returns cost of the step from the neighbor to the cell.
+     *
+     * @param x X of the cell.
+     * @param y Y of the cell.
+     * @param value Value of the cell.
+     * @param neighborX X of the neighbor.
+     * @param neighborY Y of the neighbor.
+     * @return Cost of the step.
+     */
+    private long stepFrom(int x, int y, long value, int neighborX, int neighborY) {
+        if (defaultCost) {
+            return Math.abs(value - map.get(neighborX, neighborY)) + 1L;
+        }
+        return map.cost(new Cell(neighborX, neighborY), new Cell(x, y));
+    }
+
+    private void resume(int cell) {
+        if (stamps[cell] != generation && distances[cell] < Map.Constants.UNREACHABLE_CELL) {
+            frontier.push(distances[cell], cell);
+        }
+    }
+
+    private int invalidate(int cell, int tail) {
+        if (stamps[cell] != generation) {
+            stamps[cell] = generation;
+            queue[tail++] = cell;
+        }
+        return tail;
+    }
+
+    private void cellChanged(int x, int y, long oldValue, long newValue) {
+        changed.set(y * width + x);
+    }
+}
@@ -0,0 +1,413 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.Graph.NegativeEdgeCostException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Primitive residual network of {@link CsrGraph} with maximum flow algorithms. Arc 2 * e is original edge e with its
+ * capacity, arc 2 * e + 1 is the reverse arc of edge e with zero capacity, so the pair of an arc is {@code arc ^ 1}
+ * and the flow through edge e is the residual capacity of arc 2 * e + 1. Arcs are grouped by tail. Not thread safe,
+ * one network per computation.
+ */
+final class FlowNetwork {
+
+    private static final int NONE = -1;
+
+    final CsrGraph graph;
+    final int verticesNumber;
+    final int[] arcOffsets;
+    final int[] arcs;
+    final int[] arcTails;
+    final int[] arcHeads;
+    final double[] residual;
+
+    /**
+     * Builds residual network. O(|V| + |E|).
+     *
+     * @param graph Graph snapshot, edge costs are capacities.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    FlowNetwork(CsrGraph graph) throws NegativeEdgeCostException {
+        this.graph = graph;
+        this.verticesNumber = graph.keys.length;
+        int[] offsets = graph.offsets;
+        int[] targets = graph.targets;
+        double[] costs = graph.copyCosts();
+        int edgesNumber = targets.length;
+        for (int e = 0; e < edgesNumber; e++) {
+            if (costs[e] < 0.0D) {
+                throw new NegativeEdgeCostException(String.format("%s->%s edge has negative cost.",
+                        graph.keys[graph.edgeSource(e)], graph.keys[targets[e]]));
+            }
+        }
+        this.arcOffsets = new int[verticesNumber + 1];
+        for (int v = 0; v < verticesNumber; v++) {
+            arcOffsets[v + 1] += offsets[v + 1] - offsets[v];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                arcOffsets[targets[e] + 1]++;
+            }
+        }
+        CsrGraph.prefixSum(arcOffsets);
+        int[] fill = Arrays.copyOf(arcOffsets, verticesNumber);
+        this.arcs = new int[2 * edgesNumber];
+        this.arcTails = new int[2 * edgesNumber];
+        this.arcHeads = new int[2 * edgesNumber];
+        this.residual = new double[2 * edgesNumber];
+        for (int v = 0; v < verticesNumber; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int to = targets[e];
+                arcs[fill[v]++] = 2 * e;
+                arcs[fill[to]++] = 2 * e + 1;
+                arcTails[2 * e] = v;
+                arcHeads[2 * e] = to;
+                arcTails[2 * e + 1] = to;
+                arcHeads[2 * e + 1] = v;
+                residual[2 * e] = costs[e];
+            }
+        }
+    }
+
+    /**
+     * Runs the given algorithm from the initial (zero) flow.
+     *
+     * @param algorithm Algorithm.
+     * @param source Source vertex index.
+     * @param sink Sink vertex index.
+     * @return Value of the maximum flow.
+     */
+    double run(FlowAlgorithm algorithm, int source, int sink) {
+        if (source == sink) {
+            return 0.0D;
+        }
+        switch (algorithm) {
+            case EDMONDS_KARP:
+                return edmondsKarp(source, sink);
+            case DINIC:
+                return dinic(source, sink);
+            case PUSH_RELABEL:
+                return pushRelabel(source, sink);
+            default:
+                throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+    }
+
+    /**
+     * Edmonds–Karp: augments along the shortest path until the sink is not reachable.
+     *
+     * @param source Source vertex index.
+     * @param sink Sink vertex index.
+     * @return Value of the maximum flow.
+     */
+    double edmondsKarp(int source, int sink) {
+        int[] cameBy = new int[verticesNumber];
+        int[] queue = new int[verticesNumber];
+        double totalFlow = 0.0D;
+        while (true) {
+            Arrays.fill(cameBy, NONE);
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = source;
+            cameBy[source] = Integer.MAX_VALUE;
+            while (head < tail && cameBy[sink] == NONE) {
+                int current = queue[head++];
+                for (int a = arcOffsets[current]; a < arcOffsets[current + 1]; a++) {
+                    int arc = arcs[a];
+                    int next = arcHeads[arc];
+                    if (residual[arc] > 0.0D && cameBy[next] == NONE) {
+                        cameBy[next] = arc;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            if (cameBy[sink] == NONE) {
+                return totalFlow;
+            }
+            double bottleneck = Double.POSITIVE_INFINITY;
+            for (int v = sink; v != source; v = arcTails[cameBy[v]]) {
+                bottleneck = Math.min(bottleneck, residual[cameBy[v]]);
+            }
+            for (int v = sink; v != source; v = arcTails[cameBy[v]]) {
+                int arc = cameBy[v];
+                residual[arc] -= bottleneck;
+                residual[arc ^ 1] += bottleneck;
+            }
+            totalFlow += bottleneck;
+        }
+    }
+
+    /**
+     * Dinic: every phase builds levels (BFS distances from the source in the residual network) and saturates the level
+     * graph with a blocking flow found by iterative depth-first search with current-arc pointers.
+     *
+     * @param source Source vertex index.
+     * @param sink Sink vertex index.
+     * @return Value of the maximum flow.
+     */
+    double dinic(int source, int sink) {
+        int[] levels = new int[verticesNumber];
+        int[] queue = new int[verticesNumber];
+        int[] current = new int[verticesNumber];
+        int[] pathArcs = new int[verticesNumber];
+        double totalFlow = 0.0D;
+        while (buildLevels(source, sink, levels, queue)) {
+            System.arraycopy(arcOffsets, 0, current, 0, verticesNumber);
+            int depth = 0;
+            int vertex = source;
+            while (true) {
+                if (vertex == sink) {
+                    double bottleneck = Double.POSITIVE_INFINITY;
+                    for (int i = 0; i < depth; i++) {
+                        bottleneck = Math.min(bottleneck, residual[pathArcs[i]]);
+                    }
+                    for (int i = 0; i < depth; i++) {
+                        residual[pathArcs[i]] -= bottleneck;
+                        residual[pathArcs[i] ^ 1] += bottleneck;
+                    }
+                    totalFlow += bottleneck;
+                    // Restart from the source: saturated arcs are skipped by current-arc pointers.
+                    depth = 0;
+                    vertex = source;
+                    continue;
+                }
+                int end = arcOffsets[vertex + 1];
+                int nextLevel = levels[vertex] + 1;
+                while (current[vertex] < end) {
+                    int arc = arcs[current[vertex]];
+                    if (residual[arc] > 0.0D && levels[arcHeads[arc]] == nextLevel) {
+                        break;
+                    }
+                    current[vertex]++;
+                }
+                if (current[vertex] < end) {
+                    int arc = arcs[current[vertex]];
+                    pathArcs[depth++] = arc;
+                    vertex = arcHeads[arc];
+                } else {
+                    // Dead end: remove the vertex from the level graph and retreat.
+                    levels[vertex] = NONE;
+                    if (depth == 0) {
+                        break;
+                    }
+                    vertex = arcTails[pathArcs[--depth]];
+                    current[vertex]++;
+                }
+            }
+        }
+        return totalFlow;
+    }
+
+    /**
+     * Computes BFS levels from the source in the residual network.
+     *
+     * @param source Source vertex index.
+     * @param sink Sink vertex index.
+     * @param levels Levels to fill, {@link #NONE} for unreachable vertices.
+     * @param queue Queue of at least V elements.
+     * @return Whether the sink is reachable.
+     */
+    private boolean buildLevels(int source, int sink, int[] levels, int[] queue) {
+        Arrays.fill(levels, NONE);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        levels[source] = 0;
+        while (head < tail) {
+            int vertex = queue[head++];
+            for (int a = arcOffsets[vertex]; a < arcOffsets[vertex + 1]; a++) {
+                int arc = arcs[a];
+                int next = arcHeads[arc];
+                if (residual[arc] > 0.0D && levels[next] == NONE) {
+                    levels[next] = levels[vertex] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return levels[sink] != NONE;
+    }
+
+    /**
+     * Highest-label push-relabel with gap heuristic. Initial labels are exact distances to the sink. Active vertices
+     * are kept in buckets by label; excess that can't reach the sink goes back to the source once labels exceed V.
+     *
+     * @param source Source vertex index.
+     * @param sink Sink vertex index.
+     * @return Value of the maximum flow.
+     */
+    double pushRelabel(int source, int sink) {
+        int n = verticesNumber;
+        int maxLabel = 2 * n;
+        int[] labels = new int[n];
+        int[] labelCounts = new int[maxLabel + 1];
+        double[] excess = new double[n];
+        int[] current = new int[n];
+        int[] bucketHeads = new int[maxLabel + 1];
+        int[] bucketNext = new int[n];
+        Arrays.fill(bucketHeads, NONE);
+        // Exact labels: reverse BFS from the sink over residual arcs, vertices that can't reach the sink get V.
+        Arrays.fill(labels, n);
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        labels[sink] = 0;
+        queue[tail++] = sink;
+        while (head < tail) {
+            int vertex = queue[head++];
+            for (int a = arcOffsets[vertex]; a < arcOffsets[vertex + 1]; a++) {
+                // Arc vertex -> next has pair next -> vertex.
+                int pair = arcs[a] ^ 1;
+                int next = arcTails[pair];
+                if (residual[pair] > 0.0D && labels[next] == n && next != source) {
+                    labels[next] = labels[vertex] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        labels[source] = n;
+        for (int v = 0; v < n; v++) {
+            labelCounts[labels[v]]++;
+            current[v] = arcOffsets[v];
+        }
+        int highest = 0;
+        for (int a = arcOffsets[source]; a < arcOffsets[source + 1]; a++) {
+            int arc = arcs[a];
+            double capacity = residual[arc];
+            if (capacity > 0.0D) {
+                int next = arcHeads[arc];
+                residual[arc] = 0.0D;
+                residual[arc ^ 1] += capacity;
+                if (excess[next] == 0.0D && next != sink && next != source) {
+                    bucketNext[next] = bucketHeads[labels[next]];
+                    bucketHeads[labels[next]] = next;
+                    highest = Math.max(highest, labels[next]);
+                }
+                excess[next] += capacity;
+            }
+        }
+        while (highest >= 0) {
+            int vertex = bucketHeads[highest];
+            if (vertex == NONE) {
+                highest--;
+                continue;
+            }
+            bucketHeads[highest] = bucketNext[vertex];
+            // Discharge the vertex.
+            while (excess[vertex] > 0.0D) {
+                if (current[vertex] == arcOffsets[vertex + 1]) {
+                    int oldLabel = labels[vertex];
+                    int newLabel = maxLabel;
+                    for (int a = arcOffsets[vertex]; a < arcOffsets[vertex + 1]; a++) {
+                        int arc = arcs[a];
+                        if (residual[arc] > 0.0D) {
+                            newLabel = Math.min(newLabel, labels[arcHeads[arc]] + 1);
+                        }
+                    }
+                    labelCounts[oldLabel]--;
+                    if (labelCounts[oldLabel] == 0 && oldLabel < n) {
+                        // Gap: vertices above the empty label can't reach the sink.
+                        for (int v = 0; v < n; v++) {
+                            if (labels[v] > oldLabel && labels[v] < n && v != source) {
+                                labelCounts[labels[v]]--;
+                                labels[v] = n + 1;
+                                labelCounts[n + 1]++;
+                            }
+                        }
+                        newLabel = Math.max(newLabel, n + 1);
+                    }
+                    labels[vertex] = newLabel;
+                    labelCounts[newLabel]++;
+                    current[vertex] = arcOffsets[vertex];
+                    if (newLabel >= maxLabel) {
+                        break;
+                    }
+                    continue;
+                }
+                int arc = arcs[current[vertex]];
+                int next = arcHeads[arc];
+                if (residual[arc] > 0.0D && labels[vertex] == labels[next] + 1) {
+                    double delta = Math.min(excess[vertex], residual[arc]);
+                    residual[arc] -= delta;
+                    residual[arc ^ 1] += delta;
+                    excess[vertex] -= delta;
+                    if (excess[next] == 0.0D && next != sink && next != source) {
+                        bucketNext[next] = bucketHeads[labels[next]];
+                        bucketHeads[labels[next]] = next;
+                        highest = Math.max(highest, labels[next]);
+                    }
+                    excess[next] += delta;
+                } else {
+                    current[vertex]++;
+                }
+            }
+        }
+        return excess[sink];
+    }
+
+    /**
+     * Returns vertices reachable from the source in the residual network: the source side of the minimum cut.
+     *
+     * @param source Source vertex index.
+     * @return Flags of the source side vertices.
+     */
+    boolean[] sourceSide(int source) {
+        boolean[] reached = new boolean[verticesNumber];
+        int[] queue = new int[verticesNumber];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        reached[source] = true;
+        while (head < tail) {
+            int vertex = queue[head++];
+            for (int a = arcOffsets[vertex]; a < arcOffsets[vertex + 1]; a++) {
+                int arc = arcs[a];
+                int next = arcHeads[arc];
+                if (residual[arc] > 0.0D && !reached[next]) {
+                    reached[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Builds flow graph: edges with positive flow, edge cost is the flow.
+     *
+     * @return Flow graph.
+     */
+    Graph toFlowGraph() {
+        Graph flow = new Graph();
+        for (int e = 0; e < graph.targets.length; e++) {
+            if (residual[2 * e + 1] > 0.0D) {
+                flow.addEdge(graph.keys[arcTails[2 * e]], graph.keys[arcHeads[2 * e]], residual[2 * e + 1]);
+            }
+        }
+        return flow;
+    }
+
+    /**
+     * Builds maximum flow result with minimum cut.
+     *
+     * @param source Source vertex index.
+     * @param value Value of the flow.
+     * @return Maximum flow result.
+     */
+    MaximumFlow toMaximumFlow(int source, double value) {
+        boolean[] sourceSide = sourceSide(source);
+        Set<Key> sourceKeys = new LinkedHashSet<>();
+        Set<Key> sinkKeys = new LinkedHashSet<>();
+        for (int v = 0; v < verticesNumber; v++) {
+            (sourceSide[v] ? sourceKeys : sinkKeys).add(graph.keys[v]);
+        }
+        Graph cut = new Graph();
+        for (int e = 0; e < graph.targets.length; e++) {
+            if (sourceSide[arcTails[2 * e]] && !sourceSide[arcHeads[2 * e]]) {
+                cut.addEdge(graph.keys[arcTails[2 * e]], graph.keys[arcHeads[2 * e]], graph.cost(e));
+            }
+        }
+        Optional<Graph> flow = value > 0.0D ? Optional.of(toFlowGraph()) : Optional.empty();
+        return new MaximumFlow(value, flow, sourceKeys, sinkKeys, cut);
+    }
+}
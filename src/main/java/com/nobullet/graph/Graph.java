@@ -1,5 +1,8 @@
 package com.nobullet.graph;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
@@ -9,25 +12,31 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.PriorityQueue;
-import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToDoubleFunction;
 
 /**
  * Graph. E - number of edges. V - number of vertices.
  */
 public class Graph implements Cloneable {
 
-    static final BiFunction<Vertex, Vertex, Double> DIJKSTRA_HEURISTIC = (Vertex next, Vertex goal) -> 0.0D;
-    static final BiFunction<Vertex, Vertex, Double> A_STAR_HEURISTIC
-            = (Vertex next, Vertex goal) -> next.distanceTo(goal).orElse(0.0D);
+    static final ToDoubleBiFunction<Vertex, Vertex> DIJKSTRA_HEURISTIC = (Vertex next, Vertex goal) -> 0.0D;
+    static final ToDoubleBiFunction<Vertex, Vertex> A_STAR_HEURISTIC
+            = (Vertex next, Vertex goal) -> next.distanceOrZero(goal);
     static final Vertex NOWHERE = new Vertex(Key.of("__NOWHERE__" + UUID.randomUUID().toString()));
+    static final int INITIAL_IDS_CAPACITY = 16;
 
     final Map<Key, Vertex> vertices;
     final Map<Key, Vertex> verticesUnmodifiable;
+    // Dense vertex ids for array based searches. Ids of removed vertices are reused.
+    Vertex[] verticesById;
+    int[] freeIds;
+    int freeIdsSize;
+    int nextId;
 
     /**
      * Constructs empty graph.
@@ -35,6 +44,20 @@ public class Graph implements Cloneable {
     public Graph() {
         this.vertices = new HashMap<>();
         this.verticesUnmodifiable = Collections.unmodifiableMap(this.vertices);
+        this.verticesById = new Vertex[INITIAL_IDS_CAPACITY];
+        this.freeIds = new int[INITIAL_IDS_CAPACITY];
+    }
+
+    /**
+     * Constructs empty graph sized for the given number of vertices (bulk construction).
+     *
+     * @param expectedVertices Expected number of vertices.
+     */
+    Graph(int expectedVertices) {
+        this.vertices = new HashMap<>(Vertex.capacityFor(expectedVertices));
+        this.verticesUnmodifiable = Collections.unmodifiableMap(this.vertices);
+        this.verticesById = new Vertex[Math.max(expectedVertices, INITIAL_IDS_CAPACITY)];
+        this.freeIds = new int[INITIAL_IDS_CAPACITY];
     }
 
     /**
@@ -45,7 +68,7 @@ public class Graph implements Cloneable {
     public Graph(Graph source) {
         this();
         for (Map.Entry<Key, Vertex> graphEntry : source.vertices.entrySet()) {
-            this.vertices.put(graphEntry.getKey(), new Vertex(graphEntry.getValue()));
+            this.vertices.put(graphEntry.getKey(), register(new Vertex(graphEntry.getValue())));
         }
         for (Vertex sourceVertex : source.vertices.values()) {
             for (Edge sourceEdge : sourceVertex.getOutgoingEdges()) {
@@ -89,7 +112,7 @@ public class Graph implements Cloneable {
         Vertex vertex = this.vertices.get(key);
         if (vertex == null) {
             vertex = new Vertex(key);
-            this.vertices.put(key, vertex);
+            this.vertices.put(key, register(vertex));
         }
         return this;
     }
@@ -105,7 +128,7 @@ public class Graph implements Cloneable {
         Vertex vertex = this.vertices.get(key);
         if (vertex == null) {
             vertex = new Vertex(key, data);
-            this.vertices.put(key, vertex);
+            this.vertices.put(key, register(vertex));
         } else {
             vertex.setData(data);
         }
@@ -124,7 +147,7 @@ public class Graph implements Cloneable {
         Vertex vertex = this.vertices.get(key);
         if (vertex == null) {
             vertex = new Vertex(key, position, data);
-            this.vertices.put(key, vertex);
+            this.vertices.put(key, register(vertex));
         } else {
             vertex.setPosition(position);
             vertex.setData(data);
@@ -334,55 +357,78 @@ public class Graph implements Cloneable {
     }
 
     /**
-     * Visits the vertices of the graph in topological order. Complexity: O(|E| + |V|) (2 * |V| + 3 * |V|).
+     * Visits the vertices of the graph in topological order. Complexity: O(|E| + |V|). Indegrees are counted in an
+     * array by dense vertex id, the queue is an array of vertices (every vertex is enqueued once).
      *
      * @param visitor Visitor to accept the vertices.
      * @throws com.nobullet.graph.Graph.CycleException If a cycle found.
      */
     public void topologicalSort(VertexVisitor visitor) throws CycleException {
-        Map<Vertex, MutableLong> indegrees = new HashMap<>();
-        // Calculate ingoing degrees for each vertex. Compexity: O(|V| + |E|).
-        // Result is a map of indegrees (null instead of counter means 0).
+        int[] indegrees = new int[nextId];
         for (Vertex vertex : vertices.values()) {
-            for (Edge edge : vertex.getOutgoingEdges()) {
-                Vertex to = edge.getTo();
-                MutableLong indegreeCounter = indegrees.get(to);
-                if (indegreeCounter == null) {
-                    indegrees.put(to, new MutableLong(1L));
-                } else {
-                    indegreeCounter.incrementAndGet();
-                }
+            for (Edge edge : vertex.getOutgoingEdgesArray()) {
+                indegrees[edge.getTo().id]++;
             }
         }
-
-        Queue<Vertex> queue = new LinkedList<>();
-        // Finds all vertices with indegree of 0 and puts them into the queue. Complexicity: O(|V|).
+        Vertex[] queue = new Vertex[vertices.size()];
+        int head = 0;
+        int tail = 0;
         for (Vertex vertex : vertices.values()) {
-            if (!indegrees.containsKey(vertex)) {
-                queue.add(vertex);
+            if (indegrees[vertex.id] == 0) {
+                queue[tail++] = vertex;
             }
         }
-        int counter = 0;
-        // For each adjacent vertex in the queue decrement the counter and put adjacent vertex in the queue
-        // if it's counter is 0. Complexity is O(|V| + |E|).
-        while (!queue.isEmpty()) {
-            Vertex vertex = queue.remove();
-            visitor.visit(vertex.getKey(), counter++);
-            for (Vertex adjacent : vertex.getAdjacentVertices()) {
-                MutableLong adjacentCounter = indegrees.get(adjacent);
-                if (adjacentCounter.decrementAndGet() == 0) {
-                    queue.add(adjacent);
-                    indegrees.remove(adjacent);
+        while (head < tail) {
+            Vertex vertex = queue[head];
+            visitor.visit(vertex.getKey(), head++);
+            for (Edge edge : vertex.getOutgoingEdgesArray()) {
+                if (--indegrees[edge.getTo().id] == 0) {
+                    queue[tail++] = edge.getTo();
                 }
             }
         }
-        indegrees.clear();
-        if (counter != vertices.size()) {
-            throw new CycleException("Graph has cycle: expected number of vertices is " + counter + " but graph has "
+        if (head != vertices.size()) {
+            throw new CycleException("Graph has cycle: expected number of vertices is " + head + " but graph has "
                     + vertices.size());
         }
     }
 
+    /**
+     * Topological level sets: level 0 holds the vertices without incoming edges, level i + 1 the vertices whose
+     * predecessors are all in levels up to i. Vertices of one level don't depend on each other, so each level can be
+     * processed in parallel. Runs on a snapshot of the current graph.
+     *
+     * @return Topological levels.
+     * @throws com.nobullet.graph.Graph.CycleException If a cycle found.
+     */
+    public TopologicalLevels topologicalLevels() throws CycleException {
+        return freeze().topologicalLevels();
+    }
+
+    /**
+     * Critical path schedule of the graph as activity-on-arc network: edge costs are durations. Runs on a snapshot of
+     * the current graph.
+     *
+     * @return Schedule with earliest and latest start times and critical (longest) path.
+     * @throws com.nobullet.graph.Graph.CycleException If a cycle found.
+     */
+    public DagSchedule schedule() throws CycleException {
+        return freeze().schedule();
+    }
+
+    /**
+     * Critical path schedule of the graph as activity-on-node network: vertices are tasks with the given durations,
+     * edge costs are lags between the finish of a task and the start of the dependent one. Runs on a snapshot of the
+     * current graph.
+     *
+     * @param durations Duration of the task by vertex key.
+     * @return Schedule with earliest and latest start times and critical (longest) path.
+     * @throws com.nobullet.graph.Graph.CycleException If a cycle found.
+     */
+    public DagSchedule schedule(ToDoubleFunction<Key> durations) throws CycleException {
+        return freeze().schedule(durations);
+    }
+
     /**
      * A-star shortest path algorithm.
      *
@@ -394,6 +440,39 @@ public class Graph implements Cloneable {
         return priorityFirstSearchInternal(sourceKey, targetKey, A_STAR_HEURISTIC);
     }
 
+    /**
+     * A-star shortest path algorithm with landmark (ALT) heuristic. Doesn't need vertex positions. Vertices added after
+     * the landmarks were computed get no estimate.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @param landmarks Landmarks computed for this graph.
+     * @return List of vertices that create the path.
+     */
+    public Path shortestPathAStar(Key sourceKey, Key targetKey, Landmarks landmarks) {
+        int goal = landmarks.indices.get(targetKey);
+        if (goal == CsrGraph.NO_VERTEX) {
+            return priorityFirstSearchInternal(sourceKey, targetKey, DIJKSTRA_HEURISTIC);
+        }
+        return priorityFirstSearchInternal(sourceKey, targetKey,
+                (target, next) -> landmarks.estimate(next.getKey(), goal));
+    }
+
+    /**
+     * Up to k shortest loopless paths in order of their costs (Yen's algorithm): alternative routes. Runs on a snapshot
+     * of the current graph, the graph itself is not modified. Edge costs must be non-negative.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @param k Maximal number of paths.
+     * @return Paths, the first one is the shortest path. Empty if the target is not reachable.
+     */
+    public List<Path> kShortestPaths(Key sourceKey, Key targetKey, int k) {
+        getVertex(sourceKey);
+        getVertex(targetKey);
+        return freeze().kShortestPaths(sourceKey, targetKey, k);
+    }
+
     /**
      * Dijkstra's shortest path algorithm.
      *
@@ -418,66 +497,171 @@ public class Graph implements Cloneable {
     }
 
     /**
-     * Template method for path algorithms.
+     * Template method for path algorithms. Works over dense vertex ids with the search space of the current thread
+     * (cost and parent arrays plus indexed heap with decrease-key), so the only allocation of a steady-state query is
+     * the resulting path.
      *
      * @param sourceKey Source vertex key.
      * @param targetKey Target vertex key.
      * @param heuristic Heuristic function.
      * @return List of vertices that create the path.
      */
-    private Path priorityFirstSearchInternal(Key sourceKey, Key targetKey, BiFunction<Vertex, Vertex, Double> heuristic) {
+    private Path priorityFirstSearchInternal(Key sourceKey, Key targetKey,
+            ToDoubleBiFunction<Vertex, Vertex> heuristic) {
         Vertex source = getVertex(sourceKey);
         Vertex target = getVertex(targetKey);
+        boolean noHeuristic = heuristic == DIJKSTRA_HEURISTIC;
+
+        SearchSpace space = SearchSpace.acquire(SearchSpace.FORWARD, nextId);
+        try {
+            IndexedDaryHeap frontier = space.getFrontier();
+            space.reach(source.id, 0.0D, source.id);
+            frontier.offer(source.id, 0.0D);
+            while (!frontier.isEmpty()) {
+                int currentId = frontier.poll();
+                // Early exit for shortest paths.
+                if (currentId == target.id) {
+                    break;
+                }
+                Vertex current = verticesById[currentId];
+                double currentCost = space.getCost(currentId);
+                // For all the neighbors.
+                for (Edge adjacentEdge : current.getOutgoingEdgesArray()) {
+                    Vertex next = adjacentEdge.getTo();
+                    // Cost to next = previously calculated cost of travel to current + cost of the edge to neighbor.
+                    double newCost = currentCost + adjacentEdge.getCost();
+                    // If neighbor has not been reached yet or 'new' cost to next is better, remember the cost and
+                    // the step and submit the neighbor to frontier (or decrease its priority if it is there).
+                    // A vertex that has already left the frontier is re-submitted, so it could be reconsidered again.
+                    if (newCost < space.getCost(next.id)) {
+                        space.reach(next.id, newCost, currentId);
+                        // Add result of heuristic function invocation so vertices closer to target considered
+                        // earlier.
+                        double newPriority = noHeuristic ? newCost : newCost + heuristic.applyAsDouble(target, next);
+                        frontier.offer(next.id, newPriority);
+                    }
+                }
+            }
+            return reconstructByParents(source, target, space);
+        } finally {
+            space.release();
+        }
+    }
 
-        VertexWithPriority frontierVertex;
-        PriorityQueue<VertexWithPriority> frontier = new PriorityQueue<>();
-        frontier.add(new VertexWithPriority(source, 0.0D));
-
-        Map<Vertex, Double> costSoFar = new HashMap<>();
-        costSoFar.put(source, 0.0D);
+    /**
+     * Bidirectional Dijkstra's shortest path algorithm: searches forward from source and backward from target (over
+     * reverse adjacency) at the same time and stops when the two frontiers prove that no shorter path can meet.
+     * Usually settles far fewer vertices than {@link #shortestPathDijkstra(Key, Key)}. Edge costs must be
+     * non-negative.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path shortestPathBidirectional(Key sourceKey, Key targetKey) {
+        return bidirectionalSearchInternal(sourceKey, targetKey, DIJKSTRA_HEURISTIC);
+    }
 
-        Map<Vertex, Vertex> cameFrom = new HashMap<>();
-        cameFrom.put(source, NOWHERE);
+    /**
+     * Bidirectional A-star shortest path algorithm. Forward search is guided by distance to target, backward search by
+     * distance to source (see {@link VertexPosition#distanceTo(VertexPosition)}). Edge costs must be non-negative and
+     * not less than the distance between positions of their vertices.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path shortestPathBidirectionalAStar(Key sourceKey, Key targetKey) {
+        return bidirectionalSearchInternal(sourceKey, targetKey, A_STAR_HEURISTIC);
+    }
 
-        while (!frontier.isEmpty()) {
-            frontierVertex = frontier.poll();
-            Vertex current = frontierVertex.getVertex();
-            frontierVertex.clear();
-            // Early exit for shortest paths.
-            if (current.equals(target)) {
-                break;
-            }
-            // For all the neighbors.
-            for (Edge adjacentEdge : current.getOutgoingEdges()) {
-                // Get neighbor.
-                Vertex next = adjacentEdge.getTo();
-                // Cost to next = previously calculated cost of travel to current + cost of the edge to neighbor.
-                double newCost = costSoFar.get(current) + adjacentEdge.getCost();
-                // If neighbor has not been visited yet or 'new' cost to next is better, re-submit the neighbor to
-                // frontier with new priority (newCost + heuristic), so the newly or revisited vertex could 
-                // be reconsidered again.
-                if (!costSoFar.containsKey(next) || newCost < costSoFar.get(next)) {
-                    // Remember the cost.
-                    costSoFar.put(next, newCost);
-                    // Remember the step.
-                    cameFrom.put(next, current);
-                    // Submit or re-submit to frontier with new cost.
-                    // Add result of heuristic function invocation so vertices closer to target considered
-                    // earlier.
-                    double newPriority = newCost + heuristic.apply(target, next);
-                    frontier.offer(new VertexWithPriority(next, newPriority));
+    /**
+     * Template method for bidirectional path algorithms. Each step expands the direction with the smaller frontier.
+     * Every time a vertex is reached by one search and is already reached by the other one, the path through the
+     * vertex becomes a candidate. Stopping rule: without heuristic the search stops when the sum of minimal priorities
+     * of both frontiers is not less than the best candidate; with a consistent heuristic it stops when the minimal
+     * priority of either frontier is not less than the best candidate (every shorter path would have a vertex in that
+     * frontier with smaller priority).
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @param heuristic Heuristic function, symmetric.
+     * @return List of vertices that create the path.
+     */
+    private Path bidirectionalSearchInternal(Key sourceKey, Key targetKey,
+            ToDoubleBiFunction<Vertex, Vertex> heuristic) {
+        Vertex source = getVertex(sourceKey);
+        Vertex target = getVertex(targetKey);
+        boolean noHeuristic = heuristic == DIJKSTRA_HEURISTIC;
+
+        SearchSpace forward = SearchSpace.acquire(SearchSpace.FORWARD, nextId);
+        SearchSpace backward = SearchSpace.acquire(SearchSpace.BACKWARD, nextId);
+        try {
+            IndexedDaryHeap forwardFrontier = forward.getFrontier();
+            IndexedDaryHeap backwardFrontier = backward.getFrontier();
+            forward.reach(source.id, 0.0D, source.id);
+            forwardFrontier.offer(source.id, 0.0D);
+            backward.reach(target.id, 0.0D, target.id);
+            backwardFrontier.offer(target.id, 0.0D);
+
+            double best = source == target ? 0.0D : Double.POSITIVE_INFINITY;
+            int meeting = source == target ? source.id : Vertex.NO_ID;
+            while (!forwardFrontier.isEmpty() && !backwardFrontier.isEmpty()) {
+                double forwardTop = forwardFrontier.peekPriority();
+                double backwardTop = backwardFrontier.peekPriority();
+                if (noHeuristic ? forwardTop + backwardTop >= best : forwardTop >= best || backwardTop >= best) {
+                    break;
+                }
+                boolean isForward = forwardFrontier.size() <= backwardFrontier.size();
+                SearchSpace space = isForward ? forward : backward;
+                SearchSpace other = isForward ? backward : forward;
+                Vertex goal = isForward ? target : source;
+                int currentId = space.getFrontier().poll();
+                Vertex current = verticesById[currentId];
+                double currentCost = space.getCost(currentId);
+                for (Edge edge : isForward ? current.getOutgoingEdgesArray() : current.getIncomingEdgesArray()) {
+                    Vertex next = isForward ? edge.getTo() : edge.getFrom();
+                    double newCost = currentCost + edge.getCost();
+                    if (newCost < space.getCost(next.id)) {
+                        space.reach(next.id, newCost, currentId);
+                        double newPriority = noHeuristic ? newCost : newCost + heuristic.applyAsDouble(goal, next);
+                        space.getFrontier().offer(next.id, newPriority);
+                    }
+                    // Both searches reached the vertex: path through it is a candidate.
+                    double candidate = space.getCost(next.id) + other.getCost(next.id);
+                    if (candidate < best) {
+                        best = candidate;
+                        meeting = next.id;
+                    }
                 }
             }
+            if (meeting == Vertex.NO_ID) {
+                return new Path(source.getKey(), target.getKey(), Collections.emptyList(), 0.0D);
+            }
+            // Source to meeting vertex by forward parents, meeting vertex to target by backward parents.
+            double cost = 0.0D;
+            List<Key> path = new ArrayList<>();
+            Vertex current = verticesById[meeting];
+            while (current != source) {
+                path.add(current.getKey());
+                Vertex previous = verticesById[forward.getParent(current.id)];
+                cost += previous.getEdge(current).getCost();
+                current = previous;
+            }
+            path.add(source.getKey());
+            Collections.reverse(path);
+            current = verticesById[meeting];
+            while (current != target) {
+                Vertex next = verticesById[backward.getParent(current.id)];
+                cost += current.getEdge(next).getCost();
+                path.add(next.getKey());
+                current = next;
+            }
+            return new Path(source.getKey(), target.getKey(), path, cost);
+        } finally {
+            backward.release();
+            forward.release();
         }
-        Path path = reconstructByCameFrom(source, target, cameFrom);
-        // Clean up.
-        while (!frontier.isEmpty()) {
-            frontier.poll().clear();
-        }
-        frontier.clear();
-        cameFrom.clear();
-        costSoFar.clear();
-        return path;
     }
 
     /**
@@ -541,19 +725,69 @@ public class Graph implements Cloneable {
         }
 
         Path path = reconstructByCameFrom(source, target, cameFrom);
-        // Clean up.
-        while (!frontier.isEmpty()) {
-            frontier.poll().clear();
-        }
+        // Clean up. Frontier holds graph's own vertices, so they must not be cleared.
         frontier.clear();
         cameFrom.clear();
         costSoFar.clear();
         return path;
     }
 
+    /**
+     * Parallel direction optimizing breadth-first search from the source over the whole graph. Runs on a snapshot of
+     * the current graph.
+     *
+     * @param sourceKey Source vertex key.
+     * @return Breadth-first tree with levels and parents of all the reachable vertices.
+     */
+    public BreadthFirstTree breadthFirstTree(Key sourceKey) {
+        getVertex(sourceKey);
+        return freeze().breadthFirstTree(sourceKey);
+    }
+
+    /**
+     * Parallel weakly connected components: vertices connected by edges of any direction. Runs on a snapshot of the
+     * current graph.
+     *
+     * @return Components.
+     */
+    public Components connectedComponents() {
+        return freeze().connectedComponents();
+    }
+
+    /**
+     * Parallel strongly connected components: vertices reachable from each other. Runs on a snapshot of the current
+     * graph.
+     *
+     * @return Components.
+     */
+    public Components stronglyConnectedComponents() {
+        return freeze().stronglyConnectedComponents();
+    }
+
+    /**
+     * Minimum spanning forest of the graph with edges treated as undirected. Runs on a snapshot of the current graph
+     * with {@link SpanningForestAlgorithm#KRUSKAL}.
+     *
+     * @return Minimum spanning forest.
+     */
+    public SpanningForest minimumSpanningForest() {
+        return freeze().minimumSpanningForest();
+    }
+
+    /**
+     * Minimum spanning forest of the graph with edges treated as undirected. Runs on a snapshot of the current graph
+     * with the given algorithm.
+     *
+     * @param algorithm Minimum spanning forest algorithm.
+     * @return Minimum spanning forest.
+     */
+    public SpanningForest minimumSpanningForest(SpanningForestAlgorithm algorithm) {
+        return freeze().minimumSpanningForest(algorithm);
+    }
+
     /**
      * Builds maximum flow Graph from given graph. Returns empty optional if there is no flow or sink is not reachable.
-     * Uses Ford-Fulkerson/Edmonds–Karp maximal flow algorithm.
+     * Uses {@link FlowAlgorithm#DINIC} on primitive residual network of the graph snapshot.
      *
      * @param sourceKey Source key to start from.
      * @param sinkKey Sink key to finish.
@@ -561,73 +795,90 @@ public class Graph implements Cloneable {
      * @throws NegativeEdgeCostException When graph has negative cost edge.
      */
     public Optional<Graph> maximumFlow(Key sourceKey, Key sinkKey) throws NegativeEdgeCostException {
+        return maximumFlow(sourceKey, sinkKey, FlowAlgorithm.DINIC);
+    }
+
+    /**
+     * Builds maximum flow Graph from given graph with the given algorithm. Returns empty optional if there is no flow
+     * or sink is not reachable.
+     *
+     * @param sourceKey Source key to start from.
+     * @param sinkKey Sink key to finish.
+     * @param algorithm Maximum flow algorithm.
+     * @return Optional of flow graph.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public Optional<Graph> maximumFlow(Key sourceKey, Key sinkKey, FlowAlgorithm algorithm)
+            throws NegativeEdgeCostException {
         if (!hasVertex(sourceKey) || !hasVertex(sinkKey)) {
             return Optional.empty();
         }
-        Graph flow = new Graph();
-        Graph residual = new Graph(this);
-        List<Edge> residualEdges = new LinkedList<>();
-        Path path;
-        do {
-            path = residual.breadthFirstSearch(sourceKey, sinkKey);
-            Vertex previous = null;
-            Vertex current = null;
-            double minEdgeLength = 0.0D;
-            // Find edge with minimal cost in path and collect edges in list.
-            for (Key currentKey : path.getPath()) {
-                current = residual.getVertex(currentKey);
-                if (previous != null) {
-                    Edge edgeInPath = previous.getEdge(current);
-                    if (edgeInPath.getCost() < 0.0D) {
-                        throw new NegativeEdgeCostException(String.format("%s->%s edge has negative cost.",
-                                previous.getKey(), currentKey));
-                    }
-                    residualEdges.add(edgeInPath);
-                    if (minEdgeLength == 0.0D || edgeInPath.getCost() < minEdgeLength) {
-                        minEdgeLength = edgeInPath.getCost();
-                    }
-                }
-                previous = current;
-            }
-            for (Edge residualEdge : residualEdges) {
-                Vertex residualFrom = residualEdge.getFrom();
-                Vertex residualTo = residualEdge.getTo();
-                double newCost = residualEdge.getCost() - minEdgeLength;
-                if (newCost > 0.0D) {
-                    // Subtract flow.
-                    residualEdge.setCost(newCost);
-                } else {
-                    // Remove edge.
-                    residualFrom.removeEdgeTo(residualTo);
-                }
-                // Get reverse edge.
-                Edge reverseEdge = residualTo.getEdge(residualFrom);
-                if (reverseEdge == null) {
-                    // Create new if it doesn't exist.
-                    residual.addEdge(residualTo.getKey(), residualFrom.getKey(), minEdgeLength);
-                } else {
-                    // Or update cost.
-                    reverseEdge.setCost(reverseEdge.getCost() + minEdgeLength);
-                }
-                // Update flow graph.
-                if (!flow.hasEdge(residualFrom.getKey(), residualTo.getKey())) {
-                    // Add flow edge.
-                    flow.addEdge(residualFrom.getKey(), residualTo.getKey(), minEdgeLength);
-                } else {
-                    // Or update cost.
-                    Edge flowEdge = flow.getEdge(residualFrom.getKey(), residualTo.getKey());
-                    flowEdge.setCost(flowEdge.getCost() + minEdgeLength);
-                }
-            }
-            residualEdges.clear();
-        } while (!path.isEmpty());
-        if (!flow.hasVertex(sinkKey)) {
-            flow.clear();
-            residual.clear();
-            return Optional.empty();
-        }
-        residual.clear();
-        return Optional.of(flow);
+        return freeze().maximumFlow(sourceKey, sinkKey, algorithm);
+    }
+
+    /**
+     * Computes maximum flow and minimum cut with the given algorithm.
+     *
+     * @param sourceKey Source key to start from.
+     * @param sinkKey Sink key to finish.
+     * @param algorithm Maximum flow algorithm.
+     * @return Maximum flow with minimum cut.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public MaximumFlow maximumFlowWithCut(Key sourceKey, Key sinkKey, FlowAlgorithm algorithm)
+            throws NegativeEdgeCostException {
+        getVertex(sourceKey);
+        getVertex(sinkKey);
+        return freeze().maximumFlowWithCut(sourceKey, sinkKey, algorithm);
+    }
+
+    /**
+     * Dijkstra's shortest paths from the source to every vertex. Runs on a snapshot of the current graph, later changes
+     * are not reflected in the tree.
+     *
+     * @param sourceKey Source vertex key.
+     * @return Shortest path tree.
+     */
+    public ShortestPathTree shortestPathTree(Key sourceKey) {
+        getVertex(sourceKey);
+        return freeze().shortestPathTree(sourceKey);
+    }
+
+    /**
+     * Shortest paths from the source to every vertex that are repaired (not recomputed) after batches of edge cost
+     * changes. Runs on a snapshot of the current graph: cost changes must be passed to
+     * {@link DynamicShortestPathTree#updateEdgeCosts}, topology changes require a new tree.
+     *
+     * @param sourceKey Source vertex key.
+     * @return Dynamic shortest path tree.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public DynamicShortestPathTree dynamicShortestPathTree(Key sourceKey) throws NegativeEdgeCostException {
+        getVertex(sourceKey);
+        return freeze().dynamicShortestPathTree(sourceKey);
+    }
+
+    /**
+     * Costs of the shortest paths for every pair of source and target. Freezes the graph once and runs one Dijkstra
+     * search per source in the common fork-join pool, see {@link CsrGraph#distanceMatrix(Collection, Collection)}.
+     *
+     * @param sourceKeys Source vertex keys.
+     * @param targetKeys Target vertex keys.
+     * @return Matrix of costs, row per source, column per target (in iteration order of collections). Positive
+     * infinity for unreachable targets.
+     */
+    public double[][] distanceMatrix(Collection<Key> sourceKeys, Collection<Key> targetKeys) {
+        return freeze().distanceMatrix(sourceKeys, targetKeys);
+    }
+
+    /**
+     * Compiles current graph into immutable compressed sparse row snapshot with the same search API. Later changes of
+     * the current graph are not reflected in the snapshot. Complexity: O(|V| + |E|).
+     *
+     * @return Immutable snapshot of the current graph.
+     */
+    public CsrGraph freeze() {
+        return CsrGraph.of(this);
     }
 
     /**
@@ -636,6 +887,9 @@ public class Graph implements Cloneable {
     public void clear() {
         vertices.values().stream().forEach(vertex -> vertex.clear());
         vertices.clear();
+        Arrays.fill(verticesById, null);
+        freeIdsSize = 0;
+        nextId = 0;
     }
 
     @Override
@@ -727,6 +981,67 @@ public class Graph implements Cloneable {
         return new Path(source.getKey(), target.getKey(), path, cost);
     }
 
+    /**
+     * Reconstructs the path by parents remembered in search space.
+     *
+     * @param source Source.
+     * @param target Target vertex.
+     * @param space Search space.
+     * @return Path to target.
+     */
+    private Path reconstructByParents(Vertex source, Vertex target, SearchSpace space) {
+        if (!space.isReached(target.id)) {
+            return new Path(source.getKey(), target.getKey(), Collections.emptyList(), 0.0D);
+        }
+        double cost = 0.0D;
+        List<Key> path = new ArrayList<>();
+        Vertex current = target;
+        while (current != source) {
+            path.add(current.getKey());
+            Vertex previous = verticesById[space.getParent(current.id)];
+            cost += previous.getEdge(current).getCost();
+            current = previous;
+        }
+        path.add(source.getKey());
+        Collections.reverse(path);
+        return new Path(source.getKey(), target.getKey(), path, cost);
+    }
+
+    /**
+     * Assigns dense id to the vertex that is being added to graph.
+     *
+     * @param vertex Vertex.
+     * @return Given vertex.
+     */
+    Vertex register(Vertex vertex) {
+        int id;
+        if (freeIdsSize > 0) {
+            id = freeIds[--freeIdsSize];
+        } else {
+            id = nextId++;
+            if (id == verticesById.length) {
+                verticesById = Arrays.copyOf(verticesById, id + (id >> 1));
+            }
+        }
+        verticesById[id] = vertex;
+        vertex.id = id;
+        return vertex;
+    }
+
+    /**
+     * Frees id of the vertex that is being removed from graph.
+     *
+     * @param vertex Vertex.
+     */
+    private void unregister(Vertex vertex) {
+        verticesById[vertex.id] = null;
+        if (freeIdsSize == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIdsSize + (freeIdsSize >> 1));
+        }
+        freeIds[freeIdsSize++] = vertex.id;
+        vertex.id = Vertex.NO_ID;
+    }
+
     /**
      * Returns vertex by key. Throws {@link NullPointerException} if there is no vertex for key.
      *
@@ -778,7 +1093,8 @@ public class Graph implements Cloneable {
     }
 
     /**
-     * Removes vertex from graph removing all the outgoing and incoming edges.
+     * Removes vertex from graph removing all the outgoing and incoming edges. Uses reverse adjacency, so complexity is
+     * O(indegree + outdegree).
      *
      * @param v Vertex to remove.
      * @return Current graph.
@@ -787,13 +1103,9 @@ public class Graph implements Cloneable {
         if (v == null) {
             return this;
         }
-        for (Vertex other : vertices.values()) {
-            if (other.hasEdge(v)) {
-                other.removeEdgeTo(v);
-            }
-        }
         v.clear();
         this.vertices.remove(v.getKey());
+        unregister(v);
         return this;
     }
 
@@ -883,58 +1195,6 @@ public class Graph implements Cloneable {
         }
     }
 
-    /**
-     * Vertex with external priority. For shortest path algorithms like Dijkstra or AStar.
-     */
-    private static class VertexWithPriority implements Comparable<VertexWithPriority> {
-
-        Vertex vertex;
-        double priority;
-
-        /**
-         * Constructs prioritized vertex with given arguments.
-         *
-         * @param vertex Vertex.
-         * @param priority Priority.
-         */
-        public VertexWithPriority(Vertex vertex, double priority) {
-            this.vertex = vertex;
-            this.priority = priority;
-        }
-
-        /**
-         * Vertex.
-         *
-         * @return Vertex.
-         */
-        public Vertex getVertex() {
-            return vertex;
-        }
-
-        /**
-         * Priority.
-         *
-         * @return Priority.
-         */
-        public double getPriority() {
-            return priority;
-        }
-
-        public void clear() {
-            this.vertex = null;
-        }
-
-        @Override
-        public int compareTo(VertexWithPriority o) {
-            return Double.compare(priority, o.priority);
-        }
-
-        @Override
-        public String toString() {
-            return "VP{vertex=" + vertex + ", priority=" + priority + '}';
-        }
-    }
-
     /**
      * Mutable long for internals (topological quickSort).
      */
@@ -0,0 +1,500 @@
+package com.nobullet.graph;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary file format of a graph that is opened with {@link FileChannel#map} as read-only {@link MappedGraph}.
+ * The file is a header followed by 8-byte aligned little-endian sections:
+ * <ul>
+ * <li>CSR topology: offsets (V + 1 ints), targets (E ints, ascending per source), costs (E doubles);</li>
+ * <li>keys: offsets (V + 1 ints) into the key bytes encoded by key codec;</li>
+ * <li>key table: open addressing hash table of vertex index + 1 by hash of key bytes, so keys are looked up without
+ * building anything on open;</li>
+ * <li>optional positions, vertex data and edge data: offsets into the bytes encoded by codecs, every present entry is
+ * prefixed with one byte, an absent entry is empty.</li>
+ * </ul>
+ * The whole file is one mapping, so it is limited to 2 GiB.
+ */
+public final class GraphFile {
+
+    static final long MAGIC = 0x314850415247424EL; // "NBGRAPH1" in little-endian.
+    static final int VERSION = 1;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final int FLAG_POSITIONS = 1;
+    static final int FLAG_VERTEX_DATA = 2;
+    static final int FLAG_EDGE_DATA = 4;
+    static final int PRESENT = 1;
+    // Header: magic, version, flags, V, E, table size, section positions.
+    static final int VERSION_POSITION = 8;
+    static final int FLAGS_POSITION = 12;
+    static final int VERTICES_POSITION = 16;
+    static final int EDGES_POSITION = 20;
+    static final int TABLE_SIZE_POSITION = 24;
+    static final int SECTIONS_POSITION = 32;
+    static final int OFFSETS = 0;
+    static final int TARGETS = 1;
+    static final int COSTS = 2;
+    static final int KEY_OFFSETS = 3;
+    static final int KEYS = 4;
+    static final int TABLE = 5;
+    static final int POSITION_OFFSETS = 6;
+    static final int POSITIONS = 7;
+    static final int VERTEX_DATA_OFFSETS = 8;
+    static final int VERTEX_DATA = 9;
+    static final int EDGE_DATA_OFFSETS = 10;
+    static final int EDGE_DATA = 11;
+    static final int SECTIONS = 12;
+    static final int HEADER_BYTES = SECTIONS_POSITION + SECTIONS * 4;
+
+    /**
+     * Codec of {@link Key#of} keys: integral, floating point and string keys.
+     */
+    public static final Codec<Key> KEY_CODEC = new KeyCodec();
+    /**
+     * Codec of {@link VertexPosition#new2D} and {@link VertexPosition#newEarthGeographic} positions.
+     */
+    public static final Codec<VertexPosition> POSITION_CODEC = new PositionCodec();
+    /**
+     * Codec of {@link java.io.Serializable} data with Java serialization. Decodes only numbers, strings, keys of this
+     * package and arrays of them or of primitives, see {@link #serializableCodec(Class...)} for other classes.
+     */
+    public static final Codec<Object> SERIALIZABLE_CODEC = new SerializableCodec();
+
+    private GraphFile() {
+    }
+
+    /**
+     * Returns codec of {@link java.io.Serializable} data with Java serialization that decodes the given classes as
+     * well as the ones of {@link #SERIALIZABLE_CODEC}. Any other class in the data fails decoding before it's
+     * instantiated.
+     *
+     * @param allowed Data classes, including the classes of their fields.
+     * @return Codec.
+     */
+    public static Codec<Object> serializableCodec(Class<?>... allowed) {
+        return new SerializableCodec(allowed.clone());
+    }
+
+    /**
+     * Writes graph with default key and position codecs, without data.
+     *
+     * @param graph Graph.
+     * @param file File to write.
+     * @throws IOException If writing fails.
+     */
+    public static void write(Graph graph, java.nio.file.Path file) throws IOException {
+        write(graph, file, KEY_CODEC, POSITION_CODEC, null);
+    }
+
+    /**
+     * Writes graph with vertex and edge data.
+     *
+     * @param graph Graph.
+     * @param file File to write.
+     * @param keyCodec Key codec.
+     * @param positionCodec Position codec, null to skip positions.
+     * @param dataCodec Vertex and edge data codec, null to skip data.
+     * @throws IOException If writing fails.
+     */
+    public static void write(Graph graph, java.nio.file.Path file, Codec<Key> keyCodec,
+            Codec<VertexPosition> positionCodec, Codec<Object> dataCodec) throws IOException {
+        CsrGraph csr = graph.freeze();
+        byte[][] vertexData = null;
+        byte[][] edgeData = null;
+        if (dataCodec != null) {
+            vertexData = new byte[csr.keys.length][];
+            edgeData = new byte[csr.targets.length][];
+            for (int v = 0; v < csr.keys.length; v++) {
+                vertexData[v] = encodeOptional(graph.getVertexData(csr.keys[v]).orElse(null), dataCodec);
+                for (int e = csr.offsets[v]; e < csr.offsets[v + 1]; e++) {
+                    edgeData[e] = encodeOptional(graph.getEdgeData(csr.keys[v], csr.keys[csr.targets[e]])
+                            .orElse(null), dataCodec);
+                }
+            }
+        }
+        write(csr, file, keyCodec, positionCodec, vertexData, edgeData);
+    }
+
+    /**
+     * Writes graph snapshot (keys, positions and costs).
+     *
+     * @param graph Graph snapshot.
+     * @param file File to write.
+     * @param keyCodec Key codec.
+     * @param positionCodec Position codec, null to skip positions.
+     * @throws IOException If writing fails.
+     */
+    public static void write(CsrGraph graph, java.nio.file.Path file, Codec<Key> keyCodec,
+            Codec<VertexPosition> positionCodec) throws IOException {
+        write(graph, file, keyCodec, positionCodec, null, null);
+    }
+
+    /**
+     * Opens graph file written with default codecs.
+     *
+     * @param file File to open.
+     * @return Read-only graph backed by the mapped file.
+     * @throws IOException If file can't be mapped or has wrong format.
+     */
+    public static MappedGraph open(java.nio.file.Path file) throws IOException {
+        return open(file, KEY_CODEC, POSITION_CODEC, null);
+    }
+
+    /**
+     * Opens graph file. Doesn't read the file: sections are mapped and accessed on demand.
+     *
+     * @param file File to open.
+     * @param keyCodec Key codec used for writing.
+     * @param positionCodec Position codec used for writing.
+     * @param dataCodec Data codec used for writing, null if data is not needed.
+     * @return Read-only graph backed by the mapped file.
+     * @throws IOException If file can't be mapped or has wrong format.
+     */
+    public static MappedGraph open(java.nio.file.Path file, Codec<Key> keyCodec, Codec<VertexPosition> positionCodec,
+            Codec<Object> dataCodec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a graph file: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ORDER);
+            if (buffer.getLong(0) != MAGIC || buffer.getInt(VERSION_POSITION) != VERSION) {
+                throw new IOException("Not a graph file or unsupported version: " + file);
+            }
+            return new MappedGraph(buffer, keyCodec, positionCodec, dataCodec);
+        }
+    }
+
+    private static void write(CsrGraph graph, java.nio.file.Path file, Codec<Key> keyCodec,
+            Codec<VertexPosition> positionCodec, byte[][] vertexData, byte[][] edgeData) throws IOException {
+        int verticesNumber = graph.keys.length;
+        int edgesNumber = graph.targets.length;
+        byte[][] keys = new byte[verticesNumber][];
+        for (int v = 0; v < verticesNumber; v++) {
+            keys[v] = keyCodec.encode(graph.keys[v]);
+        }
+        byte[][] positions = null;
+        if (positionCodec != null) {
+            positions = new byte[verticesNumber][];
+            for (int v = 0; v < verticesNumber; v++) {
+                positions[v] = encodeOptional(graph.positions[v], positionCodec);
+            }
+        }
+        int tableSize = tableSize(verticesNumber);
+        long[] sections = new long[SECTIONS];
+        long position = HEADER_BYTES;
+        position = place(sections, OFFSETS, position, 4L * (verticesNumber + 1));
+        position = place(sections, TARGETS, position, 4L * edgesNumber);
+        position = place(sections, COSTS, position, 8L * edgesNumber);
+        position = place(sections, KEY_OFFSETS, position, 4L * (verticesNumber + 1));
+        position = place(sections, KEYS, position, totalLength(keys));
+        position = place(sections, TABLE, position, 4L * tableSize);
+        if (positions != null) {
+            position = place(sections, POSITION_OFFSETS, position, 4L * (verticesNumber + 1));
+            position = place(sections, POSITIONS, position, totalLength(positions));
+        }
+        if (vertexData != null) {
+            position = place(sections, VERTEX_DATA_OFFSETS, position, 4L * (verticesNumber + 1));
+            position = place(sections, VERTEX_DATA, position, totalLength(vertexData));
+            position = place(sections, EDGE_DATA_OFFSETS, position, 4L * (edgesNumber + 1));
+            position = place(sections, EDGE_DATA, position, totalLength(edgeData));
+        }
+        if (position > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Graph is too big for one mapping: " + position + " bytes.");
+        }
+        try (RandomAccessFile output = new RandomAccessFile(file.toFile(), "rw")) {
+            output.setLength(0L);
+            output.setLength(position);
+            MappedByteBuffer buffer = output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, position);
+            buffer.order(ORDER);
+            buffer.putLong(0, MAGIC);
+            buffer.putInt(VERSION_POSITION, VERSION);
+            buffer.putInt(FLAGS_POSITION, (positions != null ? FLAG_POSITIONS : 0)
+                    | (vertexData != null ? FLAG_VERTEX_DATA | FLAG_EDGE_DATA : 0));
+            buffer.putInt(VERTICES_POSITION, verticesNumber);
+            buffer.putInt(EDGES_POSITION, edgesNumber);
+            buffer.putInt(TABLE_SIZE_POSITION, tableSize);
+            for (int section = 0; section < SECTIONS; section++) {
+                buffer.putInt(SECTIONS_POSITION + 4 * section, (int) sections[section]);
+            }
+            putInts(buffer, (int) sections[OFFSETS], graph.offsets);
+            putInts(buffer, (int) sections[TARGETS], graph.targets);
+            int costsPosition = (int) sections[COSTS];
+            for (int e = 0; e < edgesNumber; e++) {
+                buffer.putDouble(costsPosition + 8 * e, graph.cost(e));
+            }
+            putBlobs(buffer, (int) sections[KEY_OFFSETS], (int) sections[KEYS], keys);
+            int tablePosition = (int) sections[TABLE];
+            int mask = tableSize - 1;
+            for (int v = 0; v < verticesNumber; v++) {
+                int slot = hash(keys[v]) & mask;
+                while (buffer.getInt(tablePosition + 4 * slot) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                buffer.putInt(tablePosition + 4 * slot, v + 1);
+            }
+            if (positions != null) {
+                putBlobs(buffer, (int) sections[POSITION_OFFSETS], (int) sections[POSITIONS], positions);
+            }
+            if (vertexData != null) {
+                putBlobs(buffer, (int) sections[VERTEX_DATA_OFFSETS], (int) sections[VERTEX_DATA], vertexData);
+                putBlobs(buffer, (int) sections[EDGE_DATA_OFFSETS], (int) sections[EDGE_DATA], edgeData);
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * Hash of key bytes: FNV-1a with final avalanche, independent of {@link Object#hashCode()} of keys.
+     *
+     * @param bytes Key bytes.
+     * @return Hash.
+     */
+    static int hash(byte[] bytes) {
+        int hash = 0x811C9DC5;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    /**
+     * Size of the key table: power of two, at least twice the number of vertices.
+     *
+     * @param verticesNumber Number of vertices.
+     * @return Table size.
+     */
+    static int tableSize(int verticesNumber) {
+        int size = 2;
+        while (size < 2L * verticesNumber) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static <T> byte[] encodeOptional(T value, Codec<T> codec) {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] encoded = codec.encode(value);
+        byte[] result = new byte[encoded.length + 1];
+        result[0] = PRESENT;
+        System.arraycopy(encoded, 0, result, 1, encoded.length);
+        return result;
+    }
+
+    private static long place(long[] sections, int section, long position, long bytes) {
+        sections[section] = position;
+        return (position + bytes + 7) & ~7L;
+    }
+
+    private static long totalLength(byte[][] blobs) {
+        long length = 0;
+        for (byte[] blob : blobs) {
+            length += blob.length;
+        }
+        return length;
+    }
+
+    private static void putInts(ByteBuffer buffer, int position, int[] values) {
+        for (int i = 0; i < values.length; i++) {
+            buffer.putInt(position + 4 * i, values[i]);
+        }
+    }
+
+    private static void putBlobs(ByteBuffer buffer, int offsetsPosition, int blobsPosition, byte[][] blobs) {
+        int offset = 0;
+        ByteBuffer target = buffer.duplicate();
+        target.position(blobsPosition);
+        for (int i = 0; i < blobs.length; i++) {
+            buffer.putInt(offsetsPosition + 4 * i, offset);
+            target.put(blobs[i]);
+            offset += blobs[i].length;
+        }
+        buffer.putInt(offsetsPosition + 4 * blobs.length, offset);
+    }
+
+    /**
+     * Converts values to bytes and back.
+     *
+     * @param <T> Type of values.
+     */
+    public interface Codec<T> {
+
+        /**
+         * Encodes value.
+         *
+         * @param value Value, not null.
+         * @return Bytes.
+         */
+        byte[] encode(T value);
+
+        /**
+         * Decodes value.
+         *
+         * @param bytes Buffer with encoded value from position to limit.
+         * @return Value.
+         */
+        T decode(ByteBuffer bytes);
+    }
+
+    /**
+     * Key codec: type tag followed by the value.
+     */
+    private static final class KeyCodec implements Codec<Key> {
+
+        static final byte STRING = 0;
+        static final byte INTEGER = 1;
+        static final byte LONG = 2;
+        static final byte SHORT = 3;
+        static final byte BYTE = 4;
+        static final byte DOUBLE = 5;
+        static final byte FLOAT = 6;
+
+        @Override
+        public byte[] encode(Key key) {
+            if (key instanceof StringKey) {
+                byte[] string = ((StringKey) key).key.getBytes(StandardCharsets.UTF_8);
+                return ByteBuffer.allocate(1 + string.length).put(STRING).put(string).array();
+            }
+            if (key instanceof IntKey) {
+                return ByteBuffer.allocate(5).order(ORDER).put(INTEGER).putInt(((IntKey) key).key).array();
+            }
+            if (key instanceof LongKey) {
+                return ByteBuffer.allocate(9).order(ORDER).put(LONG).putLong(((LongKey) key).key).array();
+            }
+            if (!(key instanceof NumberKey)) {
+                throw new IllegalArgumentException("Unsupported key: " + key);
+            }
+            Number number = ((NumberKey) key).key;
+            if (number instanceof Short) {
+                return ByteBuffer.allocate(3).order(ORDER).put(SHORT).putShort(number.shortValue()).array();
+            } else if (number instanceof Byte) {
+                return new byte[]{BYTE, number.byteValue()};
+            } else if (number instanceof Double) {
+                return ByteBuffer.allocate(9).order(ORDER).put(DOUBLE).putDouble(number.doubleValue()).array();
+            } else if (number instanceof Float) {
+                return ByteBuffer.allocate(5).order(ORDER).put(FLOAT).putFloat(number.floatValue()).array();
+            }
+            throw new IllegalArgumentException("Unsupported number key: " + key);
+        }
+
+        @Override
+        public Key decode(ByteBuffer bytes) {
+            ByteBuffer input = bytes.slice().order(ORDER);
+            byte type = input.get();
+            switch (type) {
+                case STRING:
+                    byte[] string = new byte[input.remaining()];
+                    input.get(string);
+                    return Key.of(new String(string, StandardCharsets.UTF_8));
+                case INTEGER:
+                    return Key.of(input.getInt());
+                case LONG:
+                    return Key.of(input.getLong());
+                case SHORT:
+                    return Key.of(input.getShort());
+                case BYTE:
+                    return Key.of(input.get());
+                case DOUBLE:
+                    return Key.of(input.getDouble());
+                case FLOAT:
+                    return Key.of((Number) input.getFloat());
+                default:
+                    throw new IllegalArgumentException("Unknown key type: " + type);
+            }
+        }
+    }
+
+    /**
+     * Position codec: type tag followed by two doubles.
+     */
+    private static final class PositionCodec implements Codec<VertexPosition> {
+
+        static final byte TWO_DIMENSIONAL = 0;
+        static final byte EARTH_GEOGRAPHIC = 1;
+
+        @Override
+        public byte[] encode(VertexPosition position) {
+            ByteBuffer output = ByteBuffer.allocate(17).order(ORDER);
+            if (position instanceof TwoDimensionalPosition) {
+                TwoDimensionalPosition twoDimensional = (TwoDimensionalPosition) position;
+                output.put(TWO_DIMENSIONAL).putDouble(twoDimensional.x).putDouble(twoDimensional.y);
+            } else if (position instanceof EarthGeographicPosition) {
+                EarthGeographicPosition geographic = (EarthGeographicPosition) position;
+                output.put(EARTH_GEOGRAPHIC).putDouble(geographic.lon).putDouble(geographic.lat);
+            } else {
+                throw new IllegalArgumentException("Unsupported position: " + position);
+            }
+            return output.array();
+        }
+
+        @Override
+        public VertexPosition decode(ByteBuffer bytes) {
+            ByteBuffer input = bytes.slice().order(ORDER);
+            byte type = input.get();
+            double first = input.getDouble();
+            double second = input.getDouble();
+            switch (type) {
+                case TWO_DIMENSIONAL:
+                    return VertexPosition.new2D(first, second);
+                case EARTH_GEOGRAPHIC:
+                    return VertexPosition.newEarthGeographic(first, second);
+                default:
+                    throw new IllegalArgumentException("Unknown position type: " + type);
+            }
+        }
+    }
+
+    /**
+     * Java serialization codec.
+     */
+    private static final class SerializableCodec implements Codec<Object> {
+
+        private final Class<?>[] allowed;
+
+        SerializableCodec(Class<?>... allowed) {
+            this.allowed = allowed;
+        }
+
+        @Override
+        public byte[] encode(Object value) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+                output.writeObject(value);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public Object decode(ByteBuffer bytes) {
+            byte[] array = new byte[bytes.remaining()];
+            bytes.duplicate().get(array);
+            try (ObjectInputStream input = new RestrictedObjectInputStream(new ByteArrayInputStream(array), allowed)) {
+                return input.readObject();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            } catch (ClassNotFoundException ex) {
+                throw new IllegalArgumentException("Can't decode data.", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.Map.Cell;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reusable path search over the cells of a {@link Map} without per-cell objects. Cells are encoded as
+ * {@code y * width + x}, costs and parents are kept in flat {@code long[]} and {@code int[]} arrays stamped with the
+ * search generation (so they are never cleared), the frontier of weighted searches is a {@link RadixHeap} over the
+ * integral costs. Searches follow the rules of the map: breadth-first search explores the cells of value 0, weighted
+ * searches pay {@link Map#cost(Cell, Cell)} for every step, A-star uses Manhattan distance (consistent, as every step
+ * costs at least 1). The built-in metric is computed in place, an overridden one is called for every step. After warm
+ * up only the resulting path is allocated.
+ * <p>
+ * Reads the current values of the map, so the map may change between searches. Not thread safe: use one instance per
+ * thread.
+ */
+public final class GridSearch {
+
+    static final int NO_CELL = -1;
+
+    final Map map;
+    final int width;
+    final int height;
+    private final boolean defaultCost;
+    private final long[] costs;
+    private final int[] parents;
+    private final int[] stamps;
+    private final int[] queue;
+    private final RadixHeap frontier;
+    private int generation;
+
+    /**
+     * Constructs search for the given map.
+     *
+     * @param map Map.
+     */
+    public GridSearch(Map map) {
+        this.map = map;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.defaultCost = map.hasDefaultCost();
+        int cells = width * height;
+        this.costs = new long[cells];
+        this.parents = new int[cells];
+        this.stamps = new int[cells];
+        this.queue = new int[cells];
+        this.frontier = new RadixHeap();
+    }
+
+    /**
+     * Returns the map.
+     *
+     * @return Map.
+     */
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * Finds shortest path with breadth-first search over the cells of value 0. Same result as
+     * {@link Map#shortestPathBFS(Cell, Cell)}.
+     *
+     * @param source Source cell.
+     * @param target Target cell.
+     * @return Path from source cell to target cell.
+     */
+    public Map.Path shortestPathBFS(Cell source, Cell target) {
+        map.checkBounds(source);
+        map.checkBounds(target);
+        int sourceIndex = index(source);
+        int targetIndex = index(target);
+        if (map.get(target) != 0L || breadthFirst(sourceIndex, targetIndex, 0L) == NO_CELL) {
+            return Map.Path.emptyPath();
+        }
+        return toPath(sourceIndex, targetIndex);
+    }
+
+    /**
+     * Finds shortest path with Dijkstra's algorithm. Treats each cell as a price of getting into it.
+     *
+     * @param source Source cell.
+     * @param target Target cell.
+     * @return Path from source cell to target cell.
+     */
+    public Map.Path shortestPathDijkstra(Cell source, Cell target) {
+        return shortestPath(source, target, false);
+    }
+
+    /**
+     * Finds shortest path with A-star algorithm and Manhattan distance heuristic.
+     *
+     * @param source Source cell.
+     * @param target Target cell.
+     * @return Path from source cell to target cell.
+     */
+    public Map.Path shortestPathAStar(Cell source, Cell target) {
+        return shortestPath(source, target, true);
+    }
+
+    /**
+     * Cost of the shortest path found with A-star. Doesn't allocate.
+     *
+     * @param sourceX Source X.
+     * @param sourceY Source Y.
+     * @param targetX Target X.
+     * @param targetY Target Y.
+     * @return Cost of the path or {@link Map.Constants#UNREACHABLE_CELL} if there is no path.
+     */
+    public long shortestPathCost(int sourceX, int sourceY, int targetX, int targetY) {
+        map.checkBounds(sourceX, sourceY);
+        map.checkBounds(targetX, targetY);
+        int target = targetY * width + targetX;
+        if (search(sourceY * width + sourceX, target, true) == NO_CELL) {
+            return Map.Constants.UNREACHABLE_CELL;
+        }
+        return costs[target];
+    }
+
+    private Map.Path shortestPath(Cell source, Cell target, boolean withHeuristic) {
+        map.checkBounds(source);
+        map.checkBounds(target);
+        int sourceIndex = index(source);
+        int targetIndex = index(target);
+        if (search(sourceIndex, targetIndex, withHeuristic) == NO_CELL) {
+            return Map.Path.emptyPath();
+        }
+        return toPath(sourceIndex, targetIndex);
+    }
+
+    /**
+     * Breadth-first search over the cells with the given value.
+     *
+     * @param source Source cell index.
+     * @param target Target cell index or {@link #NO_CELL} to explore the whole area.
+     * @param exploreValue Value of the cells to explore.
+     * @return Target or {@link #NO_CELL} if the target is not reached.
+     */
+    int breadthFirst(int source, int target, long exploreValue) {
+        reset();
+        if (value(source) != exploreValue) {
+            return NO_CELL;
+        }
+        reach(source, 0L, source);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int current = queue[head++];
+            if (current == target) {
+                return target;
+            }
+            int y = current / width;
+            int x = current - y * width;
+            long nextCost = costs[current] + 1L;
+            if (x + 1 < width && map.get(x + 1, y) == exploreValue && !isReached(current + 1)) {
+                reach(current + 1, nextCost, current);
+                queue[tail++] = current + 1;
+            }
+            if (x > 0 && map.get(x - 1, y) == exploreValue && !isReached(current - 1)) {
+                reach(current - 1, nextCost, current);
+                queue[tail++] = current - 1;
+            }
+            if (y + 1 < height && map.get(x, y + 1) == exploreValue && !isReached(current + width)) {
+                reach(current + width, nextCost, current);
+                queue[tail++] = current + width;
+            }
+            if (y > 0 && map.get(x, y - 1) == exploreValue && !isReached(current - width)) {
+                reach(current - width, nextCost, current);
+                queue[tail++] = current - width;
+            }
+        }
+        return NO_CELL;
+    }
+
+    /**
+     * Dijkstra's or A-star search with radix heap. Stale heap entries (pushed before a cheaper path was found) are
+     * skipped when popped.
+     *
+     * @param source Source cell index.
+     * @param target Target cell index.
+     * @param withHeuristic Whether to use Manhattan distance heuristic.
+     * @return Target or {@link #NO_CELL} if the target is not reachable.
+     */
+    int search(int source, int target, boolean withHeuristic) {
+        reset();
+        int targetY = target / width;
+        int targetX = target - targetY * width;
+        reach(source, 0L, source);
+        frontier.push(withHeuristic ? manhattan(source, targetX, targetY) : 0L, source);
+        while (!frontier.isEmpty()) {
+            int current = frontier.pop();
+            int y = current / width;
+            int x = current - y * width;
+            long cost = costs[current];
+            long estimate = withHeuristic ? Math.abs(x - targetX) + Math.abs(y - targetY) : 0L;
+            if (frontier.lastPriority() != cost + estimate) {
+                continue;
+            }
+            if (current == target) {
+                return target;
+            }
+            long value = map.get(x, y);
+            if (x + 1 < width) {
+                relax(current + 1, cost + stepCost(x, y, value, x + 1, y),
+                        withHeuristic ? estimate + (x < targetX ? -1 : 1) : 0L, current);
+            }
+            if (x > 0) {
+                relax(current - 1, cost + stepCost(x, y, value, x - 1, y),
+                        withHeuristic ? estimate + (x > targetX ? -1 : 1) : 0L, current);
+            }
+            if (y + 1 < height) {
+                relax(current + width, cost + stepCost(x, y, value, x, y + 1),
+                        withHeuristic ? estimate + (y < targetY ? -1 : 1) : 0L, current);
+            }
+            if (y > 0) {
+                relax(current - width, cost + stepCost(x, y, value, x, y - 1),
+                        withHeuristic ? estimate + (y > targetY ? -1 : 1) : 0L, current);
+            }
+        }
+        return NO_CELL;
+    }
+
+    /**
+     * Returns cost of the step from the cell to its neighbor.
+     *
+     * @param x X.
+     * @param y Y.
+     * @param value Value of the cell.
+     * @param nextX X of the neighbor.
+     * @param nextY Y of the neighbor.
+     * @return Cost of the step.
+     */
+    private long stepCost(int x, int y, long value, int nextX, int nextY) {
+        if (defaultCost) {
+            return Math.abs(value - map.get(nextX, nextY)) + 1L;
+        }
+        return map.cost(new Cell(x, y), new Cell(nextX, nextY));
+    }
+
+    private void relax(int next, long newCost, long estimate, int current) {
+        if (!isReached(next) || newCost < costs[next]) {
+            reach(next, newCost, current);
+            frontier.push(newCost + estimate, next);
+        }
+    }
+
+    /**
+     * Builds path from the parents of the last search.
+     *
+     * @param source Source cell index.
+     * @param target Reached target cell index.
+     * @return Path.
+     */
+    Map.Path toPath(int source, int target) {
+        List<Cell> path = new ArrayList<>();
+        for (int current = target; current != source; current = parents[current]) {
+            path.add(cellOf(current));
+        }
+        path.add(cellOf(source));
+        Collections.reverse(path);
+        return new Map.Path(map, path);
+    }
+
+    /**
+     * Checks whether the cell was reached by the last search.
+     *
+     * @param cell Cell index.
+     * @return Whether the cell was reached.
+     */
+    boolean isReached(int cell) {
+        return stamps[cell] == generation;
+    }
+
+    /**
+     * Returns cost of the cell in the last search.
+     *
+     * @param cell Cell index.
+     * @return Cost or {@link Map.Constants#UNREACHABLE_CELL} if the cell was not reached.
+     */
+    long getCost(int cell) {
+        return stamps[cell] == generation ? costs[cell] : Map.Constants.UNREACHABLE_CELL;
+    }
+
+    /**
+     * Returns parent of the cell in the last search.
+     *
+     * @param cell Cell index.
+     * @return Parent cell index (source points to itself) or {@link #NO_CELL}.
+     */
+    int getParent(int cell) {
+        return stamps[cell] == generation ? parents[cell] : NO_CELL;
+    }
+
+    /**
+     * Frontier of weighted searches.
+     *
+     * @return Frontier.
+     */
+    RadixHeap getFrontier() {
+        return frontier;
+    }
+
+    int index(Cell cell) {
+        return cell.getY() * width + cell.getX();
+    }
+
+    Cell cellOf(int index) {
+        return new Cell(index % width, index / width);
+    }
+
+    private long value(int cell) {
+        return map.get(cell % width, cell / width);
+    }
+
+    private long manhattan(int cell, int targetX, int targetY) {
+        return Math.abs(cell % width - targetX) + Math.abs(cell / width - targetY);
+    }
+
+    /**
+     * Remembers the cost and the step for the cell.
+     *
+     * @param cell Cell index.
+     * @param cost Cost so far.
+     * @param parent Parent cell index (source points to itself).
+     */
+    void reach(int cell, long cost, int parent) {
+        stamps[cell] = generation;
+        costs[cell] = cost;
+        parents[cell] = parent;
+    }
+
+    /**
+     * Forgets results of the previous search in O(1) (O(cells) once per 2^31 searches).
+     */
+    void reset() {
+        frontier.clear();
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+}
@@ -0,0 +1,577 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.Map.Cell;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Hierarchical path search (HPA*) over the cells of value 0 of a {@link Map} with 4 neighbors and uniform step cost.
+ * The map is split into square clusters. Every maximal run of free cell pairs across a border between two clusters is
+ * an entrance with one transition in the middle (short runs) or two transitions at the ends (long runs). Transition
+ * cells of a cluster are nodes of the abstract graph, connected with the distances inside the cluster (breadth-first
+ * search bounded by the cluster) and with unit edges across the border.
+ * <p>
+ * A query connects source and target to the transitions of their clusters, runs A-star with Manhattan distance on the
+ * abstract graph and returns the transitions to pass. Refinement into cells is done on demand, one cluster at a time.
+ * The search is complete (if there is a path, it is found), paths are close to the shortest but not always the
+ * shortest ones as they pass through the chosen transitions.
+ * <p>
+ * The search listens to {@link Map#set(int, int, long)}: a change of an inner cell rebuilds the distances of its
+ * cluster, a change of a border cell rebuilds the clusters on both sides of the border. Rebuilds are done lazily
+ * before the next query. Call {@link #detach()} when the search is not needed. Not thread safe.
+ */
+public final class HierarchicalSearch {
+
+    /**
+     * Default cluster size.
+     */
+    public static final int DEFAULT_CLUSTER_SIZE = 32;
+    static final int MIN_CLUSTER_SIZE = 4;
+    private static final int LONG_ENTRANCE = 6;
+    private static final int NONE = -1;
+
+    final Map map;
+    final int width;
+    final int height;
+    final int clusterSize;
+    final int clustersX;
+    final int clustersY;
+    private final int stride;
+    private final int start;
+    private final int goal;
+    private final Cluster[] clusters;
+    private final BitSet dirty;
+    private final Scratch scratch;
+    private final RadixHeap frontier;
+    private final Map.CellListener listener;
+    private final long[] startCosts;
+    private final long[] goalCosts;
+    private int generation;
+
+    /**
+     * Builds clusters of the map in parallel and starts listening to its changes.
+     *
+     * @param map Map.
+     * @param clusterSize Cluster side, at least {@link #MIN_CLUSTER_SIZE}.
+     */
+    public HierarchicalSearch(Map map, int clusterSize) {
+        if (clusterSize < MIN_CLUSTER_SIZE) {
+            throw new IllegalArgumentException(
+                    String.format("Cluster size must be at least %d: %d.", MIN_CLUSTER_SIZE, clusterSize));
+        }
+        this.map = map;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.clusterSize = clusterSize;
+        this.clustersX = (width + clusterSize - 1) / clusterSize;
+        this.clustersY = (height + clusterSize - 1) / clusterSize;
+        // A cluster has at most clusterSize transitions per side.
+        this.stride = 4 * clusterSize;
+        if ((long) clustersX * clustersY * stride + 2L > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    String.format("Map is too large for cluster size %d.", clusterSize));
+        }
+        this.start = clustersX * clustersY * stride;
+        this.goal = start + 1;
+        this.clusters = new Cluster[clustersX * clustersY];
+        for (int cy = 0; cy < clustersY; cy++) {
+            for (int cx = 0; cx < clustersX; cx++) {
+                int x0 = cx * clusterSize;
+                int y0 = cy * clusterSize;
+                clusters[cy * clustersX + cx] = new Cluster(x0, y0,
+                        Math.min(clusterSize, width - x0), Math.min(clusterSize, height - y0));
+            }
+        }
+        IntStream.range(0, clusters.length).parallel().forEach(c -> build(clusters[c], new Scratch(clusterSize)));
+        this.dirty = new BitSet(clusters.length);
+        this.scratch = new Scratch(clusterSize);
+        this.frontier = new RadixHeap();
+        this.startCosts = new long[stride];
+        this.goalCosts = new long[stride];
+        this.listener = this::cellChanged;
+        map.addCellListener(listener);
+    }
+
+    /**
+     * Returns the map.
+     *
+     * @return Map.
+     */
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * Stops listening to the changes of the map. The search must not be used afterwards.
+     */
+    public void detach() {
+        map.removeCellListener(listener);
+    }
+
+    /**
+     * Finds path over the cells of value 0 and refines it into cells.
+     *
+     * @param source Source cell.
+     * @param target Target cell.
+     * @return Path from source cell to target cell.
+     */
+    public Map.Path shortestPath(Cell source, Cell target) {
+        List<Cell> waypoints = abstractPath(source, target);
+        if (waypoints.isEmpty()) {
+            return Map.Path.emptyPath();
+        }
+        return refine(waypoints);
+    }
+
+    /**
+     * Finds path over the abstract graph: source, the transitions to pass and target. Consecutive waypoints are either
+     * neighbors or belong to the same cluster.
+     *
+     * @param source Source cell.
+     * @param target Target cell.
+     * @return Waypoints or empty list if there is no path.
+     */
+    public List<Cell> abstractPath(Cell source, Cell target) {
+        map.checkBounds(source);
+        map.checkBounds(target);
+        refresh();
+        if (!isFree(source.getX(), source.getY()) || !isFree(target.getX(), target.getY())) {
+            return Collections.emptyList();
+        }
+        int sourceCell = source.getY() * width + source.getX();
+        int targetCell = target.getY() * width + target.getX();
+        if (search(sourceCell, targetCell) == NONE) {
+            return Collections.emptyList();
+        }
+        List<Cell> waypoints = new ArrayList<>();
+        waypoints.add(target);
+        for (int element = scratch.goalParent; element != start; ) {
+            Cluster cluster = clusters[element / stride];
+            int local = element % stride;
+            waypoints.add(cellOf(cluster.transitions[local]));
+            element = cluster.parents[local];
+        }
+        waypoints.add(source);
+        Collections.reverse(waypoints);
+        return waypoints;
+    }
+
+    /**
+     * Refines waypoints into cells: neighbors are joined directly, other consecutive waypoints with breadth-first
+     * search inside their cluster.
+     *
+     * @param waypoints Waypoints, see {@link #abstractPath(Cell, Cell)}.
+     * @return Path through the waypoints.
+     * @throws IllegalArgumentException If consecutive waypoints are not connected inside a cluster.
+     */
+    public Map.Path refine(List<Cell> waypoints) {
+        refresh();
+        List<Cell> path = new ArrayList<>();
+        Cell previous = waypoints.get(0);
+        path.add(previous);
+        for (Cell next : waypoints.subList(1, waypoints.size())) {
+            if (previous.equals(next)) {
+                continue;
+            }
+            if (previous.manhattanDistanceTo(next) == 1L && isFree(next.getX(), next.getY())) {
+                path.add(next);
+                previous = next;
+                continue;
+            }
+            Cluster cluster = clusterOf(previous.getX(), previous.getY());
+            if (cluster != clusterOf(next.getX(), next.getY()) || !isFree(previous.getX(), previous.getY())
+                    || bounded(cluster, previous.getY() * width + previous.getX(), scratch) == 1
+                    || scratch.distances[cluster.local(next.getY() * width + next.getX())] == NONE) {
+                throw new IllegalArgumentException(
+                        String.format("Waypoints %s and %s are not connected inside a cluster.", previous, next));
+            }
+            int from = path.size();
+            for (int local = cluster.local(next.getY() * width + next.getX()); scratch.distances[local] > 0;
+                    local = scratch.parents[local]) {
+                path.add(new Cell(cluster.x0 + local % cluster.width, cluster.y0 + local / cluster.width));
+            }
+            Collections.reverse(path.subList(from, path.size()));
+            previous = next;
+        }
+        return new Map.Path(map, path);
+    }
+
+    /**
+     * Returns number of transitions (abstract graph nodes). Rebuilds changed clusters.
+     *
+     * @return Number of transitions.
+     */
+    int getNumberOfTransitions() {
+        refresh();
+        int result = 0;
+        for (Cluster cluster : clusters) {
+            result += cluster.transitions.length;
+        }
+        return result;
+    }
+
+    /**
+     * A-star over the abstract graph. Source and target are connected to the transitions of their clusters.
+     *
+     * @param source Source cell index.
+     * @param target Target cell index.
+     * @return Goal element or {@link #NONE} if the target is not reachable.
+     */
+    private int search(int source, int target) {
+        if (++generation == Integer.MAX_VALUE) {
+            for (Cluster cluster : clusters) {
+                Arrays.fill(cluster.stamps, 0);
+            }
+            generation = 1;
+        }
+        frontier.clear();
+        int targetX = target % width;
+        int targetY = target / width;
+        int sourceCluster = clusterIndex(source % width, source / width);
+        int targetCluster = clusterIndex(targetX, targetY);
+        distancesFrom(clusters[targetCluster], target, goalCosts);
+        long direct = sourceCluster == targetCluster ? scratch.distances[clusters[targetCluster].local(source)] : NONE;
+        distancesFrom(clusters[sourceCluster], source, startCosts);
+        scratch.goalCost = Map.Constants.UNREACHABLE_CELL;
+        scratch.goalParent = NONE;
+        if (direct != NONE) {
+            relaxGoal(direct, start);
+        }
+        Cluster first = clusters[sourceCluster];
+        for (int i = 0; i < first.transitions.length; i++) {
+            if (startCosts[i] != NONE) {
+                relax(sourceCluster, i, startCosts[i], start, targetX, targetY);
+            }
+        }
+        while (!frontier.isEmpty()) {
+            int element = frontier.pop();
+            if (element == goal) {
+                if (frontier.lastPriority() == scratch.goalCost) {
+                    return goal;
+                }
+                continue;
+            }
+            int c = element / stride;
+            int i = element % stride;
+            Cluster cluster = clusters[c];
+            int cell = cluster.transitions[i];
+            long cost = cluster.costs[i];
+            if (frontier.lastPriority() != cost + distance(cell, targetX, targetY)) {
+                continue;
+            }
+            int k = cluster.transitions.length;
+            for (int j = 0; j < k; j++) {
+                long inside = cluster.distances[i * k + j];
+                if (j != i && inside != NONE) {
+                    relax(c, j, cost + inside, element, targetX, targetY);
+                }
+            }
+            if (c == targetCluster && goalCosts[i] != NONE) {
+                relaxGoal(cost + goalCosts[i], element);
+            }
+            for (int p = 2 * i; p < 2 * i + 2; p++) {
+                int across = cluster.partners[p];
+                if (across != NONE) {
+                    int neighbor = clusterIndex(across % width, across / width);
+                    relax(neighbor, clusters[neighbor].indexOf(across), cost + 1L, element, targetX, targetY);
+                }
+            }
+        }
+        return NONE;
+    }
+
+    private void relax(int c, int i, long cost, int parent, int targetX, int targetY) {
+        Cluster cluster = clusters[c];
+        if (cluster.stamps[i] != generation || cost < cluster.costs[i]) {
+            cluster.stamps[i] = generation;
+            cluster.costs[i] = cost;
+            cluster.parents[i] = parent;
+            frontier.push(cost + distance(cluster.transitions[i], targetX, targetY), c * stride + i);
+        }
+    }
+
+    private void relaxGoal(long cost, int parent) {
+        if (cost < scratch.goalCost) {
+            scratch.goalCost = cost;
+            scratch.goalParent = parent;
+            frontier.push(cost, goal);
+        }
+    }
+
+    /**
+     * Distances from the cell to the transitions of its cluster.
+     *
+     * @param cluster Cluster of the cell.
+     * @param cell Cell index.
+     * @param result Distances per transition or {@link #NONE}.
+     */
+    private void distancesFrom(Cluster cluster, int cell, long[] result) {
+        bounded(cluster, cell, scratch);
+        for (int i = 0; i < cluster.transitions.length; i++) {
+            result[i] = scratch.distances[cluster.local(cluster.transitions[i])];
+        }
+    }
+
+    /**
+     * Marks clusters affected by the cell change as dirty. Changes that keep the cell free (or blocked) are ignored.
+     */
+    private void cellChanged(int x, int y, long oldValue, long newValue) {
+        if ((oldValue == 0L) == (newValue == 0L)) {
+            return;
+        }
+        int cx = x / clusterSize;
+        int cy = y / clusterSize;
+        dirty.set(cy * clustersX + cx);
+        if (x % clusterSize == 0 && cx > 0) {
+            dirty.set(cy * clustersX + cx - 1);
+        }
+        if (x % clusterSize == clusterSize - 1 && cx + 1 < clustersX) {
+            dirty.set(cy * clustersX + cx + 1);
+        }
+        if (y % clusterSize == 0 && cy > 0) {
+            dirty.set((cy - 1) * clustersX + cx);
+        }
+        if (y % clusterSize == clusterSize - 1 && cy + 1 < clustersY) {
+            dirty.set((cy + 1) * clustersX + cx);
+        }
+    }
+
+    /**
+     * Rebuilds dirty clusters.
+     */
+    private void refresh() {
+        for (int c = dirty.nextSetBit(0); c >= 0; c = dirty.nextSetBit(c + 1)) {
+            build(clusters[c], scratch);
+        }
+        dirty.clear();
+    }
+
+    /**
+     * Finds transitions of the cluster on its 4 sides and distances between them inside the cluster. Neighbor clusters
+     * scan the same pairs of lines, so they agree on the transitions of the common border.
+     *
+     * @param cluster Cluster.
+     * @param scratch Scratch arrays of the thread.
+     */
+    private void build(Cluster cluster, Scratch scratch) {
+        int[] cells = new int[stride];
+        int[] partners = new int[2 * stride];
+        Arrays.fill(partners, NONE);
+        int k = 0;
+        int right = cluster.x0 + cluster.width - 1;
+        int bottom = cluster.y0 + cluster.height - 1;
+        if (cluster.y0 > 0) {
+            k = side(cluster.x0, cluster.y0, 1, 0, cluster.width, 0, -1, cells, partners, k);
+        }
+        if (bottom + 1 < height) {
+            k = side(cluster.x0, bottom, 1, 0, cluster.width, 0, 1, cells, partners, k);
+        }
+        if (cluster.x0 > 0) {
+            k = side(cluster.x0, cluster.y0, 0, 1, cluster.height, -1, 0, cells, partners, k);
+        }
+        if (right + 1 < width) {
+            k = side(right, cluster.y0, 0, 1, cluster.height, 1, 0, cells, partners, k);
+        }
+        long[] distances = new long[k * k];
+        for (int i = 0; i < k; i++) {
+            bounded(cluster, cells[i], scratch);
+            for (int j = 0; j < k; j++) {
+                distances[i * k + j] = scratch.distances[cluster.local(cells[j])];
+            }
+        }
+        cluster.transitions = Arrays.copyOf(cells, k);
+        cluster.partners = Arrays.copyOf(partners, 2 * k);
+        cluster.distances = distances;
+        cluster.costs = new long[k];
+        cluster.parents = new int[k];
+        cluster.stamps = new int[k];
+    }
+
+    /**
+     * Adds transitions of one side of the cluster.
+     *
+     * @param x X of the first cell of the side.
+     * @param y Y of the first cell of the side.
+     * @param stepX X step along the side.
+     * @param stepY Y step along the side.
+     * @param length Side length.
+     * @param acrossX X offset of the cell across the border.
+     * @param acrossY Y offset of the cell across the border.
+     * @param cells Transition cells.
+     * @param partners Two partners per transition.
+     * @param k Number of transitions so far.
+     * @return New number of transitions.
+     */
+    private int side(int x, int y, int stepX, int stepY, int length, int acrossX, int acrossY, int[] cells,
+            int[] partners, int k) {
+        int runStart = NONE;
+        for (int t = 0; t <= length; t++) {
+            int cx = x + stepX * t;
+            int cy = y + stepY * t;
+            boolean open = t < length && isFree(cx, cy) && isFree(cx + acrossX, cy + acrossY);
+            if (open && runStart == NONE) {
+                runStart = t;
+            } else if (!open && runStart != NONE) {
+                int runEnd = t - 1;
+                if (runEnd - runStart + 1 < LONG_ENTRANCE) {
+                    k = transition((runStart + runEnd) / 2, x, y, stepX, stepY, acrossX, acrossY, cells, partners, k);
+                } else {
+                    k = transition(runStart, x, y, stepX, stepY, acrossX, acrossY, cells, partners, k);
+                    k = transition(runEnd, x, y, stepX, stepY, acrossX, acrossY, cells, partners, k);
+                }
+                runStart = NONE;
+            }
+        }
+        return k;
+    }
+
+    private int transition(int t, int x, int y, int stepX, int stepY, int acrossX, int acrossY, int[] cells,
+            int[] partners, int k) {
+        int cx = x + stepX * t;
+        int cy = y + stepY * t;
+        int cell = cy * width + cx;
+        int partner = (cy + acrossY) * width + cx + acrossX;
+        // Corner cells may be transitions of two sides.
+        for (int i = 0; i < k; i++) {
+            if (cells[i] == cell) {
+                partners[2 * i + 1] = partner;
+                return k;
+            }
+        }
+        cells[k] = cell;
+        partners[2 * k] = partner;
+        return k + 1;
+    }
+
+    /**
+     * Breadth-first search from the cell bounded by the cluster. Fills distances and parents of the scratch with local
+     * indices.
+     *
+     * @param cluster Cluster.
+     * @param cell Source cell index inside the cluster.
+     * @param scratch Scratch arrays.
+     * @return Number of reached cells.
+     */
+    private int bounded(Cluster cluster, int cell, Scratch scratch) {
+        int[] distances = scratch.distances;
+        int[] queue = scratch.queue;
+        int w = cluster.width;
+        int h = cluster.height;
+        Arrays.fill(distances, 0, w * h, NONE);
+        int source = cluster.local(cell);
+        distances[source] = 0;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int current = queue[head++];
+            int ly = current / w;
+            int lx = current - ly * w;
+            int x = cluster.x0 + lx;
+            int y = cluster.y0 + ly;
+            int next = distances[current] + 1;
+            if (lx + 1 < w && map.get(x + 1, y) == 0L && distances[current + 1] == NONE) {
+                visit(scratch, current + 1, next, current);
+                queue[tail++] = current + 1;
+            }
+            if (lx > 0 && map.get(x - 1, y) == 0L && distances[current - 1] == NONE) {
+                visit(scratch, current - 1, next, current);
+                queue[tail++] = current - 1;
+            }
+            if (ly + 1 < h && map.get(x, y + 1) == 0L && distances[current + w] == NONE) {
+                visit(scratch, current + w, next, current);
+                queue[tail++] = current + w;
+            }
+            if (ly > 0 && map.get(x, y - 1) == 0L && distances[current - w] == NONE) {
+                visit(scratch, current - w, next, current);
+                queue[tail++] = current - w;
+            }
+        }
+        return tail;
+    }
+
+    private static void visit(Scratch scratch, int local, int distance, int parent) {
+        scratch.distances[local] = distance;
+        scratch.parents[local] = parent;
+    }
+
+    private Cluster clusterOf(int x, int y) {
+        return clusters[clusterIndex(x, y)];
+    }
+
+    private int clusterIndex(int x, int y) {
+        return (y / clusterSize) * clustersX + x / clusterSize;
+    }
+
+    private boolean isFree(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && map.get(x, y) == 0L;
+    }
+
+    private Cell cellOf(int cell) {
+        return new Cell(cell % width, cell / width);
+    }
+
+    private long distance(int cell, int targetX, int targetY) {
+        return Math.abs(cell % width - targetX) + Math.abs(cell / width - targetY);
+    }
+
+    /**
+     * Cluster: transitions (cell indices), up to two partners across the border per transition, distances between
+     * transitions ({@link #NONE} if not connected inside the cluster) and search state per transition.
+     */
+    private final class Cluster {
+
+        final int x0;
+        final int y0;
+        final int width;
+        final int height;
+        int[] transitions;
+        int[] partners;
+        long[] distances;
+        long[] costs;
+        int[] parents;
+        int[] stamps;
+
+        Cluster(int x0, int y0, int width, int height) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.width = width;
+            this.height = height;
+        }
+
+        int local(int cell) {
+            return (cell / HierarchicalSearch.this.width - y0) * width + cell % HierarchicalSearch.this.width - x0;
+        }
+
+        int indexOf(int cell) {
+            for (int i = 0; i < transitions.length; i++) {
+                if (transitions[i] == cell) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException(String.format("No transition for cell %d.", cell));
+        }
+    }
+
+    /**
+     * Arrays of the bounded breadth-first search and the goal of the current query.
+     */
+    private static final class Scratch {
+
+        final int[] distances;
+        final int[] parents;
+        final int[] queue;
+        long goalCost;
+        int goalParent;
+
+        Scratch(int clusterSize) {
+            this.distances = new int[clusterSize * clusterSize];
+            this.parents = new int[clusterSize * clusterSize];
+            this.queue = new int[clusterSize * clusterSize];
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.nobullet.graph;
+
+import java.util.Arrays;
+
+/**
+ * Indexed d-ary min-heap of dense integer elements (vertex ids) with double priorities and decrease-key operation.
+ * Every element is in the heap at most once, so the heap never holds more than capacity elements. A wider node (d = 4)
+ * makes the tree shallower and keeps children of a node in one cache line. Not thread safe.
+ */
+final class IndexedDaryHeap {
+
+    static final int ARITY = 4;
+    static final int ABSENT = -1;
+
+    private int[] heap;
+    private int[] positions;
+    private double[] priorities;
+    private int size;
+
+    /**
+     * Constructs heap for elements in range [0, capacity).
+     *
+     * @param capacity Number of elements.
+     */
+    IndexedDaryHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.priorities = new double[capacity];
+        Arrays.fill(this.positions, ABSENT);
+    }
+
+    /**
+     * Grows the heap so it accepts elements in range [0, capacity). Keeps current elements.
+     *
+     * @param capacity Number of elements.
+     */
+    void ensureCapacity(int capacity) {
+        int current = positions.length;
+        if (capacity <= current) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, current + (current >> 1));
+        this.heap = Arrays.copyOf(heap, newCapacity);
+        this.priorities = Arrays.copyOf(priorities, newCapacity);
+        this.positions = Arrays.copyOf(positions, newCapacity);
+        Arrays.fill(this.positions, current, newCapacity, ABSENT);
+    }
+
+    /**
+     * Returns number of elements in the heap.
+     *
+     * @return Number of elements in the heap.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the heap is empty.
+     *
+     * @return Whether the heap is empty.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks whether the element is in the heap.
+     *
+     * @param element Element.
+     * @return Whether the element is in the heap.
+     */
+    boolean contains(int element) {
+        return positions[element] != ABSENT;
+    }
+
+    /**
+     * Inserts element or decreases its priority if it is already in the heap. Greater priority of an element that is
+     * in the heap is ignored. O(log_d N).
+     *
+     * @param element Element.
+     * @param priority Priority.
+     */
+    void offer(int element, double priority) {
+        int position = positions[element];
+        if (position == ABSENT) {
+            position = size++;
+            heap[position] = element;
+            positions[element] = position;
+        } else if (priority >= priorities[element]) {
+            return;
+        }
+        priorities[element] = priority;
+        siftUp(position);
+    }
+
+    /**
+     * Returns minimal priority. Heap must not be empty.
+     *
+     * @return Minimal priority.
+     */
+    double peekPriority() {
+        return priorities[heap[0]];
+    }
+
+    /**
+     * Returns element with minimal priority without removing it. Heap must not be empty.
+     *
+     * @return Element with minimal priority.
+     */
+    int peek() {
+        return heap[0];
+    }
+
+    /**
+     * Removes element with minimal priority. Heap must not be empty. O(d log_d N).
+     *
+     * @return Element with minimal priority.
+     */
+    int poll() {
+        int top = heap[0];
+        positions[top] = ABSENT;
+        int last = heap[--size];
+        if (size > 0) {
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Removes all the elements. O(size).
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        int element = heap[position];
+        double priority = priorities[element];
+        while (position > 0) {
+            int parent = (position - 1) / ARITY;
+            int parentElement = heap[parent];
+            if (priorities[parentElement] <= priority) {
+                break;
+            }
+            heap[position] = parentElement;
+            positions[parentElement] = position;
+            position = parent;
+        }
+        heap[position] = element;
+        positions[element] = position;
+    }
+
+    private void siftDown(int position) {
+        int element = heap[position];
+        double priority = priorities[element];
+        while (true) {
+            int firstChild = position * ARITY + 1;
+            if (firstChild >= size) {
+                break;
+            }
+            int lastChild = Math.min(firstChild + ARITY, size);
+            int minChild = firstChild;
+            double minPriority = priorities[heap[firstChild]];
+            for (int child = firstChild + 1; child < lastChild; child++) {
+                double childPriority = priorities[heap[child]];
+                if (childPriority < minPriority) {
+                    minChild = child;
+                    minPriority = childPriority;
+                }
+            }
+            if (minPriority >= priority) {
+                break;
+            }
+            int childElement = heap[minChild];
+            heap[position] = childElement;
+            positions[childElement] = position;
+            position = minChild;
+        }
+        heap[position] = element;
+        positions[element] = position;
+    }
+}
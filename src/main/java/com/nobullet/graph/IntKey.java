@@ -0,0 +1,29 @@
+package com.nobullet.graph;
+
+/**
+ * Key defined by int. Stores primitive value: no boxing on hashing and comparison.
+ */
+final class IntKey implements Key {
+
+    private static final long serialVersionUID = 1L;
+    final int key;
+
+    public IntKey(int key) {
+        this.key = key;
+    }
+
+    @Override
+    public String toString() {
+        return Integer.toString(key);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof IntKey && key == ((IntKey) obj).key;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(key);
+    }
+}
@@ -0,0 +1,372 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.Map.Cell;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Jump Point Search over the cells of value 0 of a {@link Map} with 4 neighbors and uniform step cost: the same
+ * queries as {@link Map#shortestPathBFS(Cell, Cell)}, but A-star expands only jump points instead of every cell of an
+ * open area.
+ * <p>
+ * Pruning follows the canonical order "vertical steps first": a shortest path that goes horizontally and then turns
+ * vertically can always be rewritten to turn earlier unless the cell of the earlier turn is blocked. So the search
+ * moving horizontally continues straight and turns only at the cells with forced vertical neighbors (the cell behind
+ * the vertical neighbor is blocked), while the search moving vertically may turn horizontally at every cell and stops
+ * at the cells from which a horizontal jump finds a jump point. Every jump point is expanded with all the directions
+ * it was reached in at its best cost, so equal-cost arrivals don't prune each other's successors.
+ * <p>
+ * With precomputed jump distances (JPS+) every jump is a table lookup: for every cell and direction the table keeps
+ * the distance to the next jump point ignoring the target (positive) or the number of free cells before the wall
+ * (zero or negative). The table takes 4 ints per cell and is valid only while the map doesn't change: use it for
+ * static maps. Without the table the search reads the current values of the map.
+ * <p>
+ * Shares flat arrays and radix heap with {@link GridSearch}. Not thread safe: use one instance per thread.
+ */
+public final class JumpPointSearch {
+
+    private static final int RIGHT = 0;
+    private static final int LEFT = 1;
+    private static final int DOWN = 2;
+    private static final int UP = 3;
+    private static final int ALL_DIRECTIONS = 0b1111;
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1};
+
+    final Map map;
+    final int width;
+    final int height;
+    private final GridSearch state;
+    private final byte[] arrivals;
+    private final int[] jumps;
+    private int expanded;
+
+    /**
+     * Constructs search for the given map without precomputed jump distances.
+     *
+     * @param map Map.
+     */
+    public JumpPointSearch(Map map) {
+        this(map, false);
+    }
+
+    /**
+     * Constructs search for the given map.
+     *
+     * @param map Map.
+     * @param precompute Whether to precompute jump distances (JPS+). The map must not change afterwards.
+     */
+    public JumpPointSearch(Map map, boolean precompute) {
+        this.map = map;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.state = new GridSearch(map);
+        this.arrivals = new byte[width * height];
+        this.jumps = precompute ? precompute() : null;
+    }
+
+    /**
+     * Returns the map.
+     *
+     * @return Map.
+     */
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * Checks whether jump distances are precomputed.
+     *
+     * @return Whether jump distances are precomputed.
+     */
+    public boolean isPrecomputed() {
+        return jumps != null;
+    }
+
+    /**
+     * Finds shortest path over the cells of value 0. Path has the same length as the one of
+     * {@link Map#shortestPathBFS(Cell, Cell)}.
+     *
+     * @param source Source cell.
+     * @param target Target cell.
+     * @return Path from source cell to target cell.
+     */
+    public Map.Path shortestPath(Cell source, Cell target) {
+        map.checkBounds(source);
+        map.checkBounds(target);
+        int sourceIndex = state.index(source);
+        int targetIndex = state.index(target);
+        if (search(sourceIndex, targetIndex) == GridSearch.NO_CELL) {
+            return Map.Path.emptyPath();
+        }
+        return toPath(sourceIndex, targetIndex);
+    }
+
+    /**
+     * Length of the shortest path over the cells of value 0 in steps. Doesn't allocate.
+     *
+     * @param sourceX Source X.
+     * @param sourceY Source Y.
+     * @param targetX Target X.
+     * @param targetY Target Y.
+     * @return Number of steps or {@link Map.Constants#UNREACHABLE_CELL} if there is no path.
+     */
+    public long shortestPathLength(int sourceX, int sourceY, int targetX, int targetY) {
+        map.checkBounds(sourceX, sourceY);
+        map.checkBounds(targetX, targetY);
+        int target = targetY * width + targetX;
+        if (search(sourceY * width + sourceX, target) == GridSearch.NO_CELL) {
+            return Map.Constants.UNREACHABLE_CELL;
+        }
+        return state.getCost(target);
+    }
+
+    /**
+     * Returns number of jump points expanded by the last search.
+     *
+     * @return Number of expanded jump points.
+     */
+    int getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * A-star over jump points with Manhattan distance heuristic.
+     *
+     * @param source Source cell index.
+     * @param target Target cell index.
+     * @return Target or {@link GridSearch#NO_CELL} if the target is not reachable.
+     */
+    int search(int source, int target) {
+        state.reset();
+        expanded = 0;
+        int targetY = target / width;
+        int targetX = target - targetY * width;
+        if (!isFree(source % width, source / width) || !isFree(targetX, targetY)) {
+            return GridSearch.NO_CELL;
+        }
+        RadixHeap frontier = state.getFrontier();
+        state.reach(source, 0L, source);
+        arrivals[source] = ALL_DIRECTIONS;
+        frontier.push(distance(source, targetX, targetY), source);
+        while (!frontier.isEmpty()) {
+            int current = frontier.pop();
+            int y = current / width;
+            int x = current - y * width;
+            long cost = state.getCost(current);
+            if (frontier.lastPriority() != cost + Math.abs(x - targetX) + Math.abs(y - targetY)) {
+                continue;
+            }
+            if (current == target) {
+                return target;
+            }
+            expanded++;
+            int directions = successors(x, y, arrivals[current]);
+            for (int direction = 0; direction < 4; direction++) {
+                if ((directions & (1 << direction)) == 0) {
+                    continue;
+                }
+                int next = jumps == null ? jump(x, y, direction, targetX, targetY)
+                        : jumpPrecomputed(x, y, direction, targetX, targetY);
+                if (next == GridSearch.NO_CELL) {
+                    continue;
+                }
+                long nextCost = cost + Math.abs(next - current) / (direction < DOWN ? 1 : width);
+                int arrival = 1 << direction;
+                if (!state.isReached(next) || nextCost < state.getCost(next)) {
+                    state.reach(next, nextCost, current);
+                    arrivals[next] = (byte) arrival;
+                    frontier.push(nextCost + distance(next, targetX, targetY), next);
+                } else if (nextCost == state.getCost(next) && (arrivals[next] & arrival) == 0) {
+                    // Same cost from another direction: expand again with the union of directions.
+                    arrivals[next] |= arrival;
+                    frontier.push(nextCost + distance(next, targetX, targetY), next);
+                }
+            }
+        }
+        return GridSearch.NO_CELL;
+    }
+
+    /**
+     * Directions to jump from the cell reached in the given directions.
+     *
+     * @param x X.
+     * @param y Y.
+     * @param arrival Bit mask of directions the cell was reached in.
+     * @return Bit mask of directions to jump.
+     */
+    private int successors(int x, int y, int arrival) {
+        int result = 0;
+        if ((arrival & ((1 << DOWN) | (1 << UP))) != 0) {
+            // Vertical move may turn anywhere. Moving back is never shorter.
+            result |= (1 << LEFT) | (1 << RIGHT) | (arrival & ((1 << DOWN) | (1 << UP)));
+        }
+        for (int direction = RIGHT; direction <= LEFT; direction++) {
+            if ((arrival & (1 << direction)) != 0) {
+                int behind = x - DX[direction];
+                result |= 1 << direction;
+                if (isFree(x, y - 1) && !isFree(behind, y - 1)) {
+                    result |= 1 << UP;
+                }
+                if (isFree(x, y + 1) && !isFree(behind, y + 1)) {
+                    result |= 1 << DOWN;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Jumps from the cell in the given direction by scanning the map.
+     *
+     * @param x X.
+     * @param y Y.
+     * @param direction Direction.
+     * @param targetX Target X.
+     * @param targetY Target Y.
+     * @return Jump point or {@link GridSearch#NO_CELL} if the scan hits a wall.
+     */
+    private int jump(int x, int y, int direction, int targetX, int targetY) {
+        if (direction < DOWN) {
+            int dx = DX[direction];
+            while (true) {
+                x += dx;
+                if (!isFree(x, y)) {
+                    return GridSearch.NO_CELL;
+                }
+                if ((x == targetX && y == targetY) || isForced(x, y, dx)) {
+                    return y * width + x;
+                }
+            }
+        }
+        int dy = DY[direction];
+        while (true) {
+            y += dy;
+            if (!isFree(x, y)) {
+                return GridSearch.NO_CELL;
+            }
+            if ((x == targetX && y == targetY)
+                    || jump(x, y, RIGHT, targetX, targetY) != GridSearch.NO_CELL
+                    || jump(x, y, LEFT, targetX, targetY) != GridSearch.NO_CELL) {
+                return y * width + x;
+            }
+        }
+    }
+
+    /**
+     * Jumps from the cell in the given direction with precomputed distances. Stops at the target or, moving
+     * vertically, at the row of the target when the target is horizontally reachable from it.
+     *
+     * @param x X.
+     * @param y Y.
+     * @param direction Direction.
+     * @param targetX Target X.
+     * @param targetY Target Y.
+     * @return Jump point or {@link GridSearch#NO_CELL} if the jump hits a wall.
+     */
+    private int jumpPrecomputed(int x, int y, int direction, int targetX, int targetY) {
+        int distance = jumps[(y * width + x) * 4 + direction];
+        int reach = Math.abs(distance);
+        int dx = DX[direction];
+        int dy = DY[direction];
+        if (dy == 0) {
+            if (y == targetY && (targetX - x) * dx > 0 && (targetX - x) * dx <= reach) {
+                return targetY * width + targetX;
+            }
+        } else if ((targetY - y) * dy > 0 && (targetY - y) * dy <= reach) {
+            int toTarget = targetX - x;
+            if (toTarget == 0 || Math.abs(toTarget)
+                    <= Math.abs(jumps[(targetY * width + x) * 4 + (toTarget > 0 ? RIGHT : LEFT)])) {
+                return targetY * width + x;
+            }
+        }
+        return distance > 0 ? (y + dy * distance) * width + x + dx * distance : GridSearch.NO_CELL;
+    }
+
+    /**
+     * Builds path from the jump points of the last search filling the straight segments between them.
+     *
+     * @param source Source cell index.
+     * @param target Reached target cell index.
+     * @return Path.
+     */
+    Map.Path toPath(int source, int target) {
+        List<Cell> path = new ArrayList<>();
+        for (int current = target; current != source; ) {
+            int parent = state.getParent(current);
+            int step = Math.abs(current - parent) < width ? Integer.signum(parent - current)
+                    : Integer.signum(parent - current) * width;
+            for (int cell = current; cell != parent; cell += step) {
+                path.add(state.cellOf(cell));
+            }
+            current = parent;
+        }
+        path.add(state.cellOf(source));
+        Collections.reverse(path);
+        return new Map.Path(map, path);
+    }
+
+    /**
+     * Computes jump distances for every free cell and direction: rows first (horizontal jumps depend only on the
+     * row and its neighbors), then columns (vertical jumps stop at the cells with horizontal jump points).
+     *
+     * @return Jump distances.
+     */
+    private int[] precompute() {
+        int[] table = new int[width * height * 4];
+        IntStream.range(0, height).parallel().forEach(y -> {
+            for (int x = width - 1; x >= 0; x--) {
+                table[(y * width + x) * 4 + RIGHT] = isFree(x + 1, y)
+                        ? (isForced(x + 1, y, 1) ? 1 : next(table[(y * width + x + 1) * 4 + RIGHT])) : 0;
+            }
+            for (int x = 0; x < width; x++) {
+                table[(y * width + x) * 4 + LEFT] = isFree(x - 1, y)
+                        ? (isForced(x - 1, y, -1) ? 1 : next(table[(y * width + x - 1) * 4 + LEFT])) : 0;
+            }
+        });
+        IntStream.range(0, width).parallel().forEach(x -> {
+            for (int y = height - 1; y >= 0; y--) {
+                table[(y * width + x) * 4 + DOWN] = isFree(x, y + 1)
+                        ? (hasHorizontalJump(table, x, y + 1) ? 1 : next(table[((y + 1) * width + x) * 4 + DOWN]))
+                        : 0;
+            }
+            for (int y = 0; y < height; y++) {
+                table[(y * width + x) * 4 + UP] = isFree(x, y - 1)
+                        ? (hasHorizontalJump(table, x, y - 1) ? 1 : next(table[((y - 1) * width + x) * 4 + UP]))
+                        : 0;
+            }
+        });
+        return table;
+    }
+
+    private boolean hasHorizontalJump(int[] table, int x, int y) {
+        int cell = (y * width + x) * 4;
+        return table[cell + RIGHT] > 0 || table[cell + LEFT] > 0;
+    }
+
+    private static int next(int distance) {
+        return distance > 0 ? distance + 1 : distance - 1;
+    }
+
+    /**
+     * Checks whether the cell reached horizontally has a forced vertical neighbor.
+     *
+     * @param x X.
+     * @param y Y.
+     * @param dx Horizontal direction.
+     * @return Whether the cell is a jump point.
+     */
+    private boolean isForced(int x, int y, int dx) {
+        return (isFree(x, y - 1) && !isFree(x - dx, y - 1)) || (isFree(x, y + 1) && !isFree(x - dx, y + 1));
+    }
+
+    private boolean isFree(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && map.get(x, y) == 0L;
+    }
+
+    private long distance(int cell, int targetX, int targetY) {
+        return Math.abs(cell % width - targetX) + Math.abs(cell / width - targetY);
+    }
+}
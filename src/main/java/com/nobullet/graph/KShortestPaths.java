@@ -0,0 +1,229 @@
+package com.nobullet.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Yen's algorithm for k loopless shortest paths over {@link CsrGraph} with Lawler's improvement: a path found by a
+ * spur at index d of its parent only needs spurs from d. Every spur search is a Dijkstra's search that ignores the
+ * vertices of the root path and the edges leaving the spur vertex that are used by already found paths with the same
+ * root. Nothing is removed from the graph: masked vertices are marked as reached before the search (with cost of
+ * negative infinity, so they are never relaxed) and masked edges are skipped while the spur vertex is expanded. Spur
+ * searches of one path are independent and run in parallel.
+ */
+final class KShortestPaths {
+
+    private KShortestPaths() {
+    }
+
+    /**
+     * Finds up to k shortest loopless paths in order of their costs. Edge costs must be non-negative.
+     *
+     * @param graph Graph snapshot.
+     * @param source Source vertex index.
+     * @param target Target vertex index.
+     * @param k Maximal number of paths.
+     * @param pool Pool to run spur searches in.
+     * @return Paths, the first one is the shortest path. Empty if the target is not reachable.
+     */
+    static List<Path> find(CsrGraph graph, int source, int target, int k, ForkJoinPool pool) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of paths must be positive: " + k);
+        }
+        List<Candidate> found = new ArrayList<>();
+        Candidate first = spur(graph, null, 0, source, target, new int[0], 0.0D);
+        if (first == null) {
+            return Collections.emptyList();
+        }
+        found.add(first);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        Set<List<Integer>> known = new HashSet<>();
+        known.add(first.asList());
+        while (found.size() < k) {
+            Candidate last = found.get(found.size() - 1);
+            int spurs = last.vertices.length - 1 - last.deviation;
+            Candidate[] spurPaths = new Candidate[Math.max(spurs, 0)];
+            double[] rootCosts = rootCosts(graph, last.vertices);
+            pool.invoke(new CsrGraph.RowsTask(0, spurPaths.length, row -> {
+                int index = last.deviation + row;
+                int[] masked = maskedEdges(graph, found, last.vertices, index);
+                spurPaths[row] = spur(graph, last.vertices, index, last.vertices[index], target, masked,
+                        rootCosts[index]);
+            }));
+            for (Candidate candidate : spurPaths) {
+                if (candidate != null && known.add(candidate.asList())) {
+                    candidates.add(candidate);
+                }
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            found.add(candidates.poll());
+        }
+        List<Path> result = new ArrayList<>(found.size());
+        for (Candidate candidate : found) {
+            result.add(candidate.toPath(graph));
+        }
+        return result;
+    }
+
+    /**
+     * Spur search: shortest path from the spur vertex to the target that avoids the root path and the masked edges.
+     *
+     * @param graph Graph snapshot.
+     * @param root Vertices of the path the spur deviates from, null for the first path.
+     * @param index Index of the spur vertex in the root path.
+     * @param spur Spur vertex.
+     * @param target Target vertex.
+     * @param maskedEdges Edges leaving the spur vertex that can't be used.
+     * @param rootCost Cost of the root path up to the spur vertex.
+     * @return Candidate (root followed by the spur path) or null if there is no path.
+     */
+    private static Candidate spur(CsrGraph graph, int[] root, int index, int spur, int target, int[] maskedEdges,
+            double rootCost) {
+        SearchSpace space = SearchSpace.acquire(SearchSpace.FORWARD, graph.keys.length);
+        try {
+            for (int i = 0; i < index; i++) {
+                space.reach(root[i], Double.NEGATIVE_INFINITY, SearchSpace.NO_PARENT);
+            }
+            IndexedDaryHeap frontier = space.getFrontier();
+            space.reach(spur, 0.0D, spur);
+            frontier.offer(spur, 0.0D);
+            while (!frontier.isEmpty()) {
+                int current = frontier.poll();
+                if (current == target) {
+                    break;
+                }
+                double currentCost = space.getCost(current);
+                for (int e = graph.offsets[current]; e < graph.offsets[current + 1]; e++) {
+                    if (current == spur && contains(maskedEdges, e)) {
+                        continue;
+                    }
+                    int next = graph.targets[e];
+                    double newCost = currentCost + graph.cost(e);
+                    if (newCost < space.getCost(next)) {
+                        space.reach(next, newCost, current);
+                        frontier.offer(next, newCost);
+                    }
+                }
+            }
+            if (!space.isReached(target) || space.getCost(target) == Double.NEGATIVE_INFINITY) {
+                return null;
+            }
+            int spurLength = 1;
+            for (int current = target; current != spur; current = space.getParent(current)) {
+                spurLength++;
+            }
+            int[] vertices = new int[index + spurLength];
+            for (int i = 0; i < index; i++) {
+                vertices[i] = root[i];
+            }
+            int position = vertices.length - 1;
+            for (int current = target; current != spur; current = space.getParent(current)) {
+                vertices[position--] = current;
+            }
+            vertices[index] = spur;
+            return new Candidate(vertices, rootCost + space.getCost(target), index);
+        } finally {
+            space.release();
+        }
+    }
+
+    /**
+     * Edges from the spur vertex used by found paths that share the root with the given path.
+     *
+     * @param graph Graph snapshot.
+     * @param found Found paths.
+     * @param path Path to deviate from.
+     * @param index Index of the spur vertex.
+     * @return Edge indices.
+     */
+    private static int[] maskedEdges(CsrGraph graph, List<Candidate> found, int[] path, int index) {
+        int[] result = new int[found.size()];
+        int size = 0;
+        for (Candidate candidate : found) {
+            int[] vertices = candidate.vertices;
+            if (vertices.length > index + 1 && sameRoot(vertices, path, index)) {
+                result[size++] = graph.edgeIndex(vertices[index], vertices[index + 1]);
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static boolean sameRoot(int[] first, int[] second, int index) {
+        for (int i = 0; i <= index; i++) {
+            if (first[i] != second[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int candidate : values) {
+            if (candidate == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Costs of the path prefixes: element i is cost from the first vertex to vertex i.
+     *
+     * @param graph Graph snapshot.
+     * @param vertices Path vertices.
+     * @return Prefix costs.
+     */
+    private static double[] rootCosts(CsrGraph graph, int[] vertices) {
+        double[] result = new double[vertices.length];
+        for (int i = 1; i < vertices.length; i++) {
+            result[i] = result[i - 1] + graph.cost(graph.edgeIndex(vertices[i - 1], vertices[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Path found by a spur search.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+
+        final int[] vertices;
+        final double cost;
+        final int deviation;
+
+        Candidate(int[] vertices, double cost, int deviation) {
+            this.vertices = vertices;
+            this.cost = cost;
+            this.deviation = deviation;
+        }
+
+        List<Integer> asList() {
+            List<Integer> result = new ArrayList<>(vertices.length);
+            for (int vertex : vertices) {
+                result.add(vertex);
+            }
+            return result;
+        }
+
+        Path toPath(CsrGraph graph) {
+            List<Key> path = new ArrayList<>(vertices.length);
+            for (int vertex : vertices) {
+                path.add(graph.keys[vertex]);
+            }
+            return new Path(path.get(0), path.get(path.size() - 1), path, cost);
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int result = Double.compare(cost, other.cost);
+            return result != 0 ? result : Integer.compare(vertices.length, other.vertices.length);
+        }
+    }
+}
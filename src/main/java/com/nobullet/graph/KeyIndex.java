@@ -0,0 +1,177 @@
+package com.nobullet.graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable index of dense vertex numbers by key. When all the keys are {@link IntKey}s or all of them are
+ * {@link LongKey}s the index is an open-addressing table of primitive longs (linear probing, load factor at most 1/2):
+ * no boxed integers or map entries per vertex and lookups by primitive value don't allocate keys. Any other set of
+ * keys is indexed by {@link HashMap}. Thread safe.
+ */
+final class KeyIndex {
+
+    private final Key[] keys;
+    private final Map<Key, Integer> map;
+    private final Class<?> primitiveKeyClass;
+    private final long[] tableKeys;
+    private final int[] tableValues;
+    private final int mask;
+
+    /**
+     * Builds index for the given keys.
+     *
+     * @param keys Keys by vertex index, distinct.
+     */
+    KeyIndex(Key[] keys) {
+        this.keys = keys;
+        Class<?> keyClass = keys.length > 0 ? keys[0].getClass() : LongKey.class;
+        boolean primitive = keyClass == IntKey.class || keyClass == LongKey.class;
+        for (int i = 1; i < keys.length && primitive; i++) {
+            primitive = keys[i].getClass() == keyClass;
+        }
+        if (primitive) {
+            int capacity = Integer.highestOneBit(Math.max(keys.length, 1) * 2 - 1) << 1;
+            this.map = null;
+            this.primitiveKeyClass = keyClass;
+            this.tableKeys = new long[capacity];
+            this.tableValues = new int[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(tableValues, CsrGraph.NO_VERTEX);
+            for (int i = 0; i < keys.length; i++) {
+                int slot = slot(valueOf(keys[i]));
+                while (tableValues[slot] != CsrGraph.NO_VERTEX) {
+                    slot = (slot + 1) & mask;
+                }
+                tableKeys[slot] = valueOf(keys[i]);
+                tableValues[slot] = i;
+            }
+        } else {
+            this.map = new HashMap<>(keys.length * 4 / 3 + 1);
+            this.primitiveKeyClass = null;
+            this.tableKeys = null;
+            this.tableValues = null;
+            this.mask = 0;
+            for (int i = 0; i < keys.length; i++) {
+                map.put(keys[i], i);
+            }
+        }
+    }
+
+    /**
+     * Returns vertex index by key.
+     *
+     * @param key Vertex key.
+     * @return Vertex index or {@link CsrGraph#NO_VERTEX}.
+     */
+    int get(Key key) {
+        if (map != null) {
+            Integer index = map.get(key);
+            return index != null ? index : CsrGraph.NO_VERTEX;
+        }
+        if (key == null || key.getClass() != primitiveKeyClass) {
+            return CsrGraph.NO_VERTEX;
+        }
+        return getPrimitive(valueOf(key));
+    }
+
+    /**
+     * Returns vertex index by the value of integral key: {@code Key.of(long)} or {@code Key.of(int)} for values that
+     * fit into int. Doesn't allocate keys if the index is primitive.
+     *
+     * @param key Key value.
+     * @return Vertex index or {@link CsrGraph#NO_VERTEX}.
+     */
+    int get(long key) {
+        if (map == null) {
+            if (primitiveKeyClass == IntKey.class && (int) key != key) {
+                return CsrGraph.NO_VERTEX;
+            }
+            return getPrimitive(key);
+        }
+        int index = get(Key.of(key));
+        if (index == CsrGraph.NO_VERTEX && (int) key == key) {
+            index = get(Key.of((int) key));
+        }
+        return index;
+    }
+
+    /**
+     * Checks whether the index stores keys as primitive values.
+     *
+     * @return Whether the index is primitive.
+     */
+    boolean isPrimitive() {
+        return map == null;
+    }
+
+    /**
+     * Unmodifiable set view of the keys in the order of vertex indices.
+     *
+     * @return Set of keys.
+     */
+    Set<Key> keySet() {
+        return new AbstractSet<Key>() {
+            @Override
+            public Iterator<Key> iterator() {
+                return new Iterator<Key>() {
+                    int next = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < keys.length;
+                    }
+
+                    @Override
+                    public Key next() {
+                        if (next >= keys.length) {
+                            throw new NoSuchElementException();
+                        }
+                        return keys[next++];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object key) {
+                return key instanceof Key && get((Key) key) != CsrGraph.NO_VERTEX;
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+        };
+    }
+
+    private int getPrimitive(long key) {
+        int slot = slot(key);
+        while (tableValues[slot] != CsrGraph.NO_VERTEX) {
+            if (tableKeys[slot] == key) {
+                return tableValues[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return CsrGraph.NO_VERTEX;
+    }
+
+    private int slot(long key) {
+        // Finalizer of MurmurHash3: dense keys spread over the whole table.
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return (int) hash & mask;
+    }
+
+    private static long valueOf(Key key) {
+        return key instanceof IntKey ? ((IntKey) key).key : ((LongKey) key).key;
+    }
+}
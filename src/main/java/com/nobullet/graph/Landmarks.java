@@ -0,0 +1,359 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.Graph.NegativeEdgeCostException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Landmarks for A-star search with triangle inequality heuristic (ALT). For every landmark L the costs of the shortest
+ * paths from L to every vertex and from every vertex to L are precomputed. Then for any vertices v and t:
+ * <pre>
+ * d(v, t) &gt;= d(L, t) - d(L, v) and d(v, t) &gt;= d(v, L) - d(t, L)
+ * </pre>
+ * The maximum of these bounds over the landmarks is a consistent heuristic that doesn't need vertex positions. The
+ * heuristic stays admissible while the costs of the shortest paths don't decrease (no cheaper or new edges).
+ * <p>
+ * Landmarks are chosen greedily: each next landmark is the vertex farthest from the already chosen ones. Tables are
+ * stored vertex-major (the landmarks of one vertex are adjacent in memory). Immutable and thread safe after
+ * construction. Serializable, so the tables can be loaded instead of recomputed.
+ */
+public final class Landmarks implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final Key[] keys;
+    final int[] landmarks;
+    final double[] fromLandmarks;
+    final double[] toLandmarks;
+    transient KeyIndex indices;
+    private transient volatile Binding binding;
+
+    /**
+     * Constructs landmarks from prepared tables.
+     *
+     * @param keys Keys by vertex index.
+     * @param landmarks Landmark vertex indices.
+     * @param fromLandmarks Costs from landmark i to vertex v at {@code v * landmarks.length + i}.
+     * @param toLandmarks Costs from vertex v to landmark i at {@code v * landmarks.length + i}.
+     */
+    Landmarks(Key[] keys, int[] landmarks, double[] fromLandmarks, double[] toLandmarks) {
+        this.keys = keys;
+        this.landmarks = landmarks;
+        this.fromLandmarks = fromLandmarks;
+        this.toLandmarks = toLandmarks;
+        this.indices = new KeyIndex(keys);
+    }
+
+    /**
+     * Chooses landmarks and precomputes the tables for the given graph.
+     *
+     * @param graph Graph.
+     * @param landmarksNumber Number of landmarks (at most number of vertices are chosen).
+     * @return Landmarks.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public static Landmarks of(Graph graph, int landmarksNumber) throws NegativeEdgeCostException {
+        return of(graph.freeze(), landmarksNumber);
+    }
+
+    /**
+     * Chooses landmarks and precomputes the tables for the given graph snapshot. Landmarks are chosen one by one (each
+     * choice needs the costs from the previous landmarks), the costs to the landmarks are computed in parallel in the
+     * common fork-join pool.
+     *
+     * @param graph Graph snapshot.
+     * @param landmarksNumber Number of landmarks (at most number of vertices are chosen).
+     * @return Landmarks.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public static Landmarks of(CsrGraph graph, int landmarksNumber) throws NegativeEdgeCostException {
+        if (landmarksNumber <= 0) {
+            throw new IllegalArgumentException("Number of landmarks must be positive: " + landmarksNumber);
+        }
+        checkCosts(graph);
+        int verticesNumber = graph.keys.length;
+        int count = Math.min(landmarksNumber, verticesNumber);
+        int[] chosen = new int[count];
+        double[][] from = new double[count][];
+        if (count == 0) {
+            return build(graph, chosen, from, from);
+        }
+        // Distance from the chosen landmarks; the first landmark is the farthest vertex from an arbitrary one.
+        double[] closest = costsFrom(graph, 0);
+        for (int i = 0; i < count; i++) {
+            chosen[i] = farthest(closest);
+            from[i] = costsFrom(graph, chosen[i]);
+            if (i == 0) {
+                closest = from[0].clone();
+            } else {
+                for (int v = 0; v < verticesNumber; v++) {
+                    closest[v] = Math.min(closest[v], from[i][v]);
+                }
+            }
+            closest[chosen[i]] = Double.NEGATIVE_INFINITY;
+        }
+        CsrGraph reverse = graph.reverse();
+        double[][] to = new double[count][];
+        IntStream.range(0, count).parallel().forEach(i -> to[i] = costsFrom(reverse, chosen[i]));
+        return build(graph, chosen, from, to);
+    }
+
+    /**
+     * Precomputes the tables for the given landmarks. All the searches run in parallel in the common fork-join pool.
+     *
+     * @param graph Graph snapshot.
+     * @param landmarkKeys Keys of the landmarks.
+     * @return Landmarks.
+     * @throws NegativeEdgeCostException When graph has negative cost edge.
+     */
+    public static Landmarks of(CsrGraph graph, Collection<Key> landmarkKeys) throws NegativeEdgeCostException {
+        if (landmarkKeys.isEmpty()) {
+            throw new IllegalArgumentException("At least one landmark is expected.");
+        }
+        checkCosts(graph);
+        int[] chosen = graph.toIndices(landmarkKeys);
+        int count = chosen.length;
+        CsrGraph reverse = graph.reverse();
+        double[][] from = new double[count][];
+        double[][] to = new double[count][];
+        IntStream.range(0, 2 * count).parallel().forEach(i -> {
+            if (i < count) {
+                from[i] = costsFrom(graph, chosen[i]);
+            } else {
+                to[i - count] = costsFrom(reverse, chosen[i - count]);
+            }
+        });
+        return build(graph, chosen, from, to);
+    }
+
+    /**
+     * Reads landmarks written by {@link #writeTo(OutputStream)}. Only the landmarks, keys of this package, numbers,
+     * strings and arrays are accepted from the stream: use {@link #readFrom(InputStream, Class...)} for custom keys.
+     *
+     * @param input Input stream.
+     * @return Landmarks.
+     * @throws IOException If reading fails or stream doesn't contain landmarks.
+     */
+    public static Landmarks readFrom(InputStream input) throws IOException {
+        return RestrictedObjectInputStream.readObject(input, Landmarks.class);
+    }
+
+    /**
+     * Reads landmarks written by {@link #writeTo(OutputStream)}, accepting the given classes as well.
+     *
+     * @param input Input stream.
+     * @param extraAllowed Classes of custom keys and of their fields.
+     * @return Landmarks.
+     * @throws IOException If reading fails or stream doesn't contain landmarks.
+     */
+    public static Landmarks readFrom(InputStream input, Class<?>... extraAllowed) throws IOException {
+        return RestrictedObjectInputStream.readObject(input, Landmarks.class, extraAllowed);
+    }
+
+    /**
+     * Writes landmarks with Java serialization. Landmarks with custom keys are read back with
+     * {@link #readFrom(InputStream, Class...)}.
+     *
+     * @param output Output stream.
+     * @throws IOException If writing fails.
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        ObjectOutputStream objectOutput = new ObjectOutputStream(output);
+        objectOutput.writeObject(this);
+        objectOutput.flush();
+    }
+
+    /**
+     * Returns number of vertices.
+     *
+     * @return Number of vertices.
+     */
+    public int getNumberOfVertices() {
+        return keys.length;
+    }
+
+    /**
+     * Returns keys of the landmarks in the order they were chosen.
+     *
+     * @return List of landmark keys.
+     */
+    public List<Key> getLandmarks() {
+        List<Key> result = new ArrayList<>(landmarks.length);
+        for (int landmark : landmarks) {
+            result.add(keys[landmark]);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Lower bound of the cost of the shortest path between two vertices.
+     *
+     * @param fromKey From key.
+     * @param toKey To key.
+     * @return Lower bound (positive infinity if there is no path for sure).
+     */
+    public double estimate(Key fromKey, Key toKey) {
+        return estimate(getIndex(fromKey), getIndex(toKey));
+    }
+
+    /**
+     * Lower bound of the cost of the shortest path between two vertices. Terms with unknown costs (a landmark doesn't
+     * reach both vertices) are skipped: NaN never wins the comparison.
+     *
+     * @param from From vertex index.
+     * @param to To vertex index.
+     * @return Lower bound.
+     */
+    double estimate(int from, int to) {
+        int count = landmarks.length;
+        int fromBase = from * count;
+        int toBase = to * count;
+        double best = 0.0D;
+        for (int i = 0; i < count; i++) {
+            double forward = fromLandmarks[toBase + i] - fromLandmarks[fromBase + i];
+            if (forward > best) {
+                best = forward;
+            }
+            double backward = toLandmarks[fromBase + i] - toLandmarks[toBase + i];
+            if (backward > best) {
+                best = backward;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Lower bound of the cost of the shortest path from the vertex to the vertex with given index. Vertices unknown to
+     * the landmarks (added later) get 0.
+     *
+     * @param fromKey From key.
+     * @param to To vertex index.
+     * @return Lower bound.
+     */
+    double estimate(Key fromKey, int to) {
+        int from = indices.get(fromKey);
+        return from == CsrGraph.NO_VERTEX ? 0.0D : estimate(from, to);
+    }
+
+    /**
+     * Heuristic over vertex indices of the given snapshot. Snapshots of the same graph can number vertices
+     * differently, so the numbering is mapped once per snapshot (the last mapping is cached).
+     *
+     * @param graph Graph snapshot with the same vertices.
+     * @return Heuristic.
+     * @throws IllegalArgumentException If the snapshot has different vertices.
+     */
+    CsrGraph.IndexHeuristic heuristicFor(CsrGraph graph) {
+        if (graph.keys == keys) {
+            return this::estimate;
+        }
+        Binding current = binding;
+        if (current == null || current.keys != graph.keys) {
+            if (graph.keys.length != keys.length) {
+                throw new IllegalArgumentException("Landmarks are computed for another graph.");
+            }
+            int[] mapping = new int[keys.length];
+            for (int v = 0; v < mapping.length; v++) {
+                mapping[v] = indices.get(graph.keys[v]);
+                if (mapping[v] == CsrGraph.NO_VERTEX) {
+                    throw new IllegalArgumentException("Landmarks are computed for another graph.");
+                }
+            }
+            current = new Binding(graph.keys, mapping);
+            binding = current;
+        }
+        int[] mapping = current.mapping;
+        return (next, goal) -> estimate(mapping[next], mapping[goal]);
+    }
+
+    /**
+     * Returns vertex index by key. Throws {@link NullPointerException} if there is no vertex for key.
+     *
+     * @param key Vertex key.
+     * @return Vertex index.
+     */
+    private int getIndex(Key key) {
+        int index = indices.get(key);
+        if (index == CsrGraph.NO_VERTEX) {
+            throw new NullPointerException(String.format("No vertex for key %s.", key));
+        }
+        return index;
+    }
+
+    private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+        input.defaultReadObject();
+        this.indices = new KeyIndex(keys);
+    }
+
+    private static void checkCosts(CsrGraph graph) throws NegativeEdgeCostException {
+        for (int e = 0; e < graph.targets.length; e++) {
+            if (graph.cost(e) < 0.0D) {
+                throw new NegativeEdgeCostException(String.format("%s->%s edge has negative cost.",
+                        graph.keys[graph.edgeSource(e)], graph.keys[graph.targets[e]]));
+            }
+        }
+    }
+
+    private static double[] costsFrom(CsrGraph graph, int source) {
+        return graph.shortestPathTree(graph.keys[source]).costs;
+    }
+
+    /**
+     * Returns vertex with maximal cost. Unreachable vertices (positive infinity) are the farthest: they are in the
+     * parts of the graph that are not covered yet.
+     *
+     * @param costs Costs by vertex.
+     * @return Vertex index.
+     */
+    private static int farthest(double[] costs) {
+        int result = 0;
+        for (int v = 1; v < costs.length; v++) {
+            if (costs[v] > costs[result]) {
+                result = v;
+            }
+        }
+        return result;
+    }
+
+    private static Landmarks build(CsrGraph graph, int[] chosen, double[][] from, double[][] to) {
+        int count = chosen.length;
+        int verticesNumber = graph.keys.length;
+        double[] fromLandmarks = new double[verticesNumber * count];
+        double[] toLandmarks = new double[verticesNumber * count];
+        for (int i = 0; i < count; i++) {
+            for (int v = 0; v < verticesNumber; v++) {
+                fromLandmarks[v * count + i] = from[i][v];
+                toLandmarks[v * count + i] = to[i][v];
+            }
+        }
+        return new Landmarks(graph.keys, chosen, fromLandmarks, toLandmarks);
+    }
+
+    @Override
+    public String toString() {
+        return "Landmarks{vertices=" + keys.length + ", landmarks=" + landmarks.length + '}';
+    }
+
+    /**
+     * Vertex numbering of a snapshot mapped to the numbering of the landmarks.
+     */
+    private static final class Binding {
+
+        final Key[] keys;
+        final int[] mapping;
+
+        Binding(Key[] keys, int[] mapping) {
+            this.keys = keys;
+            this.mapping = mapping;
+        }
+    }
+}
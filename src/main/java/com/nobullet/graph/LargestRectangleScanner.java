@@ -0,0 +1,91 @@
+package com.nobullet.graph;
+
+import java.util.function.Consumer;
+
+/**
+ * Streaming search of the largest rectangle: consumes rows of a raster one at a time and keeps only the histogram of
+ * the current row (heights of the columns of matching cells ending at the row), so memory is O(width) whatever the
+ * number of rows is. Every row is searched with {@link Map#findLargestRectangle(long[], int)}. The best rectangle so
+ * far is available after every row; on ties the first found one is kept, as in
+ * {@link Map#findLargestRectangle(boolean)}. Not thread safe.
+ */
+public final class LargestRectangleScanner implements Consumer<long[]> {
+
+    private final long[] heights;
+    private final boolean zeroArea;
+    private int rows;
+    private Map.Rectangle largest;
+
+    /**
+     * Constructs scanner for rows of the given width.
+     *
+     * @param width Width of the rows.
+     * @param zeroArea Whether to search 0's area or areas of values &gt; 0.
+     */
+    public LargestRectangleScanner(int width, boolean zeroArea) {
+        if (width < 0) {
+            throw new IllegalArgumentException("Expecting correct dimensions.");
+        }
+        this.heights = new long[width];
+        this.zeroArea = zeroArea;
+    }
+
+    /**
+     * Finds the first largest rectangle of the map row by row.
+     *
+     * @param map Map.
+     * @param zeroArea Whether to search 0's area or areas of values &gt; 0.
+     * @return Largest rectangle or null if there are no matching cells.
+     */
+    public static Map.Rectangle scan(Map map, boolean zeroArea) {
+        LargestRectangleScanner scanner = new LargestRectangleScanner(map.getWidth(), zeroArea);
+        long[] row = new long[map.getWidth()];
+        for (int y = 0; y < map.getHeight(); y++) {
+            scanner.accept(map.getRow(y, row));
+        }
+        return scanner.getLargestRectangle();
+    }
+
+    /**
+     * Consumes the next row. The row is not kept and may be reused by the caller.
+     *
+     * @param row Values of the row.
+     * @throws IllegalArgumentException If the row has wrong length.
+     */
+    @Override
+    public void accept(long[] row) {
+        if (row.length != heights.length) {
+            throw new IllegalArgumentException(
+                    String.format("Expecting row of %d cells: %d.", heights.length, row.length));
+        }
+        for (int x = 0; x < row.length; x++) {
+            long value = row[x];
+            heights[x] = !zeroArea && value > 0 || zeroArea && value == 0 ? heights[x] + 1 : 0;
+        }
+        Map.Rectangle candidate = Map.findLargestRectangle(heights, rows);
+        if (candidate != null && (largest == null || candidate.area() > largest.area())) {
+            // Histogram rectangles grow up from the current row.
+            largest = Map.Rectangle.of(candidate.getX(), rows - candidate.getHeight() + 1, candidate.getWidth(),
+                    candidate.getHeight());
+        }
+        rows++;
+    }
+
+    /**
+     * Returns number of consumed rows.
+     *
+     * @return Number of rows.
+     */
+    public int getNumberOfRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the largest rectangle of the consumed rows.
+     *
+     * @return Largest rectangle so far or null if there are no matching cells yet.
+     */
+    public Map.Rectangle getLargestRectangle() {
+        return largest;
+    }
+}
@@ -0,0 +1,29 @@
+package com.nobullet.graph;
+
+/**
+ * Key defined by long. Stores primitive value: no boxing on hashing and comparison.
+ */
+final class LongKey implements Key {
+
+    private static final long serialVersionUID = 1L;
+    final long key;
+
+    public LongKey(long key) {
+        this.key = key;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(key);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof LongKey && key == ((LongKey) obj).key;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(key);
+    }
+}
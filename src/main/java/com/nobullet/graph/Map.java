@@ -1,27 +1,24 @@
 package com.nobullet.graph;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
-import java.util.regex.Pattern;
 import org.apache.commons.lang3.StringUtils;
 
 /**
- * Represents NxM matrix, treating 0 as empty space and values greater than 0 as walls.
- * TODO: revisit this. Instead of long[][] use Cell[][].
+ * Represents NxM matrix, treating 0 as empty space and values greater than 0 as walls. Cells are kept in a
+ * {@link CellStorage}: {@code long[][]} by default, packed arrays or memory-mapped file for large maps.
  */
 public class Map {
 
@@ -29,7 +26,8 @@ public class Map {
     static final BiFunction<Cell, Cell, Double> A_STAR_HEURISTIC = (Cell next, Cell goal) -> goal.distanceTo(next);
     static final Map EMPTY_MAP = new Map(0, 0);
     static final Cell NOWHERE = new Cell(-1, -1);
-    final long[][] matrix;
+    final CellStorage storage;
+    private final List<CellListener> listeners = new ArrayList<>(0);
 
     /**
      * Constructs matrix.
@@ -38,10 +36,16 @@ public class Map {
      * @param h Height.
      */
     public Map(int w, int h) {
-        if (w < 0 || h < 0) {
-            throw new IllegalArgumentException("Expecting correct dimensions.");
-        }
-        this.matrix = new long[h][w];
+        this(new ArrayCellStorage(w, h));
+    }
+
+    /**
+     * Constructs matrix on top of the given storage.
+     *
+     * @param storage Cell storage.
+     */
+    public Map(CellStorage storage) {
+        this.storage = storage;
     }
 
     /**
@@ -50,10 +54,7 @@ public class Map {
      * @return Map width.
      */
     public final int getWidth() {
-        if (matrix.length == 0) {
-            return 0;
-        }
-        return matrix[0].length;
+        return storage.getWidth();
     }
 
     /**
@@ -62,7 +63,16 @@ public class Map {
      * @return Map height.
      */
     public final int getHeight() {
-        return matrix.length;
+        return storage.getHeight();
+    }
+
+    /**
+     * Returns storage of the cells.
+     *
+     * @return Cell storage.
+     */
+    public final CellStorage getStorage() {
+        return storage;
     }
 
     /**
@@ -72,9 +82,21 @@ public class Map {
      * @param y Y coord.
      * @param value Value to set.
      * @return this.
+     * @throws IllegalArgumentException If the value doesn't fit into the cells of the storage.
      */
     public final Map set(int x, int y, long value) {
-        this.matrix[y][x] = Math.abs(value);
+        long newValue = Math.abs(value);
+        if (listeners.isEmpty()) {
+            storage.set(x, y, newValue);
+            return this;
+        }
+        long oldValue = storage.get(x, y);
+        storage.set(x, y, newValue);
+        if (oldValue != newValue) {
+            for (CellListener listener : listeners) {
+                listener.cellChanged(x, y, oldValue, newValue);
+            }
+        }
         return this;
     }
 
@@ -97,7 +119,19 @@ public class Map {
      * @return Value at coordinates.
      */
     public final long get(int x, int y) {
-        return this.matrix[y][x];
+        return storage.get(x, y);
+    }
+
+    /**
+     * Reads values of the row into the array with one call to the storage.
+     *
+     * @param y Y coord.
+     * @param row Array of at least {@link #getWidth()} elements for the values.
+     * @return The array.
+     */
+    public final long[] getRow(int y, long[] row) {
+        storage.getRow(y, row);
+        return row;
     }
 
     /**
@@ -207,6 +241,62 @@ public class Map {
         return shortestPathTemplate(source, target, A_STAR_HEURISTIC);
     }
 
+    /**
+     * Returns search over this map that keeps its state in flat primitive arrays and reuses them between queries. The
+     * search is bound to the map dimensions and reads current values. Not thread safe: use one search per thread.
+     *
+     * @return New grid search.
+     */
+    public final GridSearch newGridSearch() {
+        return new GridSearch(this);
+    }
+
+    /**
+     * Finds shortest path over the cells of value 0 with Jump Point Search. Path has the same length as the one of
+     * {@link #shortestPathBFS(Cell, Cell)}, but open areas are crossed with a few expansions. Reuse
+     * {@link #newJumpPointSearch(boolean)} for many queries.
+     *
+     * @param source Source cell.
+     * @param target Target cell.
+     * @return Path from source cell to target cell.
+     */
+    public Path shortestPathJPS(Cell source, Cell target) {
+        return newJumpPointSearch(false).shortestPath(source, target);
+    }
+
+    /**
+     * Returns hierarchical search over the cells of value 0 of this map with clusters of
+     * {@link HierarchicalSearch#DEFAULT_CLUSTER_SIZE} cells. The search listens to the changes of the map until it is
+     * detached. Not thread safe: use one search per thread.
+     *
+     * @return New hierarchical search.
+     */
+    public final HierarchicalSearch newHierarchicalSearch() {
+        return new HierarchicalSearch(this, HierarchicalSearch.DEFAULT_CLUSTER_SIZE);
+    }
+
+    /**
+     * Returns flow field toward the nearest of the targets: distance and next step for every cell of this map. The
+     * field listens to the changes of the map until it is detached. Not thread safe.
+     *
+     * @param targets Target cells.
+     * @return New flow field.
+     */
+    public final FlowField newFlowField(Collection<Cell> targets) {
+        return new FlowField(this, targets);
+    }
+
+    /**
+     * Returns reusable Jump Point Search over the cells of value 0 of this map. With precomputed jump distances (JPS+)
+     * the map must not change while the search is used. Not thread safe: use one search per thread.
+     *
+     * @param precompute Whether to precompute jump distances.
+     * @return New jump point search.
+     */
+    public final JumpPointSearch newJumpPointSearch(boolean precompute) {
+        return new JumpPointSearch(this, precompute);
+    }
+
     /**
      * Template for A* and Dijkstra algorithm. Treats each cell as a price of getting into it.
      *
@@ -289,6 +379,19 @@ public class Map {
         return Math.abs(this.get(current) - this.get(next)) + current.manhattanDistanceTo(next);
     }
 
+    /**
+     * Checks whether {@link #cost(Cell, Cell)} is the one of this class, so searches can compute it in place.
+     *
+     * @return Whether the cost of a step to a neighbor is the absolute difference of the values plus 1.
+     */
+    final boolean hasDefaultCost() {
+        try {
+            return getClass().getMethod("cost", Cell.class, Cell.class).getDeclaringClass() == Map.class;
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     /**
      * Returns neighbors for given cell.
      *
@@ -329,21 +432,18 @@ public class Map {
      * @return Number of planes.
      */
     public final long getNumberOfPlains(Long ignoreValue) {
-        Set<Cell> visitedCells = new HashSet<>(this.getWidth() * this.getHeight() * 2);
-        int result = 0;
-        for (int h = 0; h < this.getHeight(); h++) {
-            for (int w = 0; w < this.getWidth(); w++) {
-                Cell source = new Cell(w, h);
-                if (!visitedCells.contains(source)) {
-                    long sourceValue = get(source);
-                    shortestPathBFS(source, null, sourceValue, visitedCells);
-                    if (ignoreValue != null && sourceValue != ignoreValue) {
-                        result++;
-                    }
-                }
-            }
-        }
-        return result;
+        return getPlains(ignoreValue).getNumberOfRegions();
+    }
+
+    /**
+     * Labels plains (4-connected areas of equal values) in parallel. Gives label, size, value and bounding box of every
+     * plain.
+     *
+     * @param ignoreValue Value to ignore. If null all values are considered.
+     * @return Plains.
+     */
+    public final MapRegions getPlains(Long ignoreValue) {
+        return MapRegions.of(this, ignoreValue);
     }
 
     /**
@@ -390,6 +490,24 @@ public class Map {
         return x >= 0 && x < getWidth() && y >= 0 && y < getHeight();
     }
 
+    /**
+     * Adds listener of the cell changes made with {@link #set(int, int, long)}.
+     *
+     * @param listener Listener.
+     */
+    public final void addCellListener(CellListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes listener of the cell changes.
+     *
+     * @param listener Listener.
+     */
+    public final void removeCellListener(CellListener listener) {
+        listeners.remove(listener);
+    }
+
     /**
      * Returns the first found largest rectangle in the map. Searches non-zero cells.
      *
@@ -400,26 +518,14 @@ public class Map {
     }
 
     /**
-     * Returns the first found largest rectangle in the map.
+     * Returns the first found largest rectangle in the map. Scans rows one at a time with O(width) memory, see
+     * {@link LargestRectangleScanner}.
      *
      * @param zeroArea Whether to search 0's area or areas of values > 0.
      * @return Largest rectangle for the given condition.
      */
     public final Rectangle findLargestRectangle(boolean zeroArea) {
-        long[][] assistantMatrix = buildAssistantMatrix(zeroArea);
-        Rectangle max = null;
-        Rectangle candidate;
-        for (int y = 0; y < assistantMatrix.length; y++) {
-            candidate = findLargestRectangle(assistantMatrix[y], y);
-            if (candidate != null && (max == null || candidate.area() > max.area())) {
-                max = candidate;
-            }
-        }
-        if (max == null) {
-            return null;
-        }
-        // Invert y index.
-        return new Rectangle(max.getX(), max.getY() - max.getHeight() + 1, max.getWidth(), max.getHeight());
+        return LargestRectangleScanner.scan(this, zeroArea);
     }
 
     /**
@@ -433,7 +539,8 @@ public class Map {
     }
 
     /**
-     * Builds assistant matrix for current map with given direction.
+     * Builds assistant matrix for current map with given direction. Reads every cell once, rows are processed in
+     * parallel in the common fork-join pool, see {@link AssistantMatrices}.
      *
      * @param direction Direction.
      *
@@ -441,54 +548,52 @@ public class Map {
      * @return Assistant matrix.
      */
     public final long[][] buildAssistantMatrix(Direction direction, boolean zeroArea) {
-        long[][] assistant = new long[getHeight()][getWidth()];
-        long value;
-        if (Direction.RIGHT2LEFT.equals(direction)) {
-            for (int y = 0; y < matrix.length; y++) {
-                for (int x = matrix[0].length - 1; x >= 0; x--) {
-                    value = get(x, y);
-                    if (!zeroArea && value > 0 || zeroArea && value == 0) {
-                        assistant[y][x] = x < matrix[0].length - 1 ? assistant[y][x + 1] + 1 : 1;
-                    } else {
-                        assistant[y][x] = 0;
-                    }
-                }
-            }
-        } else if (Direction.LEFT2RIGHT.equals(direction)) {
-            for (int y = 0; y < matrix.length; y++) {
-                for (int x = 0; x < matrix[0].length; x++) {
-                    value = get(x, y);
-                    if (!zeroArea && value > 0 || zeroArea && value == 0) {
-                        assistant[y][x] = x > 0 ? assistant[y][x - 1] + 1 : 1;
-                    } else {
-                        assistant[y][x] = 0;
-                    }
-                }
-            }
-        } else if (Direction.TOP2BOTTOM.equals(direction)) {
-            for (int x = 0; x < matrix[0].length; x++) {
-                for (int y = 0; y < matrix.length; y++) {
-                    value = get(x, y);
-                    if (!zeroArea && value > 0 || zeroArea && value == 0) {
-                        assistant[y][x] = y > 0 ? assistant[y - 1][x] + 1 : 1;
-                    } else {
-                        assistant[y][x] = 0;
-                    }
-                }
-            }
-        } else {
-            for (int x = 0; x < matrix[0].length; x++) {
-                for (int y = matrix.length - 1; y >= 0; y--) {
-                    value = get(x, y);
-                    if (!zeroArea && value > 0 || zeroArea && value == 0) {
-                        assistant[y][x] = y < matrix.length - 1 ? assistant[y + 1][x] + 1 : 1;
-                    } else {
-                        assistant[y][x] = 0;
-                    }
-                }
-            }
-        }
-        return assistant;
+        return AssistantMatrices.build(this, direction, zeroArea, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds assistant matrices for all the directions in one pass over the cells in the common fork-join pool.
+     *
+     * @param zeroArea Whether to search 0's area or areas of values > 0.
+     * @return Assistant matrices by direction.
+     */
+    public final EnumMap<Direction, long[][]> buildAssistantMatrices(boolean zeroArea) {
+        return buildAssistantMatrices(zeroArea, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds assistant matrices for all the directions in one pass over the cells in the given fork-join pool.
+     *
+     * @param zeroArea Whether to search 0's area or areas of values > 0.
+     * @param pool Fork-join pool.
+     * @return Assistant matrices by direction.
+     */
+    public final EnumMap<Direction, long[][]> buildAssistantMatrices(boolean zeroArea, ForkJoinPool pool) {
+        return AssistantMatrices.buildAll(this, zeroArea, pool);
+    }
+
+    /**
+     * Returns the first found largest rectangle in the map. Searches bands of rows in parallel in the common fork-join
+     * pool, needs O(width * height) memory for the assistant matrix. Result is the same as of
+     * {@link #findLargestRectangle(boolean)}.
+     *
+     * @param zeroArea Whether to search 0's area or areas of values > 0.
+     * @return Largest rectangle for the given condition.
+     */
+    public final Rectangle findLargestRectangleParallel(boolean zeroArea) {
+        return findLargestRectangleParallel(zeroArea, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns the first found largest rectangle in the map. Searches bands of rows in parallel in the given fork-join
+     * pool.
+     *
+     * @param zeroArea Whether to search 0's area or areas of values > 0.
+     * @param pool Fork-join pool.
+     * @return Largest rectangle for the given condition.
+     */
+    public final Rectangle findLargestRectangleParallel(boolean zeroArea, ForkJoinPool pool) {
+        return AssistantMatrices.findLargestRectangle(this, zeroArea, pool);
     }
 
     /**
@@ -503,7 +608,13 @@ public class Map {
     @Override
     public int hashCode() {
         int hash = 7;
-        hash = 29 * hash + Arrays.deepHashCode(this.matrix);
+        for (int y = 0; y < getHeight(); y++) {
+            int rowHash = 1;
+            for (int x = 0; x < getWidth(); x++) {
+                rowHash = 31 * rowHash + Long.hashCode(get(x, y));
+            }
+            hash = 29 * hash + rowHash;
+        }
         return hash;
     }
 
@@ -513,7 +624,17 @@ public class Map {
             return false;
         }
         final Map other = (Map) obj;
-        return Arrays.deepEquals(this.matrix, other.matrix);
+        if (getWidth() != other.getWidth() || getHeight() != other.getHeight()) {
+            return false;
+        }
+        for (int y = 0; y < getHeight(); y++) {
+            for (int x = 0; x < getWidth(); x++) {
+                if (get(x, y) != other.get(x, y)) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     /**
@@ -612,7 +733,7 @@ public class Map {
 
     /**
      * Parses given string (or string) as a string representation of map. Treats each string as a row if multiple
-     * strings are given or whole map as a single string with new lines.
+     * strings are given or whole map as a single string with new lines. See {@link MapFile} for the format.
      *
      * @param args String rows (or map as single string).
      * @return Parsed map.
@@ -628,107 +749,24 @@ public class Map {
             }
             mapAsString = sb.toString();
         }
-
-        int i = 0;
-        int j = 0;
-        List<String> rows = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new StringReader(mapAsString))) {
-            String row;
-            while ((row = br.readLine()) != null) {
-                if (row.charAt(0) == Constants.HEADER_CHAR) {
-                    continue;
-                }
-                j = Math.max(parseRow(row, rows.size(), null), j); // Evaluate first.
-                rows.add(row);
-            }
-        } catch (IOException ex) {
-            throw new RuntimeException("Error while reading string.", ex);
-        }
-        Map map = new Map(j, rows.size());
-        for (String row : rows) {
-            parseRow(row, i++, map);
-        }
-        return map;
+        return MapFile.parse(mapAsString.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
-     * Parses given row string.
-     *
-     * @param row Row.
-     * @param rowIndex Row index.
-     * @param map Map to put the results.
-     * @return Number of parsed columns.
+     * Listener of the cell changes.
      */
-    private static int parseRow(String row, int rowIndex, Map map) {
-        String[] tokens = skipEmpty(Constants.NON_DIGITS.split(row));
-        int columns = tokens.length >= 1 ? tokens[0].length() : 0;
-        if (tokens.length > 1) {
-            columns = tokens.length;
-        }
-        char ch;
-        if (map == null) {
-            return columns;
-        }
-        if (tokens.length > 1) {
-            for (int j = 0;
-                    j < tokens.length;
-                    j++) {
-                String token = tokens[j];
-                if (!token.isEmpty()) {
-                    ch = token.charAt(0);
-                    if (Character.isDigit(ch)) {
-                        map.set(j, rowIndex, Integer.parseInt(tokens[j]));
-                    } else if (ch == Constants.BIG_CELL) {
-                        map.set(j, rowIndex, Constants.BIG_CELL_VALUE);
-                    }
-                }
-            }
-        } else {
-            row = tokens[0];
-            for (int j = 0;
-                    j < row.length();
-                    j++) {
-                ch = row.charAt(j);
-                if (ch == Constants.EMPTY_CELL || ch == '0') {
-                    map.set(j, rowIndex, 0);
-                } else if (ch == Constants.BIG_CELL) {
-                    map.set(j, rowIndex, Constants.BIG_CELL_VALUE);
-                } else if (Character.isDigit(ch)) {
-                    map.set(j, rowIndex, ch - 48);
-                }
-            }
-        }
+    @FunctionalInterface
+    public interface CellListener {
 
-        return columns;
-    }
-
-    /**
-     * Skips nulls or empty strings from given array.
-     *
-     * @param strings Array to filter.
-     * @return Filtered array.
-     */
-    private static String[] skipEmpty(String[] strings) {
-        String[] result = strings;
-        List<String> resultList = null;
-        for (int i = 0; i < strings.length; i++) {
-            String s = strings[i];
-            if (s == null || s.isEmpty()) {
-                result = null;
-                if (resultList == null) {
-                    resultList = new ArrayList<>(strings.length);
-                    for (int j = 0; j < i; j++) {
-                        resultList.add(strings[j]);
-                    }
-                }
-            } else if (resultList != null) {
-                resultList.add(s);
-            }
-        }
-        if (resultList != null) {
-            return resultList.toArray(Constants.EMPTY_STRINGS);
-        }
-        return result;
+        /**
+         * Called after the value of the cell has changed.
+         *
+         * @param x Cell X coordinate.
+         * @param y Cell Y coordinate.
+         * @param oldValue Old value.
+         * @param newValue New value.
+         */
+        void cellChanged(int x, int y, long oldValue, long newValue);
     }
 
     /**
@@ -1123,8 +1161,5 @@ public class Map {
         static final long EMPTY_CELL_VALUE = 0L;
         static final char BIG_CELL = '#';
         static final char HEADER_CHAR = '-';
-
-        static final Pattern NON_DIGITS = Pattern.compile("[^0-9\\s#]+");
-        static final String[] EMPTY_STRINGS = new String[0];
     }
 }
@@ -0,0 +1,256 @@
+package com.nobullet.graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Streaming import of {@link Map} from its text representation, the format of {@link Map#toString()} and
+ * {@link Map#fromString(String...)}:
+ * <ul>
+ * <li>Lines starting with '-' (headers) and empty lines are skipped, line endings may be LF or CRLF.</li>
+ * <li>Bytes other than digits, whitespace and '#' separate tokens.</li>
+ * <li>A row of one token has a cell per byte: digit is its value, '#' is a big cell, other bytes are 0.</li>
+ * <li>A row of several tokens has a cell per token: leading digits are the value, '#' is a big cell, otherwise 0.</li>
+ * <li>Width of the map is the maximal number of cells in a row, shorter rows are padded with 0.</li>
+ * </ul>
+ * The input is read in chunks cut at line ends, every chunk is scanned from bytes for rows and their widths in the
+ * common fork-join pool while the next one is read, a few chunks at a time. Scanned chunks keep their bytes: when the
+ * width is known, the cells of the chunks are filled from them in parallel. No regular expressions or strings are
+ * involved.
+ */
+public final class MapFile {
+
+    static final int CHUNK_SIZE = 1 << 22;
+
+    private MapFile() {
+    }
+
+    /**
+     * Reads map from the file.
+     *
+     * @param file File to read.
+     * @return New map.
+     * @throws IOException If reading fails.
+     */
+    public static Map read(java.nio.file.Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Reads map from the stream. The stream is not closed.
+     *
+     * @param input Input stream.
+     * @return New map.
+     * @throws IOException If reading fails.
+     */
+    public static Map read(InputStream input) throws IOException {
+        return read(input, CHUNK_SIZE);
+    }
+
+    /**
+     * Reads map from the channel. The channel is not closed.
+     *
+     * @param channel Channel.
+     * @return New map.
+     * @throws IOException If reading fails.
+     */
+    public static Map read(ReadableByteChannel channel) throws IOException {
+        return read(channel, CHUNK_SIZE);
+    }
+
+    /**
+     * Reads map in chunks of the given size (chunks are extended for longer lines).
+     *
+     * @param channel Channel.
+     * @param chunkSize Chunk size in bytes.
+     * @return New map.
+     * @throws IOException If reading fails.
+     */
+    static Map read(ReadableByteChannel channel, int chunkSize) throws IOException {
+        return read(Channels.newInputStream(channel), chunkSize);
+    }
+
+    /**
+     * Reads map in chunks of the given size (chunks are extended for longer lines).
+     *
+     * @param input Input stream.
+     * @param chunkSize Chunk size in bytes.
+     * @return New map.
+     * @throws IOException If reading fails.
+     */
+    static Map read(InputStream input, int chunkSize) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        ChunkReader.read(input, chunkSize, MapFile::scan, chunks::add);
+        return build(chunks.toArray(new Chunk[chunks.size()]));
+    }
+
+    /**
+     * Parses map from the bytes in the calling thread.
+     *
+     * @param bytes Bytes.
+     * @return New map.
+     */
+    static Map parse(byte[] bytes) {
+        return build(new Chunk[]{scan(bytes, bytes.length)});
+    }
+
+    /**
+     * Creates map of the maximal width and fills rows of the chunks in parallel.
+     *
+     * @param chunks Scanned chunks.
+     * @return New map.
+     */
+    private static Map build(Chunk[] chunks) {
+        int width = 0;
+        int[] offsets = new int[chunks.length + 1];
+        for (int c = 0; c < chunks.length; c++) {
+            width = Math.max(width, chunks[c].width);
+            offsets[c + 1] = offsets[c] + chunks[c].rows;
+        }
+        Map map = new Map(width, offsets[chunks.length]);
+        CellStorage storage = map.getStorage();
+        if (chunks.length == 1) {
+            fill(chunks[0], 0, storage);
+        } else {
+            ForkJoinPool.commonPool().invoke(new CsrGraph.RowsTask(0, chunks.length,
+                    c -> fill(chunks[c], offsets[c], storage)));
+        }
+        return map;
+    }
+
+    /**
+     * Finds rows of the chunk and their widths.
+     *
+     * @param bytes Bytes of the chunk.
+     * @param length Length of the chunk.
+     * @return Scanned chunk.
+     */
+    static Chunk scan(byte[] bytes, int length) {
+        Chunk chunk = new Chunk(bytes, Math.max(16, length / 64));
+        int position = 0;
+        while (position < length) {
+            int end = position;
+            while (end < length && bytes[end] != '\n') {
+                end++;
+            }
+            int lineEnd = end > position && bytes[end - 1] == '\r' ? end - 1 : end;
+            if (lineEnd > position && bytes[position] != Map.Constants.HEADER_CHAR) {
+                int tokens = 0;
+                int tokenLength = 0;
+                boolean inToken = false;
+                for (int i = position; i < lineEnd; i++) {
+                    if (isSeparator(bytes[i])) {
+                        inToken = false;
+                    } else {
+                        if (!inToken) {
+                            tokens++;
+                            inToken = true;
+                        }
+                        if (tokens == 1) {
+                            tokenLength++;
+                        }
+                    }
+                }
+                chunk.add(position, lineEnd, tokens > 1 ? tokens : tokenLength, tokens <= 1);
+            }
+            position = end + 1;
+        }
+        return chunk;
+    }
+
+    private static void fill(Chunk chunk, int firstRow, CellStorage storage) {
+        byte[] bytes = chunk.bytes;
+        for (int row = 0; row < chunk.rows; row++) {
+            int y = firstRow + row;
+            int from = chunk.starts[row];
+            int to = chunk.ends[row];
+            int columns = chunk.columns[row];
+            while (from < to && isSeparator(bytes[from])) {
+                from++;
+            }
+            if (chunk.perByte[row]) {
+                // Single token: a cell per byte.
+                for (int x = 0; x < columns; x++) {
+                    byte value = bytes[from + x];
+                    if (value == Map.Constants.BIG_CELL) {
+                        storage.set(x, y, Map.Constants.BIG_CELL_VALUE);
+                    } else if (value > '0' && value <= '9') {
+                        storage.set(x, y, value - '0');
+                    }
+                }
+                continue;
+            }
+            for (int x = 0, i = from; x < columns; x++) {
+                while (isSeparator(bytes[i])) {
+                    i++;
+                }
+                if (bytes[i] == Map.Constants.BIG_CELL) {
+                    storage.set(x, y, Map.Constants.BIG_CELL_VALUE);
+                } else {
+                    long value = 0L;
+                    for (; i < to && bytes[i] >= '0' && bytes[i] <= '9'; i++) {
+                        value = value * 10 + bytes[i] - '0';
+                    }
+                    if (value != 0L) {
+                        storage.set(x, y, value);
+                    }
+                }
+                while (i < to && !isSeparator(bytes[i])) {
+                    i++;
+                }
+            }
+        }
+    }
+
+    private static boolean isSeparator(byte value) {
+        return !(value >= '0' && value <= '9' || value == Map.Constants.BIG_CELL || value == ' ' || value == '\t'
+                || value == '\n' || value == 0x0B || value == '\f' || value == '\r');
+    }
+
+    /**
+     * Rows found in one chunk: byte ranges and numbers of cells.
+     */
+    static final class Chunk {
+
+        final byte[] bytes;
+        int[] starts;
+        int[] ends;
+        int[] columns;
+        boolean[] perByte;
+        int rows;
+        int width;
+
+        Chunk(byte[] bytes, int capacity) {
+            this.bytes = bytes;
+            this.starts = new int[capacity];
+            this.ends = new int[capacity];
+            this.columns = new int[capacity];
+            this.perByte = new boolean[capacity];
+        }
+
+        void add(int start, int end, int cells, boolean cellPerByte) {
+            if (rows == starts.length) {
+                starts = Arrays.copyOf(starts, rows * 2);
+                ends = Arrays.copyOf(ends, rows * 2);
+                columns = Arrays.copyOf(columns, rows * 2);
+                perByte = Arrays.copyOf(perByte, rows * 2);
+            }
+            starts[rows] = start;
+            ends[rows] = end;
+            columns[rows] = cells;
+            perByte[rows] = cellPerByte;
+            width = Math.max(width, cells);
+            rows++;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.nobullet.graph;
+
+import com.nobullet.algo.DisjointSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Regions (plains) of a {@link Map}: maximal 4-connected areas of cells with equal values. Labels, sizes, values and
+ * bounding boxes of the regions.
+ * <p>
+ * Two-pass labeling with a {@link DisjointSet} over the cell indices {@code y * width + x}. The first pass splits rows
+ * of the map into bands of about {@link #BAND_CELLS} cells, unites the cells of every band with their left and upper
+ * neighbors in parallel and merges the borders of neighbor bands when both halves are done. Tasks touch only the cells
+ * (and so the union roots) of their own bands. The second pass numbers the union roots band by band and labels every
+ * cell with the number of its root, bounding boxes are collected per run of equal labels.
+ */
+public final class MapRegions {
+
+    /**
+     * Label of the ignored cells.
+     */
+    public static final int NO_REGION = -1;
+    static final int BAND_CELLS = 1 << 16;
+
+    final int width;
+    final int height;
+    private final int[] labels;
+    private final long[] values;
+    private final int[] sizes;
+    private final int[] boxes;
+
+    private MapRegions(int width, int height, int[] labels, long[] values, int[] sizes, int[] boxes) {
+        this.width = width;
+        this.height = height;
+        this.labels = labels;
+        this.values = values;
+        this.sizes = sizes;
+        this.boxes = boxes;
+    }
+
+    /**
+     * Labels regions of the map in the common fork-join pool.
+     *
+     * @param map Map.
+     * @param ignoreValue Value of the cells that don't form regions. If null all values are considered.
+     * @return Regions.
+     */
+    public static MapRegions of(Map map, Long ignoreValue) {
+        return of(map, ignoreValue, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Labels regions of the map in the given fork-join pool.
+     *
+     * @param map Map.
+     * @param ignoreValue Value of the cells that don't form regions. If null all values are considered.
+     * @param pool Fork-join pool.
+     * @return Regions.
+     */
+    public static MapRegions of(Map map, Long ignoreValue, ForkJoinPool pool) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    String.format("Map %dx%d has too many cells to label.", width, height));
+        }
+        int cells = width * height;
+        if (cells == 0) {
+            return new MapRegions(width, height, new int[0], new long[0], new int[0], new int[0]);
+        }
+        boolean ignore = ignoreValue != null;
+        long ignored = ignore ? ignoreValue : 0L;
+        DisjointSet set = new DisjointSet(cells);
+        int bandRows = Math.max(1, BAND_CELLS / width);
+        int bands = (height + bandRows - 1) / bandRows;
+        pool.invoke(new UnionTask(map, set, ignore, ignored, bandRows, 0, bands));
+
+        // Roots are numbered band by band in the order of their indices.
+        int[] labels = new int[cells];
+        int[] offsets = new int[bands + 1];
+        pool.invoke(new CsrGraph.RowsTask(0, bands, band -> {
+            long[] row = new long[width];
+            int roots = 0;
+            for (int y = band * bandRows, end = bandEnd(band, bandRows, height); y < end; y++) {
+                map.getRow(y, row);
+                for (int x = 0, cell = y * width; x < width; x++, cell++) {
+                    if (set.find(cell) == cell && !(ignore && row[x] == ignored)) {
+                        roots++;
+                    }
+                }
+            }
+            offsets[band + 1] = roots;
+        }));
+        for (int band = 0; band < bands; band++) {
+            offsets[band + 1] += offsets[band];
+        }
+        int regions = offsets[bands];
+        long[] values = new long[regions];
+        int[] sizes = new int[regions];
+        pool.invoke(new CsrGraph.RowsTask(0, bands, band -> {
+            long[] row = new long[width];
+            int label = offsets[band];
+            for (int y = band * bandRows, end = bandEnd(band, bandRows, height); y < end; y++) {
+                map.getRow(y, row);
+                for (int x = 0, cell = y * width; x < width; x++, cell++) {
+                    long value = row[x];
+                    if (ignore && value == ignored) {
+                        labels[cell] = NO_REGION;
+                    } else if (set.find(cell) == cell) {
+                        values[label] = value;
+                        sizes[label] = set.getUnionSize(cell);
+                        labels[cell] = label++;
+                    }
+                }
+            }
+        }));
+        AtomicIntegerArray atomicBoxes = new AtomicIntegerArray(regions * 4);
+        for (int region = 0; region < regions; region++) {
+            atomicBoxes.set(region * 4, Integer.MAX_VALUE);
+            atomicBoxes.set(region * 4 + 1, Integer.MAX_VALUE);
+            atomicBoxes.set(region * 4 + 2, Integer.MIN_VALUE);
+            atomicBoxes.set(region * 4 + 3, Integer.MIN_VALUE);
+        }
+        pool.invoke(new CsrGraph.RowsTask(0, bands, band -> {
+            for (int y = band * bandRows, end = bandEnd(band, bandRows, height); y < end; y++) {
+                int runStart = 0;
+                int runLabel = NO_REGION;
+                for (int x = 0; x <= width; x++) {
+                    int label = NO_REGION;
+                    if (x < width) {
+                        int cell = y * width + x;
+                        label = labels[cell] == NO_REGION ? NO_REGION : labels[set.find(cell)];
+                        labels[cell] = label;
+                    }
+                    if (x == width || label != runLabel) {
+                        if (runLabel != NO_REGION) {
+                            extend(atomicBoxes, runLabel, runStart, x - 1, y);
+                        }
+                        runStart = x;
+                        runLabel = label;
+                    }
+                }
+            }
+        }));
+        int[] boxes = new int[regions * 4];
+        for (int i = 0; i < boxes.length; i++) {
+            boxes[i] = atomicBoxes.get(i);
+        }
+        return new MapRegions(width, height, labels, values, sizes, boxes);
+    }
+
+    /**
+     * Returns number of regions.
+     *
+     * @return Number of regions.
+     */
+    public int getNumberOfRegions() {
+        return sizes.length;
+    }
+
+    /**
+     * Returns label of the region of the cell.
+     *
+     * @param x X.
+     * @param y Y.
+     * @return Label from 0 to the number of regions (exclusive) or {@link #NO_REGION} for ignored cells.
+     */
+    public int getLabel(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IllegalArgumentException(
+                    String.format("Given point (%d, %d) doesn't belong to rectangle (%d, %d)", x, y, width, height));
+        }
+        return labels[y * width + x];
+    }
+
+    /**
+     * Returns label of the region of the cell.
+     *
+     * @param cell Cell.
+     * @return Label or {@link #NO_REGION} for ignored cells.
+     */
+    public int getLabel(Map.Cell cell) {
+        return getLabel(cell.getX(), cell.getY());
+    }
+
+    /**
+     * Returns number of cells in the region.
+     *
+     * @param label Region label.
+     * @return Number of cells.
+     */
+    public int getSize(int label) {
+        return sizes[checkLabel(label)];
+    }
+
+    /**
+     * Returns value of the cells of the region.
+     *
+     * @param label Region label.
+     * @return Value.
+     */
+    public long getValue(int label) {
+        return values[checkLabel(label)];
+    }
+
+    /**
+     * Returns bounding box of the region.
+     *
+     * @param label Region label.
+     * @return Bounding box.
+     */
+    public Map.Rectangle getBoundingBox(int label) {
+        int box = checkLabel(label) * 4;
+        return Map.Rectangle.of(boxes[box], boxes[box + 1], boxes[box + 2] - boxes[box] + 1,
+                boxes[box + 3] - boxes[box + 1] + 1);
+    }
+
+    private int checkLabel(int label) {
+        if (label < 0 || label >= sizes.length) {
+            throw new IllegalArgumentException(
+                    String.format("Label must be from 0 to %d (exclusive): %d.", sizes.length, label));
+        }
+        return label;
+    }
+
+    private static void extend(AtomicIntegerArray boxes, int label, int fromX, int toX, int y) {
+        int box = label * 4;
+        boxes.accumulateAndGet(box, fromX, Math::min);
+        boxes.accumulateAndGet(box + 1, y, Math::min);
+        boxes.accumulateAndGet(box + 2, toX, Math::max);
+        boxes.accumulateAndGet(box + 3, y, Math::max);
+    }
+
+    private static int bandEnd(int band, int bandRows, int height) {
+        return Math.min(height, (band + 1) * bandRows);
+    }
+
+    /**
+     * First pass over a range of bands: unites cells inside single bands, then merges the border row between the
+     * halves of the range.
+     */
+    private static final class UnionTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        final Map map;
+        final DisjointSet set;
+        final boolean ignore;
+        final long ignored;
+        final int bandRows;
+        final int from;
+        final int to;
+
+        UnionTask(Map map, DisjointSet set, boolean ignore, long ignored, int bandRows, int from, int to) {
+            this.map = map;
+            this.set = set;
+            this.ignore = ignore;
+            this.ignored = ignored;
+            this.bandRows = bandRows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                int fromRow = from * bandRows;
+                int toRow = bandEnd(from, bandRows, map.getHeight());
+                long[] upper = new long[map.getWidth()];
+                long[] row = new long[map.getWidth()];
+                for (int y = fromRow; y < toRow; y++) {
+                    map.getRow(y, row);
+                    uniteRow(y, row, y > fromRow ? upper : null);
+                    long[] swap = upper;
+                    upper = row;
+                    row = swap;
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new UnionTask(map, set, ignore, ignored, bandRows, from, middle),
+                    new UnionTask(map, set, ignore, ignored, bandRows, middle, to));
+            uniteUp(middle * bandRows);
+        }
+
+        private void uniteRow(int y, long[] row, long[] upper) {
+            int width = map.getWidth();
+            int cell = y * width;
+            long left = 0L;
+            for (int x = 0; x < width; x++, cell++) {
+                long value = row[x];
+                boolean sameAsLeft = x > 0 && left == value;
+                left = value;
+                if (ignore && value == ignored) {
+                    continue;
+                }
+                if (sameAsLeft) {
+                    set.union(cell - 1, cell);
+                }
+                if (upper != null && upper[x] == value) {
+                    set.union(cell - width, cell);
+                }
+            }
+        }
+
+        private void uniteUp(int y) {
+            int width = map.getWidth();
+            long[] upper = map.getRow(y - 1, new long[width]);
+            long[] row = map.getRow(y, new long[width]);
+            for (int x = 0; x < width; x++) {
+                long value = row[x];
+                if (upper[x] == value && !(ignore && value == ignored)) {
+                    set.union(y * width + x - width, y * width + x);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.nobullet.graph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Off-heap cell storage in a memory-mapped file, so maps larger than the heap are opened without loading them: the
+ * operating system pages the cells in and out.
+ * <p>
+ * Layout: {@link #HEADER_SIZE} bytes of header (magic, width, height, cell type, tile side) followed by square tiles of
+ * {@code tile * tile} cells, tiles in row-major order, cells of a tile in row-major order. Cells close to each other
+ * in both directions share pages, which suits path searches better than rows. The file is mapped with several buffers
+ * of whole tiles up to {@link #CHUNK_SIZE} bytes each, as a single buffer is limited to 2GiB.
+ * <p>
+ * Changes are written to the file by the operating system, {@link #close()} forces them. Not thread safe for writes.
+ */
+public final class MappedCellStorage implements CellStorage, Closeable {
+
+    static final int MAGIC = 0x4E4D4150;
+    static final int HEADER_SIZE = 32;
+    /**
+     * Default tile side.
+     */
+    public static final int DEFAULT_TILE = 64;
+    static final long CHUNK_SIZE = 1L << 30;
+
+    private final int width;
+    private final int height;
+    private final Type type;
+    private final int tileShift;
+    private final int tileMask;
+    private final int tilesX;
+    private final int tileBytes;
+    private final int tilesPerChunk;
+    private final MappedByteBuffer[] chunks;
+
+    private MappedCellStorage(FileChannel channel, int width, int height, Type type, int tile, long chunkSize)
+            throws IOException {
+        if (Integer.bitCount(tile) != 1 || (long) tile * tile * type.getBytes() > chunkSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Tile side must be a power of 2 with tiles of at most %d bytes: %d.", chunkSize, tile));
+        }
+        this.width = width;
+        this.height = height;
+        this.type = type;
+        this.tileShift = Integer.numberOfTrailingZeros(tile);
+        this.tileMask = tile - 1;
+        this.tilesX = (width + tile - 1) / tile;
+        int tilesY = (height + tile - 1) / tile;
+        this.tileBytes = tile * tile * type.getBytes();
+        this.tilesPerChunk = (int) (chunkSize / tileBytes);
+        long tiles = (long) tilesX * tilesY;
+        if (tiles > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Too many tiles of side %d: %d.", tile, tiles));
+        }
+        this.chunks = new MappedByteBuffer[(int) ((tiles + tilesPerChunk - 1) / tilesPerChunk)];
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            long first = (long) chunk * tilesPerChunk;
+            long size = Math.min(tilesPerChunk, tiles - first) * tileBytes;
+            chunks[chunk] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + first * tileBytes, size);
+        }
+    }
+
+    /**
+     * Creates file of zeros with {@link #DEFAULT_TILE} tiles and maps it. Replaces existing file.
+     *
+     * @param file File.
+     * @param width Width.
+     * @param height Height.
+     * @param type Type of the cells.
+     * @return Storage.
+     * @throws IOException If the file can't be created.
+     */
+    public static MappedCellStorage create(Path file, int width, int height, Type type) throws IOException {
+        return create(file, width, height, type, DEFAULT_TILE);
+    }
+
+    /**
+     * Creates file of zeros and maps it. Replaces existing file. The file is sparse where the file system allows it.
+     *
+     * @param file File.
+     * @param width Width.
+     * @param height Height.
+     * @param type Type of the cells.
+     * @param tile Tile side, a power of 2.
+     * @return Storage.
+     * @throws IOException If the file can't be created.
+     */
+    public static MappedCellStorage create(Path file, int width, int height, Type type, int tile)
+            throws IOException {
+        return create(file, width, height, type, tile, CHUNK_SIZE);
+    }
+
+    /**
+     * Creates file of zeros and maps it with buffers of the given size.
+     *
+     * @param file File.
+     * @param width Width.
+     * @param height Height.
+     * @param type Type of the cells.
+     * @param tile Tile side, a power of 2.
+     * @param chunkSize Maximal size of a mapped buffer.
+     * @return Storage.
+     * @throws IOException If the file can't be created.
+     */
+    static MappedCellStorage create(Path file, int width, int height, Type type, int tile, long chunkSize)
+            throws IOException {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Expecting correct dimensions.");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(width).putInt(height).putInt(type.ordinal()).putInt(tile);
+            header.rewind();
+            channel.write(header, 0L);
+            // Mapping is valid after the channel is closed.
+            return new MappedCellStorage(channel, width, height, type, tile, chunkSize);
+        }
+    }
+
+    /**
+     * Maps existing file for reading and writing.
+     *
+     * @param file File.
+     * @return Storage.
+     * @throws IOException If the file can't be read, is not a map file or is corrupted (including wrong size).
+     */
+    public static MappedCellStorage open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // Read the whole header.
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(String.format("Not a map file: %s.", file));
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            int type = header.getInt();
+            int tile = header.getInt();
+            if (width < 0 || height < 0 || type < 0 || type >= Type.values().length || Integer.bitCount(tile) != 1
+                    || (long) tile * tile * Type.values()[type].getBytes() > CHUNK_SIZE) {
+                throw new IOException(String.format("Corrupted map file: %s.", file));
+            }
+            long tiles = (long) ((width + tile - 1) / tile) * ((height + tile - 1) / tile);
+            if (tiles > Integer.MAX_VALUE) {
+                throw new IOException(String.format("Corrupted map file: %s.", file));
+            }
+            long size = HEADER_SIZE + tiles * tile * tile * Type.values()[type].getBytes();
+            if (channel.size() != size) {
+                throw new IOException(String.format("Corrupted map file of %d bytes, expecting %d: %s.",
+                        channel.size(), size, file));
+            }
+            return new MappedCellStorage(channel, width, height, Type.values()[type], tile, CHUNK_SIZE);
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns tile side.
+     *
+     * @return Tile side.
+     */
+    public int getTile() {
+        return tileMask + 1;
+    }
+
+    @Override
+    public long get(int x, int y) {
+        checkBounds(x, y);
+        int tile = (y >>> tileShift) * tilesX + (x >>> tileShift);
+        ByteBuffer chunk = chunks[tile / tilesPerChunk];
+        int offset = offset(tile, x, y);
+        switch (type) {
+            case BYTE:
+                return chunk.get(offset) & 0xFFL;
+            case SHORT:
+                return chunk.getShort(offset) & 0xFFFFL;
+            case INT:
+                return chunk.getInt(offset) & 0xFFFFFFFFL;
+            default:
+                return chunk.getLong(offset);
+        }
+    }
+
+    /**
+     * Reads the row tile by tile: the type is checked once per tile and the cells of a tile row are consecutive.
+     *
+     * @param y Y.
+     * @param row Array of at least {@link #getWidth()} elements for the values.
+     */
+    @Override
+    public void getRow(int y, long[] row) {
+        CellStorage.checkRow(this, y, row);
+        int bytes = type.getBytes();
+        for (int from = 0; from < width; from += tileMask + 1) {
+            int tile = (y >>> tileShift) * tilesX + (from >>> tileShift);
+            ByteBuffer chunk = chunks[tile / tilesPerChunk];
+            int offset = offset(tile, from, y);
+            int to = Math.min(width, from + tileMask + 1);
+            switch (type) {
+                case BYTE:
+                    for (int x = from; x < to; x++, offset += bytes) {
+                        row[x] = chunk.get(offset) & 0xFFL;
+                    }
+                    break;
+                case SHORT:
+                    for (int x = from; x < to; x++, offset += bytes) {
+                        row[x] = chunk.getShort(offset) & 0xFFFFL;
+                    }
+                    break;
+                case INT:
+                    for (int x = from; x < to; x++, offset += bytes) {
+                        row[x] = chunk.getInt(offset) & 0xFFFFFFFFL;
+                    }
+                    break;
+                default:
+                    for (int x = from; x < to; x++, offset += bytes) {
+                        row[x] = chunk.getLong(offset);
+                    }
+            }
+        }
+    }
+
+    @Override
+    public void set(int x, int y, long value) {
+        checkBounds(x, y);
+        type.check(value);
+        int tile = (y >>> tileShift) * tilesX + (x >>> tileShift);
+        ByteBuffer chunk = chunks[tile / tilesPerChunk];
+        int offset = offset(tile, x, y);
+        switch (type) {
+            case BYTE:
+                chunk.put(offset, (byte) value);
+                break;
+            case SHORT:
+                chunk.putShort(offset, (short) value);
+                break;
+            case INT:
+                chunk.putInt(offset, (int) value);
+                break;
+            default:
+                chunk.putLong(offset, value);
+        }
+    }
+
+    /**
+     * Writes changes to the file.
+     */
+    public void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    /**
+     * Writes changes to the file. Mapping is released when the storage is garbage collected.
+     */
+    @Override
+    public void close() {
+        force();
+    }
+
+    private void checkBounds(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IndexOutOfBoundsException(String.format("Cell (%d, %d) is out of %dx%d.", x, y, width, height));
+        }
+    }
+
+    private int offset(int tile, int x, int y) {
+        return (tile % tilesPerChunk) * tileBytes
+                + (((y & tileMask) << tileShift) + (x & tileMask)) * type.getBytes();
+    }
+}
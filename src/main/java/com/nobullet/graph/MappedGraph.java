@@ -0,0 +1,487 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.GraphFile.Codec;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Read-only graph backed by a memory mapped {@link GraphFile}. Opening doesn't read the file: searches access the CSR
+ * sections straight from the mapping (page cache is shared by all the processes that map the same file), keys are
+ * looked up in the stored hash table and decoded on demand. Use {@link #toCsrGraph()} to copy the graph into the heap
+ * for algorithms that are not available here. Thread safe.
+ */
+public final class MappedGraph {
+
+    final ByteBuffer buffer;
+    final Codec<Key> keyCodec;
+    final Codec<VertexPosition> positionCodec;
+    final Codec<Object> dataCodec;
+    final int verticesNumber;
+    final int edgesNumber;
+    final int flags;
+    final IntBuffer offsets;
+    final IntBuffer targets;
+    final DoubleBuffer costs;
+    final IntBuffer keyOffsets;
+    final int keysPosition;
+    final IntBuffer table;
+    final IntBuffer positionOffsets;
+    final int positionsPosition;
+    final IntBuffer vertexDataOffsets;
+    final int vertexDataPosition;
+    final IntBuffer edgeDataOffsets;
+    final int edgeDataPosition;
+
+    /**
+     * Constructs graph over the mapped file.
+     *
+     * @param buffer Mapped file, little-endian.
+     * @param keyCodec Key codec.
+     * @param positionCodec Position codec.
+     * @param dataCodec Data codec, null if data is not needed.
+     */
+    MappedGraph(ByteBuffer buffer, Codec<Key> keyCodec, Codec<VertexPosition> positionCodec, Codec<Object> dataCodec) {
+        this.buffer = buffer;
+        this.keyCodec = keyCodec;
+        this.positionCodec = positionCodec;
+        this.dataCodec = dataCodec;
+        this.verticesNumber = buffer.getInt(GraphFile.VERTICES_POSITION);
+        this.edgesNumber = buffer.getInt(GraphFile.EDGES_POSITION);
+        this.flags = buffer.getInt(GraphFile.FLAGS_POSITION);
+        this.offsets = intSection(GraphFile.OFFSETS, verticesNumber + 1);
+        this.targets = intSection(GraphFile.TARGETS, edgesNumber);
+        this.costs = section(GraphFile.COSTS, 8L * edgesNumber).asDoubleBuffer();
+        this.keyOffsets = intSection(GraphFile.KEY_OFFSETS, verticesNumber + 1);
+        this.keysPosition = sectionPosition(GraphFile.KEYS);
+        this.table = intSection(GraphFile.TABLE, buffer.getInt(GraphFile.TABLE_SIZE_POSITION));
+        boolean hasPositions = (flags & GraphFile.FLAG_POSITIONS) != 0;
+        this.positionOffsets = hasPositions ? intSection(GraphFile.POSITION_OFFSETS, verticesNumber + 1) : null;
+        this.positionsPosition = hasPositions ? sectionPosition(GraphFile.POSITIONS) : 0;
+        boolean hasData = (flags & GraphFile.FLAG_VERTEX_DATA) != 0;
+        this.vertexDataOffsets = hasData ? intSection(GraphFile.VERTEX_DATA_OFFSETS, verticesNumber + 1) : null;
+        this.vertexDataPosition = hasData ? sectionPosition(GraphFile.VERTEX_DATA) : 0;
+        boolean hasEdgeData = (flags & GraphFile.FLAG_EDGE_DATA) != 0;
+        this.edgeDataOffsets = hasEdgeData ? intSection(GraphFile.EDGE_DATA_OFFSETS, edgesNumber + 1) : null;
+        this.edgeDataPosition = hasEdgeData ? sectionPosition(GraphFile.EDGE_DATA) : 0;
+    }
+
+    /**
+     * Returns number of vertices.
+     *
+     * @return Number of vertices.
+     */
+    public int getNumberOfVertices() {
+        return verticesNumber;
+    }
+
+    /**
+     * Returns number of edges.
+     *
+     * @return Number of edges.
+     */
+    public int getNumberOfEdges() {
+        return edgesNumber;
+    }
+
+    /**
+     * Returns keys of all the vertices. Decodes every key.
+     *
+     * @return Set of keys.
+     */
+    public Set<Key> getVertices() {
+        Set<Key> result = new LinkedHashSet<>(verticesNumber * 4 / 3 + 1);
+        for (int v = 0; v < verticesNumber; v++) {
+            result.add(keyAt(v));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Checks if the given vertex belongs to graph.
+     *
+     * @param vertexKey Vertex key.
+     * @return Whether the given vertex belongs to graph.
+     */
+    public boolean hasVertex(Key vertexKey) {
+        return indexOf(vertexKey) != CsrGraph.NO_VERTEX;
+    }
+
+    /**
+     * Returns vertex position.
+     *
+     * @param vertexKey Vertex key.
+     * @return Optional of vertex position.
+     */
+    public Optional<VertexPosition> getVertexPosition(Key vertexKey) {
+        return Optional.ofNullable(positionAt(getIndex(vertexKey)));
+    }
+
+    /**
+     * Returns vertex data.
+     *
+     * @param vertexKey Vertex key.
+     * @return Optional of vertex data, empty if the file has no data or the graph was opened without data codec.
+     */
+    public Optional<Object> getVertexData(Key vertexKey) {
+        int vertex = getIndex(vertexKey);
+        if (vertexDataOffsets == null || dataCodec == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(decodeOptional(vertexDataPosition, vertexDataOffsets, vertex, dataCodec));
+    }
+
+    /**
+     * Checks if there is an edge between two vertices.
+     *
+     * @param fromKey From key.
+     * @param toKey To key.
+     * @return Whether there is an edge between two vertices.
+     */
+    public boolean hasEdge(Key fromKey, Key toKey) {
+        int from = indexOf(fromKey);
+        int to = indexOf(toKey);
+        return from != CsrGraph.NO_VERTEX && to != CsrGraph.NO_VERTEX && edgeIndex(from, to) >= 0;
+    }
+
+    /**
+     * Returns edge cost.
+     *
+     * @param fromKey From key.
+     * @param toKey To key.
+     * @return Edge cost.
+     * @throws NullPointerException If there is no such edge.
+     */
+    public double getEdgeCost(Key fromKey, Key toKey) {
+        return costs.get(getEdgeIndex(fromKey, toKey));
+    }
+
+    /**
+     * Returns edge data.
+     *
+     * @param fromKey From key.
+     * @param toKey To key.
+     * @return Optional of edge data, empty if the file has no data or the graph was opened without data codec.
+     * @throws NullPointerException If there is no such edge.
+     */
+    public Optional<Object> getEdgeData(Key fromKey, Key toKey) {
+        int edge = getEdgeIndex(fromKey, toKey);
+        if (edgeDataOffsets == null || dataCodec == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(decodeOptional(edgeDataPosition, edgeDataOffsets, edge, dataCodec));
+    }
+
+    /**
+     * Returns keys of adjacent vertices to vertex defined by fromKey.
+     *
+     * @param fromKey From key.
+     * @return Set of adjacent vertices.
+     */
+    public Set<Key> getAdjacentVertices(Key fromKey) {
+        int from = getIndex(fromKey);
+        Set<Key> result = new LinkedHashSet<>();
+        for (int e = offsets.get(from); e < offsets.get(from + 1); e++) {
+            result.add(keyAt(targets.get(e)));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Dijkstra's shortest path algorithm over the mapped sections.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path shortestPathDijkstra(Key sourceKey, Key targetKey) {
+        return priorityFirstSearch(getIndex(sourceKey), getIndex(targetKey), false);
+    }
+
+    /**
+     * A-star shortest path algorithm over the mapped sections. Uses vertex positions as heuristic (decoded on demand).
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path shortestPathAStar(Key sourceKey, Key targetKey) {
+        return priorityFirstSearch(getIndex(sourceKey), getIndex(targetKey), positionOffsets != null);
+    }
+
+    /**
+     * Unweighted breadth-first search over the mapped sections.
+     *
+     * @param sourceKey Source vertex key.
+     * @param targetKey Target vertex key.
+     * @return List of vertices that create the path.
+     */
+    public Path breadthFirstSearch(Key sourceKey, Key targetKey) {
+        int source = getIndex(sourceKey);
+        int target = getIndex(targetKey);
+        SearchSpace space = SearchSpace.acquire(SearchSpace.FORWARD, verticesNumber);
+        try {
+            int[] queue = space.getQueue();
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = source;
+            space.reach(source, 0.0D, source);
+            while (head < tail) {
+                int current = queue[head++];
+                if (current == target) {
+                    break;
+                }
+                for (int e = offsets.get(current); e < offsets.get(current + 1); e++) {
+                    int next = targets.get(e);
+                    if (!space.isReached(next)) {
+                        space.reach(next, 0.0D, current);
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            return reconstructByParents(source, target, space);
+        } finally {
+            space.release();
+        }
+    }
+
+    /**
+     * Copies the graph into the heap (keys, positions, topology and costs).
+     *
+     * @return Graph snapshot.
+     */
+    public CsrGraph toCsrGraph() {
+        Key[] keys = new Key[verticesNumber];
+        VertexPosition[] positions = new VertexPosition[verticesNumber];
+        for (int v = 0; v < verticesNumber; v++) {
+            keys[v] = keyAt(v);
+            positions[v] = positionAt(v);
+        }
+        int[] offsetsCopy = new int[verticesNumber + 1];
+        int[] targetsCopy = new int[edgesNumber];
+        double[] costsCopy = new double[edgesNumber];
+        offsets.duplicate().get(offsetsCopy);
+        targets.duplicate().get(targetsCopy);
+        costs.duplicate().get(costsCopy);
+        return new CsrGraph(keys, new KeyIndex(keys), positions, offsetsCopy, targetsCopy, costsCopy);
+    }
+
+    /**
+     * Builds mutable graph with positions and data.
+     *
+     * @return New graph.
+     */
+    public Graph toGraph() {
+        Graph graph = new Graph();
+        Key[] keys = new Key[verticesNumber];
+        boolean withData = vertexDataOffsets != null && dataCodec != null;
+        boolean withEdgeData = edgeDataOffsets != null && dataCodec != null;
+        for (int v = 0; v < verticesNumber; v++) {
+            keys[v] = keyAt(v);
+            Object data = withData ? decodeOptional(vertexDataPosition, vertexDataOffsets, v, dataCodec) : null;
+            graph.addVertex(keys[v], data, positionAt(v));
+        }
+        for (int v = 0; v < verticesNumber; v++) {
+            for (int e = offsets.get(v); e < offsets.get(v + 1); e++) {
+                Object data = withEdgeData ? decodeOptional(edgeDataPosition, edgeDataOffsets, e, dataCodec) : null;
+                graph.addEdge(keys[v], keys[targets.get(e)], costs.get(e), data);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Priority-first search over the mapped sections.
+     *
+     * @param source Source vertex index.
+     * @param target Target vertex index.
+     * @param withPositions Whether to use positions as heuristic.
+     * @return Path.
+     */
+    private Path priorityFirstSearch(int source, int target, boolean withPositions) {
+        VertexPosition goalPosition = withPositions ? positionAt(target) : null;
+        SearchSpace space = SearchSpace.acquire(SearchSpace.FORWARD, verticesNumber);
+        try {
+            IndexedDaryHeap frontier = space.getFrontier();
+            space.reach(source, 0.0D, source);
+            frontier.offer(source, 0.0D);
+            while (!frontier.isEmpty()) {
+                int current = frontier.poll();
+                if (current == target) {
+                    break;
+                }
+                double currentCost = space.getCost(current);
+                for (int e = offsets.get(current); e < offsets.get(current + 1); e++) {
+                    int next = targets.get(e);
+                    double newCost = currentCost + costs.get(e);
+                    if (newCost < space.getCost(next)) {
+                        space.reach(next, newCost, current);
+                        double priority = newCost;
+                        if (goalPosition != null) {
+                            VertexPosition nextPosition = positionAt(next);
+                            priority += nextPosition != null ? nextPosition.distanceOrDefault(goalPosition, 0.0D) : 0;
+                        }
+                        frontier.offer(next, priority);
+                    }
+                }
+            }
+            return reconstructByParents(source, target, space);
+        } finally {
+            space.release();
+        }
+    }
+
+    private Path reconstructByParents(int source, int target, SearchSpace space) {
+        if (!space.isReached(target)) {
+            return new Path(keyAt(source), keyAt(target), Collections.emptyList(), 0.0D);
+        }
+        double cost = 0.0D;
+        List<Key> path = new ArrayList<>();
+        int current = target;
+        while (current != source) {
+            path.add(keyAt(current));
+            int previous = space.getParent(current);
+            cost += costs.get(edgeIndex(previous, current));
+            current = previous;
+        }
+        path.add(keyAt(source));
+        Collections.reverse(path);
+        return new Path(path.get(0), path.get(path.size() - 1), path, cost);
+    }
+
+    /**
+     * Decodes key of the vertex.
+     *
+     * @param vertex Vertex index.
+     * @return Key.
+     */
+    Key keyAt(int vertex) {
+        return keyCodec.decode(slice(keysPosition, keyOffsets.get(vertex), keyOffsets.get(vertex + 1)));
+    }
+
+    /**
+     * Decodes position of the vertex.
+     *
+     * @param vertex Vertex index.
+     * @return Position or null.
+     */
+    VertexPosition positionAt(int vertex) {
+        return positionOffsets == null ? null
+                : decodeOptional(positionsPosition, positionOffsets, vertex, positionCodec);
+    }
+
+    /**
+     * Looks the key up in the stored hash table.
+     *
+     * @param key Key.
+     * @return Vertex index or {@link CsrGraph#NO_VERTEX}.
+     */
+    int indexOf(Key key) {
+        byte[] bytes = keyCodec.encode(key);
+        int mask = table.capacity() - 1;
+        int slot = GraphFile.hash(bytes) & mask;
+        while (true) {
+            int entry = table.get(slot);
+            if (entry == 0) {
+                return CsrGraph.NO_VERTEX;
+            }
+            int vertex = entry - 1;
+            if (keyEquals(vertex, bytes)) {
+                return vertex;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(int vertex, byte[] bytes) {
+        int from = keyOffsets.get(vertex);
+        if (keyOffsets.get(vertex + 1) - from != bytes.length) {
+            return false;
+        }
+        int position = keysPosition + from;
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(position + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int getIndex(Key key) {
+        int index = indexOf(key);
+        if (index == CsrGraph.NO_VERTEX) {
+            throw new NullPointerException(String.format("No vertex for key %s.", key));
+        }
+        return index;
+    }
+
+    private int getEdgeIndex(Key fromKey, Key toKey) {
+        int edge = edgeIndex(getIndex(fromKey), getIndex(toKey));
+        if (edge < 0) {
+            throw new NullPointerException(String.format("No edge found for: %s -> %s .", fromKey, toKey));
+        }
+        return edge;
+    }
+
+    /**
+     * Binary search of the target in the row of the source.
+     *
+     * @param from From vertex index.
+     * @param to To vertex index.
+     * @return Edge index or negative value.
+     */
+    private int edgeIndex(int from, int to) {
+        int low = offsets.get(from);
+        int high = offsets.get(from + 1) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int value = targets.get(middle);
+            if (value < to) {
+                low = middle + 1;
+            } else if (value > to) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return CsrGraph.NO_VERTEX;
+    }
+
+    private <T> T decodeOptional(int blobsPosition, IntBuffer blobOffsets, int index, Codec<T> codec) {
+        int from = blobOffsets.get(index);
+        int to = blobOffsets.get(index + 1);
+        // Empty entry is absent value, present values are prefixed with one byte.
+        return from == to ? null : codec.decode(slice(blobsPosition, from + 1, to));
+    }
+
+    private ByteBuffer slice(int blobsPosition, int from, int to) {
+        ByteBuffer result = buffer.duplicate();
+        result.limit(blobsPosition + to);
+        result.position(blobsPosition + from);
+        return result.slice().order(GraphFile.ORDER);
+    }
+
+    private int sectionPosition(int section) {
+        return buffer.getInt(GraphFile.SECTIONS_POSITION + 4 * section);
+    }
+
+    private ByteBuffer section(int section, long bytes) {
+        int position = sectionPosition(section);
+        return slice(position, 0, (int) bytes);
+    }
+
+    private IntBuffer intSection(int section, int ints) {
+        return section(section, 4L * ints).asIntBuffer();
+    }
+
+    @Override
+    public String toString() {
+        return "MappedGraph{vertices=" + verticesNumber + ", edges=" + edgesNumber + '}';
+    }
+}
@@ -0,0 +1,87 @@
+package com.nobullet.graph;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Result of maximum flow computation: value of the flow, flow through every edge and minimum cut. The source side of
+ * the cut holds the vertices reachable from the source in the final residual network, the cut edges go from the source
+ * side to the sink side and are saturated.
+ */
+public final class MaximumFlow {
+
+    final double value;
+    final Optional<Graph> flow;
+    final Set<Key> sourceSide;
+    final Set<Key> sinkSide;
+    final Graph cut;
+
+    /**
+     * Constructs result.
+     *
+     * @param value Value of the flow.
+     * @param flow Flow graph, empty if there is no flow.
+     * @param sourceSide Source side of the minimum cut.
+     * @param sinkSide Sink side of the minimum cut.
+     * @param cut Edges of the minimum cut with their capacities.
+     */
+    MaximumFlow(double value, Optional<Graph> flow, Set<Key> sourceSide, Set<Key> sinkSide, Graph cut) {
+        this.value = value;
+        this.flow = flow;
+        this.sourceSide = Collections.unmodifiableSet(sourceSide);
+        this.sinkSide = Collections.unmodifiableSet(sinkSide);
+        this.cut = cut;
+    }
+
+    /**
+     * Returns value of the flow: total flow out of the source, equal to the capacity of the minimum cut.
+     *
+     * @return Value of the flow.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Returns flow graph: edges with positive flow, edge cost is the flow through the edge. Caller can modify the
+     * graph.
+     *
+     * @return Optional of flow graph, empty if there is no flow.
+     */
+    public Optional<Graph> getFlow() {
+        return flow.map(Graph::new);
+    }
+
+    /**
+     * Returns keys of the vertices on the source side of the minimum cut.
+     *
+     * @return Source side of the minimum cut.
+     */
+    public Set<Key> getSourceSide() {
+        return sourceSide;
+    }
+
+    /**
+     * Returns keys of the vertices on the sink side of the minimum cut.
+     *
+     * @return Sink side of the minimum cut.
+     */
+    public Set<Key> getSinkSide() {
+        return sinkSide;
+    }
+
+    /**
+     * Returns edges of the minimum cut, edge cost is the capacity of the edge. Caller can modify the graph.
+     *
+     * @return Graph of cut edges.
+     */
+    public Graph getCut() {
+        return new Graph(cut);
+    }
+
+    @Override
+    public String toString() {
+        return "MaximumFlow{value=" + value + ", sourceSide=" + sourceSide + ", sinkSide=" + sinkSide + '}';
+    }
+}
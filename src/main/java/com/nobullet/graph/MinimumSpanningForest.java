@@ -0,0 +1,201 @@
+package com.nobullet.graph;
+
+import com.nobullet.algo.DisjointSet;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Minimum spanning forest algorithms over {@link CsrGraph}. Edges are treated as undirected (both u -&gt; v and
+ * v -&gt; u are candidates), self loops are ignored. Edges are ordered by cost and then by edge index, the total order
+ * makes the minimum spanning forest unique. Parallel parts run in the common fork-join pool.
+ */
+final class MinimumSpanningForest {
+
+    private static final int NONE = -1;
+
+    private MinimumSpanningForest() {
+    }
+
+    /**
+     * Builds minimum spanning forest with the given algorithm.
+     *
+     * @param graph Graph snapshot.
+     * @param algorithm Algorithm.
+     * @return Minimum spanning forest.
+     */
+    static SpanningForest of(CsrGraph graph, SpanningForestAlgorithm algorithm) {
+        switch (algorithm) {
+            case KRUSKAL:
+                return kruskal(graph);
+            case BORUVKA:
+                return boruvka(graph);
+            default:
+                throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+    }
+
+    /**
+     * Kruskal's algorithm. Edges are ordered without boxing: costs are sorted with {@link Arrays#parallelSort}, every
+     * edge gets the rank of its cost by binary search (in parallel), then a stable counting sort by rank orders the
+     * edges. Sorted edges are joined with {@link DisjointSet} until the forest has |V| - components edges.
+     *
+     * @param graph Graph snapshot.
+     * @return Minimum spanning forest.
+     */
+    static SpanningForest kruskal(CsrGraph graph) {
+        int verticesNumber = graph.keys.length;
+        if (verticesNumber == 0) {
+            return new SpanningForest(graph, new int[0], new int[0]);
+        }
+        int[] sources = edgeSources(graph);
+        int[] candidates = IntStream.range(0, graph.targets.length).parallel()
+                .filter(e -> sources[e] != graph.targets[e])
+                .toArray();
+        double[] sortedCosts = new double[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            sortedCosts[i] = graph.cost(candidates[i]);
+        }
+        Arrays.parallelSort(sortedCosts);
+        int distinct = 0;
+        for (int i = 0; i < sortedCosts.length; i++) {
+            if (distinct == 0 || Double.compare(sortedCosts[distinct - 1], sortedCosts[i]) != 0) {
+                sortedCosts[distinct++] = sortedCosts[i];
+            }
+        }
+        int distinctCosts = distinct;
+        int[] ranks = new int[candidates.length];
+        IntStream.range(0, candidates.length).parallel().forEach(i
+                -> ranks[i] = Arrays.binarySearch(sortedCosts, 0, distinctCosts, graph.cost(candidates[i])));
+        int[] counts = new int[distinctCosts + 1];
+        for (int rank : ranks) {
+            counts[rank + 1]++;
+        }
+        for (int i = 0; i < distinctCosts; i++) {
+            counts[i + 1] += counts[i];
+        }
+        int[] order = new int[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            order[counts[ranks[i]]++] = candidates[i];
+        }
+
+        DisjointSet set = new DisjointSet(verticesNumber);
+        int[] forestSources = new int[verticesNumber - 1];
+        int[] forestEdges = new int[verticesNumber - 1];
+        int size = 0;
+        for (int i = 0; i < order.length && size < verticesNumber - 1; i++) {
+            int edge = order[i];
+            int from = set.find(sources[edge]);
+            int to = set.find(graph.targets[edge]);
+            if (from != to) {
+                set.union(from, to);
+                forestSources[size] = sources[edge];
+                forestEdges[size++] = edge;
+            }
+        }
+        return new SpanningForest(graph, Arrays.copyOf(forestSources, size), Arrays.copyOf(forestEdges, size));
+    }
+
+    /**
+     * Borůvka's algorithm. Every round each component picks its cheapest edge to another component (components claim
+     * edges with CAS, in parallel over the remaining edges), the picked edges are added to the forest and joined with
+     * {@link DisjointSet}, vertices are relabeled in parallel and edges inside of components are dropped. Every round
+     * at least halves the number of components that still have outgoing edges.
+     *
+     * @param graph Graph snapshot.
+     * @return Minimum spanning forest.
+     */
+    static SpanningForest boruvka(CsrGraph graph) {
+        int verticesNumber = graph.keys.length;
+        if (verticesNumber == 0) {
+            return new SpanningForest(graph, new int[0], new int[0]);
+        }
+        int[] sources = edgeSources(graph);
+        double[] costs = graph.copyCosts();
+        int[] targets = graph.targets;
+        int[] labels = new int[verticesNumber];
+        Arrays.setAll(labels, v -> v);
+        int[] components = labels.clone();
+        int[] roots = new int[verticesNumber];
+        int[] edges = IntStream.range(0, targets.length).parallel()
+                .filter(e -> sources[e] != targets[e])
+                .toArray();
+        AtomicIntegerArray cheapest = new AtomicIntegerArray(verticesNumber);
+        DisjointSet set = new DisjointSet(verticesNumber);
+        int[] forestSources = new int[verticesNumber - 1];
+        int[] forestEdges = new int[verticesNumber - 1];
+        int size = 0;
+        while (edges.length > 0) {
+            int[] remaining = edges;
+            IntStream.of(components).parallel().forEach(component -> cheapest.set(component, NONE));
+            IntStream.range(0, remaining.length).parallel().forEach(i -> {
+                int edge = remaining[i];
+                offer(cheapest, labels[sources[edge]], edge, costs);
+                offer(cheapest, labels[targets[edge]], edge, costs);
+            });
+            for (int component : components) {
+                int edge = cheapest.get(component);
+                if (edge == NONE) {
+                    continue;
+                }
+                int from = set.find(sources[edge]);
+                int to = set.find(targets[edge]);
+                if (from != to) {
+                    set.union(from, to);
+                    forestSources[size] = sources[edge];
+                    forestEdges[size++] = edge;
+                }
+            }
+            for (int component : components) {
+                roots[component] = set.find(component);
+            }
+            // Components without cheapest edge have no edges left.
+            components = IntStream.of(components)
+                    .filter(component -> roots[component] == component && cheapest.get(component) != NONE)
+                    .toArray();
+            IntStream.range(0, verticesNumber).parallel().forEach(v -> labels[v] = roots[labels[v]]);
+            edges = IntStream.of(remaining).parallel()
+                    .filter(e -> labels[sources[e]] != labels[targets[e]])
+                    .toArray();
+        }
+        return new SpanningForest(graph, Arrays.copyOf(forestSources, size), Arrays.copyOf(forestEdges, size));
+    }
+
+    /**
+     * Claims the component's cheapest edge if the given edge is lighter than the current one.
+     *
+     * @param cheapest Cheapest edge by component.
+     * @param component Component.
+     * @param edge Edge.
+     * @param costs Edge costs.
+     */
+    private static void offer(AtomicIntegerArray cheapest, int component, int edge, double[] costs) {
+        while (true) {
+            int current = cheapest.get(component);
+            if (current != NONE && !lighter(edge, current, costs)) {
+                return;
+            }
+            if (cheapest.compareAndSet(component, current, edge)) {
+                return;
+            }
+        }
+    }
+
+    private static boolean lighter(int edge, int other, double[] costs) {
+        int result = Double.compare(costs[edge], costs[other]);
+        return result < 0 || result == 0 && edge < other;
+    }
+
+    /**
+     * Source vertex of every edge, filled in parallel by rows.
+     *
+     * @param graph Graph snapshot.
+     * @return Source vertex index by edge index.
+     */
+    private static int[] edgeSources(CsrGraph graph) {
+        int[] sources = new int[graph.targets.length];
+        IntStream.range(0, graph.keys.length).parallel()
+                .forEach(v -> Arrays.fill(sources, graph.offsets[v], graph.offsets[v + 1], v));
+        return sources;
+    }
+}
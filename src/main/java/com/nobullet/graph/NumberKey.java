@@ -0,0 +1,45 @@
+package com.nobullet.graph;
+
+/**
+ * Key defined by number.
+ */
+class NumberKey implements Key {
+
+    private static final long serialVersionUID = 1L;
+    final Number key;
+
+    public NumberKey(Number key) {
+        if (key == null) {
+            throw new NullPointerException("Number value is expected.");
+        }
+        this.key = key;
+    }
+
+    @Override
+    public String toString() {
+        return key.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        NumberKey other = (NumberKey) obj;
+        return key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    /**
+     * Integer and long keys written before {@link IntKey} and {@link LongKey} are read as primitive keys.
+     *
+     * @return Key equal to the keys created by {@link Key#of(Number)}.
+     */
+    private Object readResolve() {
+        return Key.of(key);
+    }
+}
@@ -0,0 +1,186 @@
+package com.nobullet.graph;
+
+/**
+ * Cell storage of a flat row-major array of unsigned bytes, shorts or ints: 8, 4 or 2 times less memory than
+ * {@code long[][]}. Up to {@link Integer#MAX_VALUE} cells.
+ */
+abstract class PackedCellStorage implements CellStorage {
+
+    final int width;
+    final int height;
+
+    private PackedCellStorage(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Returns storage of zeros of the given type.
+     *
+     * @param width Width.
+     * @param height Height.
+     * @param type Type of the cells, not {@link Type#LONG}.
+     * @return Storage.
+     */
+    static PackedCellStorage of(int width, int height, Type type) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Expecting correct dimensions.");
+        }
+        if ((long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    String.format("Map %dx%d has too many cells for an array.", width, height));
+        }
+        switch (type) {
+            case BYTE:
+                return new Bytes(width, height);
+            case SHORT:
+                return new Shorts(width, height);
+            case INT:
+                return new Ints(width, height);
+            default:
+                throw new IllegalArgumentException(String.format("Type %s is not packed.", type));
+        }
+    }
+
+    @Override
+    public final int getWidth() {
+        return width;
+    }
+
+    @Override
+    public final int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns index of the cell in the flat array.
+     *
+     * @param x X.
+     * @param y Y.
+     * @return Index.
+     * @throws IndexOutOfBoundsException If the cell is out of the storage.
+     */
+    final int index(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            throw new IndexOutOfBoundsException(String.format("Cell (%d, %d) is out of %dx%d.", x, y, width, height));
+        }
+        return y * width + x;
+    }
+
+    /**
+     * Returns index of the first cell of the row in the flat array.
+     *
+     * @param y Y.
+     * @param row Array for the values of the row.
+     * @return Index.
+     */
+    final int rowStart(int y, long[] row) {
+        CellStorage.checkRow(this, y, row);
+        return y * width;
+    }
+
+    /**
+     * Unsigned bytes.
+     */
+    static final class Bytes extends PackedCellStorage {
+
+        private final byte[] cells;
+
+        Bytes(int width, int height) {
+            super(width, height);
+            this.cells = new byte[width * height];
+        }
+
+        @Override
+        public Type getType() {
+            return Type.BYTE;
+        }
+
+        @Override
+        public long get(int x, int y) {
+            return cells[index(x, y)] & 0xFFL;
+        }
+
+        @Override
+        public void getRow(int y, long[] row) {
+            for (int x = 0, i = rowStart(y, row); x < width; x++, i++) {
+                row[x] = cells[i] & 0xFFL;
+            }
+        }
+
+        @Override
+        public void set(int x, int y, long value) {
+            cells[index(x, y)] = (byte) Type.BYTE.check(value);
+        }
+    }
+
+    /**
+     * Unsigned shorts.
+     */
+    static final class Shorts extends PackedCellStorage {
+
+        private final short[] cells;
+
+        Shorts(int width, int height) {
+            super(width, height);
+            this.cells = new short[width * height];
+        }
+
+        @Override
+        public Type getType() {
+            return Type.SHORT;
+        }
+
+        @Override
+        public long get(int x, int y) {
+            return cells[index(x, y)] & 0xFFFFL;
+        }
+
+        @Override
+        public void getRow(int y, long[] row) {
+            for (int x = 0, i = rowStart(y, row); x < width; x++, i++) {
+                row[x] = cells[i] & 0xFFFFL;
+            }
+        }
+
+        @Override
+        public void set(int x, int y, long value) {
+            cells[index(x, y)] = (short) Type.SHORT.check(value);
+        }
+    }
+
+    /**
+     * Unsigned ints.
+     */
+    static final class Ints extends PackedCellStorage {
+
+        private final int[] cells;
+
+        Ints(int width, int height) {
+            super(width, height);
+            this.cells = new int[width * height];
+        }
+
+        @Override
+        public Type getType() {
+            return Type.INT;
+        }
+
+        @Override
+        public long get(int x, int y) {
+            return cells[index(x, y)] & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public void getRow(int y, long[] row) {
+            for (int x = 0, i = rowStart(y, row); x < width; x++, i++) {
+                row[x] = cells[i] & 0xFFFFFFFFL;
+            }
+        }
+
+        @Override
+        public void set(int x, int y, long value) {
+            cells[index(x, y)] = (int) Type.INT.check(value);
+        }
+    }
+}
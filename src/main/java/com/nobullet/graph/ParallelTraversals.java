@@ -0,0 +1,534 @@
+package com.nobullet.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Whole-graph traversals of {@link CsrGraph} that run on all the cores of the common fork-join pool: direction
+ * optimizing breadth-first search, weakly and strongly connected components. Vertex sets are bitsets of 64 vertices
+ * per word; parallel loops split them into chunks of {@link #WORDS_PER_CHUNK} words.
+ */
+final class ParallelTraversals {
+
+    static final int WORDS_PER_CHUNK = 64;
+    static final int VERTICES_PER_CHUNK = WORDS_PER_CHUNK * 64;
+    // Switch to bottom-up when frontier edges exceed unexplored edges / ALPHA, back when frontier < V / BETA.
+    static final int ALPHA = 14;
+    static final int BETA = 24;
+    static final int SEQUENTIAL_SCC_THRESHOLD = 4096;
+    private static final int NONE = -1;
+
+    private ParallelTraversals() {
+    }
+
+    /**
+     * Level-synchronous breadth-first search. Every level is expanded either top-down (frontier vertices claim their
+     * unvisited successors with CAS on the visited bitset) or bottom-up (every unvisited vertex looks for a
+     * predecessor in the frontier bitset and stops at the first one), whichever checks fewer edges.
+     *
+     * @param graph Graph snapshot.
+     * @param source Source vertex index.
+     * @return Breadth-first tree.
+     */
+    static BreadthFirstTree breadthFirst(CsrGraph graph, int source) {
+        int n = graph.keys.length;
+        int words = (n + 63) >>> 6;
+        int chunks = (words + WORDS_PER_CHUNK - 1) / WORDS_PER_CHUNK;
+        int[] offsets = graph.offsets;
+        int[] targets = graph.targets;
+        int[] levels = new int[n];
+        int[] parents = new int[n];
+        Arrays.fill(levels, BreadthFirstTree.UNREACHED);
+        AtomicLongArray visited = new AtomicLongArray(words);
+        long[] seen = new long[words];
+        long[] frontierBits = new long[words];
+        long[] chunkVertices = new long[chunks];
+        long[] chunkEdges = new long[chunks];
+        levels[source] = 0;
+        parents[source] = source;
+        visited.set(source >>> 6, 1L << source);
+        seen[source >>> 6] = 1L << source;
+        frontierBits[source >>> 6] = 1L << source;
+        long frontierSize = 1;
+        long frontierEdges = offsets[source + 1] - offsets[source];
+        long unexploredEdges = targets.length - frontierEdges;
+        int reached = 1;
+        int level = 0;
+        boolean bottomUp = false;
+        CsrGraph reverse = null;
+        while (frontierSize > 0) {
+            if (!bottomUp && frontierEdges > unexploredEdges / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontierSize < n / BETA) {
+                bottomUp = false;
+            }
+            int nextLevel = level + 1;
+            long[] frontier = frontierBits;
+            if (bottomUp) {
+                if (reverse == null) {
+                    reverse = graph.reverse();
+                }
+                int[] reverseOffsets = reverse.offsets;
+                int[] sources = reverse.targets;
+                IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                    int lastWord = Math.min(words, (chunk + 1) * WORDS_PER_CHUNK);
+                    for (int w = chunk * WORDS_PER_CHUNK; w < lastWord; w++) {
+                        long unvisited = ~seen[w] & lastWordMask(w, words, n);
+                        long found = 0L;
+                        while (unvisited != 0L) {
+                            int bit = Long.numberOfTrailingZeros(unvisited);
+                            unvisited &= unvisited - 1;
+                            int vertex = (w << 6) + bit;
+                            for (int e = reverseOffsets[vertex]; e < reverseOffsets[vertex + 1]; e++) {
+                                int from = sources[e];
+                                if ((frontier[from >>> 6] & (1L << from)) != 0L) {
+                                    levels[vertex] = nextLevel;
+                                    parents[vertex] = from;
+                                    found |= 1L << bit;
+                                    break;
+                                }
+                            }
+                        }
+                        if (found != 0L) {
+                            // The chunk owns its words: no other writer during bottom-up step.
+                            visited.set(w, visited.get(w) | found);
+                        }
+                    }
+                });
+            } else {
+                IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                    int lastWord = Math.min(words, (chunk + 1) * WORDS_PER_CHUNK);
+                    for (int w = chunk * WORDS_PER_CHUNK; w < lastWord; w++) {
+                        long bits = frontier[w];
+                        while (bits != 0L) {
+                            int vertex = (w << 6) + Long.numberOfTrailingZeros(bits);
+                            bits &= bits - 1;
+                            for (int e = offsets[vertex]; e < offsets[vertex + 1]; e++) {
+                                int next = targets[e];
+                                if ((seen[next >>> 6] & (1L << next)) == 0L && claim(visited, next)) {
+                                    levels[next] = nextLevel;
+                                    parents[next] = vertex;
+                                }
+                            }
+                        }
+                    }
+                });
+            }
+            // Next frontier: vertices visited during this step.
+            IntStream.range(0, chunks).parallel().forEach(chunk -> {
+                int lastWord = Math.min(words, (chunk + 1) * WORDS_PER_CHUNK);
+                long vertices = 0L;
+                long edges = 0L;
+                for (int w = chunk * WORDS_PER_CHUNK; w < lastWord; w++) {
+                    long fresh = visited.get(w) & ~seen[w];
+                    frontier[w] = fresh;
+                    seen[w] |= fresh;
+                    vertices += Long.bitCount(fresh);
+                    while (fresh != 0L) {
+                        int vertex = (w << 6) + Long.numberOfTrailingZeros(fresh);
+                        fresh &= fresh - 1;
+                        edges += offsets[vertex + 1] - offsets[vertex];
+                    }
+                }
+                chunkVertices[chunk] = vertices;
+                chunkEdges[chunk] = edges;
+            });
+            frontierSize = 0;
+            frontierEdges = 0;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                frontierSize += chunkVertices[chunk];
+                frontierEdges += chunkEdges[chunk];
+            }
+            unexploredEdges -= frontierEdges;
+            reached += (int) frontierSize;
+            if (frontierSize > 0) {
+                level = nextLevel;
+            }
+        }
+        return new BreadthFirstTree(graph, source, levels, parents, reached, level);
+    }
+
+    /**
+     * Weakly connected components (edge direction is ignored). Every edge is a union in a lock-free disjoint set:
+     * roots are linked from greater to smaller index with CAS, finds halve paths.
+     *
+     * @param graph Graph snapshot.
+     * @return Components.
+     */
+    static Components connectedComponents(CsrGraph graph) {
+        int n = graph.keys.length;
+        int[] offsets = graph.offsets;
+        int[] targets = graph.targets;
+        AtomicIntegerArray roots = new AtomicIntegerArray(n);
+        int chunks = (n + VERTICES_PER_CHUNK - 1) / VERTICES_PER_CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int last = Math.min(n, (chunk + 1) * VERTICES_PER_CHUNK);
+            for (int v = chunk * VERTICES_PER_CHUNK; v < last; v++) {
+                roots.set(v, v);
+            }
+        });
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int last = Math.min(n, (chunk + 1) * VERTICES_PER_CHUNK);
+            for (int v = chunk * VERTICES_PER_CHUNK; v < last; v++) {
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    union(roots, v, targets[e]);
+                }
+            }
+        });
+        int[] labels = new int[n];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int last = Math.min(n, (chunk + 1) * VERTICES_PER_CHUNK);
+            for (int v = chunk * VERTICES_PER_CHUNK; v < last; v++) {
+                labels[v] = find(roots, v);
+            }
+        });
+        return densify(graph, labels);
+    }
+
+    /**
+     * Strongly connected components. Vertices without incoming or outgoing edges are trimmed first (each is a
+     * component). The rest is solved by forward-backward decomposition: the component of a random pivot is the
+     * intersection of its forward and backward reachable sets, the three remaining parts have no common components and
+     * are solved as independent fork-join tasks. Small parts are solved with iterative Tarjan's algorithm.
+     *
+     * @param graph Graph snapshot.
+     * @return Components.
+     */
+    static Components stronglyConnectedComponents(CsrGraph graph) {
+        SccState state = new SccState(graph);
+        int[] remaining = state.trim();
+        if (remaining.length > 0) {
+            ForkJoinPool.commonPool().invoke(new SccTask(state, remaining, 0));
+        }
+        return densify(graph, state.components);
+    }
+
+    /**
+     * Claims the vertex in visited bitset.
+     *
+     * @param visited Visited bitset.
+     * @param vertex Vertex index.
+     * @return Whether the vertex was not visited before.
+     */
+    private static boolean claim(AtomicLongArray visited, int vertex) {
+        int word = vertex >>> 6;
+        long bit = 1L << vertex;
+        while (true) {
+            long current = visited.get(word);
+            if ((current & bit) != 0L) {
+                return false;
+            }
+            if (visited.compareAndSet(word, current, current | bit)) {
+                return true;
+            }
+        }
+    }
+
+    private static long lastWordMask(int word, int words, int n) {
+        return word == words - 1 && (n & 63) != 0 ? (1L << (n & 63)) - 1 : -1L;
+    }
+
+    private static int find(AtomicIntegerArray roots, int vertex) {
+        while (true) {
+            int parent = roots.get(vertex);
+            if (parent == vertex) {
+                return vertex;
+            }
+            int grandParent = roots.get(parent);
+            if (grandParent != parent) {
+                roots.compareAndSet(vertex, parent, grandParent);
+            }
+            vertex = grandParent;
+        }
+    }
+
+    private static void union(AtomicIntegerArray roots, int first, int second) {
+        while (true) {
+            first = find(roots, first);
+            second = find(roots, second);
+            if (first == second) {
+                return;
+            }
+            if (first < second) {
+                int swap = first;
+                first = second;
+                second = swap;
+            }
+            // Link greater root to smaller one, fails if the greater root was linked meanwhile.
+            if (roots.compareAndSet(first, first, second)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Renumbers arbitrary component labels in range [0, V) to dense numbers in order of the first vertex.
+     *
+     * @param graph Graph snapshot.
+     * @param labels Labels by vertex index, replaced with dense numbers.
+     * @return Components.
+     */
+    private static Components densify(CsrGraph graph, int[] labels) {
+        int n = labels.length;
+        int[] numbers = new int[n];
+        Arrays.fill(numbers, NONE);
+        int[] sizes = new int[16];
+        int count = 0;
+        for (int v = 0; v < n; v++) {
+            int label = labels[v];
+            if (numbers[label] == NONE) {
+                if (count == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, count * 2);
+                }
+                numbers[label] = count++;
+            }
+            labels[v] = numbers[label];
+            sizes[labels[v]]++;
+        }
+        return new Components(graph, labels, Arrays.copyOf(sizes, count));
+    }
+
+    /**
+     * Shared state of strongly connected components computation. Every vertex belongs to one part (subproblem) at a
+     * time, only the task of the part writes the vertex state; part ids are never reused.
+     */
+    private static final class SccState {
+
+        static final int DONE = -1;
+
+        final CsrGraph graph;
+        final CsrGraph reverse;
+        final int[] parts;
+        final int[] components;
+        final int[] indices;
+        final int[] lowLinks;
+        final boolean[] onStack;
+        final AtomicInteger partCounter = new AtomicInteger(1);
+        final AtomicInteger componentCounter = new AtomicInteger();
+
+        SccState(CsrGraph graph) {
+            int n = graph.keys.length;
+            this.graph = graph;
+            this.reverse = graph.reverse();
+            this.parts = new int[n];
+            this.components = new int[n];
+            this.indices = new int[n];
+            this.lowLinks = new int[n];
+            this.onStack = new boolean[n];
+            Arrays.fill(indices, NONE);
+        }
+
+        /**
+         * Removes vertices that have no incoming or no outgoing edges among remaining vertices.
+         *
+         * @return Remaining vertices, all in part 0.
+         */
+        int[] trim() {
+            int n = parts.length;
+            int[] inDegrees = new int[n];
+            int[] outDegrees = new int[n];
+            int[] queue = new int[n];
+            int tail = 0;
+            for (int v = 0; v < n; v++) {
+                inDegrees[v] = reverse.offsets[v + 1] - reverse.offsets[v];
+                outDegrees[v] = graph.offsets[v + 1] - graph.offsets[v];
+                if (inDegrees[v] == 0 || outDegrees[v] == 0) {
+                    parts[v] = DONE;
+                    queue[tail++] = v;
+                }
+            }
+            for (int head = 0; head < tail; head++) {
+                int vertex = queue[head];
+                components[vertex] = componentCounter.getAndIncrement();
+                for (int e = graph.offsets[vertex]; e < graph.offsets[vertex + 1]; e++) {
+                    int next = graph.targets[e];
+                    if (parts[next] != DONE && --inDegrees[next] == 0) {
+                        parts[next] = DONE;
+                        queue[tail++] = next;
+                    }
+                }
+                for (int e = reverse.offsets[vertex]; e < reverse.offsets[vertex + 1]; e++) {
+                    int previous = reverse.targets[e];
+                    if (parts[previous] != DONE && --outDegrees[previous] == 0) {
+                        parts[previous] = DONE;
+                        queue[tail++] = previous;
+                    }
+                }
+            }
+            int[] remaining = new int[n - tail];
+            int size = 0;
+            for (int v = 0; v < n; v++) {
+                if (parts[v] != DONE) {
+                    remaining[size++] = v;
+                }
+            }
+            return remaining;
+        }
+
+        /**
+         * Iterative Tarjan's algorithm over the vertices of one part.
+         *
+         * @param vertices Vertices of the part.
+         * @param part Part id.
+         */
+        void tarjan(int[] vertices, int part) {
+            int[] offsets = graph.offsets;
+            int[] targets = graph.targets;
+            int[] stack = new int[vertices.length];
+            int[] callVertices = new int[vertices.length];
+            int[] callEdges = new int[vertices.length];
+            int stackSize = 0;
+            int index = 0;
+            for (int root : vertices) {
+                if (indices[root] != NONE) {
+                    continue;
+                }
+                int calls = 0;
+                indices[root] = index;
+                lowLinks[root] = index++;
+                stack[stackSize++] = root;
+                onStack[root] = true;
+                callVertices[calls] = root;
+                callEdges[calls++] = offsets[root];
+                while (calls > 0) {
+                    int vertex = callVertices[calls - 1];
+                    int edge = callEdges[calls - 1];
+                    if (edge < offsets[vertex + 1]) {
+                        callEdges[calls - 1]++;
+                        int next = targets[edge];
+                        if (parts[next] != part) {
+                            continue;
+                        }
+                        if (indices[next] == NONE) {
+                            indices[next] = index;
+                            lowLinks[next] = index++;
+                            stack[stackSize++] = next;
+                            onStack[next] = true;
+                            callVertices[calls] = next;
+                            callEdges[calls++] = offsets[next];
+                        } else if (onStack[next]) {
+                            lowLinks[vertex] = Math.min(lowLinks[vertex], indices[next]);
+                        }
+                        continue;
+                    }
+                    calls--;
+                    if (lowLinks[vertex] == indices[vertex]) {
+                        int component = componentCounter.getAndIncrement();
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack[member] = false;
+                            components[member] = component;
+                            parts[member] = DONE;
+                        } while (member != vertex);
+                    }
+                    if (calls > 0) {
+                        int caller = callVertices[calls - 1];
+                        lowLinks[caller] = Math.min(lowLinks[caller], lowLinks[vertex]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Forward-backward decomposition of one part.
+     */
+    private static final class SccTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        final SccState state;
+        final int[] vertices;
+        final int part;
+
+        SccTask(SccState state, int[] vertices, int part) {
+            this.state = state;
+            this.vertices = vertices;
+            this.part = part;
+        }
+
+        @Override
+        protected void compute() {
+            if (vertices.length <= SEQUENTIAL_SCC_THRESHOLD) {
+                state.tarjan(vertices, part);
+                return;
+            }
+            int[] parts = state.parts;
+            int pivot = vertices[ThreadLocalRandom.current().nextInt(vertices.length)];
+            int forwardPart = state.partCounter.getAndIncrement();
+            int backwardPart = state.partCounter.getAndIncrement();
+            int[] queue = new int[vertices.length];
+            // Forward reachable set.
+            int tail = 0;
+            parts[pivot] = forwardPart;
+            queue[tail++] = pivot;
+            for (int head = 0; head < tail; head++) {
+                int vertex = queue[head];
+                for (int e = state.graph.offsets[vertex]; e < state.graph.offsets[vertex + 1]; e++) {
+                    int next = state.graph.targets[e];
+                    if (parts[next] == part) {
+                        parts[next] = forwardPart;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            // Backward reachable set: forward reachable vertices form the component of the pivot.
+            int component = state.componentCounter.getAndIncrement();
+            tail = 0;
+            parts[pivot] = SccState.DONE;
+            state.components[pivot] = component;
+            queue[tail++] = pivot;
+            for (int head = 0; head < tail; head++) {
+                int vertex = queue[head];
+                for (int e = state.reverse.offsets[vertex]; e < state.reverse.offsets[vertex + 1]; e++) {
+                    int previous = state.reverse.targets[e];
+                    if (parts[previous] == forwardPart) {
+                        parts[previous] = SccState.DONE;
+                        state.components[previous] = component;
+                        queue[tail++] = previous;
+                    } else if (parts[previous] == part) {
+                        parts[previous] = backwardPart;
+                        queue[tail++] = previous;
+                    }
+                }
+            }
+            int forwardSize = 0;
+            int backwardSize = 0;
+            int restSize = 0;
+            for (int vertex : vertices) {
+                int vertexPart = parts[vertex];
+                if (vertexPart == forwardPart) {
+                    forwardSize++;
+                } else if (vertexPart == backwardPart) {
+                    backwardSize++;
+                } else if (vertexPart == part) {
+                    restSize++;
+                }
+            }
+            int[] forward = new int[forwardSize];
+            int[] backward = new int[backwardSize];
+            int[] rest = new int[restSize];
+            forwardSize = 0;
+            backwardSize = 0;
+            restSize = 0;
+            for (int vertex : vertices) {
+                int vertexPart = parts[vertex];
+                if (vertexPart == forwardPart) {
+                    forward[forwardSize++] = vertex;
+                } else if (vertexPart == backwardPart) {
+                    backward[backwardSize++] = vertex;
+                } else if (vertexPart == part) {
+                    rest[restSize++] = vertex;
+                }
+            }
+            invokeAll(new SccTask(state, forward, forwardPart), new SccTask(state, backward, backwardPart),
+                    new SccTask(state, rest, part));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.nobullet.graph;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Monotone radix heap of integer elements with non-negative long priorities: a pushed priority must not be less than
+ * the last popped one, which holds for Dijkstra's and A-star searches with consistent heuristic. An element with
+ * priority p is kept in bucket {@code 64 - numberOfLeadingZeros(p ^ last)}; when bucket 0 (priorities equal to the
+ * last popped one) is empty, the first non-empty bucket is redistributed into lower buckets around its minimum. Every
+ * element moves at most 64 times, push is O(1). Buckets are primitive arrays that are kept between searches, so a
+ * steady-state search does not allocate. Decrease-key is done by pushing the element again: the caller skips stale
+ * entries. Not thread safe.
+ */
+final class RadixHeap {
+
+    private static final int BUCKETS = 65;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long[][] keys;
+    private final int[][] values;
+    private final int[] sizes;
+    private long last;
+    private int size;
+
+    /**
+     * Constructs empty heap.
+     */
+    RadixHeap() {
+        this.keys = new long[BUCKETS][];
+        this.values = new int[BUCKETS][];
+        this.sizes = new int[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            keys[b] = new long[INITIAL_CAPACITY];
+            values[b] = new int[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * Returns number of elements in the heap (stale entries included).
+     *
+     * @return Number of elements.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the heap is empty.
+     *
+     * @return Whether the heap is empty.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds element with the given priority.
+     *
+     * @param priority Priority, not less than the last popped one.
+     * @param element Element.
+     * @throws IllegalArgumentException If the priority is less than the last popped one.
+     */
+    void push(long priority, int element) {
+        if (priority < last) {
+            throw new IllegalArgumentException(
+                    String.format("Priority %d is less than the last popped priority %d.", priority, last));
+        }
+        append(bucket(priority), priority, element);
+        size++;
+    }
+
+    /**
+     * Removes element with minimal priority. Its priority is returned by {@link #lastPriority()}.
+     *
+     * @return Element.
+     * @throws NoSuchElementException If the heap is empty.
+     */
+    int pop() {
+        if (size == 0) {
+            throw new NoSuchElementException("Heap is empty.");
+        }
+        if (sizes[0] == 0) {
+            redistribute();
+        }
+        size--;
+        return values[0][--sizes[0]];
+    }
+
+    /**
+     * Returns priority of the last popped element.
+     *
+     * @return Last popped priority (0 before the first pop).
+     */
+    long lastPriority() {
+        return last;
+    }
+
+    /**
+     * Removes all the elements and resets the last popped priority. Buckets keep their capacity.
+     */
+    void clear() {
+        Arrays.fill(sizes, 0);
+        size = 0;
+        last = 0L;
+    }
+
+    /**
+     * Moves the first non-empty bucket into lower buckets around its minimal priority.
+     */
+    private void redistribute() {
+        int b = 1;
+        while (sizes[b] == 0) {
+            b++;
+        }
+        long[] bucketKeys = keys[b];
+        int[] bucketValues = values[b];
+        int bucketSize = sizes[b];
+        long min = bucketKeys[0];
+        for (int i = 1; i < bucketSize; i++) {
+            min = Math.min(min, bucketKeys[i]);
+        }
+        last = min;
+        sizes[b] = 0;
+        // All the priorities of the bucket fall into lower buckets, so the bucket arrays are not modified.
+        for (int i = 0; i < bucketSize; i++) {
+            append(bucket(bucketKeys[i]), bucketKeys[i], bucketValues[i]);
+        }
+    }
+
+    private int bucket(long priority) {
+        return priority == last ? 0 : 64 - Long.numberOfLeadingZeros(priority ^ last);
+    }
+
+    private void append(int bucket, long priority, int element) {
+        int bucketSize = sizes[bucket];
+        if (bucketSize == keys[bucket].length) {
+            int newLength = bucketSize + (bucketSize >> 1);
+            keys[bucket] = Arrays.copyOf(keys[bucket], newLength);
+            values[bucket] = Arrays.copyOf(values[bucket], newLength);
+        }
+        keys[bucket][bucketSize] = priority;
+        values[bucket][bucketSize] = element;
+        sizes[bucket] = bucketSize + 1;
+    }
+}
@@ -0,0 +1,108 @@
+package com.nobullet.graph;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Object input stream that resolves only the given classes, keys of this package, numbers, strings and arrays of
+ * them or of primitives. Custom keys have to be allowed explicitly. Any other class in the stream fails with
+ * {@link InvalidClassException} before it's instantiated, so serialized tables can't be used to run foreign
+ * deserialization code.
+ */
+final class RestrictedObjectInputStream extends ObjectInputStream {
+
+    private static final Set<String> COMMON_CLASSES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            Key.class.getName(),
+            IntKey.class.getName(),
+            LongKey.class.getName(),
+            NumberKey.class.getName(),
+            StringKey.class.getName(),
+            Number.class.getName(),
+            Byte.class.getName(),
+            Short.class.getName(),
+            Integer.class.getName(),
+            Long.class.getName(),
+            Float.class.getName(),
+            Double.class.getName(),
+            BigInteger.class.getName(),
+            BigDecimal.class.getName(),
+            String.class.getName())));
+
+    private final Set<String> allowed;
+
+    /**
+     * Constructs the stream.
+     *
+     * @param input Input stream.
+     * @param classes Classes allowed in addition to the common ones.
+     * @throws IOException If reading of the stream header fails.
+     */
+    RestrictedObjectInputStream(InputStream input, Class<?>... classes) throws IOException {
+        super(input);
+        this.allowed = new HashSet<>(COMMON_CLASSES);
+        for (Class<?> type : classes) {
+            this.allowed.add(type.getName());
+        }
+    }
+
+    /**
+     * Reads one object of the given type from the stream.
+     *
+     * @param <T> Type of the object.
+     * @param input Input stream.
+     * @param type Type of the object, allowed in the stream.
+     * @param extraAllowed Other classes allowed in the stream, such as custom keys and their fields.
+     * @return Object.
+     * @throws IOException If reading fails, the stream has a class that is not allowed or doesn't contain the object.
+     */
+    static <T> T readObject(InputStream input, Class<T> type, Class<?>... extraAllowed) throws IOException {
+        Class<?>[] classes = Arrays.copyOf(extraAllowed, extraAllowed.length + 1);
+        classes[extraAllowed.length] = type;
+        ObjectInputStream objectInput = new RestrictedObjectInputStream(input, classes);
+        try {
+            return type.cast(objectInput.readObject());
+        } catch (ClassNotFoundException | ClassCastException ex) {
+            throw new IOException(String.format("Stream doesn't contain %s.", type.getSimpleName()), ex);
+        }
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException {
+        String name = description.getName();
+        if (!isAllowed(name)) {
+            throw new InvalidClassException(name, "Class is not allowed in the stream.");
+        }
+        return super.resolveClass(description);
+    }
+
+    /**
+     * Checks the class name. Arrays are allowed when their component type is allowed or primitive.
+     *
+     * @param name Class name as in the stream.
+     * @return Whether the class can be resolved.
+     */
+    boolean isAllowed(String name) {
+        int dimensions = 0;
+        while (dimensions < name.length() && name.charAt(dimensions) == '[') {
+            dimensions++;
+        }
+        if (dimensions == 0) {
+            return allowed.contains(name);
+        }
+        String component = name.substring(dimensions);
+        if (component.length() == 1) {
+            return "ZBCSIJFD".indexOf(component.charAt(0)) >= 0;
+        }
+        return component.length() > 2 && component.charAt(0) == 'L' && component.endsWith(";")
+                && allowed.contains(component.substring(1, component.length() - 1));
+    }
+}
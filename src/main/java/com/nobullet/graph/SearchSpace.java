@@ -0,0 +1,164 @@
+package com.nobullet.graph;
+
+import java.util.Arrays;
+
+/**
+ * Reusable state of a shortest path search over dense vertex ids: cost and parent arrays plus the indexed frontier.
+ * Instead of clearing the arrays between searches every write is stamped with the current search generation, so a
+ * value written by an older search reads as "not reached". Instances are cached per thread and per slot (two searches
+ * of a bidirectional query use different slots), so a steady-state search does not allocate. Not thread safe.
+ */
+final class SearchSpace {
+
+    static final int FORWARD = 0;
+    static final int BACKWARD = 1;
+    static final int SLOTS = 2;
+    static final int NO_PARENT = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final ThreadLocal<SearchSpace[]> SPACES = ThreadLocal.withInitial(() -> new SearchSpace[SLOTS]);
+
+    private double[] costs;
+    private int[] parents;
+    private int[] stamps;
+    private int[] queue;
+    private int generation;
+    private boolean inUse;
+    private final IndexedDaryHeap frontier;
+
+    /**
+     * Constructs search space for vertex ids in range [0, capacity).
+     *
+     * @param capacity Number of vertex ids.
+     */
+    SearchSpace(int capacity) {
+        capacity = Math.max(capacity, INITIAL_CAPACITY);
+        this.costs = new double[capacity];
+        this.parents = new int[capacity];
+        this.stamps = new int[capacity];
+        this.queue = new int[capacity];
+        this.generation = 0;
+        this.frontier = new IndexedDaryHeap(capacity);
+    }
+
+    /**
+     * Returns cleared search space of the current thread for the given slot. If the cached space is already in use
+     * (a search started from within another search on the same thread) a fresh space is returned. The space must be
+     * given back with {@link #release()}.
+     *
+     * @param slot Slot: {@link #FORWARD} or {@link #BACKWARD}.
+     * @param capacity Number of vertex ids.
+     * @return Cleared search space.
+     */
+    static SearchSpace acquire(int slot, int capacity) {
+        SearchSpace[] spaces = SPACES.get();
+        SearchSpace space = spaces[slot];
+        if (space == null) {
+            space = new SearchSpace(capacity);
+            spaces[slot] = space;
+        } else if (space.inUse) {
+            space = new SearchSpace(capacity);
+        }
+        space.ensureCapacity(capacity);
+        space.reset();
+        space.inUse = true;
+        return space;
+    }
+
+    /**
+     * Gives the space back to the cache of the current thread.
+     */
+    void release() {
+        this.frontier.clear();
+        this.inUse = false;
+    }
+
+    /**
+     * Forgets results of the previous search in O(1) (O(capacity) once per 2^31 searches).
+     */
+    void reset() {
+        frontier.clear();
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Grows the arrays so they accept vertex ids in range [0, capacity).
+     *
+     * @param capacity Number of vertex ids.
+     */
+    void ensureCapacity(int capacity) {
+        int current = stamps.length;
+        if (capacity <= current) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, current + (current >> 1));
+        this.costs = Arrays.copyOf(costs, newCapacity);
+        this.parents = Arrays.copyOf(parents, newCapacity);
+        this.stamps = Arrays.copyOf(stamps, newCapacity);
+        this.queue = new int[newCapacity];
+        this.frontier.ensureCapacity(newCapacity);
+    }
+
+    /**
+     * Frontier of the search.
+     *
+     * @return Frontier.
+     */
+    IndexedDaryHeap getFrontier() {
+        return frontier;
+    }
+
+    /**
+     * Scratch array of at least capacity elements for queues and stacks of unweighted searches. Content is undefined.
+     *
+     * @return Scratch array.
+     */
+    int[] getQueue() {
+        return queue;
+    }
+
+    /**
+     * Checks whether the vertex was reached by the current search.
+     *
+     * @param vertex Vertex id.
+     * @return Whether the vertex was reached.
+     */
+    boolean isReached(int vertex) {
+        return stamps[vertex] == generation;
+    }
+
+    /**
+     * Returns cost of the vertex or positive infinity if the vertex was not reached.
+     *
+     * @param vertex Vertex id.
+     * @return Cost so far.
+     */
+    double getCost(int vertex) {
+        return stamps[vertex] == generation ? costs[vertex] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns parent of the vertex or {@link #NO_PARENT} if the vertex was not reached.
+     *
+     * @param vertex Vertex id.
+     * @return Parent vertex id.
+     */
+    int getParent(int vertex) {
+        return stamps[vertex] == generation ? parents[vertex] : NO_PARENT;
+    }
+
+    /**
+     * Remembers the cost and the step for the vertex.
+     *
+     * @param vertex Vertex id.
+     * @param cost Cost so far.
+     * @param parent Parent vertex id (source points to itself).
+     */
+    void reach(int vertex, double cost, int parent) {
+        stamps[vertex] = generation;
+        costs[vertex] = cost;
+        parents[vertex] = parent;
+    }
+}
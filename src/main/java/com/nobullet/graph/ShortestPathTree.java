@@ -0,0 +1,86 @@
+package com.nobullet.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shortest paths from one source vertex to every vertex of a {@link CsrGraph}: cost and parent arrays by vertex index.
+ * Immutable and thread safe.
+ */
+public final class ShortestPathTree {
+
+    final CsrGraph graph;
+    final int source;
+    final double[] costs;
+    final int[] parents;
+
+    /**
+     * Constructs tree from prepared arrays.
+     *
+     * @param graph Graph snapshot.
+     * @param source Source vertex index.
+     * @param costs Costs by vertex index, positive infinity for unreachable vertices.
+     * @param parents Parents by vertex index, {@link CsrGraph#NO_VERTEX} for unreachable vertices.
+     */
+    ShortestPathTree(CsrGraph graph, int source, double[] costs, int[] parents) {
+        this.graph = graph;
+        this.source = source;
+        this.costs = costs;
+        this.parents = parents;
+    }
+
+    /**
+     * Returns source vertex key.
+     *
+     * @return Source vertex key.
+     */
+    public Key getSource() {
+        return graph.keys[source];
+    }
+
+    /**
+     * Checks whether the given vertex is reachable from the source.
+     *
+     * @param targetKey Target vertex key.
+     * @return Whether the vertex is reachable.
+     */
+    public boolean hasPathTo(Key targetKey) {
+        return parents[graph.getIndex(targetKey)] != CsrGraph.NO_VERTEX;
+    }
+
+    /**
+     * Returns cost of the shortest path to the given vertex.
+     *
+     * @param targetKey Target vertex key.
+     * @return Cost of the shortest path or positive infinity if the vertex is not reachable.
+     */
+    public double getCost(Key targetKey) {
+        return costs[graph.getIndex(targetKey)];
+    }
+
+    /**
+     * Returns shortest path to the given vertex.
+     *
+     * @param targetKey Target vertex key.
+     * @return Path from the source to the given vertex, empty if the vertex is not reachable.
+     */
+    public Path getPath(Key targetKey) {
+        int target = graph.getIndex(targetKey);
+        if (parents[target] == CsrGraph.NO_VERTEX) {
+            return new Path(graph.keys[source], targetKey, Collections.emptyList(), 0.0D);
+        }
+        List<Key> path = new ArrayList<>();
+        for (int current = target; current != source; current = parents[current]) {
+            path.add(graph.keys[current]);
+        }
+        path.add(graph.keys[source]);
+        Collections.reverse(path);
+        return new Path(graph.keys[source], targetKey, path, costs[target]);
+    }
+
+    @Override
+    public String toString() {
+        return "ShortestPathTree{source=" + getSource() + '}';
+    }
+}
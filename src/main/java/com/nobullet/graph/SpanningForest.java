@@ -0,0 +1,96 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.Graph.EdgeVisitor;
+import java.util.Optional;
+
+/**
+ * Spanning forest of a {@link CsrGraph}: one spanning tree per (weakly) connected component. Edges keep the direction
+ * they have in the graph. Immutable and thread safe.
+ */
+public final class SpanningForest {
+
+    final CsrGraph graph;
+    final int[] sources;
+    final int[] edges;
+    final double totalCost;
+
+    /**
+     * Constructs forest from prepared arrays.
+     *
+     * @param graph Graph snapshot.
+     * @param sources Source vertex indices of the forest edges.
+     * @param edges Edge indices of the forest edges in the graph.
+     */
+    SpanningForest(CsrGraph graph, int[] sources, int[] edges) {
+        this.graph = graph;
+        this.sources = sources;
+        this.edges = edges;
+        double cost = 0.0D;
+        for (int edge : edges) {
+            cost += graph.cost(edge);
+        }
+        this.totalCost = cost;
+    }
+
+    /**
+     * Returns number of edges in the forest.
+     *
+     * @return Number of edges.
+     */
+    public int getNumberOfEdges() {
+        return edges.length;
+    }
+
+    /**
+     * Returns number of trees in the forest (number of connected components of the graph).
+     *
+     * @return Number of trees.
+     */
+    public int getNumberOfTrees() {
+        return graph.keys.length - edges.length;
+    }
+
+    /**
+     * Returns total cost of the forest edges.
+     *
+     * @return Total cost.
+     */
+    public double getTotalCost() {
+        return totalCost;
+    }
+
+    /**
+     * Visits the forest edges in the order they were added. Snapshots don't keep edge data, so it is always empty.
+     *
+     * @param visitor Edge visitor.
+     * @return Current forest.
+     */
+    public SpanningForest traverseEdges(EdgeVisitor visitor) {
+        for (int i = 0; i < edges.length; i++) {
+            visitor.visit(graph.keys[sources[i]], graph.keys[graph.targets[edges[i]]], graph.cost(edges[i]),
+                    Optional.empty());
+        }
+        return this;
+    }
+
+    /**
+     * Builds graph with all the vertices (and their positions) of the snapshot and the forest edges.
+     *
+     * @return New graph.
+     */
+    public Graph toGraph() {
+        Graph result = new Graph();
+        for (int v = 0; v < graph.keys.length; v++) {
+            result.addVertex(graph.keys[v], null, graph.positions[v]);
+        }
+        for (int i = 0; i < edges.length; i++) {
+            result.addEdge(graph.keys[sources[i]], graph.keys[graph.targets[edges[i]]], graph.cost(edges[i]));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SpanningForest{edges=" + edges.length + ", trees=" + getNumberOfTrees() + ", cost=" + totalCost + '}';
+    }
+}
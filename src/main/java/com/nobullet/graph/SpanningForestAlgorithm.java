@@ -0,0 +1,18 @@
+package com.nobullet.graph;
+
+/**
+ * Minimum spanning forest algorithm. All the algorithms treat edges of {@link CsrGraph} as undirected and break ties
+ * of equal costs by edge index, so they build the same forest.
+ */
+public enum SpanningForestAlgorithm {
+
+    /**
+     * Kruskal's algorithm: edges sorted by cost in parallel are joined with disjoint set. O(|E| * log |E|).
+     */
+    KRUSKAL,
+    /**
+     * Borůvka's algorithm: every component picks its cheapest outgoing edge in parallel, components are merged and the
+     * edges inside of them dropped. O(|E| * log |V|), every round is parallel.
+     */
+    BORUVKA
+}
@@ -0,0 +1,36 @@
+package com.nobullet.graph;
+
+/**
+ * Key defined by string.
+ */
+class StringKey implements Key {
+
+    private static final long serialVersionUID = 1L;
+    final String key;
+
+    public StringKey(String key) {
+        if (key == null) {
+            throw new NullPointerException("String value is expected.");
+        }
+        this.key = key;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        StringKey other = (StringKey) obj;
+        return key.equals(other.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+}
@@ -0,0 +1,187 @@
+package com.nobullet.graph;
+
+import com.nobullet.graph.Graph.CycleException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Topological level sets of a directed acyclic {@link CsrGraph}: level 0 holds the vertices without incoming edges,
+ * level i + 1 holds the vertices whose predecessors are all in levels 0..i (level is the number of edges of the longest
+ * path ending in the vertex). Vertices of one level don't depend on each other and can be processed in parallel.
+ * <p>
+ * Computed by Kahn's algorithm in waves: every wave (level) decrements indegrees of the successors and the vertices
+ * that reach zero form the next wave. Large waves are processed in parallel with atomic indegrees. Every level is
+ * sorted by vertex index, so the result doesn't depend on the scheduling. Vertices are stored level by level in one
+ * array. Immutable and thread safe.
+ */
+public final class TopologicalLevels {
+
+    /**
+     * Minimal number of vertices in a wave to process it in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    final CsrGraph graph;
+    final int[] order;
+    final int[] levelOffsets;
+    final int[] levels;
+
+    /**
+     * Constructs levels from prepared arrays.
+     *
+     * @param graph Graph snapshot.
+     * @param order Vertex indices grouped by level.
+     * @param levelOffsets Offsets of levels in order array, number of levels + 1 elements.
+     * @param levels Level by vertex index.
+     */
+    TopologicalLevels(CsrGraph graph, int[] order, int[] levelOffsets, int[] levels) {
+        this.graph = graph;
+        this.order = order;
+        this.levelOffsets = levelOffsets;
+        this.levels = levels;
+    }
+
+    /**
+     * Computes topological levels of the given snapshot. Complexity: O(|V| + |E|) plus sorting of the levels.
+     *
+     * @param graph Graph snapshot.
+     * @return Topological levels.
+     * @throws CycleException If a cycle found.
+     */
+    static TopologicalLevels of(CsrGraph graph) throws CycleException {
+        int verticesNumber = graph.keys.length;
+        int[] counts = new int[verticesNumber];
+        for (int e = 0; e < graph.targets.length; e++) {
+            counts[graph.targets[e]]++;
+        }
+        AtomicIntegerArray indegrees = new AtomicIntegerArray(counts);
+        int[] order = new int[verticesNumber];
+        int[] levels = new int[verticesNumber];
+        int tail = 0;
+        for (int v = 0; v < verticesNumber; v++) {
+            if (counts[v] == 0) {
+                order[tail++] = v;
+            }
+        }
+        int[] levelOffsets = new int[verticesNumber + 1];
+        int levelsNumber = 0;
+        int head = 0;
+        AtomicInteger cursor = new AtomicInteger();
+        while (head < tail) {
+            int level = levelsNumber;
+            levelOffsets[levelsNumber++] = head;
+            cursor.set(tail);
+            IntStream wave = IntStream.range(head, tail);
+            if (tail - head >= PARALLEL_THRESHOLD) {
+                wave = wave.parallel();
+            }
+            wave.forEach(i -> {
+                int vertex = order[i];
+                levels[vertex] = level;
+                for (int e = graph.offsets[vertex]; e < graph.offsets[vertex + 1]; e++) {
+                    if (indegrees.decrementAndGet(graph.targets[e]) == 0) {
+                        order[cursor.getAndIncrement()] = graph.targets[e];
+                    }
+                }
+            });
+            head = tail;
+            tail = cursor.get();
+            Arrays.sort(order, head, tail);
+        }
+        if (head != verticesNumber) {
+            throw new CycleException("Graph has cycle: expected number of vertices is " + head + " but graph has "
+                    + verticesNumber);
+        }
+        levelOffsets[levelsNumber] = head;
+        return new TopologicalLevels(graph, order, Arrays.copyOf(levelOffsets, levelsNumber + 1), levels);
+    }
+
+    /**
+     * Returns number of levels (number of vertices of the longest path).
+     *
+     * @return Number of levels.
+     */
+    public int getNumberOfLevels() {
+        return levelOffsets.length - 1;
+    }
+
+    /**
+     * Returns level of the vertex.
+     *
+     * @param vertexKey Vertex key.
+     * @return Level, 0 for the vertices without incoming edges.
+     */
+    public int getLevel(Key vertexKey) {
+        return levels[graph.getIndex(vertexKey)];
+    }
+
+    /**
+     * Returns vertices of the level.
+     *
+     * @param level Level.
+     * @return Keys of the vertices of the level.
+     */
+    public List<Key> getVertices(int level) {
+        if (level < 0 || level >= getNumberOfLevels()) {
+            throw new IllegalArgumentException("No level " + level + ", number of levels is " + getNumberOfLevels());
+        }
+        return toKeys(levelOffsets[level], levelOffsets[level + 1]);
+    }
+
+    /**
+     * Returns all the vertices in topological order (level by level).
+     *
+     * @return Keys of the vertices.
+     */
+    public List<Key> getOrder() {
+        return toKeys(0, order.length);
+    }
+
+    /**
+     * Applies the action to every vertex: level by level, the vertices of one level in parallel in the common fork-join
+     * pool. When the action is called for a vertex, it has been completed for all its predecessors.
+     *
+     * @param action Action to apply.
+     */
+    public void forEachInParallel(Consumer<Key> action) {
+        for (int level = 0; level < getNumberOfLevels(); level++) {
+            IntStream.range(levelOffsets[level], levelOffsets[level + 1]).parallel()
+                    .forEach(i -> action.accept(graph.keys[order[i]]));
+        }
+    }
+
+    /**
+     * Applies the action to every vertex index of the level, in parallel if the level is large (for cheap actions
+     * over primitive arrays).
+     *
+     * @param level Level.
+     * @param action Action to apply to a vertex index.
+     */
+    void forEachOfLevel(int level, IntConsumer action) {
+        IntStream vertices = IntStream.range(levelOffsets[level], levelOffsets[level + 1]);
+        if (levelOffsets[level + 1] - levelOffsets[level] >= PARALLEL_THRESHOLD) {
+            vertices = vertices.parallel();
+        }
+        vertices.forEach(i -> action.accept(order[i]));
+    }
+
+    private List<Key> toKeys(int from, int to) {
+        List<Key> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(graph.keys[order[i]]);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public String toString() {
+        return "TopologicalLevels{vertices=" + order.length + ", levels=" + getNumberOfLevels() + '}';
+    }
+}
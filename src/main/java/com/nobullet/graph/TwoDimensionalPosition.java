@@ -0,0 +1,83 @@
+package com.nobullet.graph;
+
+import java.util.Optional;
+
+/**
+ * Two dimensional position.
+ */
+class TwoDimensionalPosition implements VertexPosition, Cloneable {
+
+    final double x;
+    final double y;
+
+    public TwoDimensionalPosition(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public TwoDimensionalPosition(TwoDimensionalPosition source) {
+        this(source.x, source.y);
+    }
+
+    /**
+     * Calculates distance between two positions.
+     *
+     * @param position Other position.
+     * @return Distance between two positions.
+     */
+    @Override
+    public Optional<Double> distanceTo(VertexPosition position) {
+        if (getClass() != position.getClass()) {
+            return Optional.empty();
+        }
+        TwoDimensionalPosition other = (TwoDimensionalPosition) position;
+        double dx = this.x - other.x;
+        double dy = this.y - other.y;
+        return Optional.of(Math.sqrt(dx * dx + dy * dy));
+    }
+
+    @Override
+    public double distanceOrDefault(VertexPosition position, double defaultValue) {
+        if (getClass() != position.getClass()) {
+            return defaultValue;
+        }
+        TwoDimensionalPosition other = (TwoDimensionalPosition) position;
+        double dx = this.x - other.x;
+        double dy = this.y - other.y;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 97 * hash + (int) (Double.doubleToLongBits(this.x) ^ (Double.doubleToLongBits(this.x) >>> 32));
+        hash = 97 * hash + (int) (Double.doubleToLongBits(this.y) ^ (Double.doubleToLongBits(this.y) >>> 32));
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final TwoDimensionalPosition other = (TwoDimensionalPosition) obj;
+        if (Double.doubleToLongBits(this.x) != Double.doubleToLongBits(other.x)) {
+            return false;
+        }
+        if (Double.doubleToLongBits(this.y) != Double.doubleToLongBits(other.y)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Clones the position. Uses copy constructor.
+     *
+     * @return Copy of the object.
+     * @throws CloneNotSupportedException
+     */
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        return new TwoDimensionalPosition(this);
+    }
+}
@@ -14,9 +14,17 @@ import java.util.stream.Collectors;
  */
 class Vertex implements Cloneable {
 
+    static final int NO_ID = -1;
+    static final Edge[] NO_EDGES = new Edge[0];
+
     Key key;
+    int id;
+    Edge[] outgoing;
+    Edge[] incomingArray;
     Map<Vertex, Edge> adjacent;
     Map<Vertex, Edge> adjacentUnmodifiable;
+    // Reverse adjacency: edges of other vertices that point to this vertex.
+    Map<Vertex, Edge> incoming;
     Optional<Object> data;
     Optional<VertexPosition> position;
 
@@ -50,6 +58,23 @@ class Vertex implements Cloneable {
         this(key, position, data, Collections.emptyMap());
     }
 
+    /**
+     * Constructs vertex with adjacency maps sized for the given number of edges (bulk construction).
+     *
+     * @param key Vertex unique key.
+     * @param outgoingEdges Expected number of outgoing edges.
+     * @param incomingEdges Expected number of incoming edges.
+     */
+    Vertex(Key key, int outgoingEdges, int incomingEdges) {
+        this.key = key;
+        this.id = NO_ID;
+        this.adjacent = new HashMap<>(capacityFor(outgoingEdges));
+        this.adjacentUnmodifiable = Collections.unmodifiableMap(this.adjacent);
+        this.incoming = new HashMap<>(capacityFor(incomingEdges));
+        this.position = Optional.empty();
+        this.data = Optional.empty();
+    }
+
     /**
      * Copy constructor. Copies everything but the edges.
      *
@@ -68,8 +93,10 @@ class Vertex implements Cloneable {
      */
     Vertex(Key key, VertexPosition position, Object data, Map<Vertex, Edge> adjacent) {
         this.key = key;
+        this.id = NO_ID;
         this.adjacent = new HashMap<>(adjacent);
         this.adjacentUnmodifiable = Collections.unmodifiableMap(this.adjacent);
+        this.incoming = new HashMap<>();
         this.position = Optional.ofNullable(position);
         this.data = Optional.ofNullable(data);
     }
@@ -83,6 +110,45 @@ class Vertex implements Cloneable {
         return adjacentUnmodifiable.values();
     }
 
+    /**
+     * Outgoing edges as an array for allocation free iteration in searches. The array is cached until the set of
+     * outgoing edges changes and must not be modified.
+     *
+     * @return Outgoing edges.
+     */
+    Edge[] getOutgoingEdgesArray() {
+        Edge[] result = this.outgoing;
+        if (result == null) {
+            result = adjacent.isEmpty() ? NO_EDGES : adjacent.values().toArray(new Edge[adjacent.size()]);
+            this.outgoing = result;
+        }
+        return result;
+    }
+
+    /**
+     * Incoming edges as an array for allocation free iteration in backward searches. The array is cached until the set
+     * of incoming edges changes and must not be modified.
+     *
+     * @return Incoming edges.
+     */
+    Edge[] getIncomingEdgesArray() {
+        Edge[] result = this.incomingArray;
+        if (result == null) {
+            result = incoming.isEmpty() ? NO_EDGES : incoming.values().toArray(new Edge[incoming.size()]);
+            this.incomingArray = result;
+        }
+        return result;
+    }
+
+    /**
+     * Dense id of the vertex in its graph.
+     *
+     * @return Vertex id or {@link #NO_ID} if vertex doesn't belong to a graph.
+     */
+    int getId() {
+        return id;
+    }
+
     /**
      * Number of outgoing edges.
      *
@@ -121,6 +187,9 @@ class Vertex implements Cloneable {
         if (existing != null) {
             existing.clear();
             this.adjacent.remove(to);
+            this.outgoing = null;
+            to.incoming.remove(this);
+            to.incomingArray = null;
         }
         return this;
     }
@@ -173,6 +242,9 @@ class Vertex implements Cloneable {
         if (edge == null) {
             edge = new Edge(this, to, cost, data);
             this.adjacent.put(to, edge);
+            this.outgoing = null;
+            to.incoming.put(this, edge);
+            to.incomingArray = null;
         } else {
             edge.setCost(cost);
         }
@@ -250,14 +322,26 @@ class Vertex implements Cloneable {
     }
 
     /**
-     * Clears the vertex.
+     * Clears the vertex. Detaches both outgoing and incoming edges from other vertices.
      */
     void clear() {
         // Clean up edges.
         for (Map.Entry<Vertex, Edge> vertexEntry : this.adjacent.entrySet()) {
+            Vertex to = vertexEntry.getKey();
+            to.incoming.remove(this);
+            to.incomingArray = null;
+            vertexEntry.getValue().clear();
+        }
+        for (Map.Entry<Vertex, Edge> vertexEntry : this.incoming.entrySet()) {
+            Vertex from = vertexEntry.getKey();
+            from.adjacent.remove(this);
+            from.outgoing = null;
             vertexEntry.getValue().clear();
         }
         this.adjacent.clear();
+        this.incoming.clear();
+        this.outgoing = null;
+        this.incomingArray = null;
         this.data = Optional.empty();
         this.position = Optional.empty();
     }
@@ -275,8 +359,31 @@ class Vertex implements Cloneable {
         return Optional.empty();
     }
 
+    /**
+     * Calculates a distance to given vertex without boxing.
+     *
+     * @param vertex Other vertex.
+     * @return Distance or 0.0D if distance can't be calculated.
+     */
+    double distanceOrZero(Vertex vertex) {
+        if (position.isPresent() && vertex.position.isPresent()) {
+            return position.get().distanceOrDefault(vertex.position.get(), 0.0D);
+        }
+        return 0.0D;
+    }
+
     @Override
     public String toString() {
         return "{key:\"" + key + "\"}";
     }
+
+    /**
+     * Initial capacity of a hash map that holds the given number of entries without rehashing.
+     *
+     * @param entries Number of entries.
+     * @return Initial capacity.
+     */
+    static int capacityFor(int entries) {
+        return entries < 3 ? entries + 1 : (int) (entries / 0.75F + 1.0F);
+    }
 }
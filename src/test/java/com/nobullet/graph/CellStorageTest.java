@@ -0,0 +1,174 @@
+package com.nobullet.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import com.nobullet.graph.Map.Cell;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link CellStorage} implementations.
+ */
+public class CellStorageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPacked() {
+        for (CellStorage.Type type : new CellStorage.Type[]{CellStorage.Type.BYTE, CellStorage.Type.SHORT,
+            CellStorage.Type.INT}) {
+            Map map = new Map(CellStorage.packed(7, 5, type));
+            assertEquals(7, map.getWidth());
+            assertEquals(5, map.getHeight());
+            map.set(6, 4, -type.getMaxValue());
+            map.set(0, 1, 1L);
+            assertEquals(type.getMaxValue(), map.get(6, 4));
+            assertEquals(1L, map.get(0, 1));
+            assertEquals(0L, map.get(1, 0));
+            try {
+                map.set(0, 0, type.getMaxValue() + 1L);
+                fail("Value doesn't fit.");
+            } catch (IllegalArgumentException expected) {
+                assertEquals(0L, map.get(0, 0));
+            }
+            try {
+                map.get(7, 0);
+                fail("Out of bounds.");
+            } catch (IndexOutOfBoundsException expected) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        Path file = folder.newFile("map.bin").toPath();
+        Random random = new Random(21L);
+        Map expected = new Map(70, 45);
+        // Small tiles and buffers: cells cross tiles and buffers.
+        try (MappedCellStorage storage = MappedCellStorage.create(file, 70, 45, CellStorage.Type.SHORT, 8, 512L)) {
+            Map map = new Map(storage);
+            for (int y = 0; y < 45; y++) {
+                for (int x = 0; x < 70; x++) {
+                    long value = random.nextInt(4) == 0 ? random.nextInt(60000) : 0L;
+                    map.set(x, y, value);
+                    expected.set(x, y, value);
+                }
+            }
+            assertEquals(expected, map);
+        }
+        try (MappedCellStorage storage = MappedCellStorage.open(file)) {
+            assertEquals(CellStorage.Type.SHORT, storage.getType());
+            assertEquals(8, storage.getTile());
+            Map map = new Map(storage);
+            assertEquals(expected, map);
+            assertEquals(expected.hashCode(), map.hashCode());
+        }
+        Path other = folder.newFile("other.bin").toPath();
+        Files.write(other, new byte[]{1, 2, 3});
+        try {
+            MappedCellStorage.open(other);
+            fail("Not a map file.");
+        } catch (IOException expected2) {
+            assertTrue(expected2.getMessage().startsWith("Not a map file"));
+        }
+
+        // Corrupted tile sides and sizes are rejected, the file is not grown.
+        byte[] bytes = Files.readAllBytes(file);
+        assertCorrupted(Arrays.copyOf(bytes, bytes.length - 10));
+        assertCorrupted(Arrays.copyOf(bytes, bytes.length + 1));
+        for (int tile : new int[]{0, 6, -8, 1 << 20}) {
+            byte[] wrongTile = bytes.clone();
+            ByteBuffer.wrap(wrongTile).putInt(16, tile);
+            assertCorrupted(wrongTile);
+        }
+    }
+
+    private void assertCorrupted(byte[] bytes) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, bytes);
+        try {
+            MappedCellStorage.open(file).close();
+            fail("Corrupted map file.");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Corrupted map file"));
+        }
+        assertEquals(bytes.length, Files.size(file));
+    }
+
+    @Test
+    public void testGetRow() throws IOException {
+        Random random = new Random(23L);
+        CellStorage[] storages = {CellStorage.ofLongs(37, 11), CellStorage.packed(37, 11, CellStorage.Type.BYTE),
+            CellStorage.packed(37, 11, CellStorage.Type.SHORT), CellStorage.packed(37, 11, CellStorage.Type.INT),
+            MappedCellStorage.create(folder.newFile("rows.bin").toPath(), 37, 11, CellStorage.Type.LONG, 8, 1024L)};
+        for (CellStorage storage : storages) {
+            for (int y = 0; y < 11; y++) {
+                for (int x = 0; x < 37; x++) {
+                    storage.set(x, y, random.nextInt(200));
+                }
+            }
+            long[] row = new long[40];
+            for (int y = 0; y < 11; y++) {
+                storage.getRow(y, row);
+                for (int x = 0; x < 37; x++) {
+                    assertEquals(storage.get(x, y), row[x]);
+                }
+            }
+            try {
+                storage.getRow(0, new long[36]);
+                fail("Array is too short.");
+            } catch (IllegalArgumentException expected) {
+                // Expected.
+            }
+            try {
+                storage.getRow(11, row);
+                fail("Out of bounds.");
+            } catch (IndexOutOfBoundsException expected) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    public void testMapOperations() throws IOException {
+        Random random = new Random(22L);
+        Map expected = new Map(40, 30);
+        Map packed = new Map(CellStorage.packed(40, 30, CellStorage.Type.BYTE));
+        Map mapped = new Map(MappedCellStorage.create(folder.newFile("ops.bin").toPath(), 40, 30,
+                CellStorage.Type.INT, 16));
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 40; x++) {
+                long value = random.nextInt(4) == 0 ? 1 + random.nextInt(9) : 0L;
+                for (Map map : new Map[]{expected, packed, mapped}) {
+                    map.set(x, y, value);
+                }
+            }
+        }
+        Cell source = new Cell(0, 0);
+        Cell target = new Cell(39, 29);
+        for (Map map : new Map[]{packed, mapped}) {
+            assertEquals(expected, map);
+            assertEquals(expected.shortestPathBFS(source, target).asList(),
+                    map.shortestPathBFS(source, target).asList());
+            assertEquals(expected.shortestPathDijkstra(source, target).getCost(),
+                    map.shortestPathDijkstra(source, target).getCost());
+            assertEquals(expected.shortestPathAStar(source, target).getCost(),
+                    map.shortestPathAStar(source, target).getCost());
+            assertEquals(expected.newGridSearch().shortestPathCost(0, 0, 39, 29),
+                    map.newGridSearch().shortestPathCost(0, 0, 39, 29));
+            assertEquals(expected.findLargestRectangle(true), map.findLargestRectangle(true));
+            assertEquals(expected.findLargestRectangle(false), map.findLargestRectangle(false));
+            assertEquals(expected.getNumberOfPlains(), map.getNumberOfPlains());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.nobullet.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ChunkReader}.
+ */
+public class ChunkReaderTest {
+
+    @Test
+    public void testChunksInOrder() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append(i).append('\n');
+        }
+        text.append("a very long line that doesn't fit into a chunk\n").append("last");
+        AtomicInteger unconsumed = new AtomicInteger();
+        AtomicInteger maxUnconsumed = new AtomicInteger();
+        StringBuilder restored = new StringBuilder();
+        ChunkReader.read(input(text.toString()), 16, 3, (bytes, length) -> {
+            maxUnconsumed.accumulateAndGet(unconsumed.incrementAndGet(), Math::max);
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }, chunk -> {
+            unconsumed.decrementAndGet();
+            restored.append(chunk).append('\n');
+        });
+        assertEquals(text.toString(), restored.substring(0, restored.length() - 1));
+        // Chunks are parsed in a window.
+        assertTrue(maxUnconsumed.get() <= 3);
+    }
+
+    @Test
+    public void testStopsOnError() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            text.append(i).append('\n');
+        }
+        AtomicInteger parsed = new AtomicInteger();
+        List<String> consumed = new ArrayList<>();
+        try {
+            ChunkReader.read(input(text.toString()), 8, 2, (bytes, length) -> {
+                parsed.incrementAndGet();
+                return new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }, chunk -> {
+                consumed.add(chunk);
+                throw new IOException("Wrong chunk: " + chunk);
+            });
+            fail("Consumer error is ignored.");
+        } catch (IOException ex) {
+            assertEquals("Wrong chunk: " + consumed.get(0), ex.getMessage());
+        }
+        assertEquals(1, consumed.size());
+        // Reading stopped at the window.
+        assertTrue(parsed.get() <= 3);
+    }
+
+    static ByteArrayInputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,140 @@
+package com.nobullet.graph;
+
+import static com.nobullet.MoreAssertions.assertListsEqual;
+import static com.nobullet.graph.GraphTest.listOfVertices;
+import static com.nobullet.graph.GraphTest.newGraphFromBook;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentGraph}.
+ */
+public class ConcurrentGraphTest {
+
+    static final Key v1 = Key.of("v1");
+    static final Key v2 = Key.of("v2");
+    static final Key v3 = Key.of("v3");
+    static final Key v4 = Key.of("v4");
+    static final Key v5 = Key.of("v5");
+    static final Key v7 = Key.of("v7");
+
+    @Test
+    public void testUpdates() {
+        ConcurrentGraph graph = new ConcurrentGraph(newGraphFromBook(true));
+        assertListsEqual(listOfVertices(v1, v4, v7), graph.shortestPathDijkstra(v1, v7).getPath());
+        CsrGraph before = graph.snapshot();
+        assertSame(before, graph.snapshot());
+
+        graph.setEdgeCost(v1, v4, 100.0D);
+        assertEquals(100.0D, graph.getEdgeCost(v1, v4), 0.0D);
+        assertEquals(1.0D, before.getEdgeCost(v1, v4), 0.0D);
+        assertEquals(newGraphFromBook(true).setEdgeCost(v1, v4, 100.0D).shortestPathDijkstra(v1, v7),
+                graph.shortestPathDijkstra(v1, v7));
+
+        graph.updateEdgeCosts(updater -> {
+            updater.setEdgeCost(v1, v4, 1.0D);
+            updater.setEdgeCost(v4, v7, 4.0D);
+        });
+        assertEquals(1.0D, graph.getEdgeCost(v1, v4), 0.0D);
+        assertEquals(4.0D, graph.getEdgeCost(v4, v7), 0.0D);
+
+        graph.removeEdge(v1, v4);
+        assertFalse(graph.hasEdge(v1, v4));
+        graph.addEdge(v1, v4, 2.0D).addVertex(Key.of("v8"));
+        assertTrue(graph.hasVertex(Key.of("v8")));
+        assertEquals(2.0D, graph.toGraph().getEdgeCost(v1, v4), 0.0D);
+        graph.removeVertex(v5);
+        assertFalse(graph.hasVertex(v5));
+        assertEquals(7, graph.getNumberOfVertices());
+
+        graph.updateStructure(changes -> changes.removeVertex(v7).addEdge(v1, v3, 5.0D));
+        assertFalse(graph.hasVertex(v7));
+        assertEquals(5.0D, graph.getEdgeCost(v1, v3), 0.0D);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testUpdateOfMissingEdge() {
+        ConcurrentGraph graph = new ConcurrentGraph(newGraphFromBook(true));
+        graph.snapshot();
+        try {
+            graph.updateEdgeCosts(updater -> {
+                updater.setEdgeCost(v1, v4, 3.0D);
+                updater.setEdgeCost(v7, v1, 1.0D);
+            });
+        } finally {
+            // Nothing of the failed batch is visible.
+            assertEquals(1.0D, graph.getEdgeCost(v1, v4), 0.0D);
+            assertEquals(1.0D, graph.toGraph().getEdgeCost(v1, v4), 0.0D);
+        }
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriter() throws Exception {
+        Graph grid = new Graph();
+        int size = 20;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                Key key = Key.of(y * size + x);
+                if (x + 1 < size) {
+                    grid.addEdge(key, Key.of(y * size + x + 1), 1.0D);
+                }
+                if (y + 1 < size) {
+                    grid.addEdge(key, Key.of((y + 1) * size + x), 1.0D);
+                }
+            }
+        }
+        ConcurrentGraph graph = new ConcurrentGraph(grid);
+        Key source = Key.of(0);
+        Key target = Key.of(size * size - 1);
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    while (!stop.get()) {
+                        // Every edge of the grid always has the same cost within a snapshot.
+                        CsrGraph snapshot = graph.snapshot();
+                        double cost = snapshot.getEdgeCost(source, Key.of(1));
+                        assertEquals(2 * (size - 1) * cost, snapshot.shortestPathDijkstra(source, target).getCost(),
+                                1e-9);
+                    }
+                }));
+            }
+            for (int round = 1; round <= 50; round++) {
+                double cost = round;
+                graph.updateEdgeCosts(updater -> {
+                    for (int y = 0; y < size; y++) {
+                        for (int x = 0; x < size; x++) {
+                            Key key = Key.of(y * size + x);
+                            if (x + 1 < size) {
+                                updater.setEdgeCost(key, Key.of(y * size + x + 1), cost);
+                            }
+                            if (y + 1 < size) {
+                                updater.setEdgeCost(key, Key.of((y + 1) * size + x), cost);
+                            }
+                        }
+                    }
+                });
+            }
+            stop.set(true);
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        assertEquals(2 * (size - 1) * 50.0D, graph.shortestPathDijkstra(source, target).getCost(), 1e-9);
+    }
+}
@@ -0,0 +1,180 @@
+package com.nobullet.graph;
+
+import static com.nobullet.MoreAssertions.assertListsEqual;
+import static com.nobullet.graph.GraphTest.listOfVertices;
+import static com.nobullet.graph.GraphTest.newGraphFromBook;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ContractionHierarchy}.
+ */
+public class ContractionHierarchyTest {
+
+    static final Key v1 = Key.of("v1");
+    static final Key v2 = Key.of("v2");
+    static final Key v3 = Key.of("v3");
+    static final Key v4 = Key.of("v4");
+    static final Key v5 = Key.of("v5");
+    static final Key v6 = Key.of("v6");
+    static final Key v7 = Key.of("v7");
+
+    @Test
+    public void testGraphFromBook() throws Graph.NegativeEdgeCostException {
+        ContractionHierarchy hierarchy = ContractionHierarchy.of(newGraphFromBook(true));
+        assertEquals(7, hierarchy.getNumberOfVertices());
+        assertListsEqual(listOfVertices(v1, v4, v7), hierarchy.shortestPath(v1, v7).getPath());
+        assertListsEqual(listOfVertices(v3, v1, v4, v5), hierarchy.shortestPath(v3, v5).getPath());
+        assertEquals(5.0D, hierarchy.shortestPath(v1, v7).getCost(), 0.0D);
+        assertEquals(5.0D, hierarchy.distance(v1, v7), 0.0D);
+        assertListsEqual(listOfVertices(v2), hierarchy.shortestPath(v2, v2).getPath());
+        assertTrue("v6 has no outgoing edges.", hierarchy.shortestPath(v6, v1).isEmpty());
+        assertEquals(Double.POSITIVE_INFINITY, hierarchy.distance(v6, v1), 0.0D);
+    }
+
+    @Test
+    public void testRandomGraphMatchesDijkstra() throws Graph.NegativeEdgeCostException {
+        Random random = new Random(31L);
+        Graph graph = new Graph();
+        for (int i = 0; i < 1500; i++) {
+            int from = random.nextInt(300);
+            int to = random.nextInt(300);
+            if (from != to) {
+                graph.addEdge(Key.of(from), Key.of(to), 1.0D + random.nextInt(30));
+            }
+        }
+        ContractionHierarchy hierarchy = ContractionHierarchy.of(graph);
+        for (int i = 0; i < 300; i++) {
+            Key source = Key.of(random.nextInt(300));
+            Key target = Key.of(random.nextInt(300));
+            if (!graph.hasVertex(source) || !graph.hasVertex(target)) {
+                continue;
+            }
+            Path expected = graph.shortestPathDijkstra(source, target);
+            Path actual = hierarchy.shortestPath(source, target);
+            assertEquals(expected.isEmpty(), actual.isEmpty());
+            assertEquals(expected.getCost(), actual.getCost(), 1e-9);
+            assertValidPath(graph, actual);
+        }
+    }
+
+    @Test
+    public void testSerializationRoundTrip() throws Graph.NegativeEdgeCostException, IOException {
+        ContractionHierarchy hierarchy = ContractionHierarchy.of(newGraphFromBook(true));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        hierarchy.writeTo(output);
+        ContractionHierarchy restored = ContractionHierarchy.readFrom(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(hierarchy.getNumberOfEdges(), restored.getNumberOfEdges());
+        assertTrue(restored.hasVertex(v3));
+        assertFalse(restored.hasVertex(Key.of("unknown")));
+        assertListsEqual(listOfVertices(v3, v1, v4, v5), restored.shortestPath(v3, v5).getPath());
+    }
+
+    @Test
+    public void testForeignClassesAreRejected() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutput = new ObjectOutputStream(output)) {
+            objectOutput.writeObject(new ArrayList<>(Arrays.asList(1, 2)));
+        }
+        try {
+            ContractionHierarchy.readFrom(new ByteArrayInputStream(output.toByteArray()));
+            fail("Foreign class is read.");
+        } catch (InvalidClassException ex) {
+            assertEquals(ArrayList.class.getName(), ex.classname);
+        }
+        RestrictedObjectInputStream restricted = new RestrictedObjectInputStream(
+                new ByteArrayInputStream(output.toByteArray()), ContractionHierarchy.class);
+        assertTrue(restricted.isAllowed("[[D"));
+        assertTrue(restricted.isAllowed("[Lcom.nobullet.graph.Key;"));
+        assertTrue(restricted.isAllowed(ContractionHierarchy.class.getName()));
+        assertFalse(restricted.isAllowed("[Ljava.lang.Object;"));
+        assertFalse(restricted.isAllowed("[L;"));
+        assertFalse(restricted.isAllowed(Landmarks.class.getName()));
+    }
+
+    @Test
+    public void testCustomKeys() throws Graph.NegativeEdgeCostException, IOException {
+        Key big = Key.of(new BigDecimal("1.5"));
+        Graph graph = new Graph()
+                .addEdge(new PointKey(0, 0), new PointKey(0, 1), 1.0D)
+                .addEdge(new PointKey(0, 1), big, 2.0D);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ContractionHierarchy.of(graph).writeTo(output);
+        try {
+            ContractionHierarchy.readFrom(new ByteArrayInputStream(output.toByteArray()));
+            fail("Custom key is read without being allowed.");
+        } catch (InvalidClassException ex) {
+            assertEquals(PointKey.class.getName(), ex.classname);
+        }
+        ContractionHierarchy restored = ContractionHierarchy.readFrom(
+                new ByteArrayInputStream(output.toByteArray()), PointKey.class);
+        assertEquals(3.0D, restored.shortestPath(new PointKey(0, 0), big).getCost(), 0.0D);
+    }
+
+    @Test(expected = Graph.NegativeEdgeCostException.class)
+    public void testNegativeEdge() throws Graph.NegativeEdgeCostException {
+        ContractionHierarchy.of(newGraphFromBook(true).addEdge(v1, v2, -1.0D));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testUnknownVertex() throws Graph.NegativeEdgeCostException {
+        ContractionHierarchy.of(newGraphFromBook(true)).shortestPath(v1, Key.of("unknown"));
+    }
+
+    static void assertValidPath(Graph graph, Path path) {
+        List<Key> keys = path.getPath();
+        double cost = 0.0D;
+        for (int i = 1; i < keys.size(); i++) {
+            assertTrue(graph.hasEdge(keys.get(i - 1), keys.get(i)));
+            cost += graph.getEdgeCost(keys.get(i - 1), keys.get(i));
+        }
+        assertEquals(path.getCost(), cost, 1e-9);
+    }
+
+    /**
+     * Key that is not one of the keys of the package.
+     */
+    static final class PointKey implements Key {
+
+        private static final long serialVersionUID = 1L;
+        final int x;
+        final int y;
+
+        PointKey(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PointKey)) {
+                return false;
+            }
+            PointKey other = (PointKey) obj;
+            return x == other.x && y == other.y;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * x + y;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + x + ", " + y + ")";
+        }
+    }
+}
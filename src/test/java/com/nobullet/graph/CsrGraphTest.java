@@ -0,0 +1,159 @@
+package com.nobullet.graph;
+
+import static com.nobullet.MoreAssertions.assertListsEqual;
+import static com.nobullet.graph.GraphTest.listOfVertices;
+import static com.nobullet.graph.GraphTest.newBasicGraph;
+import static com.nobullet.graph.GraphTest.newGraphFromBook;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.StringJoiner;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CsrGraph}.
+ */
+public class CsrGraphTest {
+
+    static final Key v1 = Key.of("v1");
+    static final Key v2 = Key.of("v2");
+    static final Key v3 = Key.of("v3");
+    static final Key v4 = Key.of("v4");
+    static final Key v5 = Key.of("v5");
+    static final Key v6 = Key.of("v6");
+    static final Key v7 = Key.of("v7");
+
+    @Test
+    public void testStructure() {
+        Graph graph = newGraphFromBook(true);
+        CsrGraph csr = graph.freeze();
+        assertEquals(7, csr.getNumberOfVertices());
+        assertEquals(12, csr.getNumberOfEdges());
+        assertEquals(graph.getVertices(), csr.getVertices());
+        for (Key from : graph.getVertices()) {
+            assertEquals(graph.getAdjacentVertices(from), csr.getAdjacentVertices(from));
+            assertEquals(graph.getVertexPosition(from), csr.getVertexPosition(from));
+            for (Key to : graph.getVertices()) {
+                assertEquals(graph.hasEdge(from, to), csr.hasEdge(from, to));
+                if (graph.hasEdge(from, to)) {
+                    assertEquals(graph.getEdgeCost(from, to), csr.getEdgeCost(from, to), 0.0D);
+                }
+            }
+        }
+        // Snapshot is not affected by later changes.
+        graph.removeEdge(v1, v2);
+        assertTrue(csr.hasEdge(v1, v2));
+    }
+
+    @Test
+    public void testDijkstraAndAStar() {
+        CsrGraph csr = newGraphFromBook(true).freeze();
+        assertListsEqual(listOfVertices(v1, v4, v7), csr.shortestPathDijkstra(v1, v7).getPath());
+        assertListsEqual(listOfVertices(v1, v4, v5), csr.shortestPathDijkstra(v1, v5).getPath());
+        assertListsEqual(listOfVertices(v3, v1, v4, v5), csr.shortestPathDijkstra(v3, v5).getPath());
+        assertEquals(5.0D, csr.shortestPathDijkstra(v1, v7).getCost(), 0.0D);
+
+        assertListsEqual(listOfVertices(v1, v4, v7), csr.shortestPathAStar(v1, v7).getPath());
+        assertListsEqual(listOfVertices(v3, v1, v4, v5), csr.shortestPathAStar(v3, v5).getPath());
+
+        assertTrue("v6 has no outgoing edges.", csr.shortestPathDijkstra(v6, v1).isEmpty());
+        assertListsEqual(listOfVertices(v2), csr.shortestPathDijkstra(v2, v2).getPath());
+    }
+
+    @Test
+    public void testRandomGraphMatchesGraph() {
+        Random random = new Random(17L);
+        Graph graph = new Graph();
+        for (int i = 0; i < 600; i++) {
+            int from = random.nextInt(150);
+            int to = random.nextInt(150);
+            if (from != to) {
+                graph.addEdge(Key.of(from), Key.of(to), 1.0D + random.nextInt(20));
+            }
+        }
+        CsrGraph csr = graph.freeze();
+        for (int i = 0; i < 50; i++) {
+            Key source = Key.of(random.nextInt(150));
+            Key target = Key.of(random.nextInt(150));
+            if (!graph.hasVertex(source) || !graph.hasVertex(target)) {
+                continue;
+            }
+            Path expected = graph.shortestPathDijkstra(source, target);
+            Path actual = csr.shortestPathDijkstra(source, target);
+            assertEquals(expected.isEmpty(), actual.isEmpty());
+            assertEquals(expected.getCost(), actual.getCost(), 0.0D);
+            assertEquals(graph.breadthFirstSearch(source, target).getPath().size(),
+                    csr.breadthFirstSearch(source, target).getPath().size());
+        }
+    }
+
+    @Test
+    public void testUnweightedSearches() {
+        CsrGraph csr = newBasicGraph().freeze();
+        assertListsEqual(listOfVertices(Key.of("1"), Key.of("2"), Key.of("5"), Key.of("7")),
+                csr.breadthFirstSearch(Key.of("1"), Key.of("7")).getPath());
+        Path dfs = csr.depthFirstSearch(Key.of("1"), Key.of("10"));
+        assertEquals(Key.of("1"), dfs.getPath().get(0));
+        assertEquals(Key.of("10"), dfs.getPath().get(dfs.getPath().size() - 1));
+        assertTrue(csr.breadthFirstSearch(Key.of("10"), Key.of("1")).isEmpty());
+    }
+
+    @Test
+    public void testTopologicalSort() throws Graph.CycleException {
+        List<Key> order = new ArrayList<>();
+        List<Integer> indices = new ArrayList<>();
+        newBasicGraph().freeze().topologicalSort((vertexKey, index) -> {
+            order.add(vertexKey);
+            indices.add(index);
+        });
+        assertEquals(13, order.size());
+        StringJoiner joiner = new StringJoiner(",");
+        for (int i = 0; i < indices.size(); i++) {
+            assertEquals(i, (int) indices.get(i));
+        }
+        assertTrue(order.indexOf(Key.of("1")) < order.indexOf(Key.of("2")));
+        assertTrue(order.indexOf(Key.of("5")) < order.indexOf(Key.of("7")));
+        assertTrue(order.indexOf(Key.of("6")) < order.indexOf(Key.of("7")));
+        assertTrue(order.indexOf(Key.of("9")) < order.indexOf(Key.of("10")));
+        Collections.sort(indices);
+        indices.stream().forEach(i -> joiner.add(i.toString()));
+        assertEquals("0,1,2,3,4,5,6,7,8,9,10,11,12", joiner.toString());
+    }
+
+    @Test(expected = Graph.CycleException.class)
+    public void testTopologicalSortCycleDetection() throws Graph.CycleException {
+        new Graph()
+                .addEdge(v1, v2)
+                .addEdge(v2, v3)
+                .addEdge(v3, v1)
+                .freeze()
+                .topologicalSort((key, order) -> {
+                });
+    }
+
+    @Test
+    public void testMaximumFlow() throws Graph.NegativeEdgeCostException {
+        CsrGraph csr = GraphFlowTest.newFromBook().freeze();
+        Optional<Graph> flow = csr.maximumFlow(GraphFlowTest.s, GraphFlowTest.t);
+        assertTrue("Has flow", flow.isPresent());
+        assertEquals(GraphFlowTest.newMaximalFlowForGraphFromBook(), flow.get());
+
+        assertFalse("Sink is not reachable.", csr.maximumFlow(GraphFlowTest.t, GraphFlowTest.s).isPresent());
+    }
+
+    @Test(expected = Graph.NegativeEdgeCostException.class)
+    public void testMaximumFlowNegativeEdge() throws Graph.NegativeEdgeCostException {
+        GraphFlowTest.newFromBook().addEdge(GraphFlowTest.a, GraphFlowTest.c, -1.0D).freeze()
+                .maximumFlow(GraphFlowTest.s, GraphFlowTest.t);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testUnknownVertex() {
+        newBasicGraph().freeze().shortestPathDijkstra(Key.of("1"), Key.of("unknown"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.nobullet.graph;
+
+import static com.nobullet.MoreAssertions.assertListsEqual;
+import static com.nobullet.graph.GraphTest.listOfVertices;
+import static com.nobullet.graph.GraphTest.newGraphFromBook;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import com.nobullet.graph.Graph.NegativeEdgeCostException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DynamicShortestPathTree}.
+ */
+public class DynamicShortestPathTreeTest {
+
+    static final Key v1 = Key.of("v1");
+    static final Key v2 = Key.of("v2");
+    static final Key v3 = Key.of("v3");
+    static final Key v4 = Key.of("v4");
+    static final Key v5 = Key.of("v5");
+    static final Key v6 = Key.of("v6");
+    static final Key v7 = Key.of("v7");
+
+    @Test
+    public void testIncreaseAndDecrease() throws NegativeEdgeCostException {
+        Graph graph = newGraphFromBook(false);
+        DynamicShortestPathTree tree = graph.dynamicShortestPathTree(v1);
+        assertListsEqual(listOfVertices(v1, v4, v7, v6), tree.getPath(v6).getPath());
+        assertEquals(6.0D, tree.getCost(v6), 0.0D);
+
+        Set<Key> changed = tree.updateEdgeCosts(updater -> updater.setEdgeCost(v4, v7, 10.0D));
+        assertEquals(new HashSet<>(Arrays.asList(v6, v7)), changed);
+        assertListsEqual(listOfVertices(v1, v4, v5, v7), tree.getPath(v7).getPath());
+        assertEquals(9.0D, tree.getCost(v7), 0.0D);
+        assertListsEqual(listOfVertices(v1, v4, v3, v6), tree.getPath(v6).getPath());
+        assertEquals(8.0D, tree.getCost(v6), 0.0D);
+        assertEquals(10.0D, tree.getEdgeCost(v4, v7), 0.0D);
+
+        // Non-tree edge became more expensive, tree edge of v7 cheaper: v6 switches to v7 again.
+        changed = tree.updateEdgeCosts(updater -> {
+            updater.setEdgeCost(v2, v5, 20.0D);
+            updater.setEdgeCost(v5, v7, 1.0D);
+        });
+        assertEquals(new HashSet<>(Arrays.asList(v6, v7)), changed);
+        assertEquals(4.0D, tree.getCost(v7), 0.0D);
+        assertListsEqual(listOfVertices(v1, v4, v5, v7, v6), tree.getPath(v6).getPath());
+
+        // Nothing changes.
+        assertTrue(tree.updateEdgeCosts(updater -> updater.setEdgeCost(v5, v7, 1.0D)).isEmpty());
+
+        // Restore: everything as before.
+        changed = tree.updateEdgeCosts(updater -> {
+            updater.setEdgeCost(v4, v7, 4.0D);
+            updater.setEdgeCost(v5, v7, 6.0D);
+            updater.setEdgeCost(v2, v5, 10.0D);
+        });
+        assertEquals(new HashSet<>(Arrays.asList(v6, v7)), changed);
+        assertListsEqual(listOfVertices(v1, v4, v7, v6), tree.getPath(v6).getPath());
+        ShortestPathTree snapshot = tree.toShortestPathTree();
+        assertEquals(graph.shortestPathTree(v1).getPath(v6), snapshot.getPath(v6));
+    }
+
+    @Test
+    public void testUnreachable() throws NegativeEdgeCostException {
+        Graph graph = new Graph().addEdge(v1, v2, 1.0D).addEdge(v2, v3, 1.0D).addVertex(v4);
+        DynamicShortestPathTree tree = graph.dynamicShortestPathTree(v1);
+        assertFalse(tree.hasPathTo(v4));
+        assertTrue(tree.getPath(v4).isEmpty());
+        assertEquals(new HashSet<>(Arrays.asList(v2, v3)),
+                tree.updateEdgeCosts(updater -> updater.setEdgeCost(v1, v2, Double.POSITIVE_INFINITY)));
+        assertFalse(tree.hasPathTo(v3));
+        assertEquals(Double.POSITIVE_INFINITY, tree.getCost(v3), 0.0D);
+        tree.updateEdgeCosts(updater -> updater.setEdgeCost(v1, v2, 2.0D));
+        assertEquals(3.0D, tree.getCost(v3), 0.0D);
+    }
+
+    @Test
+    public void testWrongUpdates() throws NegativeEdgeCostException {
+        DynamicShortestPathTree tree = newGraphFromBook(false).dynamicShortestPathTree(v1);
+        try {
+            tree.updateEdgeCosts(updater -> updater.setEdgeCost(v1, v3, 1.0D));
+            fail("No edge.");
+        } catch (NullPointerException npe) {
+            // Ok.
+        }
+        try {
+            tree.updateEdgeCosts(updater -> {
+                updater.setEdgeCost(v4, v7, 0.5D);
+                updater.setEdgeCost(v1, v2, -1.0D);
+            });
+            fail("Negative cost.");
+        } catch (IllegalArgumentException iae) {
+            // Ok.
+        }
+        // Changes before the failed one are applied.
+        assertEquals(1.5D, tree.getCost(v7), 0.0D);
+        try {
+            new Graph().addEdge(v1, v2, -1.0D).dynamicShortestPathTree(v1);
+            fail("Negative cost.");
+        } catch (NegativeEdgeCostException nece) {
+            // Ok.
+        }
+    }
+
+    @Test
+    public void testRandomBatchesMatchDijkstra() throws NegativeEdgeCostException {
+        Random random = new Random(17L);
+        int vertices = 3000;
+        Graph graph = new Graph();
+        for (int v = 0; v < vertices; v++) {
+            graph.addVertex(Key.of(v));
+        }
+        for (int i = 0; i < 15000; i++) {
+            int from = random.nextInt(vertices);
+            int to = random.nextInt(vertices);
+            if (from != to) {
+                graph.addEdge(Key.of(from), Key.of(to), 1 + random.nextInt(100));
+            }
+        }
+        CsrGraph csr = graph.freeze();
+        DynamicShortestPathTree tree = csr.dynamicShortestPathTree(Key.of(0));
+        for (int batch = 0; batch < 30; batch++) {
+            Path[] before = new Path[vertices];
+            for (int v = 0; v < vertices; v++) {
+                before[v] = tree.getPath(Key.of(v));
+            }
+            Set<Key> changed = tree.updateEdgeCosts(updater -> {
+                for (int i = 0; i < 20; i++) {
+                    int e = random.nextInt(csr.targets.length);
+                    updater.setEdgeCost(csr.keys[tree.edgeSources[e]], csr.keys[csr.targets[e]],
+                            1 + random.nextInt(100));
+                }
+            });
+            ShortestPathTree expected = csr.withCosts(tree.edgeCosts.clone()).shortestPathTree(Key.of(0));
+            for (int v = 0; v < vertices; v++) {
+                Key key = Key.of(v);
+                assertEquals(expected.getCost(key), tree.getCost(key), 0.0D);
+                if (!changed.contains(key)) {
+                    assertEquals(before[v], tree.getPath(key));
+                }
+            }
+        }
+    }
+}
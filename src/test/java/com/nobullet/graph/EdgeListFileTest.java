@@ -0,0 +1,140 @@
+package com.nobullet.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link EdgeListFile}.
+ */
+public class EdgeListFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFormat() throws IOException {
+        String text = "# from,to,cost\n"
+                + "1,2,3.5\r\n"
+                + "\n"
+                + "  2 , 3 ,  -0.25 \n"
+                + "a,1\n"
+                + "1,2,7\n"
+                + "-4,a,1e3";
+        Graph graph = EdgeListFile.read(input(text));
+        Graph expected = new Graph()
+                .addEdge(Key.of(1L), Key.of(2L), 7.0D)
+                .addEdge(Key.of(2L), Key.of(3L), -0.25D)
+                .addEdge(Key.of("a"), Key.of(1L), 1.0D)
+                .addEdge(Key.of(-4L), Key.of("a"), 1000.0D);
+        assertEquals(expected, graph);
+
+        // Reverse adjacency is built as well.
+        graph.removeVertex(Key.of(2L));
+        assertFalse(graph.hasEdge(Key.of(1L), Key.of(2L)));
+        assertEquals(2, graph.freeze().getNumberOfEdges());
+
+        Graph strings = EdgeListFile.read(input("1\t2\t0.5\n"), '\t', EdgeListFile.STRING_KEY_PARSER);
+        assertEquals(0.5D, strings.getEdgeCost(Key.of("1"), Key.of("2")), 0.0D);
+        assertEquals(0, EdgeListFile.read(input("")).getVertices().size());
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        Random random = new Random(16L);
+        StringBuilder text = new StringBuilder();
+        Graph expected = new Graph();
+        for (int i = 0; i < 50000; i++) {
+            int from = random.nextInt(5000);
+            int to = random.nextInt(5000);
+            if (from == to) {
+                continue;
+            }
+            int cost = random.nextInt(1000);
+            text.append(from).append(',').append(to).append(',').append(cost / 10.0D).append('\n');
+            expected.addEdge(Key.of((long) from), Key.of((long) to), cost / 10.0D);
+        }
+        // Small chunks: lines are cut between chunks.
+        assertEquals(expected, EdgeListFile.read(input(text.toString()), ',', EdgeListFile.KEY_PARSER, 1000));
+        // Chunks smaller than lines are extended.
+        assertEquals(expected, EdgeListFile.read(input(text.toString()), ',', EdgeListFile.KEY_PARSER, 4));
+
+        java.nio.file.Path file = folder.newFile("edges.csv").toPath();
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+        Graph graph = EdgeListFile.read(file);
+        assertEquals(expected, graph);
+        assertEquals(expected.shortestPathDijkstra(Key.of(1L), Key.of(2L)),
+                graph.shortestPathDijkstra(Key.of(1L), Key.of(2L)));
+    }
+
+    @Test
+    public void testKeyNumbering() throws IOException {
+        Random random = new Random(16L);
+        StringBuilder text = new StringBuilder();
+        List<Key> firstAppearance = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            long from = random.nextInt(2000);
+            long to = from + 1 + random.nextInt(100);
+            text.append(from).append(',').append(to).append('\n');
+            for (Key key : new Key[]{Key.of(from), Key.of(to)}) {
+                if (!firstAppearance.contains(key)) {
+                    firstAppearance.add(key);
+                }
+            }
+        }
+        // Vertices are numbered by first appearance in the input whatever the chunks are.
+        for (int chunkSize : new int[]{4, 100, 1 << 16}) {
+            Graph graph = EdgeListFile.read(input(text.toString()), ',', EdgeListFile.KEY_PARSER, chunkSize);
+            for (int id = 0; id < firstAppearance.size(); id++) {
+                assertEquals(id, graph.vertices.get(firstAppearance.get(id)).id);
+            }
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        assertError("1,2\n3\n", "Line 2: ");
+        assertError("1,2\n\n2,3,x\n", "Line 3: wrong cost: x");
+        assertError("1,1\n", "Line 1: can't add cycle edge");
+        assertError("1, ,3\n", "Line 1: empty key");
+        try {
+            EdgeListFile.read(input("1\n2,3"), '\n', EdgeListFile.KEY_PARSER);
+            fail("Wrong separator.");
+        } catch (IllegalArgumentException | IOException ex) {
+            assertTrue(ex instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testParseCost() {
+        String[] values = {"0", "12", "-3.125", "+7.5", "0.1", "123456789.123456", "1e-3", "1234567890123456789"};
+        for (String value : values) {
+            byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+            assertEquals(Double.parseDouble(value), EdgeListFile.parseCost(bytes, 0, bytes.length), 0.0D);
+        }
+    }
+
+    static void assertError(String text, String message) {
+        try {
+            EdgeListFile.read(input(text));
+            fail("Expected error: " + message);
+        } catch (IOException ioe) {
+            assertTrue(ioe.getMessage(), ioe.getMessage().startsWith(message));
+        }
+    }
+
+    static ByteArrayInputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,121 @@
+package com.nobullet.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import com.nobullet.graph.Map.Cell;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FlowField}.
+ */
+public class FlowFieldTest {
+
+    @Test
+    public void testField() {
+        Map map = Map.fromString(
+                "  #  ",
+                "  #  ",
+                "     ");
+        FlowField field = map.newFlowField(Arrays.asList(new Cell(0, 0), new Cell(4, 0)));
+        assertEquals(0L, field.getDistance(0, 0));
+        assertEquals(2L, field.getDistance(1, 1));
+        assertEquals(new Cell(4, 0), field.getNextCell(new Cell(4, 0)));
+        assertEquals(new Cell(4, 0), field.getNextCell(new Cell(3, 0)));
+        Map.Path path = field.pathFrom(new Cell(2, 2));
+        assertEquals(field.getDistance(2, 2), path.getCost());
+        JumpPointSearchTest.assertContinuous(map, path);
+
+        // Cheaper steps are picked up as well as more expensive ones.
+        map.set(2, 0, 0L);
+        assertEquals(2L, field.getDistance(2, 0));
+        map.set(1, 0, 9L);
+        assertEquals(new Cell(3, 0), field.getNextCell(new Cell(2, 0)));
+        field.detach();
+    }
+
+    @Test
+    public void testMatchesDijkstra() {
+        Random random = new Random(25L);
+        for (int round = 0; round < 10; round++) {
+            Map map = new Map(5 + random.nextInt(25), 5 + random.nextInt(25));
+            for (int y = 0; y < map.getHeight(); y++) {
+                for (int x = 0; x < map.getWidth(); x++) {
+                    map.set(x, y, random.nextInt(3) == 0 ? random.nextInt(10) : 0L);
+                }
+            }
+            List<Cell> targets = new ArrayList<>();
+            for (int i = 1 + random.nextInt(3); i > 0; i--) {
+                targets.add(new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight())));
+            }
+            FlowField field = new FlowField(map, targets);
+            for (int i = 0; i < 30; i++) {
+                for (int changes = random.nextInt(4); changes > 0; changes--) {
+                    map.set(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()), random.nextInt(10));
+                }
+                Cell source = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+                long expected = Map.Constants.UNREACHABLE_CELL;
+                for (Cell target : targets) {
+                    expected = Math.min(expected, map.shortestPathDijkstra(source, target).getCost());
+                }
+                assertEquals(expected, field.getDistance(source));
+                Map.Path path = field.pathFrom(source);
+                assertEquals(expected, path.getCost());
+                assertSteps(path);
+                assertEquals(source, path.asList().get(0));
+                assertTrue(targets.contains(path.asList().get(path.asList().size() - 1)));
+            }
+            // The incremental field equals the one computed from scratch.
+            FlowField fresh = new FlowField(map, targets);
+            for (int y = 0; y < map.getHeight(); y++) {
+                for (int x = 0; x < map.getWidth(); x++) {
+                    assertEquals(fresh.getDistance(x, y), field.getDistance(x, y));
+                }
+            }
+            fresh.detach();
+            field.detach();
+        }
+    }
+
+    @Test
+    public void testOverriddenCost() {
+        Random random = new Random(125L);
+        Map map = new Map(20, 15) {
+            @Override
+            public long cost(Cell current, Cell next) {
+                return 3L * Math.abs(get(current) - get(next)) + (get(next) & 1L) + 1L;
+            }
+        };
+        for (int y = 0; y < map.getHeight(); y++) {
+            for (int x = 0; x < map.getWidth(); x++) {
+                map.set(x, y, random.nextInt(5));
+            }
+        }
+        Cell target = new Cell(7, 7);
+        FlowField field = map.newFlowField(Collections.singletonList(target));
+        for (int i = 0; i < 30; i++) {
+            map.set(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()), random.nextInt(5));
+            Cell source = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+            long expected = GridSearchTest.costOf(map, map.shortestPathDijkstra(source, target));
+            assertEquals(expected, field.getDistance(source));
+            assertEquals(expected, GridSearchTest.costOf(map, field.pathFrom(source)));
+        }
+        field.detach();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoTargets() {
+        new FlowField(new Map(3, 3), Collections.emptyList());
+    }
+
+    private static void assertSteps(Map.Path path) {
+        List<Cell> cells = path.asList();
+        for (int i = 1; i < cells.size(); i++) {
+            assertEquals(1, cells.get(i).manhattanDistanceTo(cells.get(i - 1)));
+        }
+    }
+}
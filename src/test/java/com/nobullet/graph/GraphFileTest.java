@@ -0,0 +1,167 @@
+package com.nobullet.graph;
+
+import static com.nobullet.MoreAssertions.assertListsEqual;
+import static com.nobullet.graph.GraphTest.listOfVertices;
+import static com.nobullet.graph.GraphTest.newGraphFromBook;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link GraphFile} and {@link MappedGraph}.
+ */
+public class GraphFileTest {
+
+    static final Key v1 = Key.of("v1");
+    static final Key v2 = Key.of("v2");
+    static final Key v3 = Key.of("v3");
+    static final Key v4 = Key.of("v4");
+    static final Key v5 = Key.of("v5");
+    static final Key v6 = Key.of("v6");
+    static final Key v7 = Key.of("v7");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStructure() throws IOException {
+        Graph graph = newGraphFromBook(true);
+        java.nio.file.Path file = folder.newFile("book.graph").toPath();
+        GraphFile.write(graph, file);
+        MappedGraph mapped = GraphFile.open(file);
+
+        assertEquals(7, mapped.getNumberOfVertices());
+        assertEquals(12, mapped.getNumberOfEdges());
+        assertEquals(graph.getVertices(), mapped.getVertices());
+        for (Key from : graph.getVertices()) {
+            assertTrue(mapped.hasVertex(from));
+            assertEquals(graph.getAdjacentVertices(from), mapped.getAdjacentVertices(from));
+            assertEquals(graph.getVertexPosition(from), mapped.getVertexPosition(from));
+            for (Key to : graph.getAdjacentVertices(from)) {
+                assertEquals(graph.getEdgeCost(from, to), mapped.getEdgeCost(from, to), 0.0D);
+            }
+        }
+        assertFalse(mapped.hasVertex(Key.of("v8")));
+        assertFalse(mapped.hasVertex(Key.of(1)));
+        assertFalse(mapped.hasEdge(v1, v3));
+        assertTrue(mapped.hasEdge(v3, v1));
+        assertEquals(graph, mapped.toGraph());
+        assertEquals(graph.freeze().getVertices(), mapped.toCsrGraph().getVertices());
+        assertEquals(graph.shortestPathDijkstra(v1, v6), mapped.toCsrGraph().shortestPathDijkstra(v1, v6));
+    }
+
+    @Test
+    public void testPaths() throws IOException {
+        Graph graph = newGraphFromBook(true);
+        java.nio.file.Path file = folder.newFile("paths.graph").toPath();
+        GraphFile.write(graph, file);
+        MappedGraph mapped = GraphFile.open(file);
+
+        Path path = mapped.shortestPathDijkstra(v1, v6);
+        assertListsEqual(listOfVertices(v1, v4, v7, v6), path.getPath());
+        assertEquals(6.0D, path.getCost(), 0.0D);
+        assertListsEqual(listOfVertices(v1, v4, v7), mapped.shortestPathAStar(v1, v7).getPath());
+        assertListsEqual(listOfVertices(v3, v1, v4, v5), mapped.shortestPathAStar(v3, v5).getPath());
+        assertListsEqual(listOfVertices(v1, v4, v6), mapped.breadthFirstSearch(v1, v6).getPath());
+        assertTrue(mapped.shortestPathDijkstra(v6, v1).isEmpty());
+        try {
+            mapped.shortestPathDijkstra(v1, Key.of("v8"));
+            fail("Unknown vertex.");
+        } catch (NullPointerException npe) {
+            // Ok.
+        }
+    }
+
+    @Test
+    public void testDataAndKeys() throws IOException {
+        Graph graph = new Graph()
+                .addVertex(Key.of(1), "one", VertexPosition.newEarthGeographic(13.4D, 52.5D))
+                .addVertex(Key.of(2L), 2, null)
+                .addVertex(Key.of(3.5D))
+                .addVertex(Key.of("four"), null, VertexPosition.new2D(4, 4))
+                .addEdge(Key.of(1), Key.of(2L), 1.5D, "edge")
+                .addEdge(Key.of(2L), Key.of(3.5D), 2.5D)
+                .addEdge(Key.of(3.5D), Key.of("four"), 3.5D, 42L);
+        java.nio.file.Path file = folder.newFile("data.graph").toPath();
+        GraphFile.write(graph, file, GraphFile.KEY_CODEC, GraphFile.POSITION_CODEC, GraphFile.SERIALIZABLE_CODEC);
+
+        MappedGraph withoutData = GraphFile.open(file);
+        assertEquals(Optional.empty(), withoutData.getVertexData(Key.of(1)));
+        assertEquals(Optional.empty(), withoutData.getEdgeData(Key.of(1), Key.of(2L)));
+
+        MappedGraph mapped = GraphFile.open(file, GraphFile.KEY_CODEC, GraphFile.POSITION_CODEC,
+                GraphFile.SERIALIZABLE_CODEC);
+        assertTrue(mapped.hasVertex(Key.of(2L)));
+        assertFalse(mapped.hasVertex(Key.of(2)));
+        assertEquals(Optional.of("one"), mapped.getVertexData(Key.of(1)));
+        assertEquals(Optional.of(2), mapped.getVertexData(Key.of(2L)));
+        assertEquals(Optional.empty(), mapped.getVertexData(Key.of(3.5D)));
+        assertEquals(Optional.of("edge"), mapped.getEdgeData(Key.of(1), Key.of(2L)));
+        assertEquals(Optional.empty(), mapped.getEdgeData(Key.of(2L), Key.of(3.5D)));
+        assertEquals(Optional.of(42L), mapped.getEdgeData(Key.of(3.5D), Key.of("four")));
+        assertEquals(Optional.of(VertexPosition.newEarthGeographic(13.4D, 52.5D)),
+                mapped.getVertexPosition(Key.of(1)));
+        assertEquals(Optional.empty(), mapped.getVertexPosition(Key.of(2L)));
+
+        Graph copy = mapped.toGraph();
+        assertEquals(graph, copy);
+        assertEquals(Optional.of("one"), copy.getVertexData(Key.of(1)));
+        assertEquals(Optional.of(42L), copy.getEdgeData(Key.of(3.5D), Key.of("four")));
+    }
+
+    @Test
+    public void testDataClasses() throws IOException {
+        Key point = new ContractionHierarchyTest.PointKey(1, 2);
+        Graph graph = new Graph()
+                .addVertex(Key.of(1), point, null)
+                .addVertex(Key.of(2), new long[]{1L, 2L}, null);
+        java.nio.file.Path file = folder.newFile("classes.graph").toPath();
+        GraphFile.write(graph, file, GraphFile.KEY_CODEC, GraphFile.POSITION_CODEC, GraphFile.SERIALIZABLE_CODEC);
+
+        MappedGraph mapped = GraphFile.open(file, GraphFile.KEY_CODEC, GraphFile.POSITION_CODEC,
+                GraphFile.SERIALIZABLE_CODEC);
+        assertArrayEquals(new long[]{1L, 2L}, (long[]) mapped.getVertexData(Key.of(2)).get());
+        try {
+            mapped.getVertexData(Key.of(1));
+            fail("Data class is decoded without being allowed.");
+        } catch (UncheckedIOException ex) {
+            assertTrue(ex.getCause() instanceof InvalidClassException);
+        }
+        MappedGraph allowed = GraphFile.open(file, GraphFile.KEY_CODEC, GraphFile.POSITION_CODEC,
+                GraphFile.serializableCodec(ContractionHierarchyTest.PointKey.class));
+        assertEquals(Optional.of(point), allowed.getVertexData(Key.of(1)));
+    }
+
+    @Test
+    public void testLargeGraph() throws IOException {
+        CsrGraph graph = GraphTest.newRandomGraph(new Random(3L), 5000, 30000, 1).freeze();
+        java.nio.file.Path file = folder.newFile("large.graph").toPath();
+        GraphFile.write(graph, file, GraphFile.KEY_CODEC, GraphFile.POSITION_CODEC);
+        MappedGraph mapped = GraphFile.open(file);
+        assertEquals(graph.getNumberOfEdges(), mapped.getNumberOfEdges());
+        for (int v = 0; v < 5000; v += 97) {
+            assertEquals(graph.keys[v], mapped.keyAt(mapped.indexOf(graph.keys[v])));
+            assertEquals(graph.getAdjacentVertices(graph.keys[v]), mapped.getAdjacentVertices(graph.keys[v]));
+        }
+        assertEquals(graph.shortestPathDijkstra(graph.keys[0], graph.keys[4999]).getPath(),
+                mapped.shortestPathDijkstra(graph.keys[0], graph.keys[4999]).getPath());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAGraphFile() throws IOException {
+        java.nio.file.Path file = folder.newFile("garbage.graph").toPath();
+        Files.write(file, new byte[GraphFile.HEADER_BYTES]);
+        GraphFile.open(file);
+    }
+}
@@ -1,9 +1,15 @@
 package com.nobullet.graph;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import com.nobullet.graph.Graph.MutableDouble;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import org.junit.Test;
 
 /**
@@ -42,6 +48,85 @@ public class GraphFlowTest {
         assertEquals("5.0 is expected flow.", 5.0D, flowCounter.getValue(), 0.000000000001D);
     }
 
+    @Test
+    public void testAlgorithmsAgree() throws Graph.NegativeEdgeCostException {
+        for (FlowAlgorithm algorithm : FlowAlgorithm.values()) {
+            Optional<Graph> flow = newFromBook().maximumFlow(s, t, algorithm);
+            assertTrue(algorithm + " has flow", flow.isPresent());
+            assertEquals(algorithm.toString(), newMaximalFlowForGraphFromBook(), flow.get());
+            assertFalse(algorithm + ": sink is not reachable.", newFromBook().maximumFlow(t, s, algorithm).isPresent());
+        }
+        Random random = new Random(3L);
+        for (int round = 0; round < 20; round++) {
+            Graph graph = new Graph();
+            for (int i = 0; i < 300; i++) {
+                int from = random.nextInt(60);
+                int to = random.nextInt(60);
+                if (from != to) {
+                    graph.addEdge(Key.of(from), Key.of(to), random.nextInt(10));
+                }
+            }
+            Key source = Key.of(0);
+            Key sink = Key.of(59);
+            if (!graph.hasVertex(source) || !graph.hasVertex(sink)) {
+                continue;
+            }
+            MaximumFlow expected = graph.maximumFlowWithCut(source, sink, FlowAlgorithm.EDMONDS_KARP);
+            for (FlowAlgorithm algorithm : FlowAlgorithm.values()) {
+                MaximumFlow actual = graph.maximumFlowWithCut(source, sink, algorithm);
+                assertEquals(algorithm.toString(), expected.getValue(), actual.getValue(), 1e-9);
+                assertValidFlow(graph, source, sink, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testMinimumCut() throws Graph.NegativeEdgeCostException {
+        MaximumFlow result = newFromBook().maximumFlowWithCut(s, t, FlowAlgorithm.DINIC);
+        assertEquals(5.0D, result.getValue(), 0.0D);
+        assertEquals(new HashSet<>(Arrays.asList(s)), result.getSourceSide());
+        assertEquals(new HashSet<>(Arrays.asList(a, b, c, d, t)), result.getSinkSide());
+        Graph cut = new Graph()
+                .addEdge(s, b, 2.0D)
+                .addEdge(s, a, 3.0D);
+        assertEquals(cut, result.getCut());
+
+        // Flow and cut are copies.
+        result.getFlow().get().clear();
+        result.getCut().clear();
+        assertEquals(cut, result.getCut());
+        assertFalse(result.getFlow().get().getVertices().isEmpty());
+    }
+
+    /**
+     * Checks capacity and conservation constraints of the flow and that the cut capacity equals the flow value.
+     */
+    static void assertValidFlow(Graph graph, Key source, Key sink, MaximumFlow result) {
+        Map<Key, Double> balance = new HashMap<>();
+        if (result.getFlow().isPresent()) {
+            Graph flow = result.getFlow().get();
+            flow.traverseEdges((from, to, cost, data) -> {
+                assertTrue(cost <= graph.getEdgeCost(from, to) + 1e-9);
+                balance.merge(from, -cost, Double::sum);
+                balance.merge(to, cost, Double::sum);
+            });
+        }
+        for (Map.Entry<Key, Double> entry : balance.entrySet()) {
+            if (entry.getKey().equals(source)) {
+                assertEquals(-result.getValue(), entry.getValue(), 1e-9);
+            } else if (entry.getKey().equals(sink)) {
+                assertEquals(result.getValue(), entry.getValue(), 1e-9);
+            } else {
+                assertEquals(0.0D, entry.getValue(), 1e-9);
+            }
+        }
+        assertTrue(result.getSourceSide().contains(source));
+        assertFalse(result.getSourceSide().contains(sink));
+        MutableDouble cutCapacity = new MutableDouble();
+        result.getCut().traverseEdges((from, to, cost, data) -> cutCapacity.addAndGet(cost));
+        assertEquals(result.getValue(), cutCapacity.getValue(), 1e-9);
+    }
+
     /**
      * Graph graph from book "Data Structures and Algorithm Analysis in Java", 2nd e., by Mark Allen Weiss, page 346.
      *
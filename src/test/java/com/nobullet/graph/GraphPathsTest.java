@@ -3,6 +3,13 @@ package com.nobullet.graph;
 import static com.nobullet.MoreAssertions.assertListsEqual;
 import static com.nobullet.graph.GraphTest.listOfVertices;
 import static com.nobullet.graph.GraphTest.newGraphFromBook;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import org.junit.Test;
 
 /**
@@ -72,4 +79,118 @@ public class GraphPathsTest {
 
         assertListsEqual(listOfVertices(v3, v1, v4, v5), graph.shortestPathAStar(v3, v5).getPath());
     }
+
+    @Test
+    public void testDijkstra_repeatedQueriesAndVertexRemoval() {
+        Graph graph = newGraphFromBook(false);
+        for (int i = 0; i < 3; i++) {
+            assertListsEqual(listOfVertices(v1, v4, v7), graph.shortestPathDijkstra(v1, v7).getPath());
+            assertEquals(5.0D, graph.shortestPathDijkstra(v1, v7).getCost(), 0.0D);
+        }
+        graph.removeVertex(v4);
+        assertListsEqual(listOfVertices(v1, v2, v5, v7), graph.shortestPathDijkstra(v1, v7).getPath());
+        assertTrue(graph.shortestPathDijkstra(v1, v3).isEmpty());
+        // Id of the removed vertex is reused.
+        graph.addEdge(v1, k8, 1.0D).addEdge(k8, v7, 1.0D);
+        assertListsEqual(listOfVertices(v1, k8, v7), graph.shortestPathDijkstra(v1, v7).getPath());
+        assertEquals(2.0D, graph.shortestPathAStar(v1, v7).getCost(), 0.0D);
+    }
+
+    @Test
+    public void testBidirectional() {
+        Graph graph = newGraphFromBook(true);
+        assertListsEqual(listOfVertices(v1, v4, v7), graph.shortestPathBidirectional(v1, v7).getPath());
+        assertListsEqual(listOfVertices(v1, v4, v5), graph.shortestPathBidirectional(v1, v5).getPath());
+        assertListsEqual(listOfVertices(v3, v1, v4, v5), graph.shortestPathBidirectional(v3, v5).getPath());
+        assertListsEqual(listOfVertices(v3, v1, v4, v5), graph.shortestPathBidirectionalAStar(v3, v5).getPath());
+        assertListsEqual(listOfVertices(v2), graph.shortestPathBidirectional(v2, v2).getPath());
+        assertTrue(graph.shortestPathBidirectional(v6, v1).isEmpty());
+        // Reverse adjacency follows removals.
+        graph.removeEdge(v4, v7);
+        assertEquals(graph.shortestPathDijkstra(v1, v7).getCost(),
+                graph.shortestPathBidirectional(v1, v7).getCost(), 0.0D);
+        graph.removeVertex(v4);
+        assertEquals(graph.shortestPathDijkstra(v1, v6).getCost(),
+                graph.shortestPathBidirectional(v1, v6).getCost(), 0.0D);
+    }
+
+    @Test
+    public void testBidirectional_gridMatchesDijkstra() {
+        Random random = new Random(7L);
+        int size = 30;
+        Graph graph = new Graph();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                graph.addVertex(Key.of(x * size + y), null, VertexPosition.new2D(x, y));
+            }
+        }
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                Key from = Key.of(x * size + y);
+                // Costs are not less than euclidean distance, so the heuristic is consistent.
+                if (x + 1 < size && random.nextInt(10) > 0) {
+                    graph.addEdge(from, Key.of((x + 1) * size + y), 1.0D + random.nextInt(5));
+                    graph.addEdge(Key.of((x + 1) * size + y), from, 1.0D + random.nextInt(5));
+                }
+                if (y + 1 < size && random.nextInt(10) > 0) {
+                    graph.addEdge(from, Key.of(x * size + y + 1), 1.0D + random.nextInt(5));
+                    graph.addEdge(Key.of(x * size + y + 1), from, 1.0D + random.nextInt(5));
+                }
+            }
+        }
+        for (int i = 0; i < 40; i++) {
+            Key source = Key.of(random.nextInt(size * size));
+            Key target = Key.of(random.nextInt(size * size));
+            Path expected = graph.shortestPathDijkstra(source, target);
+            Path bidirectional = graph.shortestPathBidirectional(source, target);
+            Path bidirectionalAStar = graph.shortestPathBidirectionalAStar(source, target);
+            assertEquals(expected.isEmpty(), bidirectional.isEmpty());
+            assertEquals(expected.getCost(), bidirectional.getCost(), 1e-9D);
+            assertEquals(expected.getCost(), bidirectionalAStar.getCost(), 1e-9D);
+            if (!expected.isEmpty()) {
+                assertEquals(source, bidirectional.getPath().get(0));
+                assertEquals(target, bidirectionalAStar.getPath().get(bidirectionalAStar.getPath().size() - 1));
+            }
+        }
+    }
+
+    @Test
+    public void testShortestPathTree() {
+        ShortestPathTree tree = newGraphFromBook(true).shortestPathTree(v3);
+        assertEquals(v3, tree.getSource());
+        assertListsEqual(listOfVertices(v3, v1, v4, v5), tree.getPath(v5).getPath());
+        assertEquals(newGraphFromBook(true).shortestPathDijkstra(v3, v7).getCost(), tree.getCost(v7), 0.0D);
+        assertListsEqual(listOfVertices(v3), tree.getPath(v3).getPath());
+        assertFalse(newGraphFromBook(true).shortestPathTree(v6).hasPathTo(v1));
+        assertEquals(Double.POSITIVE_INFINITY, newGraphFromBook(true).shortestPathTree(v6).getCost(v1), 0.0D);
+    }
+
+    @Test
+    public void testDistanceMatrixMatchesDijkstra() {
+        Random random = new Random(5L);
+        Graph graph = new Graph();
+        for (int i = 0; i < 800; i++) {
+            int from = random.nextInt(200);
+            int to = random.nextInt(200);
+            if (from != to) {
+                graph.addEdge(Key.of(from), Key.of(to), 1.0D + random.nextInt(10));
+            }
+        }
+        List<Key> keys = new ArrayList<>(graph.getVertices());
+        List<Key> sources = keys.subList(0, 40);
+        List<Key> targets = new ArrayList<>(keys.subList(20, 60));
+        targets.add(keys.get(25));
+        double[][] matrix = graph.distanceMatrix(sources, targets);
+        assertEquals(sources.size(), matrix.length);
+        for (int row = 0; row < sources.size(); row++) {
+            assertEquals(targets.size(), matrix[row].length);
+            for (int column = 0; column < targets.size(); column++) {
+                Path expected = graph.shortestPathDijkstra(sources.get(row), targets.get(column));
+                assertEquals(expected.isEmpty() ? Double.POSITIVE_INFINITY : expected.getCost(), matrix[row][column],
+                        1e-9);
+            }
+        }
+        assertEquals(0, graph.distanceMatrix(Collections.emptyList(), targets).length);
+        assertEquals(0, graph.distanceMatrix(sources, Collections.emptyList())[0].length);
+    }
 }
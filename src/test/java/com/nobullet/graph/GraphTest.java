@@ -8,6 +8,7 @@ import com.google.common.collect.Lists;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.StringJoiner;
 import java.util.logging.Logger;
 import org.junit.Test;
@@ -208,4 +209,22 @@ public class GraphTest {
                 addEdge(k00, k10).
                 addEdge(k000, k10);
     }
+
+    /**
+     * Random graph over integer keys 0..vertices-1 without cycle edges, costs are uniform in 1..maxCost.
+     */
+    static Graph newRandomGraph(Random random, int vertices, int edges, int maxCost) {
+        Graph graph = new Graph();
+        for (int v = 0; v < vertices; v++) {
+            graph.addVertex(Key.of(v));
+        }
+        for (int i = 0; i < edges; i++) {
+            int from = random.nextInt(vertices);
+            int to = random.nextInt(vertices);
+            if (from != to) {
+                graph.addEdge(Key.of(from), Key.of(to), maxCost == 1 ? 1.0D : 1 + random.nextInt(maxCost));
+            }
+        }
+        return graph;
+    }
 }
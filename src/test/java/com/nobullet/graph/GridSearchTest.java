@@ -0,0 +1,150 @@
+package com.nobullet.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import com.nobullet.graph.Map.Cell;
+import java.util.PriorityQueue;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for {@link GridSearch} and {@link RadixHeap}.
+ */
+public class GridSearchTest {
+
+    @Test
+    public void testBreadthFirst() {
+        Map map = Map.fromString(
+                " # ",
+                " # ",
+                "   ");
+        GridSearch search = map.newGridSearch();
+        Map.Path path = search.shortestPathBFS(new Cell(0, 0), new Cell(2, 0));
+        assertEquals(Map.fromString(
+                "1#7",
+                "2#6",
+                "345"), path.asMap());
+        assertFalse(search.shortestPathBFS(new Cell(0, 0), new Cell(1, 0)).hasPath());
+        map.set(1, 2, 1L);
+        assertFalse(search.shortestPathBFS(new Cell(0, 0), new Cell(2, 0)).hasPath());
+    }
+
+    @Test
+    public void testMatchesMapSearches() {
+        Random random = new Random(17L);
+        for (int round = 0; round < 5; round++) {
+            Map map = new Map(30 + random.nextInt(20), 20 + random.nextInt(20));
+            for (int y = 0; y < map.getHeight(); y++) {
+                for (int x = 0; x < map.getWidth(); x++) {
+                    if (random.nextInt(4) == 0) {
+                        map.set(x, y, 1 + random.nextInt(9));
+                    }
+                }
+            }
+            GridSearch search = map.newGridSearch();
+            for (int i = 0; i < 50; i++) {
+                Cell source = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+                Cell target = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+                Map.Path expected = map.shortestPathDijkstra(source, target);
+                Map.Path dijkstra = search.shortestPathDijkstra(source, target);
+                Map.Path aStar = search.shortestPathAStar(source, target);
+                assertEquals(expected.getCost(), dijkstra.getCost());
+                assertEquals(expected.getCost(), aStar.getCost());
+                assertEquals(source, aStar.asList().get(0));
+                assertEquals(target, aStar.asList().get(aStar.asList().size() - 1));
+                assertEquals(expected.getCost(), search.shortestPathCost(source.getX(), source.getY(),
+                        target.getX(), target.getY()));
+
+                Map.Path expectedBfs = map.shortestPathBFS(source, target);
+                Map.Path bfs = search.shortestPathBFS(source, target);
+                assertEquals(expectedBfs.hasPath(), bfs.hasPath());
+                assertEquals(expectedBfs.asList().size(), bfs.asList().size());
+            }
+        }
+    }
+
+    @Test
+    public void testOverriddenCost() {
+        Random random = new Random(117L);
+        Map map = new Map(25, 20) {
+            @Override
+            public long cost(Cell current, Cell next) {
+                return 3L * Math.abs(get(current) - get(next)) + (get(next) & 1L) + 1L;
+            }
+        };
+        assertFalse(map.hasDefaultCost());
+        assertTrue(new Map(2, 2).hasDefaultCost());
+        for (int y = 0; y < map.getHeight(); y++) {
+            for (int x = 0; x < map.getWidth(); x++) {
+                map.set(x, y, random.nextInt(5));
+            }
+        }
+        GridSearch search = map.newGridSearch();
+        for (int i = 0; i < 30; i++) {
+            Cell source = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+            Cell target = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+            long expected = costOf(map, map.shortestPathDijkstra(source, target));
+            assertEquals(expected, costOf(map, search.shortestPathDijkstra(source, target)));
+            assertEquals(expected, costOf(map, search.shortestPathAStar(source, target)));
+            assertEquals(expected, search.shortestPathCost(source.getX(), source.getY(), target.getX(),
+                    target.getY()));
+        }
+    }
+
+    /**
+     * Sums {@link Map#cost(Cell, Cell)} over the steps of the path.
+     */
+    static long costOf(Map map, Map.Path path) {
+        long cost = 0L;
+        for (int i = 1; i < path.asList().size(); i++) {
+            cost += map.cost(path.asList().get(i - 1), path.asList().get(i));
+        }
+        return cost;
+    }
+
+    @Test
+    public void testRadixHeap() {
+        Random random = new Random(18L);
+        RadixHeap heap = new RadixHeap();
+        // Reference holds pairs as priority * elements + element: ordered by priority, elements of equal priorities
+        // may be popped in any order.
+        long elements = 1 << 14;
+        PriorityQueue<Long> reference = new PriorityQueue<>();
+        long last = 0L;
+        for (int i = 0; i < 10000; i++) {
+            if (random.nextInt(3) > 0 || heap.isEmpty()) {
+                long priority = last + (random.nextBoolean() ? random.nextInt(4) : random.nextInt(1000));
+                heap.push(priority, i);
+                reference.add(priority * elements + i);
+            } else {
+                last = assertPop(heap, reference, elements);
+            }
+            assertEquals(reference.size(), heap.size());
+        }
+        while (!heap.isEmpty()) {
+            assertPop(heap, reference, elements);
+        }
+        assertTrue(reference.isEmpty());
+        heap.push(heap.lastPriority(), 1);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertEquals(0L, heap.lastPriority());
+    }
+
+    private static long assertPop(RadixHeap heap, PriorityQueue<Long> reference, long elements) {
+        int element = heap.pop();
+        long priority = heap.lastPriority();
+        assertEquals(reference.peek() / elements, priority);
+        assertTrue(reference.remove(priority * elements + element));
+        return priority;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRadixHeapMonotone() {
+        RadixHeap heap = new RadixHeap();
+        heap.push(10L, 1);
+        heap.pop();
+        heap.push(9L, 2);
+    }
+}
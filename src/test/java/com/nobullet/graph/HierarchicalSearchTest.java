@@ -0,0 +1,98 @@
+package com.nobullet.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import com.nobullet.graph.Map.Cell;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for {@link HierarchicalSearch}.
+ */
+public class HierarchicalSearchTest {
+
+    @Test
+    public void testPath() {
+        Map map = Map.fromString(
+                "    #   ",
+                " ## # # ",
+                "  #   # ",
+                "# ##### ",
+                "        ");
+        HierarchicalSearch search = new HierarchicalSearch(map, 4);
+        Map.Path path = search.shortestPath(new Cell(0, 0), new Cell(7, 0));
+        assertEquals(map.shortestPathBFS(new Cell(0, 0), new Cell(7, 0)).asList().size(), path.asList().size());
+        JumpPointSearchTest.assertContinuous(map, path);
+        List<Cell> waypoints = search.abstractPath(new Cell(0, 0), new Cell(7, 0));
+        assertEquals(new Cell(0, 0), waypoints.get(0));
+        assertEquals(new Cell(7, 0), waypoints.get(waypoints.size() - 1));
+        assertEquals(path.asList(), search.refine(waypoints).asList());
+        assertFalse(search.shortestPath(new Cell(0, 0), new Cell(4, 0)).hasPath());
+        assertEquals(1, search.shortestPath(new Cell(5, 2), new Cell(5, 2)).asList().size());
+    }
+
+    @Test
+    public void testMatchesBreadthFirstSearch() {
+        Random random = new Random(19L);
+        for (int round = 0; round < 10; round++) {
+            Map map = randomMap(random, 20 + random.nextInt(60), 20 + random.nextInt(60));
+            HierarchicalSearch search = new HierarchicalSearch(map, 4 + random.nextInt(12));
+            for (int i = 0; i < 100; i++) {
+                if (i % 10 == 0) {
+                    // Updates are picked up before the next query.
+                    map.set(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()), random.nextInt(2));
+                }
+                Cell source = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+                Cell target = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+                Map.Path expected = map.shortestPathBFS(source, target);
+                Map.Path path = search.shortestPath(source, target);
+                assertEquals(expected.hasPath(), path.hasPath());
+                if (path.hasPath()) {
+                    assertEquals(source, path.asList().get(0));
+                    assertEquals(target, path.asList().get(path.asList().size() - 1));
+                    JumpPointSearchTest.assertContinuous(map, path);
+                    assertTrue(path.asList().size() >= expected.asList().size());
+                }
+            }
+            search.detach();
+        }
+    }
+
+    @Test
+    public void testUpdates() {
+        Map map = new Map(64, 64);
+        HierarchicalSearch search = new HierarchicalSearch(map, 16);
+        int transitions = search.getNumberOfTransitions();
+        assertEquals(127, search.shortestPath(new Cell(0, 0), new Cell(63, 63)).asList().size());
+        // Inner change keeps transitions.
+        map.set(8, 8, 1L);
+        assertEquals(transitions, search.getNumberOfTransitions());
+        // Wall across the map: only the gap is left.
+        for (int y = 0; y < 64; y++) {
+            if (y != 40) {
+                map.set(31, y, 1L);
+            }
+        }
+        assertTrue(search.getNumberOfTransitions() < transitions);
+        Map.Path path = search.shortestPath(new Cell(0, 0), new Cell(63, 0));
+        assertTrue(path.asList().contains(new Cell(31, 40)));
+        map.set(31, 40, 1L);
+        assertFalse(search.shortestPath(new Cell(0, 0), new Cell(63, 0)).hasPath());
+        search.detach();
+    }
+
+    static Map randomMap(Random random, int width, int height) {
+        Map map = new Map(width, height);
+        int walls = 3 + random.nextInt(4);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (random.nextInt(walls) == 0) {
+                    map.set(x, y, 1L);
+                }
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,55 @@
+package com.nobullet.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for {@link IndexedDaryHeap}.
+ */
+public class IndexedDaryHeapTest {
+
+    @Test
+    public void testOrderWithDecreaseKey() {
+        Random random = new Random(31L);
+        int size = 1000;
+        IndexedDaryHeap heap = new IndexedDaryHeap(10);
+        heap.ensureCapacity(size);
+        double[] priorities = new double[size];
+        for (int i = 0; i < size; i++) {
+            priorities[i] = random.nextDouble() * 1000.0D;
+            heap.offer(i, priorities[i]);
+        }
+        // Decrease some, ignore increases.
+        for (int i = 0; i < size; i += 3) {
+            priorities[i] /= 2.0D;
+            heap.offer(i, priorities[i]);
+            heap.offer(i, priorities[i] + 1.0D);
+        }
+        assertEquals(size, heap.size());
+        double[] sorted = Arrays.copyOf(priorities, size);
+        Arrays.sort(sorted);
+        for (int i = 0; i < size; i++) {
+            assertEquals(sorted[i], heap.peekPriority(), 0.0D);
+            int element = heap.poll();
+            assertFalse(heap.contains(element));
+            assertEquals(sorted[i], priorities[element], 0.0D);
+        }
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    public void testClear() {
+        IndexedDaryHeap heap = new IndexedDaryHeap(8);
+        heap.offer(3, 3.0D);
+        heap.offer(5, 1.0D);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        assertFalse(heap.contains(3));
+        heap.offer(3, 7.0D);
+        assertEquals(3, heap.poll());
+    }
+}
@@ -0,0 +1,95 @@
+package com.nobullet.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import com.nobullet.graph.Map.Cell;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for {@link JumpPointSearch}.
+ */
+public class JumpPointSearchTest {
+
+    @Test
+    public void testPath() {
+        Map map = Map.fromString(
+                "    #   ",
+                " ## # # ",
+                "  #   # ",
+                "# ##### ",
+                "        ");
+        Map.Path expected = map.shortestPathBFS(new Cell(0, 0), new Cell(7, 0));
+        Map.Path path = map.shortestPathJPS(new Cell(0, 0), new Cell(7, 0));
+        assertEquals(expected.asList().size(), path.asList().size());
+        assertContinuous(map, path);
+        assertFalse(map.shortestPathJPS(new Cell(0, 0), new Cell(4, 0)).hasPath());
+        assertEquals(1, map.shortestPathJPS(new Cell(0, 0), new Cell(0, 0)).asList().size());
+    }
+
+    @Test
+    public void testMatchesBreadthFirstSearch() {
+        Random random = new Random(18L);
+        for (int round = 0; round < 20; round++) {
+            Map map = new Map(10 + random.nextInt(40), 10 + random.nextInt(40));
+            int walls = 2 + random.nextInt(4);
+            for (int y = 0; y < map.getHeight(); y++) {
+                for (int x = 0; x < map.getWidth(); x++) {
+                    if (random.nextInt(walls) == 0) {
+                        map.set(x, y, 1L);
+                    }
+                }
+            }
+            JumpPointSearch jps = map.newJumpPointSearch(false);
+            JumpPointSearch jpsPlus = map.newJumpPointSearch(true);
+            assertTrue(jpsPlus.isPrecomputed());
+            for (int i = 0; i < 50; i++) {
+                Cell source = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+                Cell target = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+                Map.Path expected = map.shortestPathBFS(source, target);
+                for (JumpPointSearch search : new JumpPointSearch[]{jps, jpsPlus}) {
+                    Map.Path path = search.shortestPath(source, target);
+                    assertEquals(expected.hasPath(), path.hasPath());
+                    assertEquals(expected.asList().size(), path.asList().size());
+                    if (path.hasPath()) {
+                        assertEquals(source, path.asList().get(0));
+                        assertEquals(target, path.asList().get(path.asList().size() - 1));
+                        assertContinuous(map, path);
+                        assertEquals(path.asList().size() - 1, search.shortestPathLength(source.getX(),
+                                source.getY(), target.getX(), target.getY()));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOpenArea() {
+        Map map = new Map(500, 500);
+        for (int y = 100; y < 400; y++) {
+            map.set(250, y, 1L);
+        }
+        JumpPointSearch jps = map.newJumpPointSearch(false);
+        JumpPointSearch jpsPlus = map.newJumpPointSearch(true);
+        assertEquals(998L, jps.shortestPathLength(0, 0, 499, 499));
+        assertTrue(jps.getExpanded() < 1000);
+        assertEquals(998L, jpsPlus.shortestPathLength(0, 0, 499, 499));
+        assertTrue(jpsPlus.getExpanded() < 1000);
+        assertEquals(400L, jpsPlus.shortestPathLength(200, 250, 300, 250));
+        assertEquals(map.shortestPathBFS(new Cell(200, 250), new Cell(300, 250)).asList().size(),
+                jps.shortestPath(new Cell(200, 250), new Cell(300, 250)).asList().size());
+    }
+
+    static void assertContinuous(Map map, Map.Path path) {
+        List<Cell> cells = path.asList();
+        for (int i = 0; i < cells.size(); i++) {
+            assertEquals(0L, map.get(cells.get(i)));
+            if (i > 0) {
+                assertEquals(1, Math.abs(cells.get(i).getX() - cells.get(i - 1).getX())
+                        + Math.abs(cells.get(i).getY() - cells.get(i - 1).getY()));
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.nobullet.graph;
+
+import static com.nobullet.MoreAssertions.assertListsEqual;
+import static com.nobullet.graph.GraphTest.listOfVertices;
+import static com.nobullet.graph.GraphTest.newGraphFromBook;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Tests for {@link KShortestPaths}.
+ */
+public class KShortestPathsTest {
+
+    static final Key v1 = Key.of("v1");
+    static final Key v2 = Key.of("v2");
+    static final Key v4 = Key.of("v4");
+    static final Key v6 = Key.of("v6");
+    static final Key v7 = Key.of("v7");
+
+    @Test
+    public void testBookGraph() {
+        Graph graph = newGraphFromBook(false);
+        List<Path> paths = graph.kShortestPaths(v1, v6, 20);
+        assertEquals(9, paths.size());
+        double[] expected = {6, 8, 9, 10, 10, 12, 13, 14, 19};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], paths.get(i).getCost(), 0.0D);
+        }
+        assertListsEqual(listOfVertices(v1, v4, v7, v6), paths.get(0).getPath());
+        assertEquals(graph.shortestPathDijkstra(v1, v6), paths.get(0));
+        assertEquals(3, graph.kShortestPaths(v1, v6, 3).size());
+        assertEquals(newGraphFromBook(false), graph);
+
+        assertTrue(graph.kShortestPaths(v6, v1, 3).isEmpty());
+        List<Path> self = graph.kShortestPaths(v2, v2, 3);
+        assertEquals(1, self.size());
+        assertListsEqual(listOfVertices(v2), self.get(0).getPath());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongK() {
+        newGraphFromBook(false).kShortestPaths(v1, v6, 0);
+    }
+
+    @Test
+    public void testMatchesEnumeration() {
+        Random random = new Random(21L);
+        for (int round = 0; round < 20; round++) {
+            Graph graph = new Graph();
+            int vertices = 9;
+            for (int v = 0; v < vertices; v++) {
+                graph.addVertex(Key.of(v));
+            }
+            for (int i = 0; i < 25; i++) {
+                int from = random.nextInt(vertices);
+                int to = random.nextInt(vertices);
+                if (from != to) {
+                    graph.addEdge(Key.of(from), Key.of(to), 1 + random.nextInt(9));
+                }
+            }
+            List<Double> expected = new ArrayList<>();
+            enumerate(graph, Key.of(0), Key.of(vertices - 1), 0.0D, new HashSet<>(), expected);
+            Collections.sort(expected);
+            List<Path> paths = graph.kShortestPaths(Key.of(0), Key.of(vertices - 1), 10);
+            assertEquals(Math.min(10, expected.size()), paths.size());
+            Set<List<Key>> distinct = new HashSet<>();
+            for (int i = 0; i < paths.size(); i++) {
+                Path path = paths.get(i);
+                assertEquals(expected.get(i), path.getCost(), 1e-9);
+                assertEquals(path.getPath().size(), new HashSet<>(path.getPath()).size());
+                assertTrue(distinct.add(path.getPath()));
+                double cost = 0.0D;
+                for (int j = 1; j < path.getPath().size(); j++) {
+                    cost += graph.getEdgeCost(path.getPath().get(j - 1), path.getPath().get(j));
+                }
+                assertEquals(path.getCost(), cost, 1e-9);
+            }
+        }
+    }
+
+    /**
+     * Costs of all the simple paths by depth-first enumeration.
+     */
+    static void enumerate(Graph graph, Key current, Key target, double cost, Set<Key> visited,
+            List<Double> costs) {
+        if (current.equals(target)) {
+            costs.add(cost);
+            return;
+        }
+        visited.add(current);
+        for (Key next : graph.getAdjacentVertices(current)) {
+            if (!visited.contains(next)) {
+                enumerate(graph, next, target, cost + graph.getEdgeCost(current, next), visited, costs);
+            }
+        }
+        visited.remove(current);
+    }
+}
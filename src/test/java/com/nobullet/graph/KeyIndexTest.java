@@ -0,0 +1,97 @@
+package com.nobullet.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.Test;
+
+/**
+ * Tests for {@link KeyIndex} and primitive keys.
+ */
+public class KeyIndexTest {
+
+    @Test
+    public void testPrimitiveKeys() throws IOException, ClassNotFoundException {
+        assertEquals(Key.of(1), Key.of(Integer.valueOf(1)));
+        assertEquals(Key.of(1L), Key.of((Number) 1L));
+        assertNotEquals(Key.of(1), Key.of(1L));
+        assertNotEquals(Key.of(1), Key.of("1"));
+        assertEquals(Integer.valueOf(7).hashCode(), Key.of(7).hashCode());
+        assertEquals(Long.valueOf(-7L).hashCode(), Key.of(-7L).hashCode());
+        assertEquals("42", Key.of(42L).toString());
+
+        // Keys written by number keys are read as primitive ones.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(new NumberKey(5));
+            output.writeObject(Key.of(6L));
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(Key.of(5), input.readObject());
+            assertEquals(Key.of(6L), input.readObject());
+        }
+    }
+
+    @Test
+    public void testPrimitiveIndex() {
+        Key[] keys = new Key[10000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = Key.of(i * 3L - 5000L);
+        }
+        KeyIndex index = new KeyIndex(keys);
+        assertTrue(index.isPrimitive());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i, index.get(keys[i]));
+            assertEquals(i, index.get(i * 3L - 5000L));
+        }
+        assertEquals(CsrGraph.NO_VERTEX, index.get(-4999L));
+        assertEquals(CsrGraph.NO_VERTEX, index.get(Key.of(-5000)));
+        assertEquals(CsrGraph.NO_VERTEX, index.get(Key.of("-5000")));
+        assertEquals(keys.length, index.keySet().size());
+        assertTrue(index.keySet().contains(Key.of(-5000L)));
+        assertEquals(new HashSet<>(Arrays.asList(keys)), index.keySet());
+
+        KeyIndex ints = new KeyIndex(new Key[]{Key.of(1), Key.of(2)});
+        assertTrue(ints.isPrimitive());
+        assertEquals(1, ints.get(2L));
+        assertEquals(CsrGraph.NO_VERTEX, ints.get(Key.of(2L)));
+        assertEquals(CsrGraph.NO_VERTEX, ints.get(1L << 32 | 2L));
+    }
+
+    @Test
+    public void testMixedIndex() {
+        KeyIndex index = new KeyIndex(new Key[]{Key.of(1), Key.of(2L), Key.of("3")});
+        assertFalse(index.isPrimitive());
+        assertEquals(0, index.get(Key.of(1)));
+        assertEquals(0, index.get(1L));
+        assertEquals(1, index.get(2L));
+        assertEquals(2, index.get(Key.of("3")));
+        assertEquals(CsrGraph.NO_VERTEX, index.get(3L));
+        assertTrue(new KeyIndex(new Key[0]).keySet().isEmpty());
+    }
+
+    @Test
+    public void testCsrGraphByPrimitiveKeys() {
+        Graph graph = new Graph()
+                .addEdge(Key.of(1L), Key.of(2L), 1.0D)
+                .addEdge(Key.of(2L), Key.of(3L), 2.0D)
+                .addEdge(Key.of(1L), Key.of(3L), 5.0D);
+        CsrGraph csr = graph.freeze();
+        assertTrue(csr.indices.isPrimitive());
+        assertTrue(csr.hasVertex(3L));
+        assertFalse(csr.hasVertex(4L));
+        assertTrue(csr.hasEdge(1L, 2L));
+        assertFalse(csr.hasEdge(2L, 1L));
+        assertEquals(5.0D, csr.getEdgeCost(1L, 3L), 0.0D);
+        assertEquals(3.0D, csr.shortestPathDijkstra(1L, 3L).getCost(), 0.0D);
+        assertEquals(graph.getVertices(), csr.getVertices());
+    }
+}
@@ -0,0 +1,119 @@
+package com.nobullet.graph;
+
+import static com.nobullet.MoreAssertions.assertListsEqual;
+import static com.nobullet.graph.GraphTest.listOfVertices;
+import static com.nobullet.graph.GraphTest.newGraphFromBook;
+import static com.nobullet.graph.GraphTest.newRandomGraph;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import com.nobullet.graph.Graph.NegativeEdgeCostException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Landmarks}.
+ */
+public class LandmarksTest {
+
+    static final Key v1 = Key.of("v1");
+    static final Key v3 = Key.of("v3");
+    static final Key v5 = Key.of("v5");
+    static final Key v6 = Key.of("v6");
+    static final Key v4 = Key.of("v4");
+    static final Key v7 = Key.of("v7");
+
+    @Test
+    public void testBookGraph() throws NegativeEdgeCostException {
+        Graph graph = newGraphFromBook(false);
+        Landmarks landmarks = Landmarks.of(graph, 2);
+        assertEquals(2, landmarks.getLandmarks().size());
+        assertEquals(7, landmarks.getNumberOfVertices());
+        assertListsEqual(listOfVertices(v1, v4, v7, v6), graph.shortestPathAStar(v1, v6, landmarks).getPath());
+        assertListsEqual(listOfVertices(v3, v1, v4, v5), graph.shortestPathAStar(v3, v5, landmarks).getPath());
+        CsrGraph csr = graph.freeze();
+        assertListsEqual(listOfVertices(v1, v4, v7, v6), csr.shortestPathAStar(v1, v6, landmarks).getPath());
+        assertTrue(csr.shortestPathAStar(v6, v1, landmarks).isEmpty());
+        // More landmarks than vertices.
+        assertEquals(7, Landmarks.of(graph, 100).getLandmarks().size());
+    }
+
+    @Test
+    public void testRandomGraph() throws NegativeEdgeCostException, IOException {
+        Graph source = newRandomGraph(new Random(5L), 4000, 20000, 50);
+        CsrGraph graph = source.freeze();
+        Landmarks landmarks = Landmarks.of(graph, 8);
+        Landmarks explicit = Landmarks.of(graph, Arrays.asList(graph.keys[1], graph.keys[2], graph.keys[3]));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        landmarks.writeTo(bytes);
+        Landmarks loaded = Landmarks.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(landmarks.getLandmarks(), loaded.getLandmarks());
+        // Another snapshot numbers vertices by itself.
+        CsrGraph copy = source.freeze();
+        Random random = new Random(9L);
+        for (int i = 0; i < 50; i++) {
+            Key from = graph.keys[random.nextInt(4000)];
+            Key to = graph.keys[random.nextInt(4000)];
+            Path expected = graph.shortestPathDijkstra(from, to);
+            if (!expected.isEmpty()) {
+                assertTrue(landmarks.estimate(from, to) <= expected.getCost());
+            }
+            assertEquals(expected.getCost(), graph.shortestPathAStar(from, to, landmarks).getCost(), 1e-9);
+            assertEquals(expected.getCost(), copy.shortestPathAStar(from, to, loaded).getCost(), 1e-9);
+            assertEquals(expected.getCost(), graph.shortestPathAStar(from, to, explicit).getCost(), 1e-9);
+            assertEquals(expected.getCost(), source.shortestPathAStar(from, to, landmarks).getCost(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testForeignClassesAreRejected() throws NegativeEdgeCostException, IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ContractionHierarchy.of(newGraphFromBook(true)).writeTo(bytes);
+        try {
+            Landmarks.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+            fail("Contraction hierarchy is read as landmarks.");
+        } catch (InvalidClassException ex) {
+            assertEquals(ContractionHierarchy.class.getName(), ex.classname);
+        }
+    }
+
+    @Test
+    public void testCustomKeys() throws NegativeEdgeCostException, IOException {
+        Key from = new ContractionHierarchyTest.PointKey(0, 0);
+        Key to = new ContractionHierarchyTest.PointKey(1, 0);
+        CsrGraph graph = new Graph().addEdge(from, to, 2.0D).addEdge(to, from, 3.0D).freeze();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Landmarks.of(graph, 1).writeTo(bytes);
+        try {
+            Landmarks.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+            fail("Custom key is read without being allowed.");
+        } catch (InvalidClassException ex) {
+            assertEquals(ContractionHierarchyTest.PointKey.class.getName(), ex.classname);
+        }
+        Landmarks loaded = Landmarks.readFrom(new ByteArrayInputStream(bytes.toByteArray()),
+                ContractionHierarchyTest.PointKey.class);
+        assertEquals(2.0D, graph.shortestPathAStar(from, to, loaded).getCost(), 0.0D);
+    }
+
+    @Test
+    public void testWrongGraph() throws NegativeEdgeCostException {
+        Landmarks landmarks = Landmarks.of(newGraphFromBook(false), 2);
+        try {
+            new Graph().addEdge(v1, v3, 1.0D).freeze().shortestPathAStar(v1, v3, landmarks);
+            fail("Another graph.");
+        } catch (IllegalArgumentException iae) {
+            // Ok.
+        }
+        try {
+            Landmarks.of(new Graph().addEdge(v1, v3, -1.0D), 1);
+            fail("Negative cost.");
+        } catch (NegativeEdgeCostException nece) {
+            // Ok.
+        }
+    }
+}
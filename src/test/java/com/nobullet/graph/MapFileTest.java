@@ -0,0 +1,68 @@
+package com.nobullet.graph;
+
+import static org.junit.Assert.assertEquals;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link MapFile}.
+ */
+public class MapFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFormat() throws IOException {
+        String text = "------\n"
+                + "|1 #9|\r\n"
+                + "\n"
+                + "|12|3|#|x|\n"
+                + "|2|\n"
+                + "------\n";
+        Map map = MapFile.read(input(text));
+        assertEquals(4, map.getWidth());
+        assertEquals(3, map.getHeight());
+        long[][] expected = {{1, 0, 10, 9}, {12, 3, 10, 0}, {2, 0, 0, 0}};
+        for (int y = 0; y < expected.length; y++) {
+            for (int x = 0; x < expected[y].length; x++) {
+                assertEquals(expected[y][x], map.get(x, y));
+            }
+        }
+        assertEquals(0, MapFile.read(input("")).getHeight());
+        assertEquals(map, Map.fromString(text));
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        Random random = new Random(24L);
+        Map expected = new Map(97, 300);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                expected.set(x, y, random.nextInt(3) == 0 ? 1 + random.nextInt(10) : 0L);
+            }
+        }
+        String text = expected.toString();
+        // Small chunks: rows are cut and some chunks are extended.
+        for (int chunkSize : new int[]{64, 1000, 1 << 16}) {
+            assertEquals(expected, MapFile.read(Channels.newChannel(input(text)), chunkSize));
+            assertEquals(expected, MapFile.read(input(text), chunkSize));
+        }
+        Path file = folder.newFile("map.txt").toPath();
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        assertEquals(expected, MapFile.read(file));
+        assertEquals(expected, Map.fromString(text));
+    }
+
+    private static ByteArrayInputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
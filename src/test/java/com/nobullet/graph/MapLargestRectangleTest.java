@@ -1,6 +1,11 @@
 package com.nobullet.graph;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import java.util.EnumMap;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import org.junit.Test;
 
 /**
@@ -150,4 +155,108 @@ public class MapLargestRectangleTest {
         assertEquals(1, assistant[6][3]);
         assertEquals(0, assistant[7][3]);
     }
+
+    @Test
+    public void testScanner() {
+        Random random = new Random(22L);
+        for (int round = 0; round < 20; round++) {
+            Map map = new Map(1 + random.nextInt(30), 1 + random.nextInt(30));
+            for (int y = 0; y < map.getHeight(); y++) {
+                for (int x = 0; x < map.getWidth(); x++) {
+                    map.set(x, y, random.nextInt(3) == 0 ? 0L : random.nextInt(5));
+                }
+            }
+            for (boolean zeroArea : new boolean[]{true, false}) {
+                assertEquals(fromAssistantMatrix(map, zeroArea), map.findLargestRectangle(zeroArea));
+            }
+        }
+        assertNull(new Map(3, 3).findLargestRectangle());
+
+        // Rows are generated on the fly: only the histogram is kept.
+        LargestRectangleScanner scanner = new LargestRectangleScanner(64, false);
+        long[] row = new long[64];
+        for (int y = 0; y < 200000; y++) {
+            for (int x = 0; x < row.length; x++) {
+                row[x] = (x + y) % 7 == 0 ? 0L : 1L;
+                if (y >= 150000 && y < 150100 && x >= 10 && x < 20) {
+                    row[x] = 1L;
+                }
+            }
+            scanner.accept(row);
+        }
+        assertEquals(200000, scanner.getNumberOfRows());
+        assertEquals(Map.Rectangle.of(10, 150000, 10, 100), scanner.getLargestRectangle());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testScannerRowLength() {
+        new LargestRectangleScanner(3, true).accept(new long[4]);
+    }
+
+    @Test
+    public void testAssistantMatrices() {
+        Random random = new Random(23L);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            // Wide maps are split into several bands of rows and stripes of columns.
+            int[][] sizes = {{1, 1}, {7, 13}, {30, 2}, {2100, 40}};
+            for (int[] size : sizes) {
+                Map map = new Map(size[0], size[1]);
+                for (int y = 0; y < map.getHeight(); y++) {
+                    for (int x = 0; x < map.getWidth(); x++) {
+                        map.set(x, y, random.nextInt(3) == 0 ? 0L : random.nextInt(5));
+                    }
+                }
+                for (boolean zeroArea : new boolean[]{true, false}) {
+                    EnumMap<Map.Direction, long[][]> matrices = map.buildAssistantMatrices(zeroArea, pool);
+                    for (Map.Direction direction : Map.Direction.values()) {
+                        long[][] expected = naiveAssistantMatrix(map, direction, zeroArea);
+                        assertArrayEquals(expected, matrices.get(direction));
+                        assertArrayEquals(expected, map.buildAssistantMatrix(direction, zeroArea));
+                    }
+                    assertEquals(map.findLargestRectangle(zeroArea), map.findLargestRectangleParallel(zeroArea, pool));
+                }
+            }
+            assertNull(new Map(3, 3).findLargestRectangleParallel(false));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static long[][] naiveAssistantMatrix(Map map, Map.Direction direction, boolean zeroArea) {
+        int width = map.getWidth();
+        int height = map.getHeight();
+        long[][] assistant = new long[height][width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int dx = direction == Map.Direction.LEFT2RIGHT ? -1 : direction == Map.Direction.RIGHT2LEFT ? 1 : 0;
+                int dy = direction == Map.Direction.TOP2BOTTOM ? -1 : direction == Map.Direction.BOTTOM2TOP ? 1 : 0;
+                long count = 0;
+                for (int cx = x, cy = y; map.withinBounds(cx, cy); cx += dx, cy += dy) {
+                    long value = map.get(cx, cy);
+                    if (zeroArea ? value != 0 : value <= 0) {
+                        break;
+                    }
+                    count++;
+                }
+                assistant[y][x] = count;
+            }
+        }
+        return assistant;
+    }
+
+    private static Map.Rectangle fromAssistantMatrix(Map map, boolean zeroArea) {
+        long[][] assistantMatrix = map.buildAssistantMatrix(zeroArea);
+        Map.Rectangle max = null;
+        for (int y = 0; y < assistantMatrix.length; y++) {
+            Map.Rectangle candidate = Map.findLargestRectangle(assistantMatrix[y], y);
+            if (candidate != null && (max == null || candidate.area() > max.area())) {
+                max = candidate;
+            }
+        }
+        if (max == null) {
+            return null;
+        }
+        return Map.Rectangle.of(max.getX(), max.getY() - max.getHeight() + 1, max.getWidth(), max.getHeight());
+    }
 }
@@ -0,0 +1,114 @@
+package com.nobullet.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for {@link MapRegions}.
+ */
+public class MapRegionsTest {
+
+    @Test
+    public void testRegions() {
+        Map map = Map.fromString(
+                "     111   ",
+                " 333 1 11 5",
+                " 3 3 1  1 5",
+                " 333 1111  ");
+        MapRegions plains = map.getPlains(0L);
+        assertEquals(3, plains.getNumberOfRegions());
+        assertEquals(MapRegions.NO_REGION, plains.getLabel(0, 0));
+        int three = plains.getLabel(1, 1);
+        assertEquals(3L, plains.getValue(three));
+        assertEquals(8, plains.getSize(three));
+        assertEquals(Map.Rectangle.of(1, 1, 3, 3), plains.getBoundingBox(three));
+        int one = plains.getLabel(5, 0);
+        assertEquals(12, plains.getSize(one));
+        assertEquals(Map.Rectangle.of(5, 0, 4, 4), plains.getBoundingBox(one));
+        assertEquals(Map.Rectangle.of(10, 1, 1, 2), plains.getBoundingBox(plains.getLabel(10, 2)));
+
+        MapRegions all = map.getPlains(null);
+        // Zeros left and right of 1, inside of 3, inside of 1, plus the 3 regions above.
+        assertEquals(7, all.getNumberOfRegions());
+        assertEquals(7L, map.getNumberOfPlains(null));
+        assertEquals(0, Map.emptyMap().getPlains(null).getNumberOfRegions());
+    }
+
+    @Test
+    public void testMatchesBreadthFirstSearch() {
+        Random random = new Random(20L);
+        for (int round = 0; round < 6; round++) {
+            // Large maps are split into several bands.
+            Map map = round < 3 ? new Map(1 + random.nextInt(40), 1 + random.nextInt(40))
+                    : new Map(100 + random.nextInt(300), 300 + random.nextInt(700));
+            for (int y = 0; y < map.getHeight(); y++) {
+                for (int x = 0; x < map.getWidth(); x++) {
+                    map.set(x, y, random.nextInt(3) == 0 ? random.nextInt(3) : 0L);
+                }
+            }
+            MapRegions regions = map.getPlains(1L);
+            int[][] expected = new int[map.getHeight()][map.getWidth()];
+            int count = 0;
+            for (int y = 0; y < map.getHeight(); y++) {
+                for (int x = 0; x < map.getWidth(); x++) {
+                    if (map.get(x, y) == 1L) {
+                        assertEquals(MapRegions.NO_REGION, regions.getLabel(x, y));
+                    } else if (expected[y][x] == 0) {
+                        count++;
+                        int label = regions.getLabel(x, y);
+                        int[] box = {x, y, x, y};
+                        int size = fill(map, expected, x, y, count, box);
+                        assertEquals(size, regions.getSize(label));
+                        assertEquals(map.get(x, y), regions.getValue(label));
+                        assertEquals(Map.Rectangle.of(box[0], box[1], box[2] - box[0] + 1, box[3] - box[1] + 1),
+                                regions.getBoundingBox(label));
+                    }
+                }
+            }
+            assertEquals(count, regions.getNumberOfRegions());
+            // Same expected region means same label.
+            int[] labels = new int[count + 1];
+            for (int y = 0; y < map.getHeight(); y++) {
+                for (int x = 0; x < map.getWidth(); x++) {
+                    if (expected[y][x] > 0) {
+                        if (labels[expected[y][x]] == 0) {
+                            labels[expected[y][x]] = regions.getLabel(x, y) + 1;
+                        }
+                        assertEquals(labels[expected[y][x]] - 1, regions.getLabel(x, y));
+                    }
+                }
+            }
+            assertTrue(count > 0);
+        }
+    }
+
+    private static int fill(Map map, int[][] regions, int x, int y, int region, int[] box) {
+        long value = map.get(x, y);
+        Deque<int[]> queue = new ArrayDeque<>();
+        queue.add(new int[]{x, y});
+        regions[y][x] = region;
+        int size = 0;
+        while (!queue.isEmpty()) {
+            int[] cell = queue.poll();
+            size++;
+            box[0] = Math.min(box[0], cell[0]);
+            box[1] = Math.min(box[1], cell[1]);
+            box[2] = Math.max(box[2], cell[0]);
+            box[3] = Math.max(box[3], cell[1]);
+            int[][] neighbors = {{cell[0] + 1, cell[1]}, {cell[0] - 1, cell[1]}, {cell[0], cell[1] + 1},
+                {cell[0], cell[1] - 1}};
+            for (int[] next : neighbors) {
+                if (map.withinBounds(next[0], next[1]) && regions[next[1]][next[0]] == 0
+                        && map.get(next[0], next[1]) == value) {
+                    regions[next[1]][next[0]] = region;
+                    queue.add(next);
+                }
+            }
+        }
+        return size;
+    }
+}
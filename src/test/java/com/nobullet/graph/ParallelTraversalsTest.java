@@ -0,0 +1,191 @@
+package com.nobullet.graph;
+
+import static com.nobullet.graph.GraphTest.newBasicGraph;
+import static com.nobullet.graph.GraphTest.newRandomGraph;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import com.nobullet.algo.DisjointSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParallelTraversals}.
+ */
+public class ParallelTraversalsTest {
+
+    @Test
+    public void testBreadthFirstTreeSmall() {
+        BreadthFirstTree tree = newBasicGraph().breadthFirstTree(Key.of("1"));
+        assertEquals(Key.of("1"), tree.getSource());
+        assertEquals(3, tree.getLevel(Key.of("7")));
+        assertEquals(4, tree.getPath(Key.of("7")).getPath().size());
+        assertFalse(newBasicGraph().breadthFirstTree(Key.of("10")).isReachable(Key.of("1")));
+        assertEquals(-1, newBasicGraph().breadthFirstTree(Key.of("10")).getLevel(Key.of("1")));
+    }
+
+    @Test
+    public void testBreadthFirstTreeMatchesSequential() {
+        CsrGraph graph = newRandomGraph(new Random(7L), 20000, 120000, 1).freeze();
+        for (int source : new int[]{0, 17, 19999}) {
+            int[] expected = levels(graph, source);
+            BreadthFirstTree tree = graph.breadthFirstTree(graph.keys[source]);
+            int reached = 0;
+            int depth = 0;
+            for (int v = 0; v < expected.length; v++) {
+                assertEquals(expected[v], tree.levels[v]);
+                if (expected[v] >= 0) {
+                    reached++;
+                    depth = Math.max(depth, expected[v]);
+                    if (v != source) {
+                        assertEquals(expected[v] - 1, expected[tree.parents[v]]);
+                        assertTrue(graph.edgeIndex(tree.parents[v], v) >= 0);
+                    }
+                }
+            }
+            assertEquals(reached, tree.getNumberOfReachable());
+            assertEquals(depth, tree.getDepth());
+        }
+    }
+
+    @Test
+    public void testConnectedComponents() {
+        Components components = newBasicGraph().connectedComponents();
+        assertEquals(1, components.getNumberOfComponents());
+        assertEquals(13, components.getLargestComponentSize());
+
+        CsrGraph graph = newRandomGraph(new Random(11L), 30000, 25000, 1).freeze();
+        DisjointSet set = new DisjointSet(graph.keys.length);
+        for (int v = 0; v < graph.keys.length; v++) {
+            for (int e = graph.offsets[v]; e < graph.offsets[v + 1]; e++) {
+                set.union(v, graph.targets[e]);
+            }
+        }
+        components = graph.connectedComponents();
+        assertEquals(set.getNumberOfUnions(), components.getNumberOfComponents());
+        for (int v = 0; v < graph.keys.length; v += 7) {
+            int other = (v * 31 + 5) % graph.keys.length;
+            assertEquals(set.find(v) == set.find(other), components.labels[v] == components.labels[other]);
+            assertEquals(set.getUnionSize(v), components.getComponentSize(components.labels[v]));
+        }
+    }
+
+    @Test
+    public void testStronglyConnectedComponents() {
+        Key v1 = Key.of("v1");
+        Key v2 = Key.of("v2");
+        Key v3 = Key.of("v3");
+        Key v4 = Key.of("v4");
+        Components components = new Graph()
+                .addEdge(v1, v2)
+                .addEdge(v2, v1)
+                .addEdge(v2, v3)
+                .addEdge(v3, v4)
+                .addEdge(v4, v3)
+                .stronglyConnectedComponents();
+        assertEquals(2, components.getNumberOfComponents());
+        assertTrue(components.isSameComponent(v1, v2));
+        assertFalse(components.isSameComponent(v2, v3));
+        assertEquals(new HashSet<>(Arrays.asList(v3, v4)), components.getVertices(components.getComponent(v4)));
+
+        // Big enough for forward-backward decomposition.
+        CsrGraph graph = newRandomGraph(new Random(13L), 20000, 40000, 1).freeze();
+        int[] expected = kosaraju(graph);
+        components = graph.stronglyConnectedComponents();
+        int expectedCount = 0;
+        for (int label : expected) {
+            expectedCount = Math.max(expectedCount, label + 1);
+        }
+        assertEquals(expectedCount, components.getNumberOfComponents());
+        assertTrue(components.getLargestComponentSize() > ParallelTraversals.SEQUENTIAL_SCC_THRESHOLD);
+        int[] mapping = new int[expectedCount];
+        Arrays.fill(mapping, -1);
+        for (int v = 0; v < expected.length; v++) {
+            if (mapping[expected[v]] == -1) {
+                mapping[expected[v]] = components.labels[v];
+            }
+            assertEquals(mapping[expected[v]], components.labels[v]);
+        }
+    }
+
+    static int[] levels(CsrGraph graph, int source) {
+        int[] levels = new int[graph.keys.length];
+        Arrays.fill(levels, -1);
+        Deque<Integer> queue = new ArrayDeque<>();
+        levels[source] = 0;
+        queue.add(source);
+        while (!queue.isEmpty()) {
+            int vertex = queue.poll();
+            for (int e = graph.offsets[vertex]; e < graph.offsets[vertex + 1]; e++) {
+                if (levels[graph.targets[e]] == -1) {
+                    levels[graph.targets[e]] = levels[vertex] + 1;
+                    queue.add(graph.targets[e]);
+                }
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Kosaraju's algorithm with explicit stacks.
+     */
+    static int[] kosaraju(CsrGraph graph) {
+        int n = graph.keys.length;
+        boolean[] visited = new boolean[n];
+        int[] order = new int[n];
+        int orderSize = 0;
+        int[] stack = new int[n];
+        int[] edges = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (visited[root]) {
+                continue;
+            }
+            int size = 0;
+            stack[size] = root;
+            edges[size++] = graph.offsets[root];
+            visited[root] = true;
+            while (size > 0) {
+                int vertex = stack[size - 1];
+                if (edges[size - 1] < graph.offsets[vertex + 1]) {
+                    int next = graph.targets[edges[size - 1]++];
+                    if (!visited[next]) {
+                        visited[next] = true;
+                        stack[size] = next;
+                        edges[size++] = graph.offsets[next];
+                    }
+                } else {
+                    order[orderSize++] = vertex;
+                    size--;
+                }
+            }
+        }
+        CsrGraph reverse = graph.reverse();
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        int count = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            int root = order[i];
+            if (labels[root] != -1) {
+                continue;
+            }
+            int size = 0;
+            stack[size++] = root;
+            labels[root] = count;
+            while (size > 0) {
+                int vertex = stack[--size];
+                for (int e = reverse.offsets[vertex]; e < reverse.offsets[vertex + 1]; e++) {
+                    if (labels[reverse.targets[e]] == -1) {
+                        labels[reverse.targets[e]] = count;
+                        stack[size++] = reverse.targets[e];
+                    }
+                }
+            }
+            count++;
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,116 @@
+package com.nobullet.graph;
+
+import static com.nobullet.graph.GraphTest.newRandomGraph;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SpanningForest} algorithms.
+ */
+public class SpanningForestTest {
+
+    @Test
+    public void testClassicGraph() {
+        Graph graph = new Graph()
+                .addEdge(Key.of("a"), Key.of("b"), 4.0D)
+                .addEdge(Key.of("a"), Key.of("h"), 8.0D)
+                .addEdge(Key.of("b"), Key.of("c"), 8.0D)
+                .addEdge(Key.of("b"), Key.of("h"), 11.0D)
+                .addEdge(Key.of("c"), Key.of("d"), 7.0D)
+                .addEdge(Key.of("c"), Key.of("f"), 4.0D)
+                .addEdge(Key.of("c"), Key.of("i"), 2.0D)
+                .addEdge(Key.of("d"), Key.of("e"), 9.0D)
+                .addEdge(Key.of("d"), Key.of("f"), 14.0D)
+                .addEdge(Key.of("f"), Key.of("e"), 10.0D)
+                .addEdge(Key.of("g"), Key.of("f"), 2.0D)
+                .addEdge(Key.of("h"), Key.of("g"), 1.0D)
+                .addEdge(Key.of("i"), Key.of("g"), 6.0D)
+                .addEdge(Key.of("h"), Key.of("i"), 7.0D)
+                .addVertex(Key.of("z"));
+        for (SpanningForestAlgorithm algorithm : SpanningForestAlgorithm.values()) {
+            SpanningForest forest = graph.minimumSpanningForest(algorithm);
+            assertEquals(37.0D, forest.getTotalCost(), 0.0D);
+            assertEquals(8, forest.getNumberOfEdges());
+            assertEquals(2, forest.getNumberOfTrees());
+            Graph tree = forest.toGraph();
+            assertEquals(graph.getVertices(), tree.getVertices());
+            assertTrue(tree.hasEdge(Key.of("h"), Key.of("g")));
+            assertEquals(2, tree.connectedComponents().getNumberOfComponents());
+        }
+        assertEquals(0, new Graph().minimumSpanningForest().getNumberOfEdges());
+    }
+
+    @Test
+    public void testMatchesPrim() {
+        Random random = new Random(15L);
+        for (int round = 0; round < 10; round++) {
+            Graph graph = newRandomGraph(random, 300, 900, 10);
+            SpanningForest kruskal = graph.minimumSpanningForest(SpanningForestAlgorithm.KRUSKAL);
+            SpanningForest boruvka = graph.minimumSpanningForest(SpanningForestAlgorithm.BORUVKA);
+            assertEquals(prim(graph), kruskal.getTotalCost(), 1e-9);
+            assertEquals(kruskal.getTotalCost(), boruvka.getTotalCost(), 1e-9);
+            assertEquals(graph.connectedComponents().getNumberOfComponents(), kruskal.getNumberOfTrees());
+            assertEquals(kruskal.getNumberOfTrees(), boruvka.getNumberOfTrees());
+        }
+    }
+
+    @Test
+    public void testLargeGraph() {
+        Graph graph = newRandomGraph(new Random(16L), 50000, 200000, 100);
+        CsrGraph csr = graph.freeze();
+        SpanningForest kruskal = csr.minimumSpanningForest(SpanningForestAlgorithm.KRUSKAL);
+        SpanningForest boruvka = csr.minimumSpanningForest(SpanningForestAlgorithm.BORUVKA);
+        // Ties are broken by edge index, so both algorithms pick the same edges.
+        assertEquals(edges(kruskal), edges(boruvka));
+        assertEquals(csr.connectedComponents().getNumberOfComponents(), boruvka.getNumberOfTrees());
+    }
+
+    static Set<String> edges(SpanningForest forest) {
+        Set<String> result = new HashSet<>();
+        forest.traverseEdges((from, to, cost, data) -> result.add(from + "->" + to + ":" + cost));
+        assertEquals(forest.getNumberOfEdges(), result.size());
+        return result;
+    }
+
+    /**
+     * Total cost of minimum spanning forest by Prim's algorithm from every unvisited vertex.
+     */
+    static double prim(Graph graph) {
+        Map<Key, List<Object[]>> adjacent = new HashMap<>();
+        for (Key key : graph.getVertices()) {
+            adjacent.put(key, new ArrayList<>());
+        }
+        graph.traverseEdges((from, to, cost, data) -> {
+            adjacent.get(from).add(new Object[]{to, cost});
+            adjacent.get(to).add(new Object[]{from, cost});
+        });
+        Set<Key> visited = new HashSet<>();
+        double total = 0.0D;
+        for (Key start : graph.getVertices()) {
+            if (visited.contains(start)) {
+                continue;
+            }
+            PriorityQueue<Object[]> queue = new PriorityQueue<>((x, y) -> Double.compare((Double) x[1], (Double) y[1]));
+            queue.add(new Object[]{start, 0.0D});
+            while (!queue.isEmpty()) {
+                Object[] entry = queue.poll();
+                Key key = (Key) entry[0];
+                if (!visited.add(key)) {
+                    continue;
+                }
+                total += (Double) entry[1];
+                queue.addAll(adjacent.get(key));
+            }
+        }
+        return total;
+    }
+}
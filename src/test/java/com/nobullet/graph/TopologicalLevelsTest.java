@@ -0,0 +1,155 @@
+package com.nobullet.graph;
+
+import static com.nobullet.MoreAssertions.assertListsEqual;
+import static com.nobullet.graph.GraphTest.listOfVertices;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import com.nobullet.graph.Graph.CycleException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+/**
+ * Tests for {@link TopologicalLevels} and {@link DagSchedule}.
+ */
+public class TopologicalLevelsTest {
+
+    static final Key a = Key.of("a");
+    static final Key b = Key.of("b");
+    static final Key c = Key.of("c");
+    static final Key d = Key.of("d");
+    static final Key e = Key.of("e");
+
+    @Test
+    public void testLevels() throws CycleException {
+        TopologicalLevels levels = newProject(3.0D, 2.0D, 4.0D, 1.0D, 2.0D).topologicalLevels();
+        assertEquals(4, levels.getNumberOfLevels());
+        assertListsEqual(listOfVertices(a), levels.getVertices(0));
+        assertEquals(2, levels.getVertices(1).size());
+        assertEquals(1, levels.getLevel(b));
+        assertEquals(1, levels.getLevel(c));
+        assertEquals(2, levels.getLevel(d));
+        assertListsEqual(listOfVertices(e), levels.getVertices(3));
+        assertEquals(5, levels.getOrder().size());
+    }
+
+    @Test(expected = CycleException.class)
+    public void testCycle() throws CycleException {
+        newProject(1.0D, 1.0D, 1.0D, 1.0D, 1.0D).addEdge(e, b, 1.0D).topologicalLevels();
+    }
+
+    @Test
+    public void testScheduleByEdges() throws CycleException {
+        DagSchedule schedule = newProject(3.0D, 2.0D, 4.0D, 1.0D, 2.0D).schedule();
+        assertEquals(9.0D, schedule.getMakespan(), 0.0D);
+        assertEquals(7.0D, schedule.getEarliestStart(d), 0.0D);
+        assertEquals(2.0D, schedule.getEarliestStart(c), 0.0D);
+        assertEquals(6.0D, schedule.getLatestStart(c), 0.0D);
+        assertEquals(4.0D, schedule.getSlack(c), 0.0D);
+        assertTrue(schedule.isCritical(b));
+        assertFalse(schedule.isCritical(c));
+        Path critical = schedule.getCriticalPath();
+        assertListsEqual(listOfVertices(a, b, d, e), critical.getPath());
+        assertEquals(9.0D, critical.getCost(), 0.0D);
+    }
+
+    @Test
+    public void testScheduleByDurations() throws CycleException {
+        Map<Key, Double> durations = new HashMap<>();
+        durations.put(a, 1.0D);
+        durations.put(b, 2.0D);
+        durations.put(c, 3.0D);
+        durations.put(d, 1.0D);
+        durations.put(e, 1.0D);
+        DagSchedule schedule = newProject(0.0D, 0.0D, 0.0D, 0.0D, 0.0D).schedule(durations::get);
+        assertEquals(6.0D, schedule.getMakespan(), 0.0D);
+        assertEquals(4.0D, schedule.getEarliestStart(d), 0.0D);
+        assertEquals(5.0D, schedule.getEarliestFinish(d), 0.0D);
+        assertEquals(1.0D, schedule.getSlack(b), 0.0D);
+        assertListsEqual(listOfVertices(a, c, d, e), schedule.getCriticalPath().getPath());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeDuration() throws CycleException {
+        newProject(1.0D, 1.0D, 1.0D, 1.0D, 1.0D).schedule(key -> -1.0D);
+    }
+
+    @Test
+    public void testLargeGraph() throws CycleException {
+        int verticesNumber = 30000;
+        Random random = new Random(14L);
+        Graph graph = new Graph();
+        for (int v = 0; v < verticesNumber; v++) {
+            graph.addVertex(Key.of(v));
+        }
+        for (int i = 0; i < 40000; i++) {
+            int from = random.nextInt(verticesNumber);
+            int to = random.nextInt(verticesNumber);
+            if (from < to) {
+                graph.addEdge(Key.of(from), Key.of(to), 1 + random.nextInt(20));
+            }
+        }
+        CsrGraph csr = graph.freeze();
+        TopologicalLevels levels = csr.topologicalLevels();
+        assertTrue(levels.getVertices(0).size() >= TopologicalLevels.PARALLEL_THRESHOLD);
+        // Levels and longest paths by sequential topological order.
+        Map<Key, Integer> expectedLevels = new HashMap<>();
+        Map<Key, Double> longest = new HashMap<>();
+        graph.topologicalSort((key, order) -> {
+            expectedLevels.putIfAbsent(key, 0);
+            longest.putIfAbsent(key, 0.0D);
+            for (Key next : graph.getAdjacentVertices(key)) {
+                expectedLevels.merge(next, expectedLevels.get(key) + 1, Math::max);
+                longest.merge(next, longest.get(key) + graph.getEdgeCost(key, next), Math::max);
+            }
+        });
+        double makespan = 0.0D;
+        for (int v = 0; v < verticesNumber; v++) {
+            assertEquals(expectedLevels.get(Key.of(v)).intValue(), levels.getLevel(Key.of(v)));
+            makespan = Math.max(makespan, longest.get(Key.of(v)));
+        }
+        DagSchedule schedule = csr.schedule();
+        assertEquals(makespan, schedule.getMakespan(), 0.0D);
+        Path critical = schedule.getCriticalPath();
+        double cost = 0.0D;
+        for (int i = 1; i < critical.getPath().size(); i++) {
+            Key from = critical.getPath().get(i - 1);
+            Key to = critical.getPath().get(i);
+            cost += graph.getEdgeCost(from, to);
+            assertTrue(schedule.isCritical(to));
+        }
+        assertEquals(makespan, cost, 0.0D);
+
+        // Every vertex is visited after all its predecessors.
+        Set<Key> visited = ConcurrentHashMap.newKeySet();
+        AtomicBoolean ordered = new AtomicBoolean(true);
+        CsrGraph reverse = csr.reverse();
+        levels.forEachInParallel(key -> {
+            for (Key previous : reverse.getAdjacentVertices(key)) {
+                if (!visited.contains(previous)) {
+                    ordered.set(false);
+                }
+            }
+            visited.add(key);
+        });
+        assertTrue(ordered.get());
+        assertEquals(verticesNumber, visited.size());
+    }
+
+    /**
+     * Project network: a -&gt; b, a -&gt; c, b -&gt; d, c -&gt; d, d -&gt; e with the given costs.
+     */
+    static Graph newProject(double ab, double ac, double bd, double cd, double de) {
+        return new Graph()
+                .addEdge(a, b, ab)
+                .addEdge(a, c, ac)
+                .addEdge(b, d, bd)
+                .addEdge(c, d, cd)
+                .addEdge(d, e, de);
+    }
+}